@@ -0,0 +1,215 @@
+package com.company.taskmanager.benchmark;
+
+import com.company.taskmanager.exception.TaskManagerException;
+import com.company.taskmanager.model.AddResult;
+import com.company.taskmanager.model.EvictionPolicy;
+import com.company.taskmanager.model.PriorityType;
+import com.company.taskmanager.model.Process;
+import com.company.taskmanager.model.SortingType;
+import com.company.taskmanager.service.impl.ShardedTaskManagerService;
+import com.company.taskmanager.service.impl.TaskManagerServiceImpl;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures the throughput and latency of the {@link TaskManagerServiceImpl} operations.
+ *
+ * <p>Capacities are benchmark parameters, thread counts are chosen when running, e.g.
+ * {@code java -jar target/benchmarks.jar -t 4 -prof gc}. The {@link #main(String[]) main} method
+ * runs them for every thread count from one to the number of cores, with the GC profiler.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TaskManagerServiceBenchmark {
+
+  private static final int KILL_BATCH_SIZE = 16;
+
+  /**
+   * Runs the benchmarks with 1, 2, 4... threads up to the number of cores, profiling the allocation
+   * rate and the collections of every run.
+   *
+   * @param args the regular expression of the benchmarks to run, all of them by default.
+   * @throws RunnerException in case a benchmark fails.
+   */
+  public static void main(String[] args) throws RunnerException {
+    String include = args.length > 0 ? args[0] : TaskManagerServiceBenchmark.class.getSimpleName();
+    int cores = Runtime.getRuntime().availableProcessors();
+    for (int threads = 1; ; threads = Math.min(threads * 2, cores)) {
+      Options options = new OptionsBuilder()
+          .include(include)
+          .threads(threads)
+          .addProfiler(GCProfiler.class)
+          .build();
+      new Runner(options).run();
+      if (threads == cores) {
+        break;
+      }
+    }
+  }
+
+  /**
+   * Task manager shared by every benchmark thread.
+   */
+  @State(Scope.Benchmark)
+  public static class TaskManagerState {
+    @Param({"4", "1024", "65536"})
+    public int capacity;
+
+    @Param({"false", "true"})
+    public boolean full;
+
+    public TaskManagerServiceImpl taskManager;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+      // Logging every operation would be measured instead of the task manager
+      java.util.logging.Logger.getLogger("").setLevel(java.util.logging.Level.OFF);
+      taskManager = new TaskManagerServiceImpl(capacity, EvictionPolicy.PRIORITY);
+      if (full) {
+        List<PriorityType> priorities = new ArrayList<>(capacity);
+        for (int i = 0; i < capacity; i++) {
+          priorities.add(PriorityType.values()[i % PriorityType.values().length]);
+        }
+        taskManager.addAll(priorities, EvictionPolicy.NONE);
+      }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+      taskManager.killAll();
+    }
+  }
+
+  /**
+   * Sharded task manager shared by every benchmark thread, with the same total capacity.
+   */
+  @State(Scope.Benchmark)
+  public static class ShardedState {
+    @Param({"1", "4", "16"})
+    public int shards;
+
+    @Param({"1024"})
+    public int capacity;
+
+    public ShardedTaskManagerService taskManager;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+      java.util.logging.Logger.getLogger("").setLevel(java.util.logging.Level.OFF);
+      taskManager = new ShardedTaskManagerService(shards, capacity / shards);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+      taskManager.killAll();
+    }
+  }
+
+  /**
+   * Rotates the priorities used by each benchmark thread.
+   */
+  @State(Scope.Thread)
+  public static class PriorityState {
+    private int next;
+
+    public PriorityType nextPriority() {
+      PriorityType[] priorities = PriorityType.values();
+      return priorities[next++ % priorities.length];
+    }
+  }
+
+  /**
+   * Sorting applied by the listing benchmarks.
+   */
+  @State(Scope.Benchmark)
+  public static class SortingState {
+    @Param({"CREATION_TIME", "PRIORITY", "ID"})
+    public SortingType sortingType;
+  }
+
+  @Benchmark
+  public void addAndKill(TaskManagerState state, PriorityState priorityState, Blackhole blackhole) {
+    try {
+      Process process = state.taskManager.add(priorityState.nextPriority());
+      state.taskManager.kill(process.getPid());
+    } catch (TaskManagerException exception) {
+      // Rejections at max capacity are part of the measured path
+      blackhole.consume(exception);
+    }
+  }
+
+  @Benchmark
+  public void tryAddAndKill(TaskManagerState state, PriorityState priorityState) {
+    AddResult result = state.taskManager.tryAdd(priorityState.nextPriority());
+    if (result.isAdded()) {
+      state.taskManager.kill(result.getProcess().getPid());
+    }
+  }
+
+  @Benchmark
+  public void shardedTryAddAndKill(ShardedState state, PriorityState priorityState) {
+    AddResult result = state.taskManager.tryAdd(priorityState.nextPriority());
+    if (result.isAdded()) {
+      state.taskManager.kill(result.getProcess().getPid());
+    }
+  }
+
+  @Benchmark
+  public Process addToFifo(TaskManagerState state, PriorityState priorityState) {
+    return state.taskManager.addToFifo(priorityState.nextPriority());
+  }
+
+  @Benchmark
+  public Process addWithPriority(TaskManagerState state, PriorityState priorityState) {
+    return state.taskManager.addWithPriority(priorityState.nextPriority());
+  }
+
+  @Benchmark
+  public void kill(TaskManagerState state, PriorityState priorityState) {
+    // Killing needs a process to kill, FIFO admission always provides one
+    state.taskManager.kill(state.taskManager.addToFifo(priorityState.nextPriority()).getPid());
+  }
+
+  @Benchmark
+  public void killAllWithPriority(TaskManagerState state, PriorityState priorityState) {
+    PriorityType priority = priorityState.nextPriority();
+    state.taskManager.addAll(Collections.nCopies(KILL_BATCH_SIZE, priority), EvictionPolicy.FIFO);
+    state.taskManager.killAll(priority);
+  }
+
+  @Benchmark
+  public List<Process> listAll(TaskManagerState state, SortingState sortingState) {
+    return state.taskManager.listAll(sortingState.sortingType);
+  }
+
+  @Benchmark
+  public List<Process> listAllAfterChange(TaskManagerState state, PriorityState priorityState,
+      SortingState sortingState) {
+    state.taskManager.addToFifo(priorityState.nextPriority());
+    return state.taskManager.listAll(sortingState.sortingType);
+  }
+}
@@ -1,27 +1,73 @@
 package com.company.taskmanager;
 
-import com.company.taskmanager.exception.TaskManagerException;
+import com.company.taskmanager.engine.ExecutionEngines;
+import com.company.taskmanager.journal.EventJournal;
+import com.company.taskmanager.journal.OverflowPolicy;
+import com.company.taskmanager.metrics.ResourceSampler;
+import com.company.taskmanager.model.AddResult;
+import com.company.taskmanager.model.EvictionPolicy;
 import com.company.taskmanager.model.SortingType;
 import com.company.taskmanager.model.PriorityType;
 import com.company.taskmanager.model.Process;
+import com.company.taskmanager.model.ProcessPage;
+import com.company.taskmanager.model.Termination;
+import com.company.taskmanager.protocol.CommandInterpreter;
+import com.company.taskmanager.protocol.CommandStreamProcessor;
 import com.company.taskmanager.service.impl.TaskManagerServiceImpl;
+import com.company.taskmanager.server.TaskManagerServer;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.InputMismatchException;
 import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
+import javax.management.JMException;
 
 public class TaskManagerApplication {
 
-  private static final TaskManagerServiceImpl taskqueue = new TaskManagerServiceImpl();
+  private static final int LIST_PAGE_SIZE = 100;
+  private static final int DEFAULT_SERVER_PORT = 7070;
+  private static final String SERVER_OPTION = "--server";
+  private static final String HEADLESS_OPTION = "--headless";
+  private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+  private static final long SHUTDOWN_TIMEOUT_MILLIS = 1000;
+  private static TaskManagerServiceImpl taskqueue;
   private static boolean keepRunning = true;
 
-  public static void main(String[] args) {
+  public static void main(String[] args) throws IOException {
+    if (args.length > 0 && HEADLESS_OPTION.equals(args[0])) {
+      // The responses are the only output, a journal without sinks keeps the events off the log
+      taskqueue = new TaskManagerServiceImpl(TaskManagerServiceImpl.DEFAULT_CAPACITY, EvictionPolicy.PRIORITY,
+          ExecutionEngines.defaultEngine(), new EventJournal(OverflowPolicy.DROP));
+      runHeadless(args.length > 1 ? Paths.get(args[1]) : null);
+      return;
+    }
+    taskqueue = new TaskManagerServiceImpl();
+    startMonitoring();
+    if (args.length > 0 && SERVER_OPTION.equals(args[0])) {
+      int port = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_SERVER_PORT;
+      // The server thread keeps the application running
+      new TaskManagerServer(taskqueue, new InetSocketAddress(port));
+      System.out.println("Task Manager listening on port " + port);
+      return;
+    }
+
     System.out.println("Welcome to Task Manager");
     System.out.println(
         "To interact with the app introduce the NUMBER of the LISTED ACTIONS and press ENTER");
 
+    Scanner scanner = new Scanner(new InputStreamReader(System.in));
     while (keepRunning) {
       try {
-        Scanner scanner = new Scanner(new InputStreamReader(System.in));
         System.out.println("Available actions");
         System.out.println("1 - Add");
         System.out.println("2 - List");
@@ -42,11 +88,43 @@ public class TaskManagerApplication {
         }
 
       } catch (InputMismatchException exception) {
+        // The invalid input is skipped so the next action can be read
+        scanner.next();
         System.out.println("The provided option is not available");
       }
     }
   }
 
+  /**
+   * Exposes the metrics through JMX and samples the resources of the payloads, only for the long
+   * running interactive and server modes.
+   */
+  private static void startMonitoring() {
+    try {
+      taskqueue.getMetrics().registerMBean("default");
+    } catch (JMException exception) {
+      System.out.println("The task manager metrics are not available through JMX");
+    }
+    // Records the CPU and memory used by the payloads, ranked by the TOP command
+    new ResourceSampler(() -> taskqueue.stream(SortingType.CREATION_TIME));
+  }
+
+  private static void runHeadless(Path commandFile) throws IOException {
+    // Commands and responses are buffered, the menus are never printed
+    InputStream input = commandFile == null ? System.in : Files.newInputStream(commandFile);
+    try (BufferedReader commands = new BufferedReader(
+        new InputStreamReader(input, StandardCharsets.US_ASCII), STREAM_BUFFER_SIZE)) {
+      Writer responses = new BufferedWriter(
+          new OutputStreamWriter(System.out, StandardCharsets.US_ASCII), STREAM_BUFFER_SIZE);
+      new CommandStreamProcessor(new CommandInterpreter(taskqueue)).process(commands, responses);
+    }
+    try {
+      taskqueue.shutdown(SHUTDOWN_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException exception) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
   private static void manageAddOperation(Scanner scanner) {
     System.out.println("Add version:");
     System.out.println("1 - regular");
@@ -62,10 +140,10 @@ public class TaskManagerApplication {
 
     Process addedProcess;
     if (addVersion == 1) {
-      try {
-        addedProcess = taskqueue.add(priorityType);
-        System.out.println("Added process: " + addedProcess);
-      } catch (TaskManagerException exception) {
+      AddResult result = taskqueue.tryAdd(priorityType);
+      if (result.isAdded()) {
+        System.out.println("Added process: " + result.getProcess());
+      } else {
         System.out
             .println("MAX CAPACITY achieved - no more elements can be added to the task manager");
       }
@@ -95,16 +173,23 @@ public class TaskManagerApplication {
 
     if (listVersion == 1) {
       sortingType = SortingType.CREATION_TIME;
-      System.out.println(taskqueue.listAll(sortingType).toString());
     } else if (listVersion == 2) {
       sortingType = SortingType.PRIORITY;
-      System.out.println(taskqueue.listAll(sortingType).toString());
     } else if (listVersion == 3) {
       sortingType = SortingType.ID;
-      System.out.println(taskqueue.listAll(sortingType).toString());
     } else {
       System.out.println("The specified list version is not supported");
+      return;
     }
+
+    // Printed page by page so a large task manager never builds the whole listing in memory
+    long cursor = ProcessPage.FIRST_CURSOR;
+    ProcessPage page;
+    do {
+      page = taskqueue.listPage(sortingType, cursor, LIST_PAGE_SIZE);
+      page.getProcesses().forEach(System.out::println);
+      cursor = page.getNextCursor();
+    } while (!page.isLast());
   }
 
   private static void manageKillOperation(Scanner scanner) {
@@ -143,6 +228,12 @@ public class TaskManagerApplication {
 
   private static void manageKillAppOperation() {
     keepRunning = false;
+    try {
+      Termination termination = taskqueue.shutdown(SHUTDOWN_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+      termination.getStragglers().forEach(process -> System.out.println("Process still running: " + process));
+    } catch (InterruptedException exception) {
+      Thread.currentThread().interrupt();
+    }
     System.exit(0);
   }
 }
@@ -0,0 +1,247 @@
+package com.company.taskmanager.capacity;
+
+import com.company.taskmanager.metrics.LatencyHistogram;
+import com.company.taskmanager.metrics.TaskManagerMetrics;
+import com.company.taskmanager.model.EvictionPolicy;
+import com.company.taskmanager.model.PriorityType;
+import com.company.taskmanager.service.TaskManagerService;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Tunes the capacity of a task manager to the load the machine can sustain, instead of leaving it
+ * at a hand-picked constant.
+ *
+ * <p>Every interval the controller takes a {@link LoadSample} and adjusts the capacity with an
+ * additive increase, multiplicative decrease loop bounded by the configured minimum and maximum:
+ * <ul>
+ * <li>The capacity is decreased by {@value #BACKOFF_PERCENT}% when the machine is overloaded,
+ * that is when the load average per core is over {@value #MAX_LOAD_PER_CORE}, when the JVM uses
+ * more than {@value #MAX_PROCESS_CPU_PERCENT}% of the CPU, or when the latency from add to run grows
+ * over {@value #LATENCY_TOLERANCE} times the lowest latency observed, as in TCP Vegas.</li>
+ * <li>Otherwise the capacity is increased by its square root when it limits the work, that is when
+ * adds were rejected or when the task manager is full.</li>
+ * <li>Otherwise it stays unchanged.</li>
+ * </ul>
+ *
+ * <p>The capacity is changed through {@link TaskManagerService#setCapacity(int)}, so the processes
+ * over a lowered capacity are shed by the eviction policy of the task manager, the lowest
+ * priorities first with {@link EvictionPolicy#PRIORITY}. The lowest latency is forgotten every
+ * {@value #BASE_LATENCY_INTERVALS} intervals, so the controller follows a change of payloads.
+ */
+public class CapacityController implements AutoCloseable {
+  private static Logger log = LoggerFactory.getLogger(CapacityController.class);
+
+  public static final long DEFAULT_INTERVAL_MILLIS = 1000;
+
+  static final double MAX_LOAD_PER_CORE = 1.0;
+  static final int MAX_PROCESS_CPU_PERCENT = 90;
+  static final double LATENCY_TOLERANCE = 2.0;
+  static final int BACKOFF_PERCENT = 10;
+  static final int BASE_LATENCY_INTERVALS = 60;
+
+  // Latencies closer than it to the lowest one are noise rather than queueing
+  private static final long LATENCY_SLACK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+  private static final AtomicInteger controllerSeqNumber = new AtomicInteger();
+
+  private final TaskManagerService taskManager;
+  private final int minCapacity;
+  private final int maxCapacity;
+  private final long intervalNanos;
+  private final Supplier<LoadSample> signals;
+  private final Thread controller;
+  private double baseLatencyNanos;
+  private long intervals;
+  private volatile LoadSample lastSample;
+  private volatile boolean running = true;
+
+  public CapacityController(TaskManagerService taskManager, int minCapacity, int maxCapacity) {
+    this(taskManager, minCapacity, maxCapacity, DEFAULT_INTERVAL_MILLIS);
+  }
+
+  /**
+   * Creates the controller and starts its thread.
+   *
+   * @param taskManager the task manager whose capacity is adjusted.
+   * @param minCapacity the lowest capacity, greater than zero.
+   * @param maxCapacity the highest capacity, not lower than the minimum.
+   * @param intervalMillis the milliseconds between adjustments, greater than zero.
+   */
+  public CapacityController(TaskManagerService taskManager, int minCapacity, int maxCapacity, long intervalMillis) {
+    this(taskManager, minCapacity, maxCapacity, intervalMillis, new LoadSignals(taskManager.getMetrics()));
+  }
+
+  CapacityController(TaskManagerService taskManager, int minCapacity, int maxCapacity, long intervalMillis,
+      Supplier<LoadSample> signals) {
+    if (minCapacity <= 0 || maxCapacity < minCapacity) {
+      throw new IllegalArgumentException("Capacity bounds must be greater than zero and ordered [minCapacity="
+          + minCapacity + ",maxCapacity=" + maxCapacity + "]");
+    }
+    if (intervalMillis <= 0) {
+      throw new IllegalArgumentException("Interval must be greater than zero [intervalMillis=" + intervalMillis + "]");
+    }
+    this.taskManager = Objects.requireNonNull(taskManager);
+    this.minCapacity = minCapacity;
+    this.maxCapacity = maxCapacity;
+    this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+    this.signals = Objects.requireNonNull(signals);
+    this.controller = new Thread(this::adjustUntilClosed, "capacity-controller-" + controllerSeqNumber.incrementAndGet());
+    this.controller.setDaemon(true);
+    this.controller.start();
+  }
+
+  /**
+   * Takes a sample and adjusts the capacity right away, besides the periodic adjustments.
+   *
+   * @return The capacity of the task manager after the adjustment.
+   */
+  public synchronized int adjust() {
+    LoadSample sample = signals.get();
+    lastSample = sample;
+    int capacity = taskManager.getCapacity();
+    int adjusted = nextCapacity(capacity, sample);
+    if (adjusted != capacity) {
+      log.debug("Adjusting the capacity [capacity={},adjusted={},sample={}]", capacity, adjusted, sample);
+      taskManager.setCapacity(adjusted);
+    }
+    return adjusted;
+  }
+
+  /**
+   * @return The sample of the last adjustment, null before the first one.
+   */
+  public LoadSample getLastSample() {
+    return lastSample;
+  }
+
+  @Override
+  public void close() {
+    running = false;
+    LockSupport.unpark(controller);
+  }
+
+  /**
+   * Computes the capacity that follows a sample.
+   */
+  int nextCapacity(int capacity, LoadSample sample) {
+    if (++intervals % BASE_LATENCY_INTERVALS == 0) {
+      baseLatencyNanos = 0;
+    }
+    double latencyNanos = sample.getLatencyNanos();
+    if (latencyNanos > 0 && (baseLatencyNanos == 0 || latencyNanos < baseLatencyNanos)) {
+      baseLatencyNanos = latencyNanos;
+    }
+    int adjusted;
+    if (isOverloaded(sample)) {
+      adjusted = Math.min(capacity - 1, capacity * (100 - BACKOFF_PERCENT) / 100);
+    } else if (sample.getRejected() > 0 || sample.getLive() >= capacity) {
+      adjusted = capacity + Math.max(1, (int) Math.sqrt(capacity));
+    } else {
+      adjusted = capacity;
+    }
+    return Math.max(minCapacity, Math.min(maxCapacity, adjusted));
+  }
+
+  private boolean isOverloaded(LoadSample sample) {
+    double latencyNanos = sample.getLatencyNanos();
+    return sample.getLoadPerCore() > MAX_LOAD_PER_CORE
+        || sample.getProcessCpuLoad() * 100 > MAX_PROCESS_CPU_PERCENT
+        || latencyNanos > baseLatencyNanos * LATENCY_TOLERANCE
+        && latencyNanos - baseLatencyNanos > LATENCY_SLACK_NANOS;
+  }
+
+  private void adjustUntilClosed() {
+    while (running) {
+      LockSupport.parkNanos(this, intervalNanos);
+      if (!running) {
+        break;
+      }
+      try {
+        adjust();
+      } catch (RuntimeException exception) {
+        log.warn("Unexpected error adjusting the capacity", exception);
+      }
+    }
+  }
+
+  /**
+   * Reads the load of the machine from the platform MXBean and the load of the task manager from the
+   * difference of its metrics with the previous sample.
+   */
+  static final class LoadSignals implements Supplier<LoadSample> {
+    private final TaskManagerMetrics metrics;
+    private final OperatingSystemMXBean system = ManagementFactory.getOperatingSystemMXBean();
+    private final com.sun.management.OperatingSystemMXBean process;
+    private long startCount;
+    private long startSum;
+    private long admissionCount;
+    private long admissionSum;
+    private long rejected;
+
+    LoadSignals(TaskManagerMetrics metrics) {
+      this.metrics = Objects.requireNonNull(metrics);
+      this.process = system instanceof com.sun.management.OperatingSystemMXBean
+          ? (com.sun.management.OperatingSystemMXBean) system
+          : null;
+      this.rejected = rejected();
+    }
+
+    @Override
+    public LoadSample get() {
+      double loadAverage = system.getSystemLoadAverage();
+      double loadPerCore = loadAverage < 0 ? LoadSample.UNAVAILABLE : loadAverage / system.getAvailableProcessors();
+      double processCpuLoad = process == null ? LoadSample.UNAVAILABLE : process.getProcessCpuLoad();
+      // The time from the add of a process until it runs: its admission and then its start
+      double latencyNanos = meanAdmissionLatency() + meanStartLatency();
+      long rejectedNow = rejected();
+      long rejectedInInterval = Math.max(0, rejectedNow - rejected);
+      rejected = rejectedNow;
+      long live = 0;
+      for (PriorityType priority : PriorityType.values()) {
+        live += metrics.getLive(priority);
+      }
+      return new LoadSample(loadPerCore, processCpuLoad < 0 ? LoadSample.UNAVAILABLE : processCpuLoad,
+          latencyNanos, rejectedInInterval, live);
+    }
+
+    private double meanAdmissionLatency() {
+      LatencyHistogram histogram = metrics.getAdmissionLatency();
+      long count = histogram.getCount();
+      long sum = histogram.getSum();
+      double mean = mean(count - admissionCount, sum - admissionSum);
+      admissionCount = count;
+      admissionSum = sum;
+      return mean;
+    }
+
+    private double meanStartLatency() {
+      LatencyHistogram histogram = metrics.getStartLatency();
+      long count = histogram.getCount();
+      long sum = histogram.getSum();
+      double mean = mean(count - startCount, sum - startSum);
+      startCount = count;
+      startSum = sum;
+      return mean;
+    }
+
+    private long rejected() {
+      long total = 0;
+      for (EvictionPolicy policy : EvictionPolicy.values()) {
+        total += metrics.getRejected(policy);
+      }
+      return total;
+    }
+
+    private static double mean(long count, long sum) {
+      // Nothing recorded in the interval, or the latencies were reset
+      return count <= 0 || sum < 0 ? 0 : (double) sum / count;
+    }
+  }
+}
@@ -0,0 +1,40 @@
+package com.company.taskmanager.capacity;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Is the load of the machine and of a task manager measured over one interval of the
+ * {@link CapacityController}.
+ */
+@AllArgsConstructor
+@Getter
+@ToString
+public class LoadSample {
+  /**
+   * Value of the signals the platform doesn't provide.
+   */
+  public static final double UNAVAILABLE = -1;
+
+  /**
+   * The system load average divided by the number of cores, {@link #UNAVAILABLE} if unknown.
+   */
+  private final double loadPerCore;
+  /**
+   * The share of the machine CPU used by this JVM, between 0 and 1, {@link #UNAVAILABLE} if unknown.
+   */
+  private final double processCpuLoad;
+  /**
+   * The mean nanoseconds from the add of a process until it runs, 0 if no process was added.
+   */
+  private final double latencyNanos;
+  /**
+   * The number of adds rejected for lack of capacity.
+   */
+  private final long rejected;
+  /**
+   * The number of live processes at the end of the interval.
+   */
+  private final long live;
+}
@@ -0,0 +1,29 @@
+package com.company.taskmanager.engine;
+
+import com.company.taskmanager.model.PriorityType;
+import java.util.concurrent.Future;
+
+/**
+ * Executes the code of the processes, decoupling a process from the thread that runs it.
+ */
+public interface ExecutionEngine {
+
+  /**
+   * Submits the code of a process for execution.
+   *
+   * @param task the code of the process.
+   * @param priority {@link PriorityType} the priority of the process, engines may ignore it.
+   * @return {@link Future} The pending execution, cancelling it interrupts the task.
+   */
+  Future<?> submit(Runnable task, PriorityType priority);
+
+  /**
+   * @return The name of the engine, used for logging purposes.
+   */
+  String getName();
+
+  /**
+   * Stops accepting new tasks and releases the engine threads once the submitted tasks finish.
+   */
+  void shutdown();
+}
@@ -0,0 +1,104 @@
+package com.company.taskmanager.engine;
+
+import com.company.taskmanager.engine.impl.ExecutorServiceEngine;
+import com.company.taskmanager.engine.impl.PriorityScheduledEngine;
+import com.company.taskmanager.engine.impl.ThreadPerProcessEngine;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Creates the available {@link ExecutionEngine} implementations.
+ */
+public final class ExecutionEngines {
+
+  private ExecutionEngines() {
+  }
+
+  /**
+   * Returns the engine shared by the task managers that don't specify one: virtual threads when
+   * running on JDK 21 or later, otherwise a cached pool of platform threads.
+   *
+   * @return The shared {@link ExecutionEngine}.
+   */
+  public static ExecutionEngine defaultEngine() {
+    return DefaultEngineHolder.ENGINE;
+  }
+
+  /**
+   * @return A new engine that starts a platform thread for every process.
+   */
+  public static ExecutionEngine threadPerProcess() {
+    return new ThreadPerProcessEngine();
+  }
+
+  /**
+   * @param threads the number of platform threads of the pool.
+   * @return A new engine backed by a fixed pool of platform threads.
+   */
+  public static ExecutionEngine pooled(int threads) {
+    return new ExecutorServiceEngine("pooled-" + threads,
+        Executors.newFixedThreadPool(threads, daemonThreadFactory("process-pool-")));
+  }
+
+  /**
+   * @return A new engine backed by a cached pool which reuses idle platform threads.
+   */
+  public static ExecutionEngine cached() {
+    return new ExecutorServiceEngine("cached", Executors.newCachedThreadPool(daemonThreadFactory("process-cached-")));
+  }
+
+  /**
+   * @param parallelism the target parallelism of the pool.
+   * @return A new engine backed by a {@link ForkJoinPool}, suited for processes that don't block.
+   */
+  public static ExecutionEngine forkJoin(int parallelism) {
+    return new ExecutorServiceEngine("fork-join-" + parallelism, new ForkJoinPool(parallelism));
+  }
+
+  /**
+   * @param workers the number of worker threads.
+   * @return A new engine backed by a bounded pool of workers which share the CPU among the
+   *     priorities in proportion to their precedence.
+   */
+  public static ExecutionEngine priorityScheduled(int workers) {
+    return new PriorityScheduledEngine(workers);
+  }
+
+  /**
+   * @return A new engine that runs every process in its own virtual thread.
+   * @throws UnsupportedOperationException in case the JDK does not support virtual threads.
+   */
+  public static ExecutionEngine virtualThreads() {
+    try {
+      // Looked up reflectively so the task manager still builds and runs on JDKs older than 21
+      Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+      return new ExecutorServiceEngine("virtual-threads", (ExecutorService) factory.invoke(null));
+    } catch (ReflectiveOperationException | UnsupportedOperationException exception) {
+      throw new UnsupportedOperationException("Virtual threads require JDK 21 or later", exception);
+    }
+  }
+
+  /**
+   * @return True in case the running JDK supports virtual threads.
+   */
+  public static boolean isVirtualThreadsSupported() {
+    return Runtime.version().feature() >= 21;
+  }
+
+  private static ThreadFactory daemonThreadFactory(String prefix) {
+    AtomicLong threadSeqNumber = new AtomicLong();
+    return task -> {
+      Thread thread = new Thread(task, prefix + threadSeqNumber.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    };
+  }
+
+  private static final class DefaultEngineHolder {
+    private static final ExecutionEngine ENGINE = isVirtualThreadsSupported() ? virtualThreads() : cached();
+  }
+}
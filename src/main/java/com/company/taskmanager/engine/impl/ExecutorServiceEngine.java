@@ -0,0 +1,31 @@
+package com.company.taskmanager.engine.impl;
+
+import com.company.taskmanager.engine.ExecutionEngine;
+import com.company.taskmanager.model.PriorityType;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import lombok.Getter;
+
+/**
+ * Engine that submits the processes to a shared {@link ExecutorService}.
+ */
+public class ExecutorServiceEngine implements ExecutionEngine {
+
+  @Getter
+  private final String name;
+  private final ExecutorService executorService;
+
+  public ExecutorServiceEngine(String name, ExecutorService executorService) {
+    this.name = Objects.requireNonNull(name);
+    this.executorService = Objects.requireNonNull(executorService);
+  }
+
+  public Future<?> submit(Runnable task, PriorityType priority) {
+    return executorService.submit(task);
+  }
+
+  public void shutdown() {
+    executorService.shutdown();
+  }
+}
@@ -0,0 +1,267 @@
+package com.company.taskmanager.engine.impl;
+
+import com.company.taskmanager.engine.ExecutionEngine;
+import com.company.taskmanager.model.PriorityType;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Engine that runs the processes on a bounded pool of workers which share the CPU among the
+ * priorities in proportion to their precedence, so high priority work keeps a low latency when the
+ * machine is saturated.
+ *
+ * <p>Every worker has a run queue per priority and chooses the next task with stride scheduling:
+ * each priority advances a pass by a stride inversely proportional to its precedence, and the
+ * queue with the lowest pass runs next. A HIGH process therefore gets three dispatches for every
+ * LOW one while both have work, and a priority without work doesn't build up credit. A task that
+ * has waited longer than the aging threshold runs first whatever its priority, so low priority work
+ * is never starved. Submitted tasks go to the queues of the submitting worker, or of the workers in
+ * turn, and idle workers steal from the queues of the others.
+ */
+public class PriorityScheduledEngine implements ExecutionEngine {
+  private static Logger log = LoggerFactory.getLogger(PriorityScheduledEngine.class);
+
+  public static final long DEFAULT_AGING_MILLIS = 100;
+
+  private static final long STRIDE_BASE = 1L << 20;
+  private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+  private static final PriorityType[] PRIORITIES = PriorityType.values();
+  private static final AtomicInteger engineSeqNumber = new AtomicInteger();
+
+  private final String name;
+  private final Worker[] workers;
+  private final long agingNanos;
+  private final Queue<Worker> idleWorkers = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger nextWorker = new AtomicInteger();
+  private volatile boolean shutdown;
+
+  public PriorityScheduledEngine(int workers) {
+    this(workers, DEFAULT_AGING_MILLIS);
+  }
+
+  /**
+   * Creates the engine and starts its workers.
+   *
+   * @param workers the number of worker threads, greater than zero.
+   * @param agingMillis the waiting time after which a task runs before any higher priority one.
+   */
+  public PriorityScheduledEngine(int workers, long agingMillis) {
+    if (workers <= 0 || agingMillis < 0) {
+      throw new IllegalArgumentException(
+          "Workers must be greater than zero [workers=" + workers + ",agingMillis=" + agingMillis + "]");
+    }
+    this.name = "priority-scheduled-" + workers;
+    this.agingNanos = TimeUnit.MILLISECONDS.toNanos(agingMillis);
+    this.workers = new Worker[workers];
+    int engineNumber = engineSeqNumber.incrementAndGet();
+    for (int i = 0; i < workers; i++) {
+      this.workers[i] = new Worker("priority-worker-" + engineNumber + "-" + i);
+    }
+    for (Worker worker : this.workers) {
+      worker.thread.start();
+    }
+  }
+
+  public Future<?> submit(Runnable task, PriorityType priority) {
+    if (shutdown) {
+      throw new IllegalStateException("The engine has been shut down");
+    }
+    ScheduledTask scheduledTask = new ScheduledTask(task, Objects.requireNonNull(priority));
+    Thread current = Thread.currentThread();
+    Worker target = current instanceof WorkerThread && ((WorkerThread) current).engine() == this
+        ? ((WorkerThread) current).worker
+        : workers[Math.floorMod(nextWorker.getAndIncrement(), workers.length)];
+    target.queues[priority.ordinal()].offer(scheduledTask);
+
+    // The task is queued before looking for an idle worker, which checks the queues after
+    // registering itself as idle, so one of them always sees the other
+    Worker idle = idleWorkers.poll();
+    if (idle != null) {
+      LockSupport.unpark(idle.thread);
+    }
+    return scheduledTask;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public void shutdown() {
+    shutdown = true;
+    for (Worker worker : workers) {
+      LockSupport.unpark(worker.thread);
+    }
+  }
+
+  /**
+   * @return The number of tasks waiting in the run queues.
+   */
+  public int getQueuedTasks() {
+    int queued = 0;
+    for (Worker worker : workers) {
+      for (Queue<ScheduledTask> queue : worker.queues) {
+        queued += queue.size();
+      }
+    }
+    return queued;
+  }
+
+  private boolean hasQueuedTasks() {
+    for (Worker worker : workers) {
+      for (Queue<ScheduledTask> queue : worker.queues) {
+        if (!queue.isEmpty()) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * A task waiting in a run queue.
+   */
+  private static final class ScheduledTask extends FutureTask<Object> {
+    private final PriorityType priority;
+    private final long enqueueNanos = System.nanoTime();
+
+    private ScheduledTask(Runnable task, PriorityType priority) {
+      super(task, null);
+      this.priority = priority;
+    }
+  }
+
+  private static final class WorkerThread extends Thread {
+    private final Worker worker;
+
+    private WorkerThread(Worker worker, String name) {
+      super(name);
+      this.worker = worker;
+      setDaemon(true);
+    }
+
+    private PriorityScheduledEngine engine() {
+      return worker.engine();
+    }
+
+    @Override
+    public void run() {
+      worker.runUntilShutdown();
+    }
+  }
+
+  /**
+   * The run queues and the scheduling state of a worker thread, only its thread updates the passes.
+   */
+  private final class Worker {
+    private final Queue<ScheduledTask>[] queues = newQueues(PRIORITIES.length);
+    private final long[] passes = new long[PRIORITIES.length];
+    private final WorkerThread thread;
+
+    private Worker(String threadName) {
+      for (int i = 0; i < PRIORITIES.length; i++) {
+        queues[i] = new ConcurrentLinkedQueue<>();
+      }
+      this.thread = new WorkerThread(this, threadName);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Queue<ScheduledTask>[] newQueues(int length) {
+      return (Queue<ScheduledTask>[]) new Queue<?>[length];
+    }
+
+    private PriorityScheduledEngine engine() {
+      return PriorityScheduledEngine.this;
+    }
+
+    private void runUntilShutdown() {
+      while (!shutdown || hasQueuedTasks()) {
+        ScheduledTask task = next();
+        if (task == null) {
+          idleWorkers.offer(this);
+          if (!hasQueuedTasks() && !shutdown) {
+            LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+          }
+          idleWorkers.remove(this);
+          continue;
+        }
+        // A cancellation of the previous task must not interrupt this one
+        Thread.interrupted();
+        try {
+          task.run();
+        } catch (RuntimeException exception) {
+          log.warn("Unexpected error running a task [engine={}]", name, exception);
+        }
+      }
+    }
+
+    private ScheduledTask next() {
+      ScheduledTask task = pollFrom(this);
+      if (task != null) {
+        return task;
+      }
+      int start = ThreadLocalRandom.current().nextInt(workers.length);
+      for (int i = 0; i < workers.length; i++) {
+        Worker victim = workers[(start + i) % workers.length];
+        if (victim != this) {
+          task = pollFrom(victim);
+          if (task != null) {
+            return task;
+          }
+        }
+      }
+      return null;
+    }
+
+    /**
+     * Takes the next task of the queues of a worker: the oldest aged task if any, otherwise the
+     * head of the queue with the lowest pass.
+     */
+    private ScheduledTask pollFrom(Worker source) {
+      long now = System.nanoTime();
+      int aged = -1;
+      long oldestEnqueueNanos = Long.MAX_VALUE;
+      int selected = -1;
+      for (int i = 0; i < PRIORITIES.length; i++) {
+        ScheduledTask head = source.queues[i].peek();
+        if (head == null) {
+          continue;
+        }
+        if (now - head.enqueueNanos >= agingNanos && head.enqueueNanos < oldestEnqueueNanos) {
+          aged = i;
+          oldestEnqueueNanos = head.enqueueNanos;
+        }
+        if (selected < 0 || passes[i] < passes[selected]) {
+          selected = i;
+        }
+      }
+      if (selected < 0) {
+        return null;
+      }
+      int chosen = aged >= 0 ? aged : selected;
+      ScheduledTask task = source.queues[chosen].poll();
+      if (task == null) {
+        // Stolen in the meantime
+        return null;
+      }
+
+      // Priorities without work catch up with the chosen one instead of banking credit
+      long pass = passes[chosen];
+      for (int i = 0; i < PRIORITIES.length; i++) {
+        if (i != chosen && source.queues[i].isEmpty() && passes[i] < pass) {
+          passes[i] = pass;
+        }
+      }
+      passes[chosen] = pass + STRIDE_BASE / task.priority.getPrecedence();
+      return task;
+    }
+  }
+}
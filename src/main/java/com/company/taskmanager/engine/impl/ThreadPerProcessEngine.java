@@ -0,0 +1,36 @@
+package com.company.taskmanager.engine.impl;
+
+import com.company.taskmanager.engine.ExecutionEngine;
+import com.company.taskmanager.model.PriorityType;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Engine that starts a new platform thread for every process. It is the most expensive engine and
+ * it is kept as the reference behaviour of the task manager.
+ */
+public class ThreadPerProcessEngine implements ExecutionEngine {
+
+  private final AtomicLong threadSeqNumber = new AtomicLong();
+  private volatile boolean shutdown;
+
+  public Future<?> submit(Runnable task, PriorityType priority) {
+    if (shutdown) {
+      throw new IllegalStateException("The engine has been shut down");
+    }
+    FutureTask<?> futureTask = new FutureTask<>(task, null);
+    Thread thread = new Thread(futureTask, "process-thread-" + threadSeqNumber.incrementAndGet());
+    thread.setDaemon(true);
+    thread.start();
+    return futureTask;
+  }
+
+  public String getName() {
+    return "thread-per-process";
+  }
+
+  public void shutdown() {
+    shutdown = true;
+  }
+}
@@ -6,7 +6,10 @@ import lombok.Getter;
 @AllArgsConstructor
 @Getter
 public enum TaskManagerInternalException {
-  MAX_CAPACITY_EXCEPTION(1001, "MAX_CAPACITY_EXCEPTION");
+  MAX_CAPACITY_EXCEPTION(1001, "MAX_CAPACITY_EXCEPTION"),
+  ADMISSION_TIMEOUT_EXCEPTION(1002, "ADMISSION_TIMEOUT_EXCEPTION"),
+  WAIT_QUEUE_FULL_EXCEPTION(1003, "WAIT_QUEUE_FULL_EXCEPTION"),
+  SHUTDOWN_EXCEPTION(1004, "SHUTDOWN_EXCEPTION");
 
   private int code;
   private String exception;
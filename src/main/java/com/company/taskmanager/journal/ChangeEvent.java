@@ -0,0 +1,32 @@
+package com.company.taskmanager.journal;
+
+import com.company.taskmanager.model.PriorityType;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Is a lifecycle event delivered by the {@link ChangeFeed}. Unlike the {@link JournalEvent} slots,
+ * change events are immutable, so listeners may keep them.
+ */
+@AllArgsConstructor
+@Getter
+@ToString
+public class ChangeEvent {
+  /**
+   * The sequence of the event in the {@link ChangeFeed}, increasing but with gaps where the
+   * events of other task managers or lost events were.
+   */
+  private final long sequence;
+  /**
+   * The id of the task manager that recorded the event.
+   */
+  private final int owner;
+  private final JournalEventType type;
+  /**
+   * The id of the process, {@link JournalEvent#NO_PID} if the event has no process.
+   */
+  private final long pid;
+  private final PriorityType priority;
+  private final long timestampMillis;
+}
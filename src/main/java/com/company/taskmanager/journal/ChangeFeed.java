@@ -0,0 +1,258 @@
+package com.company.taskmanager.journal;
+
+import com.company.taskmanager.model.Process;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.IntPredicate;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Pushes the events drained by an {@link EventJournal} to any number of {@link ChangeListener
+ * listeners}, so monitors don't have to poll the listings of a task manager.
+ *
+ * <p>The journal thread is the only producer: it copies every drained event into a ring buffer of
+ * {@link ChangeEvent} and never waits for the subscriptions. Every subscription reads the ring from
+ * its own thread at its own pace, so a slow listener delays neither the task manager nor the other
+ * listeners. A subscription that falls more than the capacity of the ring behind has lost events:
+ * it counts the overrun, jumps to the head of the ring and hands its listener a fresh snapshot of
+ * the processes. Events dropped by the journal itself make every subscription resync the same way.
+ * Nothing is copied while there are no subscriptions.
+ *
+ * <p>Task managers sharing a journal share its feed, so a subscription only delivers the events of
+ * the owners it was opened for, the ones its snapshots describe.
+ */
+public class ChangeFeed implements AutoCloseable {
+  private static Logger log = LoggerFactory.getLogger(ChangeFeed.class);
+
+  private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+  private static final AtomicInteger subscriptionSeqNumber = new AtomicInteger();
+
+  private final AtomicReferenceArray<ChangeEvent> events;
+  private final int mask;
+  private final int batchSize;
+  private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+  // The position of the next event, only the journal thread writes it
+  private volatile long head;
+
+  /**
+   * Creates the feed.
+   *
+   * @param capacity the number of events a subscription may fall behind before resyncing, rounded
+   *     up to a power of two.
+   * @param batchSize the maximum number of events handed over to a listener at once.
+   */
+  public ChangeFeed(int capacity, int batchSize) {
+    if (capacity <= 0 || capacity > 1 << 30 || batchSize <= 0) {
+      throw new IllegalArgumentException(
+          "Capacity and batch size must be greater than zero [capacity=" + capacity + ",batchSize=" + batchSize + "]");
+    }
+    int size = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+    this.events = new AtomicReferenceArray<>(size);
+    this.mask = size - 1;
+    this.batchSize = batchSize;
+  }
+
+  /**
+   * Subscribes a listener, which first receives a snapshot and then every following event.
+   *
+   * @param listener {@link ChangeListener} that receives the snapshots and the events.
+   * @param snapshot supplies the running processes when the listener has to resync.
+   * @return {@link Subscription} The subscription, to be closed once the listener is done.
+   */
+  public Subscription subscribe(ChangeListener listener, Supplier<List<Process>> snapshot) {
+    return subscribe(listener, snapshot, owner -> true);
+  }
+
+  /**
+   * Subscribes a listener to the events of some owners only, which first receives a snapshot and
+   * then every following event of those owners.
+   *
+   * @param listener {@link ChangeListener} that receives the snapshots and the events.
+   * @param snapshot supplies the running processes of the owners when the listener has to resync.
+   * @param owners accepts the ids of the task managers whose events are delivered.
+   * @return {@link Subscription} The subscription, to be closed once the listener is done.
+   */
+  public Subscription subscribe(ChangeListener listener, Supplier<List<Process>> snapshot, IntPredicate owners) {
+    Subscription subscription = new Subscription(Objects.requireNonNull(listener), Objects.requireNonNull(snapshot),
+        Objects.requireNonNull(owners));
+    // Registered before it reads the head, so no event published after its snapshot is skipped
+    subscriptions.add(subscription);
+    subscription.thread.start();
+    return subscription;
+  }
+
+  public int getCapacity() {
+    return events.length();
+  }
+
+  /**
+   * @return The number of open subscriptions.
+   */
+  public int getSubscriptions() {
+    return subscriptions.size();
+  }
+
+  /**
+   * Closes every subscription.
+   */
+  @Override
+  public void close() {
+    for (Subscription subscription : subscriptions) {
+      subscription.close();
+    }
+  }
+
+  /**
+   * Copies a batch of events into the ring, from the journal thread only.
+   */
+  void publish(List<JournalEvent> batch) {
+    if (subscriptions.isEmpty()) {
+      return;
+    }
+    long position = head;
+    for (JournalEvent event : batch) {
+      events.set((int) position & mask, new ChangeEvent(position, event.getOwner(), event.getType(), event.getPid(),
+          event.getPriority(), event.getTimestampMillis()));
+      position++;
+    }
+    // The volatile write publishes the events to the subscriptions
+    head = position;
+    wakeUpSubscriptions();
+  }
+
+  /**
+   * Makes every subscription resync because events were lost before reaching the feed, from the
+   * journal thread only.
+   */
+  void skip() {
+    if (subscriptions.isEmpty()) {
+      return;
+    }
+    // A whole ring ahead, so every subscription finds itself overrun
+    head = head + events.length();
+    wakeUpSubscriptions();
+  }
+
+  private void wakeUpSubscriptions() {
+    for (Subscription subscription : subscriptions) {
+      LockSupport.unpark(subscription.thread);
+    }
+  }
+
+  /**
+   * The delivery of the feed to a listener, from a thread of its own.
+   */
+  public final class Subscription implements AutoCloseable {
+    private final ChangeListener listener;
+    private final Supplier<List<Process>> snapshot;
+    private final IntPredicate owners;
+    private final Thread thread;
+    private final LongAdder overruns = new LongAdder();
+    private volatile long cursor;
+    private volatile boolean running = true;
+
+    private Subscription(ChangeListener listener, Supplier<List<Process>> snapshot, IntPredicate owners) {
+      this.listener = listener;
+      this.snapshot = snapshot;
+      this.owners = owners;
+      this.thread = new Thread(this::deliverUntilClosed, "change-feed-" + subscriptionSeqNumber.incrementAndGet());
+      thread.setDaemon(true);
+    }
+
+    /**
+     * @return The number of events published and not delivered to the listener yet.
+     */
+    public long getLag() {
+      return Math.max(0, head - cursor);
+    }
+
+    /**
+     * @return The number of times the listener fell behind and had to resync.
+     */
+    public long getOverruns() {
+      return overruns.sum();
+    }
+
+    /**
+     * Stops the delivery, the listener may still receive the batch being delivered.
+     */
+    @Override
+    public void close() {
+      running = false;
+      subscriptions.remove(this);
+      LockSupport.unpark(thread);
+    }
+
+    private void deliverUntilClosed() {
+      resync();
+      while (running) {
+        try {
+          if (!deliver()) {
+            LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+          }
+        } catch (RuntimeException exception) {
+          log.warn("Unexpected error delivering changes [listener={}]", listener, exception);
+        }
+      }
+    }
+
+    /**
+     * Delivers the next batch of events, or a snapshot when the events were overwritten.
+     *
+     * @return True in case something was delivered.
+     */
+    private boolean deliver() {
+      long available = head;
+      long position = cursor;
+      if (available == position) {
+        return false;
+      }
+      if (available - position > events.length()) {
+        overrun();
+        return true;
+      }
+      List<ChangeEvent> batch = new ArrayList<>((int) Math.min(batchSize, available - position));
+      while (position < available && batch.size() < batchSize) {
+        ChangeEvent event = events.get((int) position & mask);
+        if (event == null || event.getSequence() != position) {
+          // Overwritten by the journal thread while reading
+          overrun();
+          return true;
+        }
+        if (owners.test(event.getOwner())) {
+          batch.add(event);
+        }
+        position++;
+      }
+      cursor = position;
+      if (!batch.isEmpty()) {
+        listener.onEvents(batch);
+      }
+      return true;
+    }
+
+    private void overrun() {
+      overruns.increment();
+      resync();
+    }
+
+    private void resync() {
+      // The head is read before the snapshot, so the events after it are replayed over the snapshot
+      cursor = head;
+      try {
+        listener.onResync(snapshot.get());
+      } catch (RuntimeException exception) {
+        log.warn("Unexpected error resyncing changes [listener={}]", listener, exception);
+      }
+    }
+  }
+}
@@ -0,0 +1,28 @@
+package com.company.taskmanager.journal;
+
+import com.company.taskmanager.model.Process;
+import java.util.List;
+
+/**
+ * Receives the changes of a task manager from a {@link ChangeFeed}, always from the thread of its
+ * subscription, so a slow listener only delays itself.
+ */
+public interface ChangeListener {
+
+  /**
+   * Replaces whatever the listener knows with a snapshot of the processes. Called when the
+   * subscription starts and after the listener fell so far behind that events were lost. Events
+   * delivered after a snapshot may repeat changes the snapshot already reflects, e.g. the add of a
+   * process it contains, so they must be applied idempotently.
+   *
+   * @param processes List with the running processes.
+   */
+  void onResync(List<Process> processes);
+
+  /**
+   * Receives a batch of events in sequence order.
+   *
+   * @param events List with the {@link ChangeEvent}, which the listener may keep.
+   */
+  void onEvents(List<ChangeEvent> events);
+}
@@ -0,0 +1,240 @@
+package com.company.taskmanager.journal;
+
+import com.company.taskmanager.journal.impl.LoggingJournalSink;
+import com.company.taskmanager.model.PriorityType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Records the lifecycle events of the processes without blocking nor allocating, and writes them
+ * to its {@link JournalSink sinks} in batches from a background thread.
+ *
+ * <p>Events are kept in a ring buffer of preallocated {@link JournalEvent} slots. Any thread
+ * claims the next sequence with a compare-and-set, fills its slot and publishes it; the journal
+ * thread hands the published events over to the sinks in sequence order and only then frees their
+ * slots. When the buffer is full the {@link OverflowPolicy} decides whether the event is dropped
+ * or the caller waits for room.
+ *
+ * <p>Besides the sinks, the journal thread pushes the events to the subscriptions of its
+ * {@link ChangeFeed}.
+ */
+public class EventJournal implements AutoCloseable {
+  private static Logger log = LoggerFactory.getLogger(EventJournal.class);
+
+  public static final int DEFAULT_CAPACITY = 1 << 14;
+  public static final int DEFAULT_BATCH_SIZE = 256;
+
+  private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+  private static final long BACKPRESSURE_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(10);
+  private static final AtomicLong journalSeqNumber = new AtomicLong();
+
+  private final JournalEvent[] events;
+  private final AtomicLongArray published;
+  private final int mask;
+  private final int batchSize;
+  private final OverflowPolicy overflowPolicy;
+  private final List<JournalSink> sinks;
+  private final ChangeFeed changeFeed;
+  private final AtomicLong claimed = new AtomicLong();
+  private final LongAdder dropped = new LongAdder();
+  private final Thread drainer;
+  private volatile long consumed;
+  // The dropped events already signalled to the change feed, only the journal thread uses it
+  private long droppedInFeed;
+  private volatile boolean running = true;
+
+  public EventJournal(OverflowPolicy overflowPolicy, JournalSink... sinks) {
+    this(DEFAULT_CAPACITY, DEFAULT_BATCH_SIZE, overflowPolicy, Arrays.asList(sinks));
+  }
+
+  /**
+   * Creates the journal and starts its thread.
+   *
+   * @param capacity the number of events the buffer holds, rounded up to a power of two.
+   * @param batchSize the maximum number of events handed over to the sinks at once.
+   * @param overflowPolicy {@link OverflowPolicy} applied when the buffer is full.
+   * @param sinks List with the {@link JournalSink} the events are written to.
+   */
+  public EventJournal(int capacity, int batchSize, OverflowPolicy overflowPolicy, List<JournalSink> sinks) {
+    if (capacity <= 0 || capacity > 1 << 30 || batchSize <= 0) {
+      throw new IllegalArgumentException(
+          "Capacity and batch size must be greater than zero [capacity=" + capacity + ",batchSize=" + batchSize + "]");
+    }
+    int size = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+    this.events = new JournalEvent[size];
+    this.published = new AtomicLongArray(size);
+    for (int i = 0; i < size; i++) {
+      events[i] = new JournalEvent();
+      published.set(i, -1);
+    }
+    this.mask = size - 1;
+    this.batchSize = batchSize;
+    this.overflowPolicy = Objects.requireNonNull(overflowPolicy);
+    this.sinks = new ArrayList<>(sinks);
+    this.changeFeed = new ChangeFeed(size, batchSize);
+    this.drainer = new Thread(this::drainUntilClosed, "event-journal-" + journalSeqNumber.incrementAndGet());
+    drainer.setDaemon(true);
+    drainer.start();
+  }
+
+  /**
+   * Returns the journal shared by the task managers that don't specify one, which drops the events
+   * it has no room for and writes them to the log.
+   *
+   * @return The shared {@link EventJournal}.
+   */
+  public static EventJournal defaultJournal() {
+    return DefaultJournalHolder.JOURNAL;
+  }
+
+  /**
+   * Records an event.
+   *
+   * @param type {@link JournalEventType} the type of the event.
+   * @param pid the id of the process, {@link JournalEvent#NO_PID} if the event has no process.
+   * @param priority {@link PriorityType} the priority of the process.
+   * @return True in case the event was recorded, false if it was dropped.
+   */
+  public boolean record(JournalEventType type, long pid, PriorityType priority) {
+    return record(JournalEvent.NO_OWNER, type, pid, priority);
+  }
+
+  /**
+   * Records an event of a task manager sharing the journal.
+   *
+   * @param owner the id of the task manager that records the event.
+   * @param type {@link JournalEventType} the type of the event.
+   * @param pid the id of the process, {@link JournalEvent#NO_PID} if the event has no process.
+   * @param priority {@link PriorityType} the priority of the process.
+   * @return True in case the event was recorded, false if it was dropped.
+   */
+  public boolean record(int owner, JournalEventType type, long pid, PriorityType priority) {
+    long sequence;
+    while (true) {
+      sequence = claimed.get();
+      if (sequence - consumed >= events.length) {
+        if (overflowPolicy == OverflowPolicy.DROP || !running) {
+          dropped.increment();
+          return false;
+        }
+        LockSupport.unpark(drainer);
+        LockSupport.parkNanos(BACKPRESSURE_PARK_NANOS);
+      } else if (claimed.compareAndSet(sequence, sequence + 1)) {
+        break;
+      }
+    }
+    int index = (int) sequence & mask;
+    events[index].set(sequence, owner, type, pid, priority, System.currentTimeMillis());
+    // The volatile write publishes the slot content to the journal thread
+    published.set(index, sequence);
+    return true;
+  }
+
+  /**
+   * Waits until every event recorded before this call has been written to the sinks.
+   */
+  public void flush() {
+    long target = claimed.get();
+    while (consumed < target && drainer.isAlive()) {
+      LockSupport.unpark(drainer);
+      LockSupport.parkNanos(BACKPRESSURE_PARK_NANOS);
+    }
+  }
+
+  /**
+   * @return The number of events dropped because the buffer was full.
+   */
+  public long getDropped() {
+    return dropped.sum();
+  }
+
+  /**
+   * @return The number of recorded events not written to the sinks yet.
+   */
+  public long getPending() {
+    return claimed.get() - consumed;
+  }
+
+  public int getCapacity() {
+    return events.length;
+  }
+
+  /**
+   * @return The {@link ChangeFeed} that pushes the events of the journal to its subscriptions.
+   */
+  public ChangeFeed getChangeFeed() {
+    return changeFeed;
+  }
+
+  /**
+   * Stops the journal thread once every recorded event has been written, then closes the sinks.
+   */
+  @Override
+  public void close() {
+    running = false;
+    LockSupport.unpark(drainer);
+    try {
+      drainer.join();
+    } catch (InterruptedException exception) {
+      Thread.currentThread().interrupt();
+    }
+    changeFeed.close();
+    for (JournalSink sink : sinks) {
+      try {
+        sink.close();
+      } catch (RuntimeException exception) {
+        log.warn("Unable to close journal sink [sink={}]", sink, exception);
+      }
+    }
+  }
+
+  private void drainUntilClosed() {
+    List<JournalEvent> batch = new ArrayList<>(batchSize);
+    while (running || consumed < claimed.get()) {
+      if (drain(batch) == 0) {
+        LockSupport.parkNanos(IDLE_PARK_NANOS);
+      }
+    }
+  }
+
+  private int drain(List<JournalEvent> batch) {
+    long next = consumed;
+    long droppedNow = dropped.sum();
+    if (droppedNow != droppedInFeed) {
+      droppedInFeed = droppedNow;
+      changeFeed.skip();
+    }
+    batch.clear();
+    while (batch.size() < batchSize && published.get((int) next & mask) == next) {
+      batch.add(events[(int) next & mask]);
+      next++;
+    }
+    if (batch.isEmpty()) {
+      return 0;
+    }
+    for (JournalSink sink : sinks) {
+      try {
+        sink.write(batch);
+      } catch (RuntimeException exception) {
+        log.warn("Unable to write journal events [sink={},events={}]", sink, batch.size(), exception);
+      }
+    }
+    changeFeed.publish(batch);
+    // The slots are reused only once every sink and the change feed are done with them
+    consumed = next;
+    return batch.size();
+  }
+
+  private static final class DefaultJournalHolder {
+    private static final EventJournal JOURNAL = new EventJournal(OverflowPolicy.DROP, new LoggingJournalSink());
+  }
+}
@@ -0,0 +1,43 @@
+package com.company.taskmanager.journal;
+
+import com.company.taskmanager.model.PriorityType;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Is a slot of the {@link EventJournal} buffer holding one lifecycle event.
+ *
+ * <p>Slots are preallocated and reused, so a sink must copy whatever it needs from an event
+ * before returning from {@link JournalSink#write(java.util.List)}.
+ */
+@Getter
+@ToString
+public class JournalEvent {
+  /**
+   * Pid of the events that don't refer to a specific process, e.g. rejections.
+   */
+  public static final long NO_PID = 0;
+  /**
+   * Owner of the events recorded without naming the task manager that recorded them.
+   */
+  public static final int NO_OWNER = 0;
+
+  private long sequence;
+  /**
+   * Id of the task manager that recorded the event, so task managers can share a journal.
+   */
+  private int owner;
+  private JournalEventType type;
+  private long pid;
+  private PriorityType priority;
+  private long timestampMillis;
+
+  void set(long sequence, int owner, JournalEventType type, long pid, PriorityType priority, long timestampMillis) {
+    this.sequence = sequence;
+    this.owner = owner;
+    this.type = type;
+    this.pid = pid;
+    this.priority = priority;
+    this.timestampMillis = timestampMillis;
+  }
+}
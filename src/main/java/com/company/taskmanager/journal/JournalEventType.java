@@ -0,0 +1,27 @@
+package com.company.taskmanager.journal;
+
+/**
+ * Contains the lifecycle events of the processes recorded by the {@link EventJournal}.
+ */
+public enum JournalEventType {
+  /**
+   * A process was admitted and started.
+   */
+  ADDED,
+  /**
+   * A process was not admitted because the task manager was at max capacity.
+   */
+  REJECTED,
+  /**
+   * A process was stopped to make room for another one or because the capacity was lowered.
+   */
+  EVICTED,
+  /**
+   * A process was killed.
+   */
+  KILLED,
+  /**
+   * A process left the task manager by itself once its payload finished.
+   */
+  EXITED
+}
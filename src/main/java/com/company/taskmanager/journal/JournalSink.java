@@ -0,0 +1,23 @@
+package com.company.taskmanager.journal;
+
+import java.util.List;
+
+/**
+ * Receives the events drained by the {@link EventJournal}, always from the journal thread.
+ */
+public interface JournalSink extends AutoCloseable {
+
+  /**
+   * Writes a batch of events in sequence order. The events are reused once this method returns.
+   *
+   * @param events List with the drained {@link JournalEvent}.
+   */
+  void write(List<JournalEvent> events);
+
+  /**
+   * Releases the resources of the sink once the journal is closed.
+   */
+  @Override
+  default void close() {
+  }
+}
@@ -0,0 +1,15 @@
+package com.company.taskmanager.journal;
+
+/**
+ * Contains what the {@link EventJournal} does with a new event when its buffer is full.
+ */
+public enum OverflowPolicy {
+  /**
+   * The event is dropped and counted, the caller never waits.
+   */
+  DROP,
+  /**
+   * The caller waits until the journal drains room for the event.
+   */
+  BLOCK
+}
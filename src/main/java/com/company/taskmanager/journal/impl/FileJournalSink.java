@@ -0,0 +1,56 @@
+package com.company.taskmanager.journal.impl;
+
+import com.company.taskmanager.journal.JournalEvent;
+import com.company.taskmanager.journal.JournalSink;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Appends the journal events to a file as comma separated lines:
+ * {@code timestamp,sequence,type,pid,priority}. The file is flushed once per batch.
+ */
+public class FileJournalSink implements JournalSink {
+
+  private final BufferedWriter writer;
+
+  public FileJournalSink(Path file) throws IOException {
+    this.writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+        StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+  }
+
+  @Override
+  public void write(List<JournalEvent> events) {
+    try {
+      for (JournalEvent event : events) {
+        writer.write(Long.toString(event.getTimestampMillis()));
+        writer.write(',');
+        writer.write(Long.toString(event.getSequence()));
+        writer.write(',');
+        writer.write(event.getType().name());
+        writer.write(',');
+        writer.write(Long.toString(event.getPid()));
+        writer.write(',');
+        writer.write(event.getPriority() == null ? "" : event.getPriority().name());
+        writer.newLine();
+      }
+      writer.flush();
+    } catch (IOException exception) {
+      throw new UncheckedIOException(exception);
+    }
+  }
+
+  @Override
+  public void close() {
+    try {
+      writer.close();
+    } catch (IOException exception) {
+      throw new UncheckedIOException(exception);
+    }
+  }
+}
@@ -0,0 +1,25 @@
+package com.company.taskmanager.journal.impl;
+
+import com.company.taskmanager.journal.JournalEvent;
+import com.company.taskmanager.journal.JournalSink;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes the journal events to the log, one line per event.
+ */
+public class LoggingJournalSink implements JournalSink {
+  private static Logger log = LoggerFactory.getLogger(LoggingJournalSink.class);
+
+  @Override
+  public void write(List<JournalEvent> events) {
+    if (!log.isInfoEnabled()) {
+      return;
+    }
+    for (JournalEvent event : events) {
+      log.info("Process {} [pid={},priority={},sequence={},timestamp={}]", event.getType(), event.getPid(),
+          event.getPriority(), event.getSequence(), event.getTimestampMillis());
+    }
+  }
+}
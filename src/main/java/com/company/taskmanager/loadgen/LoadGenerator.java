@@ -0,0 +1,208 @@
+package com.company.taskmanager.loadgen;
+
+import com.company.taskmanager.engine.ExecutionEngines;
+import com.company.taskmanager.journal.EventJournal;
+import com.company.taskmanager.metrics.LatencyHistogram;
+import com.company.taskmanager.model.EvictionPolicy;
+import com.company.taskmanager.model.ShardingStrategy;
+import com.company.taskmanager.protocol.CommandInterpreter;
+import com.company.taskmanager.protocol.CommandStreamProcessor;
+import com.company.taskmanager.registry.ProcessRegistry;
+import com.company.taskmanager.registry.impl.CompactProcessRegistry;
+import com.company.taskmanager.registry.impl.ConcurrentProcessRegistry;
+import com.company.taskmanager.service.TaskManagerService;
+import com.company.taskmanager.service.impl.ShardedTaskManagerService;
+import com.company.taskmanager.service.impl.TaskManagerServiceImpl;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Replays a workload, recorded or {@link SyntheticWorkload synthetic}, against a task manager from
+ * several concurrent clients and reports the throughput and the latency percentiles of its
+ * commands.
+ *
+ * <p>A workload is a list of commands of the {@link CommandInterpreter} line protocol. Besides the
+ * protocol commands, {@code SLEEP <millis>} pauses the client, so the workload can reproduce the
+ * bursts and quiet periods of the production traffic; pauses are not measured.
+ */
+public class LoadGenerator {
+
+  public static final String SLEEP_COMMAND = "SLEEP";
+
+  private static final long SHUTDOWN_TIMEOUT_MILLIS = 1000;
+
+  private final CommandInterpreter interpreter;
+
+  public LoadGenerator(TaskManagerService taskManager) {
+    this.interpreter = new CommandInterpreter(Objects.requireNonNull(taskManager));
+  }
+
+  /**
+   * Replays a workload file against a new task manager and prints the report, or a synthetic
+   * workload when no file is given. Options: {@code --workload <file>}, {@code --clients <n>},
+   * {@code --capacity <n>}, {@code --policy <evictionPolicy>}, {@code --bursts <n>},
+   * {@code --burst-size <n>}, {@code --kill-ratio <ratio>}, {@code --pause-millis <millis>},
+   * {@code --seed <seed>}, {@code --registry <concurrent|compact>} and {@code --shards <n>}, which
+   * splits the capacity across {@code n} shards of a {@link ShardedTaskManagerService}.
+   *
+   * @param args the options.
+   * @throws IOException in case the workload file can not be read.
+   * @throws InterruptedException in case the replay is interrupted.
+   */
+  public static void main(String[] args) throws IOException, InterruptedException {
+    String workloadFile = null;
+    int clients = 1;
+    int capacity = TaskManagerServiceImpl.DEFAULT_CAPACITY;
+    EvictionPolicy policy = EvictionPolicy.PRIORITY;
+    int bursts = 1_000;
+    int burstSize = 100;
+    double killRatio = 0.3;
+    long pauseMillis = 0;
+    long seed = 1;
+    boolean compactRegistry = false;
+    int shards = 1;
+    for (int i = 0; i + 1 < args.length; i += 2) {
+      String value = args[i + 1];
+      switch (args[i]) {
+        case "--workload":
+          workloadFile = value;
+          break;
+        case "--clients":
+          clients = Integer.parseInt(value);
+          break;
+        case "--capacity":
+          capacity = Integer.parseInt(value);
+          break;
+        case "--policy":
+          policy = EvictionPolicy.valueOf(value.toUpperCase(Locale.ROOT));
+          break;
+        case "--bursts":
+          bursts = Integer.parseInt(value);
+          break;
+        case "--burst-size":
+          burstSize = Integer.parseInt(value);
+          break;
+        case "--kill-ratio":
+          killRatio = Double.parseDouble(value);
+          break;
+        case "--pause-millis":
+          pauseMillis = Long.parseLong(value);
+          break;
+        case "--seed":
+          seed = Long.parseLong(value);
+          break;
+        case "--registry":
+          compactRegistry = "compact".equalsIgnoreCase(value);
+          break;
+        case "--shards":
+          shards = Integer.parseInt(value);
+          break;
+        default:
+          throw new IllegalArgumentException("Unknown option [option=" + args[i] + "]");
+      }
+    }
+
+    List<String> workload = workloadFile == null
+        ? SyntheticWorkload.bursts(bursts, burstSize, killRatio, pauseMillis, seed)
+        : readWorkload(Paths.get(workloadFile));
+    Function<AtomicLong, ProcessRegistry> registryFactory = compactRegistry
+        ? CompactProcessRegistry::new
+        : ConcurrentProcessRegistry::new;
+    TaskManagerService taskManager = shards > 1
+        ? new ShardedTaskManagerService(shards, (capacity + shards - 1) / shards, policy, ShardingStrategy.PID,
+            ExecutionEngines.defaultEngine(), EventJournal.defaultJournal(), registryFactory)
+        : new TaskManagerServiceImpl(capacity, policy, ExecutionEngines.defaultEngine(),
+            EventJournal.defaultJournal(), null, registryFactory.apply(new AtomicLong()));
+    LoadReport report = new LoadGenerator(taskManager).run(workload, clients);
+    // Also closes the expiry wheel, fails the waiting adds and waits for the payloads to terminate
+    taskManager.shutdown(SHUTDOWN_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+    System.out.println(report.summary());
+  }
+
+  /**
+   * Reads a workload file, one command per line, skipping blank lines and comments. The same file
+   * can be fed to a headless task manager.
+   *
+   * @param file the path of the workload file.
+   * @return List with the command lines of the workload.
+   * @throws IOException in case the file can not be read.
+   */
+  public static List<String> readWorkload(Path file) throws IOException {
+    try (Stream<String> lines = Files.lines(file, StandardCharsets.US_ASCII)) {
+      return lines.filter(CommandStreamProcessor::isCommand).collect(Collectors.toList());
+    }
+  }
+
+  /**
+   * Replays a workload from several clients at the same time, every client executes the whole
+   * workload in its own thread.
+   *
+   * @param workload List with the command lines of the workload.
+   * @param clients the number of concurrent clients, greater than zero.
+   * @return {@link LoadReport} The throughput and latencies of all the clients together.
+   * @throws InterruptedException in case the replay is interrupted.
+   */
+  public LoadReport run(List<String> workload, int clients) throws InterruptedException {
+    if (clients <= 0) {
+      throw new IllegalArgumentException("Clients must be greater than zero [clients=" + clients + "]");
+    }
+    List<String> commands = workload.stream().filter(CommandStreamProcessor::isCommand).collect(Collectors.toList());
+    LatencyHistogram latencies = new LatencyHistogram();
+    LongAdder rejections = new LongAdder();
+    LongAdder errors = new LongAdder();
+    CountDownLatch start = new CountDownLatch(1);
+    List<Thread> threads = new ArrayList<>(clients);
+    for (int i = 0; i < clients; i++) {
+      Thread thread = new Thread(() -> {
+        try {
+          start.await();
+          replay(commands, latencies, rejections, errors);
+        } catch (InterruptedException exception) {
+          Thread.currentThread().interrupt();
+        }
+      }, "load-generator-client-" + i);
+      thread.start();
+      threads.add(thread);
+    }
+
+    long startNanos = System.nanoTime();
+    start.countDown();
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    long elapsedNanos = System.nanoTime() - startNanos;
+    return new LoadReport(latencies.getCount(), rejections.sum(), errors.sum(), elapsedNanos, latencies);
+  }
+
+  private void replay(List<String> commands, LatencyHistogram latencies, LongAdder rejections, LongAdder errors)
+      throws InterruptedException {
+    for (String command : commands) {
+      if (command.regionMatches(true, 0, SLEEP_COMMAND + " ", 0, SLEEP_COMMAND.length() + 1)) {
+        TimeUnit.MILLISECONDS.sleep(Long.parseLong(command.substring(SLEEP_COMMAND.length() + 1).trim()));
+        continue;
+      }
+      long startNanos = System.nanoTime();
+      String response = interpreter.execute(command);
+      latencies.record(System.nanoTime() - startNanos);
+      if (response.equals("SKIPPED") || response.equals("ERR CAPACITY")) {
+        rejections.increment();
+      } else if (response.startsWith("ERR")) {
+        errors.increment();
+      }
+    }
+  }
+}
@@ -0,0 +1,44 @@
+package com.company.taskmanager.loadgen;
+
+import com.company.taskmanager.metrics.LatencyHistogram;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Is the outcome of replaying a workload: how many commands were executed, how fast and with
+ * which latency, in nanoseconds.
+ */
+@AllArgsConstructor
+@Getter
+public class LoadReport {
+  private final long commands;
+  private final long rejections;
+  private final long errors;
+  private final long elapsedNanos;
+  private final LatencyHistogram latencies;
+
+  /**
+   * @return The executed commands per second.
+   */
+  public double getThroughput() {
+    return elapsedNanos == 0 ? 0 : commands * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+  }
+
+  /**
+   * @return A human readable summary with the throughput and the latency percentiles in
+   *     microseconds.
+   */
+  public String summary() {
+    return String.format(Locale.ROOT,
+        "commands=%d rejections=%d errors=%d elapsed=%.3f s throughput=%.0f ops/s%n"
+            + "latency us: mean=%.2f p50=%.2f p90=%.2f p99=%.2f p99.9=%.2f max=%.2f",
+        commands, rejections, errors, elapsedNanos / 1e9, getThroughput(),
+        latencies.getMean() / 1e3, micros(50), micros(90), micros(99), micros(99.9), latencies.getMax() / 1e3);
+  }
+
+  private double micros(double percentile) {
+    return latencies.getPercentile(percentile) / 1e3;
+  }
+}
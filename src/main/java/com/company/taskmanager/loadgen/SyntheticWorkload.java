@@ -0,0 +1,58 @@
+package com.company.taskmanager.loadgen;
+
+import com.company.taskmanager.model.PriorityType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Generates workloads shaped as bursts of {@code ADD_PRIORITY} commands with random priorities
+ * mixed with kills, optionally separated by pauses, in the line protocol of
+ * {@link com.company.taskmanager.protocol.CommandInterpreter}.
+ *
+ * <p>Kills target one of the processes added recently. Pids are predicted from the number of adds,
+ * so a kill of a process that was skipped or evicted is a no-op, as it would be in production.
+ */
+public final class SyntheticWorkload {
+
+  private static final int KILL_WINDOW = 64;
+  private static final PriorityType[] PRIORITIES = PriorityType.values();
+
+  private SyntheticWorkload() {
+  }
+
+  /**
+   * Generates a workload of bursts.
+   *
+   * @param bursts the number of bursts.
+   * @param burstSize the number of commands of every burst.
+   * @param killRatio the fraction of the commands that are kills, between 0 and 1.
+   * @param pauseMillis the pause after every burst, 0 for none.
+   * @param seed the seed of the random choices, the same seed generates the same workload.
+   * @return List with the command lines of the workload.
+   */
+  public static List<String> bursts(int bursts, int burstSize, double killRatio, long pauseMillis, long seed) {
+    if (bursts < 0 || burstSize < 0 || killRatio < 0 || killRatio > 1 || pauseMillis < 0) {
+      throw new IllegalArgumentException("Invalid synthetic workload [bursts=" + bursts + ",burstSize=" + burstSize
+          + ",killRatio=" + killRatio + ",pauseMillis=" + pauseMillis + "]");
+    }
+    SplittableRandom random = new SplittableRandom(seed);
+    List<String> commands = new ArrayList<>(bursts * (burstSize + 1));
+    long added = 0;
+    for (int burst = 0; burst < bursts; burst++) {
+      for (int i = 0; i < burstSize; i++) {
+        if (added > 0 && random.nextDouble() < killRatio) {
+          long window = Math.min(added, KILL_WINDOW);
+          commands.add("KILL " + (added - random.nextLong(window)));
+        } else {
+          commands.add("ADD_PRIORITY " + PRIORITIES[random.nextInt(PRIORITIES.length)].name());
+          added++;
+        }
+      }
+      if (pauseMillis > 0) {
+        commands.add(LoadGenerator.SLEEP_COMMAND + " " + pauseMillis);
+      }
+    }
+    return commands;
+  }
+}
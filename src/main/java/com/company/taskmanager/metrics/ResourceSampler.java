@@ -0,0 +1,83 @@
+package com.company.taskmanager.metrics;
+
+import com.company.taskmanager.model.Process;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Samples, at a low frequency and out of the add and kill paths, the CPU time and the heap bytes
+ * allocated by the payloads still running in a task manager, and records them in their processes.
+ *
+ * <p>Every payload records its own usage from the counters of its thread once it finishes, see
+ * {@link ThreadUsage}, so the sampler only makes the usage of long payloads visible while they run.
+ * Payloads running on threads without counters, such as the virtual threads of the default engine
+ * on JDK 21 or later, report their usage as {@link ThreadUsage#UNAVAILABLE}.
+ */
+public class ResourceSampler implements AutoCloseable {
+  private static Logger log = LoggerFactory.getLogger(ResourceSampler.class);
+
+  public static final long DEFAULT_INTERVAL_MILLIS = 1000;
+
+  private static final AtomicInteger samplerSeqNumber = new AtomicInteger();
+
+  private final Supplier<Stream<Process>> processes;
+  private final long intervalNanos;
+  private final Thread sampler;
+  private volatile boolean running = true;
+
+  public ResourceSampler(Supplier<Stream<Process>> processes) {
+    this(processes, DEFAULT_INTERVAL_MILLIS);
+  }
+
+  /**
+   * Creates the sampler and starts its thread.
+   *
+   * @param processes supplies a stream of the processes to sample, such as the stream of a task
+   *     manager.
+   * @param intervalMillis the milliseconds between samples, greater than zero.
+   */
+  public ResourceSampler(Supplier<Stream<Process>> processes, long intervalMillis) {
+    if (intervalMillis <= 0) {
+      throw new IllegalArgumentException("Interval must be greater than zero [intervalMillis=" + intervalMillis + "]");
+    }
+    this.processes = Objects.requireNonNull(processes);
+    this.intervalNanos = intervalMillis * 1_000_000;
+    this.sampler = new Thread(this::sampleUntilClosed, "resource-sampler-" + samplerSeqNumber.incrementAndGet());
+    this.sampler.setDaemon(true);
+    this.sampler.start();
+  }
+
+  /**
+   * Takes a sample right away, besides the periodic ones.
+   */
+  public void sample() {
+    try (Stream<Process> sampledProcesses = processes.get()) {
+      sampledProcesses.forEach(Process::sampleUsage);
+    }
+  }
+
+  @Override
+  public void close() {
+    running = false;
+    LockSupport.unpark(sampler);
+  }
+
+  private void sampleUntilClosed() {
+    while (running) {
+      LockSupport.parkNanos(this, intervalNanos);
+      if (!running) {
+        break;
+      }
+      try {
+        sample();
+      } catch (RuntimeException exception) {
+        log.warn("Unexpected error sampling the process resources", exception);
+      }
+    }
+  }
+}
@@ -0,0 +1,235 @@
+package com.company.taskmanager.metrics;
+
+import com.company.taskmanager.model.EvictionPolicy;
+import com.company.taskmanager.model.PriorityType;
+import java.lang.management.ManagementFactory;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import lombok.Getter;
+
+/**
+ * Counts what happens inside a task manager: admissions and rejections per add behaviour,
+ * evictions, kills, expirations, processes exiting by themselves, live processes per priority, and the latencies
+ * of admitting a process and of getting it running.
+ *
+ * <p>Counters are {@link LongAdder} and latencies are {@link LatencyHistogram}, so updating them
+ * from the hot path never blocks nor allocates. They can be pulled through the getters or
+ * published as a JMX MBean.
+ */
+public class TaskManagerMetrics implements TaskManagerMetricsMBean {
+
+  private static final String OBJECT_NAME_PATTERN = "com.company.taskmanager:type=TaskManagerMetrics,name=%s";
+
+  private final LongAdder[] admitted = newAdders(EvictionPolicy.values().length);
+  private final LongAdder[] rejected = newAdders(EvictionPolicy.values().length);
+  private final LongAdder[] evicted = newAdders(EvictionPolicy.values().length);
+  private final LongAdder[] live = newAdders(PriorityType.values().length);
+  private final LongAdder kills = new LongAdder();
+  private final LongAdder exits = new LongAdder();
+  private final LongAdder expirations = new LongAdder();
+  @Getter
+  private final LatencyHistogram startLatency = new LatencyHistogram();
+  @Getter
+  private final LatencyHistogram admissionLatency = new LatencyHistogram();
+
+  /**
+   * Counts an admitted process.
+   *
+   * @param policy {@link EvictionPolicy} the add behaviour, NONE stands for the regular add.
+   * @param priority {@link PriorityType} the priority of the admitted process.
+   */
+  public void admitted(EvictionPolicy policy, PriorityType priority) {
+    admitted[policy.ordinal()].increment();
+    live[priority.ordinal()].increment();
+  }
+
+  /**
+   * Counts an admitted process and the time it took to admit it.
+   *
+   * @param policy {@link EvictionPolicy} the add behaviour, NONE stands for the regular add.
+   * @param priority {@link PriorityType} the priority of the admitted process.
+   * @param startNanos the {@link System#nanoTime()} when the add started.
+   */
+  public void admitted(EvictionPolicy policy, PriorityType priority, long startNanos) {
+    admitted(policy, priority);
+    admissionLatency.record(System.nanoTime() - startNanos);
+  }
+
+  /**
+   * Counts a live process recovered after a restart, which is not an admission.
+   *
+   * @param priority {@link PriorityType} the priority of the recovered process.
+   */
+  public void recovered(PriorityType priority) {
+    live[priority.ordinal()].increment();
+  }
+
+  public void rejected(EvictionPolicy policy) {
+    rejected[policy.ordinal()].increment();
+  }
+
+  public void rejected(EvictionPolicy policy, int processes) {
+    rejected[policy.ordinal()].add(processes);
+  }
+
+  public void evicted(EvictionPolicy policy, PriorityType priority) {
+    evicted[policy.ordinal()].increment();
+    live[priority.ordinal()].decrement();
+  }
+
+  public void killed(PriorityType priority) {
+    kills.increment();
+    live[priority.ordinal()].decrement();
+  }
+
+  /**
+   * Counts the processes killed because their deadline passed, which are counted as kills too.
+   *
+   * @param processes the number of expired processes.
+   */
+  public void expired(int processes) {
+    expirations.add(processes);
+  }
+
+  public void exited(PriorityType priority) {
+    exits.increment();
+    live[priority.ordinal()].decrement();
+  }
+
+  public void running(long startLatencyNanos) {
+    startLatency.record(startLatencyNanos);
+  }
+
+  public long getAdmitted(EvictionPolicy policy) {
+    return admitted[policy.ordinal()].sum();
+  }
+
+  public long getRejected(EvictionPolicy policy) {
+    return rejected[policy.ordinal()].sum();
+  }
+
+  public long getEvictions(EvictionPolicy policy) {
+    return evicted[policy.ordinal()].sum();
+  }
+
+  public long getLive(PriorityType priority) {
+    return live[priority.ordinal()].sum();
+  }
+
+  public long getAdded() {
+    return getAdmitted(EvictionPolicy.NONE);
+  }
+
+  public long getAddedToFifo() {
+    return getAdmitted(EvictionPolicy.FIFO);
+  }
+
+  public long getAddedWithPriority() {
+    return getAdmitted(EvictionPolicy.PRIORITY);
+  }
+
+  public long getRejected() {
+    return getRejected(EvictionPolicy.NONE);
+  }
+
+  public long getRejectedWithPriority() {
+    return getRejected(EvictionPolicy.PRIORITY);
+  }
+
+  public long getFifoEvictions() {
+    return getEvictions(EvictionPolicy.FIFO);
+  }
+
+  public long getPriorityEvictions() {
+    return getEvictions(EvictionPolicy.PRIORITY);
+  }
+
+  public long getKills() {
+    return kills.sum();
+  }
+
+  public long getExpirations() {
+    return expirations.sum();
+  }
+
+  public long getExits() {
+    return exits.sum();
+  }
+
+  public long getLiveLow() {
+    return getLive(PriorityType.LOW);
+  }
+
+  public long getLiveMedium() {
+    return getLive(PriorityType.MEDIUM);
+  }
+
+  public long getLiveHigh() {
+    return getLive(PriorityType.HIGH);
+  }
+
+  public long getStartLatencyP50Nanos() {
+    return startLatency.getPercentile(50);
+  }
+
+  public long getStartLatencyP99Nanos() {
+    return startLatency.getPercentile(99);
+  }
+
+  public long getStartLatencyMaxNanos() {
+    return startLatency.getMax();
+  }
+
+  public long getAdmissionLatencyP50Nanos() {
+    return admissionLatency.getPercentile(50);
+  }
+
+  public long getAdmissionLatencyP99Nanos() {
+    return admissionLatency.getPercentile(99);
+  }
+
+  public long getAdmissionLatencyMaxNanos() {
+    return admissionLatency.getMax();
+  }
+
+  public void resetLatencies() {
+    startLatency.reset();
+    admissionLatency.reset();
+  }
+
+  /**
+   * Publishes the metrics in the platform MBean server.
+   *
+   * @param name the name that identifies the task manager among the registered ones.
+   * @return {@link ObjectName} The name of the registered MBean.
+   * @throws JMException in case the MBean can not be registered, e.g. the name is already taken.
+   */
+  public ObjectName registerMBean(String name) throws JMException {
+    Objects.requireNonNull(name);
+    ObjectName objectName = new ObjectName(String.format(OBJECT_NAME_PATTERN, ObjectName.quote(name)));
+    ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+    return objectName;
+  }
+
+  /**
+   * Removes the metrics from the platform MBean server.
+   *
+   * @param name the name used to register them.
+   * @throws JMException in case the MBean can not be unregistered.
+   */
+  public void unregisterMBean(String name) throws JMException {
+    MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+    mBeanServer.unregisterMBean(new ObjectName(String.format(OBJECT_NAME_PATTERN, ObjectName.quote(name))));
+  }
+
+  private static LongAdder[] newAdders(int size) {
+    LongAdder[] adders = new LongAdder[size];
+    for (int i = 0; i < size; i++) {
+      adders[i] = new LongAdder();
+    }
+    return adders;
+  }
+}
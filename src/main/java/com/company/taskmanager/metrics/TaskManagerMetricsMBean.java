@@ -0,0 +1,47 @@
+package com.company.taskmanager.metrics;
+
+/**
+ * Exposes the task manager metrics through JMX.
+ */
+public interface TaskManagerMetricsMBean {
+
+  long getAdded();
+
+  long getAddedToFifo();
+
+  long getAddedWithPriority();
+
+  long getRejected();
+
+  long getRejectedWithPriority();
+
+  long getFifoEvictions();
+
+  long getPriorityEvictions();
+
+  long getKills();
+
+  long getExpirations();
+
+  long getExits();
+
+  long getLiveLow();
+
+  long getLiveMedium();
+
+  long getLiveHigh();
+
+  long getStartLatencyP50Nanos();
+
+  long getStartLatencyP99Nanos();
+
+  long getStartLatencyMaxNanos();
+
+  long getAdmissionLatencyP50Nanos();
+
+  long getAdmissionLatencyP99Nanos();
+
+  long getAdmissionLatencyMaxNanos();
+
+  void resetLatencies();
+}
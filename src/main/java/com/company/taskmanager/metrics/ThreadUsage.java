@@ -0,0 +1,48 @@
+package com.company.taskmanager.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Reads the CPU time and the allocated heap bytes of a thread through the {@link ThreadMXBean}.
+ *
+ * <p>The counters exist for platform threads only. Virtual threads, used by the default engine on
+ * JDK 21 or later, and JVMs that don't count them report {@link #UNAVAILABLE} rather than zero.
+ */
+public final class ThreadUsage {
+  /**
+   * Value of the counters the thread or the JVM doesn't provide.
+   */
+  public static final long UNAVAILABLE = -1;
+
+  private static final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+  private static final boolean cpuTimeSupported = threads.isThreadCpuTimeSupported() && threads.isThreadCpuTimeEnabled();
+  private static final com.sun.management.ThreadMXBean allocations = threads instanceof com.sun.management.ThreadMXBean
+      && ((com.sun.management.ThreadMXBean) threads).isThreadAllocatedMemorySupported()
+      && ((com.sun.management.ThreadMXBean) threads).isThreadAllocatedMemoryEnabled()
+      ? (com.sun.management.ThreadMXBean) threads
+      : null;
+
+  private ThreadUsage() {
+  }
+
+  /**
+   * @param thread the measured thread.
+   * @return The CPU nanoseconds used by the thread so far, {@link #UNAVAILABLE} if not counted.
+   */
+  public static long cpuNanos(Thread thread) {
+    return cpuTimeSupported ? available(threads.getThreadCpuTime(thread.getId())) : UNAVAILABLE;
+  }
+
+  /**
+   * @param thread the measured thread.
+   * @return The heap bytes allocated by the thread so far, {@link #UNAVAILABLE} if not counted.
+   */
+  public static long allocatedBytes(Thread thread) {
+    return allocations == null ? UNAVAILABLE : available(allocations.getThreadAllocatedBytes(thread.getId()));
+  }
+
+  private static long available(long counter) {
+    return counter < 0 ? UNAVAILABLE : counter;
+  }
+}
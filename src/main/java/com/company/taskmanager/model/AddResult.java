@@ -0,0 +1,33 @@
+package com.company.taskmanager.model;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Is the result of trying to add a process: its {@link AddStatus} and the added process, if any.
+ *
+ * <p>Rejections always return the shared {@link #REJECTED} instance, so rejecting a process
+ * allocates nothing.
+ */
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+@Getter
+@ToString
+public class AddResult {
+  /**
+   * Result of every rejected add.
+   */
+  public static final AddResult REJECTED = new AddResult(AddStatus.REJECTED, null);
+
+  private final AddStatus status;
+  private final Process process;
+
+  public static AddResult added(Process process) {
+    return new AddResult(AddStatus.ADDED, process);
+  }
+
+  public boolean isAdded() {
+    return status == AddStatus.ADDED;
+  }
+}
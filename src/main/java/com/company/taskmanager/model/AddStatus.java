@@ -0,0 +1,15 @@
+package com.company.taskmanager.model;
+
+/**
+ * Is the outcome of trying to add a process to the task manager.
+ */
+public enum AddStatus {
+  /**
+   * The process was admitted and started.
+   */
+  ADDED,
+  /**
+   * The process was not admitted because the task manager is at max capacity.
+   */
+  REJECTED
+}
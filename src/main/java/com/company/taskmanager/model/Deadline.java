@@ -0,0 +1,61 @@
+package com.company.taskmanager.model;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Is the moment after which a timed process expires and is killed by the task manager.
+ *
+ * <p>The deadline is kept on the {@link System#nanoTime()} clock, so changes of the wall clock
+ * after its creation don't move it.
+ */
+@Getter
+@ToString
+public class Deadline {
+
+  private final long nanoTime;
+
+  private Deadline(long nanoTime) {
+    this.nanoTime = nanoTime;
+  }
+
+  /**
+   * @param ttl the time to live of the process, zero or greater.
+   * @param unit {@link TimeUnit} of the time to live.
+   * @return {@link Deadline} The deadline after the time to live from now.
+   */
+  public static Deadline after(long ttl, TimeUnit unit) {
+    Objects.requireNonNull(unit);
+    if (ttl < 0) {
+      throw new IllegalArgumentException("Time to live must not be negative [ttl=" + ttl + "]");
+    }
+    return fromNow(unit.toNanos(ttl));
+  }
+
+  /**
+   * @param instant the wall clock moment of the deadline, an instant in the past expires right away.
+   * @return {@link Deadline} The deadline at the given instant.
+   */
+  public static Deadline at(Instant instant) {
+    Duration remaining = Duration.between(Instant.now(), Objects.requireNonNull(instant));
+    return fromNow(remaining.isNegative() ? 0 : remaining.compareTo(Duration.ofNanos(Long.MAX_VALUE)) > 0
+        ? Long.MAX_VALUE : remaining.toNanos());
+  }
+
+  /**
+   * @return True in case the deadline has passed.
+   */
+  public boolean isExpired() {
+    return System.nanoTime() - nanoTime >= 0;
+  }
+
+  private static Deadline fromNow(long remainingNanos) {
+    long now = System.nanoTime();
+    // Saturates far deadlines instead of overflowing the clock
+    return new Deadline(now + Math.min(remainingNanos, Long.MAX_VALUE / 2));
+  }
+}
@@ -0,0 +1,20 @@
+package com.company.taskmanager.model;
+
+/**
+ * Contains the available ways to free capacity when the task manager holds more processes than
+ * allowed.
+ */
+public enum EvictionPolicy {
+  /**
+   * Processes are never evicted, the task manager waits for them to be killed.
+   */
+  NONE,
+  /**
+   * The oldest processes are evicted first (First-In, First-Out).
+   */
+  FIFO,
+  /**
+   * The lowest priority processes are evicted first, the oldest one among the same priority.
+   */
+  PRIORITY
+}
@@ -1,5 +1,9 @@
 package com.company.taskmanager.model;
 
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 
@@ -11,9 +15,20 @@ import lombok.Getter;
 public enum PriorityType {
   LOW("low", 1), MEDIUM("medium", 2), HIGH("high", 3);
 
+  private static final List<PriorityType> BY_PRECEDENCE = Arrays.stream(values())
+      .sorted(Comparator.comparing(PriorityType::getPrecedence))
+      .collect(Collectors.toUnmodifiableList());
+
   private String description;
   private int precedence;
 
+  /**
+   * @return The priorities from the lowest to the highest precedence.
+   */
+  public static List<PriorityType> byPrecedence() {
+    return BY_PRECEDENCE;
+  }
+
   @Override
   public String toString() {
     return this.getDescription();
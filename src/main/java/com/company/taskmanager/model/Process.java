@@ -1,56 +1,248 @@
 package com.company.taskmanager.model;
 
+import com.company.taskmanager.engine.ExecutionEngine;
+import com.company.taskmanager.metrics.ThreadUsage;
 import java.util.StringJoiner;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongConsumer;
+import lombok.AccessLevel;
 import lombok.Getter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * Is the class that represents a Process in the system.
+ *
+ * <p>The process code is submitted to an {@link ExecutionEngine} instead of owning a thread. A
+ * process with a payload finishes when its payload does, a process without payload keeps running,
+ * without holding any thread, until it is stopped. A stopped process is terminated once its code
+ * no longer runs in any thread, which is right away unless its payload was running.
  */
 @Getter public class Process implements Runnable {
   private static Logger log = LoggerFactory.getLogger(Process.class);
 
-  private final AtomicBoolean isRunning = new AtomicBoolean(false);
-  private Thread thread;
+  private static final int NOT_EXECUTED = 0;
+  private static final int EXECUTING = 1;
+  private static final int EXECUTED = 2;
+
+  @Getter(AccessLevel.NONE)
+  private final AtomicReference<ProcessState> state = new AtomicReference<>(ProcessState.NEW);
+  @Getter(AccessLevel.NONE)
+  private volatile Future<?> execution;
+  @Getter(AccessLevel.NONE)
+  private final Callable<?> payload;
+  @Getter(AccessLevel.NONE)
+  private volatile long startNanos;
+  @Getter(AccessLevel.NONE)
+  private volatile LongConsumer startLatencyListener;
+  @Getter(AccessLevel.NONE)
+  private final AtomicInteger executionPhase = new AtomicInteger(NOT_EXECUTED);
+  private final CompletableFuture<Object> result = new CompletableFuture<>();
+  private final CompletableFuture<Void> termination = new CompletableFuture<>();
+  private final long creationNanos = System.nanoTime();
+  @Getter(AccessLevel.NONE)
+  private volatile Thread payloadThread;
+  // Counters of the payload thread when the payload started, read by the payload thread itself
+  @Getter(AccessLevel.NONE)
+  private volatile long payloadStartCpuNanos;
+  @Getter(AccessLevel.NONE)
+  private volatile long payloadStartAllocatedBytes;
+  // Resource usage of the payload, ThreadUsage.UNAVAILABLE if its thread doesn't count it
+  private volatile long cpuNanos;
+  private volatile long allocatedBytes;
 
   private final long pid;
   private final PriorityType priority;
 
   public Process(long pid, PriorityType priority) {
+    this(pid, priority, null);
+  }
+
+  public Process(long pid, PriorityType priority, Callable<?> payload) {
     this.pid = pid;
     this.priority = priority;
+    this.payload = payload;
   }
 
-  public void start() {
-    this.thread = new Thread(this);
-    this.thread.start();
+  public void start(ExecutionEngine engine) {
+    start(engine, null);
+  }
+
+  /**
+   * Starts the process.
+   *
+   * @param engine {@link ExecutionEngine} the engine that runs the process code.
+   * @param startLatencyListener receives the nanoseconds between the start and the moment the
+   *     engine runs the process code, null if not needed.
+   */
+  public void start(ExecutionEngine engine, LongConsumer startLatencyListener) {
+    this.startLatencyListener = startLatencyListener;
+    this.startNanos = System.nanoTime();
+    if (this.state.compareAndSet(ProcessState.NEW, ProcessState.RUNNING)) {
+      this.execution = engine.submit(this, this.priority);
+    }
   }
 
   public void stop() {
-    this.isRunning.set(false);
-    this.thread.interrupt();
+    ProcessState current = this.state.get();
+    while (!current.isFinished()) {
+      if (this.state.compareAndSet(current, ProcessState.CANCELLED)) {
+        Future<?> execution = this.execution;
+        if (execution != null) {
+          execution.cancel(true);
+        }
+        this.result.cancel(false);
+        // Code that didn't execute yet never will, code executing terminates the process on its way out
+        this.executionPhase.compareAndSet(NOT_EXECUTED, EXECUTED);
+        if (this.executionPhase.get() == EXECUTED) {
+          this.termination.complete(null);
+        }
+        return;
+      }
+      current = this.state.get();
+    }
   }
 
   public boolean isRunning() {
-    return this.isRunning.get();
+    return this.state.get() == ProcessState.RUNNING;
+  }
+
+  public boolean hasPayload() {
+    return this.payload != null;
+  }
+
+  public ProcessState getState() {
+    return this.state.get();
+  }
+
+  /**
+   * @return The nanoseconds since the process was created.
+   */
+  public long getAgeNanos() {
+    return System.nanoTime() - this.creationNanos;
+  }
+
+  /**
+   * @return The thread running the payload right now, null if the payload isn't running.
+   */
+  public Thread getPayloadThread() {
+    return this.payloadThread;
+  }
+
+  /**
+   * Records the resources used by the payload since it started. Totals lower than the recorded
+   * ones are ignored, so a late sample never moves the usage back.
+   *
+   * @param cpuNanos the CPU time used, in nanoseconds.
+   * @param allocatedBytes the bytes allocated on the heap.
+   */
+  public synchronized void recordUsage(long cpuNanos, long allocatedBytes) {
+    if (this.cpuNanos != ThreadUsage.UNAVAILABLE) {
+      this.cpuNanos = Math.max(this.cpuNanos, cpuNanos);
+    }
+    if (this.allocatedBytes != ThreadUsage.UNAVAILABLE) {
+      this.allocatedBytes = Math.max(this.allocatedBytes, allocatedBytes);
+    }
+  }
+
+  /**
+   * Records the usage of the payload running right now, from the counters of its thread. The usage
+   * of the whole payload is recorded by its thread once it finishes, so sampling only matters for
+   * payloads still running.
+   */
+  public void sampleUsage() {
+    Thread thread = this.payloadThread;
+    if (thread == null) {
+      return;
+    }
+    long cpuNanos = ThreadUsage.cpuNanos(thread);
+    long allocatedBytes = ThreadUsage.allocatedBytes(thread);
+    // Still running the payload, so the counters were read during its run and not a later one
+    if (this.payloadThread == thread) {
+      recordUsage(usedSince(this.payloadStartCpuNanos, cpuNanos), usedSince(this.payloadStartAllocatedBytes, allocatedBytes));
+    }
+  }
+
+  /**
+   * @return True in case the process finished or was stopped and its code no longer runs.
+   */
+  public boolean isTerminated() {
+    return this.termination.isDone();
   }
 
   @Override
   public void run() {
-    this.isRunning.set(true);
-    log.info("Running process [pid={}]", this.pid);
-    while (this.isRunning.get()) {
-      try {
-        Thread.sleep(1000);
-      } catch (InterruptedException e) {
-        log.debug("Thread execution interrupted [pid={}]", this.pid);
-        this.thread.interrupt();
+    if (!this.executionPhase.compareAndSet(NOT_EXECUTED, EXECUTING)) {
+      return;
+    }
+    try {
+      execute();
+    } finally {
+      this.executionPhase.set(EXECUTED);
+      if (this.state.get().isFinished()) {
+        this.termination.complete(null);
       }
     }
   }
 
+  private void execute() {
+    if (!isRunning()) {
+      return;
+    }
+    LongConsumer startLatencyListener = this.startLatencyListener;
+    if (startLatencyListener != null) {
+      startLatencyListener.accept(System.nanoTime() - this.startNanos);
+    }
+    log.debug("Running process [pid={}]", this.pid);
+    if (this.payload == null) {
+      return;
+    }
+
+    Object value = null;
+    Throwable failure = null;
+    Thread thread = Thread.currentThread();
+    startUsage(thread);
+    this.payloadThread = thread;
+    try {
+      value = this.payload.call();
+    } catch (Throwable throwable) {
+      failure = throwable;
+    } finally {
+      // Cleared before the result completes, so whoever sees the result sees the payload stopped
+      this.payloadThread = null;
+      recordUsage(usedSince(this.payloadStartCpuNanos, ThreadUsage.cpuNanos(thread)),
+          usedSince(this.payloadStartAllocatedBytes, ThreadUsage.allocatedBytes(thread)));
+    }
+    if (failure == null) {
+      if (this.state.compareAndSet(ProcessState.RUNNING, ProcessState.COMPLETED)) {
+        this.result.complete(value);
+      }
+    } else if (this.state.compareAndSet(ProcessState.RUNNING, ProcessState.FAILED)) {
+      log.debug("Process payload failed [pid={}]", this.pid, failure);
+      this.result.completeExceptionally(failure);
+    }
+  }
+
+  private synchronized void startUsage(Thread thread) {
+    this.payloadStartCpuNanos = ThreadUsage.cpuNanos(thread);
+    this.payloadStartAllocatedBytes = ThreadUsage.allocatedBytes(thread);
+    // Threads without counters, such as virtual threads, report the usage as unavailable
+    if (this.payloadStartCpuNanos == ThreadUsage.UNAVAILABLE) {
+      this.cpuNanos = ThreadUsage.UNAVAILABLE;
+    }
+    if (this.payloadStartAllocatedBytes == ThreadUsage.UNAVAILABLE) {
+      this.allocatedBytes = ThreadUsage.UNAVAILABLE;
+    }
+  }
+
+  private static long usedSince(long start, long now) {
+    return start == ThreadUsage.UNAVAILABLE || now == ThreadUsage.UNAVAILABLE ? 0 : Math.max(0, now - start);
+  }
+
   @Override
   public String toString() {
     StringJoiner stringJoiner = new StringJoiner(",", "[", "]");
@@ -0,0 +1,26 @@
+package com.company.taskmanager.model;
+
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Is a page of the processes listed in a specific {@link SortingType} ordering.
+ *
+ * <p>The next cursor is the position of the last process of the page in that ordering, so the
+ * following page starts right after it even if processes were added or killed in between.
+ */
+@AllArgsConstructor
+@Getter
+@ToString
+public class ProcessPage {
+  /**
+   * Cursor of the first page.
+   */
+  public static final long FIRST_CURSOR = 0;
+
+  private final List<Process> processes;
+  private final long nextCursor;
+  private final boolean last;
+}
@@ -0,0 +1,31 @@
+package com.company.taskmanager.model;
+
+/**
+ * Contains the states of the process lifecycle.
+ */
+public enum ProcessState {
+  /**
+   * The process has been created but not started yet.
+   */
+  NEW,
+  /**
+   * The process has been started and it is running its code or waiting to be killed.
+   */
+  RUNNING,
+  /**
+   * The process code finished and its result is available.
+   */
+  COMPLETED,
+  /**
+   * The process code finished throwing an exception.
+   */
+  FAILED,
+  /**
+   * The process has been killed before finishing.
+   */
+  CANCELLED;
+
+  public boolean isFinished() {
+    return this != NEW && this != RUNNING;
+  }
+}
@@ -0,0 +1,31 @@
+package com.company.taskmanager.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Contains the resources used by a process by which the heaviest processes can be ranked.
+ */
+@AllArgsConstructor
+@Getter
+public enum ResourceMetric {
+  CPU_TIME("cpu nanoseconds"), ALLOCATED_BYTES("allocated bytes"), AGE("age nanoseconds");
+
+  private String description;
+
+  /**
+   * @param process {@link Process} the measured process.
+   * @param nowNanos the current {@link System#nanoTime()}, so a ranking uses a single instant.
+   * @return The amount of this resource used by the process.
+   */
+  public long measure(Process process, long nowNanos) {
+    switch (this) {
+      case CPU_TIME:
+        return process.getCpuNanos();
+      case ALLOCATED_BYTES:
+        return process.getAllocatedBytes();
+      default:
+        return nowNanos - process.getCreationNanos();
+    }
+  }
+}
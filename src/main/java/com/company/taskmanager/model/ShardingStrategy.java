@@ -0,0 +1,17 @@
+package com.company.taskmanager.model;
+
+/**
+ * Contains the available ways to choose the shard of a new process in a sharded task manager.
+ */
+public enum ShardingStrategy {
+  /**
+   * Every thread adds to its own shard, so parallel callers don't contend with each other. The
+   * shard of a process is derived from its pid.
+   */
+  PID,
+  /**
+   * Processes are added to the shard of their priority, so the processes of a priority are kept
+   * together.
+   */
+  PRIORITY
+}
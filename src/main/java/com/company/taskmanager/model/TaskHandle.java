@@ -0,0 +1,48 @@
+package com.company.taskmanager.model;
+
+import java.util.concurrent.CompletableFuture;
+import lombok.Getter;
+
+/**
+ * Gives access to a process running a payload and to the result of that payload.
+ *
+ * @param <T> the type of the payload result.
+ */
+@Getter
+public class TaskHandle<T> {
+
+  private final Process process;
+  private final CompletableFuture<T> result;
+
+  @SuppressWarnings("unchecked")
+  public TaskHandle(Process process) {
+    this.process = process;
+    // The process result is produced by the Callable<T> the handle was created for
+    this.result = (CompletableFuture<T>) process.getResult();
+  }
+
+  public long getPid() {
+    return process.getPid();
+  }
+
+  public ProcessState getState() {
+    return process.getState();
+  }
+
+  public boolean isCompleted() {
+    return getState() == ProcessState.COMPLETED;
+  }
+
+  public boolean isFailed() {
+    return getState() == ProcessState.FAILED;
+  }
+
+  public boolean isCancelled() {
+    return getState() == ProcessState.CANCELLED;
+  }
+
+  @Override
+  public String toString() {
+    return process.toString();
+  }
+}
@@ -0,0 +1,85 @@
+package com.company.taskmanager.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Is the handle of the processes stopped by a kill, which confirms that their code no longer runs.
+ *
+ * <p>Stopping a process interrupts its payload, a payload that doesn't react to the interruption
+ * keeps its thread busy. Waiting on the handle with a deadline tells which processes, the
+ * stragglers, are still running their payload when it expires.
+ */
+@Getter
+@ToString
+public class Termination {
+  /**
+   * Handle of the kills that stopped no process.
+   */
+  public static final Termination NONE = new Termination(Collections.emptyList());
+
+  private final List<Process> processes;
+
+  public Termination(List<Process> processes) {
+    this.processes = Collections.unmodifiableList(processes);
+  }
+
+  /**
+   * Combines the handles of several kills.
+   *
+   * @param terminations List with the {@link Termination} handles.
+   * @return {@link Termination} The handle of all their processes.
+   */
+  public static Termination of(List<Termination> terminations) {
+    List<Process> processes = new ArrayList<>();
+    terminations.forEach(termination -> processes.addAll(termination.processes));
+    return processes.isEmpty() ? NONE : new Termination(processes);
+  }
+
+  /**
+   * @return True in case every process is terminated.
+   */
+  public boolean isDone() {
+    return processes.stream().allMatch(Process::isTerminated);
+  }
+
+  /**
+   * Waits until every process is terminated or the deadline expires.
+   *
+   * @param timeout the maximum time to wait for all the processes together.
+   * @param unit {@link TimeUnit} of the timeout.
+   * @return True in case every process is terminated, false if the deadline expired.
+   * @throws InterruptedException in case the thread is interrupted while waiting.
+   */
+  public boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+    long deadlineNanos = System.nanoTime() + unit.toNanos(timeout);
+    for (Process process : processes) {
+      if (process.isTerminated()) {
+        continue;
+      }
+      try {
+        process.getTermination().get(Math.max(0, deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+      } catch (TimeoutException exception) {
+        return false;
+      } catch (ExecutionException exception) {
+        // The termination is never completed exceptionally
+        throw new IllegalStateException(exception);
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return List with the processes whose code still runs.
+   */
+  public List<Process> getStragglers() {
+    return processes.stream().filter(process -> !process.isTerminated()).collect(Collectors.toList());
+  }
+}
@@ -0,0 +1,408 @@
+package com.company.taskmanager.persistence;
+
+import com.company.taskmanager.journal.JournalEventType;
+import com.company.taskmanager.model.PriorityType;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Persists the process table so a task manager can be recovered after a restart.
+ *
+ * <p>Every add and removal is appended as a fixed size record to a memory-mapped segment file, so
+ * appending is a few memory writes and survives a crash of the JVM as soon as it returns. Segments
+ * are forced to disk by a background thread every commit interval, which makes every record
+ * appended in that interval durable with a single fsync (group commit); {@link #sync()} waits for
+ * it on demand.
+ *
+ * <p>When a segment is full a new one is started and the sealed segments are compacted in the
+ * background into a snapshot with the live processes, then deleted, so a restart only loads the
+ * snapshot and replays the segments appended after it.
+ */
+public class WriteAheadLog implements AutoCloseable {
+  private static Logger log = LoggerFactory.getLogger(WriteAheadLog.class);
+
+  public static final int DEFAULT_SEGMENT_SIZE = 64 << 20;
+  public static final long DEFAULT_COMMIT_INTERVAL_MILLIS = 10;
+
+  static final int RECORD_SIZE = 16;
+
+  private static final String SEGMENT_PREFIX = "wal-";
+  private static final String SEGMENT_SUFFIX = ".log";
+  private static final String SNAPSHOT_PREFIX = "snapshot-";
+  private static final String SNAPSHOT_SUFFIX = ".dat";
+  private static final int SNAPSHOT_MAGIC = 0x54534e50;
+  private static final JournalEventType[] TYPES = JournalEventType.values();
+  private static final PriorityType[] PRIORITIES = PriorityType.values();
+
+  private final Path directory;
+  private final int segmentSize;
+  private final Map<Long, PriorityType> recoveredProcesses;
+  private final long recoveredMaxPid;
+  private final ScheduledExecutorService committer;
+  private final Object commitLock = new Object();
+  private final Object checkpointLock = new Object();
+  private final List<MappedByteBuffer> sealedSegments = new ArrayList<>();
+
+  private FileChannel channel;
+  private MappedByteBuffer segment;
+  private long segmentIndex;
+  private int position;
+  private long appended;
+  private volatile long committed;
+  private boolean closed;
+
+  /**
+   * Opens the log stored in a directory with the default segment size and commit interval,
+   * recovering the processes it holds.
+   *
+   * @param directory the directory of the log files, created if it does not exist.
+   * @return The opened {@link WriteAheadLog}.
+   * @throws IOException in case the log can not be read or created.
+   */
+  public static WriteAheadLog open(Path directory) throws IOException {
+    return new WriteAheadLog(directory, DEFAULT_SEGMENT_SIZE, DEFAULT_COMMIT_INTERVAL_MILLIS);
+  }
+
+  /**
+   * Opens the log stored in a directory, recovering the processes it holds.
+   *
+   * @param directory the directory of the log files, created if it does not exist.
+   * @param segmentSize the size in bytes of every segment file.
+   * @param commitIntervalMillis the interval between group commits.
+   * @throws IOException in case the log can not be read or created.
+   */
+  public WriteAheadLog(Path directory, int segmentSize, long commitIntervalMillis) throws IOException {
+    if (segmentSize < RECORD_SIZE || commitIntervalMillis <= 0) {
+      throw new IllegalArgumentException("Segment size must hold a record and commit interval must be greater than"
+          + " zero [segmentSize=" + segmentSize + ",commitIntervalMillis=" + commitIntervalMillis + "]");
+    }
+    this.directory = Files.createDirectories(directory);
+    this.segmentSize = segmentSize - segmentSize % RECORD_SIZE;
+
+    long snapshotIndex = latestIndex(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX);
+    State state = snapshotIndex < 0 ? new State() : readSnapshot(snapshotPath(snapshotIndex));
+    List<Long> segmentIndexes = indexes(SEGMENT_PREFIX, SEGMENT_SUFFIX);
+    for (long index : segmentIndexes) {
+      if (index >= snapshotIndex) {
+        replay(segmentPath(index), state);
+      }
+    }
+    this.recoveredProcesses = Collections.unmodifiableMap(state.processes);
+    this.recoveredMaxPid = state.maxPid;
+    log.info("Recovered write-ahead log [directory={},processes={},maxPid={},segments={}]",
+        directory, state.processes.size(), state.maxPid, segmentIndexes.size());
+
+    // Appends always go to a new segment, the recovered ones are compacted right away
+    long lastIndex = Math.max(snapshotIndex, segmentIndexes.isEmpty() ? 0 : segmentIndexes.get(segmentIndexes.size() - 1));
+    openSegment(lastIndex + 1);
+    this.committer = Executors.newSingleThreadScheduledExecutor(task -> {
+      Thread thread = new Thread(task, "write-ahead-log-committer");
+      thread.setDaemon(true);
+      return thread;
+    });
+    committer.scheduleWithFixedDelay(this::commit, commitIntervalMillis, commitIntervalMillis, TimeUnit.MILLISECONDS);
+    if (!segmentIndexes.isEmpty()) {
+      long sealedBefore = segmentIndex;
+      committer.execute(() -> compactQuietly(sealedBefore));
+    }
+  }
+
+  /**
+   * @return The recovered processes by pid, in the order they were added.
+   */
+  public Map<Long, PriorityType> getRecoveredProcesses() {
+    return recoveredProcesses;
+  }
+
+  /**
+   * @return The highest pid found in the log, 0 if it was empty.
+   */
+  public long getRecoveredMaxPid() {
+    return recoveredMaxPid;
+  }
+
+  /**
+   * Appends a record to the log. Add records must be appended before the process is visible and
+   * removal records after it is removed, so the add of a process always precedes its removal.
+   *
+   * @param type {@link JournalEventType} ADDED for adds, EVICTED, KILLED or EXITED for removals.
+   * @param pid the id of the process.
+   * @param priority {@link PriorityType} the priority of the process.
+   */
+  public synchronized void append(JournalEventType type, long pid, PriorityType priority) {
+    if (closed) {
+      throw new IllegalStateException("The write-ahead log is closed [directory=" + directory + "]");
+    }
+    if (position + RECORD_SIZE > segmentSize) {
+      roll();
+      long sealedBefore = segmentIndex;
+      committer.execute(() -> compactQuietly(sealedBefore));
+    }
+    int typeCode = type.ordinal() + 1;
+    segment.putLong(position, pid);
+    segment.put(position + 8, (byte) typeCode);
+    segment.put(position + 9, (byte) priority.ordinal());
+    // The checksum goes last, a record torn by a crash never matches it
+    segment.putInt(position + 12, checksum(pid, typeCode, priority.ordinal()));
+    position += RECORD_SIZE;
+    appended++;
+  }
+
+  /**
+   * Waits until every record appended before this call is on disk.
+   */
+  public void sync() {
+    long target;
+    synchronized (this) {
+      target = appended;
+    }
+    if (committed < target) {
+      commit();
+    }
+  }
+
+  /**
+   * Takes a snapshot with the live processes and deletes the records it replaces.
+   *
+   * @throws IOException in case the snapshot can not be written.
+   */
+  public void checkpoint() throws IOException {
+    long sealedBefore;
+    synchronized (this) {
+      if (closed) {
+        throw new IllegalStateException("The write-ahead log is closed [directory=" + directory + "]");
+      }
+      roll();
+      sealedBefore = segmentIndex;
+    }
+    compact(sealedBefore);
+  }
+
+  /**
+   * Commits the appended records and releases the log files.
+   */
+  @Override
+  public void close() {
+    synchronized (this) {
+      if (closed) {
+        return;
+      }
+      closed = true;
+    }
+    committer.shutdown();
+    try {
+      committer.awaitTermination(1, TimeUnit.MINUTES);
+    } catch (InterruptedException exception) {
+      Thread.currentThread().interrupt();
+    }
+    commit();
+    try {
+      channel.close();
+    } catch (IOException exception) {
+      throw new UncheckedIOException(exception);
+    }
+  }
+
+  private void commit() {
+    synchronized (commitLock) {
+      List<MappedByteBuffer> segmentsToForce;
+      long target;
+      synchronized (this) {
+        target = appended;
+        if (target == committed) {
+          return;
+        }
+        segmentsToForce = new ArrayList<>(sealedSegments);
+        segmentsToForce.add(segment);
+        sealedSegments.clear();
+      }
+      // A single force makes durable every record appended since the previous commit
+      segmentsToForce.forEach(MappedByteBuffer::force);
+      committed = target;
+    }
+  }
+
+  private void roll() {
+    try {
+      sealedSegments.add(segment);
+      channel.close();
+      openSegment(segmentIndex + 1);
+    } catch (IOException exception) {
+      throw new UncheckedIOException(exception);
+    }
+  }
+
+  private void openSegment(long index) throws IOException {
+    channel = FileChannel.open(segmentPath(index),
+        StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+    segmentIndex = index;
+    position = 0;
+  }
+
+  private void compactQuietly(long sealedBefore) {
+    try {
+      compact(sealedBefore);
+    } catch (IOException | UncheckedIOException exception) {
+      log.error("Unable to take a snapshot of the write-ahead log [directory={}]", directory, exception);
+    }
+  }
+
+  private void compact(long sealedBefore) throws IOException {
+    synchronized (checkpointLock) {
+      long snapshotIndex = latestIndex(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX);
+      if (snapshotIndex >= sealedBefore) {
+        return;
+      }
+      // The sealed segments must be on disk before the snapshot replaces them
+      commit();
+      State state = snapshotIndex < 0 ? new State() : readSnapshot(snapshotPath(snapshotIndex));
+      List<Long> segmentIndexes = indexes(SEGMENT_PREFIX, SEGMENT_SUFFIX);
+      for (long index : segmentIndexes) {
+        if (index >= Math.max(snapshotIndex, 0) && index < sealedBefore) {
+          replay(segmentPath(index), state);
+        }
+      }
+      writeSnapshot(sealedBefore, state);
+
+      for (long index : segmentIndexes) {
+        if (index < sealedBefore) {
+          Files.deleteIfExists(segmentPath(index));
+        }
+      }
+      for (long index : indexes(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX)) {
+        if (index < sealedBefore) {
+          Files.deleteIfExists(snapshotPath(index));
+        }
+      }
+      log.info("Took a snapshot of the write-ahead log [directory={},processes={},maxPid={}]",
+          directory, state.processes.size(), state.maxPid);
+    }
+  }
+
+  private void replay(Path segmentPath, State state) throws IOException {
+    try (FileChannel segmentChannel = FileChannel.open(segmentPath, StandardOpenOption.READ)) {
+      MappedByteBuffer records = segmentChannel.map(FileChannel.MapMode.READ_ONLY, 0, segmentChannel.size());
+      for (int offset = 0; offset + RECORD_SIZE <= records.limit(); offset += RECORD_SIZE) {
+        long pid = records.getLong(offset);
+        int typeCode = records.get(offset + 8);
+        int priorityCode = records.get(offset + 9);
+        if (typeCode <= 0 || typeCode > TYPES.length || priorityCode < 0 || priorityCode >= PRIORITIES.length
+            || records.getInt(offset + 12) != checksum(pid, typeCode, priorityCode)) {
+          // The rest of the segment was never written
+          break;
+        }
+        if (TYPES[typeCode - 1] == JournalEventType.ADDED) {
+          state.processes.put(pid, PRIORITIES[priorityCode]);
+          state.maxPid = Math.max(state.maxPid, pid);
+        } else {
+          state.processes.remove(pid);
+        }
+      }
+    }
+  }
+
+  private void writeSnapshot(long index, State state) throws IOException {
+    Path temporaryPath = directory.resolve(SNAPSHOT_PREFIX + "tmp");
+    CRC32 crc = new CRC32();
+    try (OutputStream file = Files.newOutputStream(temporaryPath);
+        DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new CheckedOutputStream(file, crc)))) {
+      output.writeInt(SNAPSHOT_MAGIC);
+      output.writeLong(state.maxPid);
+      output.writeInt(state.processes.size());
+      for (Map.Entry<Long, PriorityType> process : state.processes.entrySet()) {
+        output.writeLong(process.getKey());
+        output.writeByte(process.getValue().ordinal());
+      }
+      output.flush();
+      new DataOutputStream(file).writeLong(crc.getValue());
+    }
+    try (FileChannel snapshotChannel = FileChannel.open(temporaryPath, StandardOpenOption.WRITE)) {
+      snapshotChannel.force(true);
+    }
+    Files.move(temporaryPath, snapshotPath(index), StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  private State readSnapshot(Path snapshotPath) throws IOException {
+    State state = new State();
+    CRC32 crc = new CRC32();
+    try (DataInputStream input = new DataInputStream(
+        new CheckedInputStream(new BufferedInputStream(Files.newInputStream(snapshotPath)), crc))) {
+      if (input.readInt() != SNAPSHOT_MAGIC) {
+        throw new IOException("Not a snapshot of the write-ahead log [file=" + snapshotPath + "]");
+      }
+      state.maxPid = input.readLong();
+      int count = input.readInt();
+      for (int i = 0; i < count; i++) {
+        state.processes.put(input.readLong(), PRIORITIES[input.readByte()]);
+      }
+      long expectedCrc = crc.getValue();
+      if (input.readLong() != expectedCrc) {
+        throw new IOException("Corrupted snapshot of the write-ahead log [file=" + snapshotPath + "]");
+      }
+    }
+    return state;
+  }
+
+  private long latestIndex(String prefix, String suffix) throws IOException {
+    List<Long> indexes = indexes(prefix, suffix);
+    return indexes.isEmpty() ? -1 : indexes.get(indexes.size() - 1);
+  }
+
+  private List<Long> indexes(String prefix, String suffix) throws IOException {
+    try (Stream<Path> files = Files.list(directory)) {
+      return files.map(file -> file.getFileName().toString())
+          .filter(name -> name.startsWith(prefix) && name.endsWith(suffix))
+          .map(name -> Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length())))
+          .sorted()
+          .collect(Collectors.toList());
+    }
+  }
+
+  private Path segmentPath(long index) {
+    return directory.resolve(String.format("%s%016d%s", SEGMENT_PREFIX, index, SEGMENT_SUFFIX));
+  }
+
+  private Path snapshotPath(long index) {
+    return directory.resolve(String.format("%s%016d%s", SNAPSHOT_PREFIX, index, SNAPSHOT_SUFFIX));
+  }
+
+  private static int checksum(long pid, int typeCode, int priorityCode) {
+    int checksum = Long.hashCode(pid * 0x9E3779B97F4A7C15L) * 31 + (typeCode << 8 | priorityCode);
+    return checksum == 0 ? 1 : checksum;
+  }
+
+  /**
+   * Live processes and highest pid rebuilt from a snapshot and the records after it.
+   */
+  private static final class State {
+    private final Map<Long, PriorityType> processes = new LinkedHashMap<>();
+    private long maxPid;
+  }
+}
@@ -0,0 +1,20 @@
+package com.company.taskmanager.pid;
+
+/**
+ * Hands out the process ids of a task manager, every pid at most once.
+ */
+public interface PidAllocator {
+
+  /**
+   * @return A pid never handed out before by this allocator, greater than the previous pids handed
+   *     out to the calling thread.
+   */
+  long next();
+
+  /**
+   * Makes the allocator continue after a pid handed out before, e.g. one recovered after a restart.
+   *
+   * @param pid the last pid handed out.
+   */
+  void continueAfter(long pid);
+}
@@ -0,0 +1,77 @@
+package com.company.taskmanager.pid.impl;
+
+import com.company.taskmanager.pid.PidAllocator;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hands out the same pids as a {@link PidSequence}, {@code first}, {@code first + stride}, and so
+ * on, without making parallel adds contend on a shared counter.
+ *
+ * <p>Every thread reserves a block of consecutive positions of the sequence from the global
+ * counter and hands them out locally, so the counter is touched once per block instead of once
+ * per pid. Blocks are reserved in ascending order, so the pids of a thread always grow, but the
+ * pids of different threads interleave by blocks instead of following the creation order. Positions
+ * of a block that its thread never uses are skipped. After {@link #continueAfter(long)} every
+ * thread skips the part of its block below the new start.
+ */
+public class BlockPidAllocator implements PidAllocator {
+
+  public static final int DEFAULT_BLOCK_SIZE = 1024;
+
+  private final long first;
+  private final int stride;
+  private final int blockSize;
+  private final AtomicLong nextBlock = new AtomicLong();
+  // Positions below it are never handed out, moved by continueAfter
+  private final AtomicLong lowestPosition = new AtomicLong();
+  private final ThreadLocal<Block> blocks = ThreadLocal.withInitial(Block::new);
+
+  public BlockPidAllocator() {
+    this(1, 1, DEFAULT_BLOCK_SIZE);
+  }
+
+  /**
+   * Creates the allocator of the pids {@code first + k * stride}.
+   *
+   * @param first the first pid, e.g. the shard number.
+   * @param stride the distance between pids, e.g. the number of shards, greater than zero.
+   * @param blockSize the number of pids reserved at once by a thread, greater than zero.
+   */
+  public BlockPidAllocator(long first, int stride, int blockSize) {
+    if (stride <= 0 || blockSize <= 0) {
+      throw new IllegalArgumentException(
+          "Stride and block size must be greater than zero [stride=" + stride + ",blockSize=" + blockSize + "]");
+    }
+    this.first = first;
+    this.stride = stride;
+    this.blockSize = blockSize;
+  }
+
+  public long next() {
+    Block block = blocks.get();
+    long lowest = lowestPosition.get();
+    if (block.next < lowest) {
+      block.next = Math.min(lowest, block.end);
+    }
+    if (block.next == block.end) {
+      long start = nextBlock.getAndAdd(blockSize);
+      block.next = start;
+      block.end = start + blockSize;
+    }
+    return first + block.next++ * stride;
+  }
+
+  public void continueAfter(long pid) {
+    long following = pid < first ? 0 : Math.floorDiv(pid - first, stride) + 1;
+    nextBlock.accumulateAndGet(following, Math::max);
+    lowestPosition.accumulateAndGet(following, Math::max);
+  }
+
+  /**
+   * The positions reserved by a thread and not handed out yet.
+   */
+  private static final class Block {
+    private long next;
+    private long end;
+  }
+}
@@ -0,0 +1,36 @@
+package com.company.taskmanager.pid.impl;
+
+import com.company.taskmanager.pid.PidAllocator;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hands out the process ids of a task manager: {@code first}, {@code first + stride}, and so on.
+ *
+ * <p>The shards of a sharded task manager share the stride and start at consecutive ids, so their
+ * pids never collide and the shard of a pid is derived from the pid itself.
+ */
+public class PidSequence implements PidAllocator {
+
+  private final long first;
+  private final int stride;
+  private final AtomicLong next;
+
+  public PidSequence() {
+    this(1, 1);
+  }
+
+  public PidSequence(long first, int stride) {
+    this.first = first;
+    this.stride = stride;
+    this.next = new AtomicLong(first);
+  }
+
+  public long next() {
+    return next.getAndAdd(stride);
+  }
+
+  public void continueAfter(long pid) {
+    long following = pid < first ? first : pid + stride - Math.floorMod(pid - first, stride);
+    next.accumulateAndGet(following, Math::max);
+  }
+}
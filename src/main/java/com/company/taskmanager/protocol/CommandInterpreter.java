@@ -0,0 +1,213 @@
+package com.company.taskmanager.protocol;
+
+import com.company.taskmanager.model.AddResult;
+import com.company.taskmanager.model.Deadline;
+import com.company.taskmanager.model.EvictionPolicy;
+import com.company.taskmanager.model.PriorityType;
+import com.company.taskmanager.model.Process;
+import com.company.taskmanager.model.ProcessPage;
+import com.company.taskmanager.model.ResourceMetric;
+import com.company.taskmanager.model.SortingType;
+import com.company.taskmanager.service.TaskManagerService;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Executes the commands of the task manager line protocol, one command per line with the
+ * arguments separated by spaces, and answers every command with a single line:
+ * <ul>
+ *   <li>{@code ADD <priority> [<ttlMillis>]} - {@code OK <pid>} or {@code ERR CAPACITY}.</li>
+ *   <li>{@code ADD_FIFO <priority> [<ttlMillis>]} - {@code OK <pid>}.</li>
+ *   <li>{@code ADD_PRIORITY <priority> [<ttlMillis>]} - {@code OK <pid>} or {@code SKIPPED}.</li>
+ *   <li>{@code ADD_ALL <policy> <priority>...} - {@code OK} followed by the pid of every process,
+ *       {@code -} for the ones not added.</li>
+ *   <li>{@code LIST <sorting> [<cursor> [<limit>]]} - {@code OK <nextCursor> <last>} followed by
+ *       {@code <pid>:<priority>} for every process of the page.</li>
+ *   <li>{@code TOP <metric> [<limit>]} - {@code OK} followed by {@code <pid>:<value>} for the
+ *       heaviest processes by the resource metric.</li>
+ *   <li>{@code KILL <pid>...} - {@code OK}.</li>
+ *   <li>{@code KILL_ALL [<priority>]} - {@code OK}.</li>
+ *   <li>{@code CAPACITY [<capacity>]} - {@code OK <capacity>}, changing it first if provided.</li>
+ *   <li>{@code PING} - {@code PONG}.</li>
+ * </ul>
+ * The process of an add with a time to live is killed once it expires. Priorities, policies,
+ * sortings and metrics are the names of their enums in any case. Invalid commands are answered
+ * with {@code ERR <reason>}.
+ */
+public class CommandInterpreter {
+  private static Logger log = LoggerFactory.getLogger(CommandInterpreter.class);
+
+  public static final int DEFAULT_LIST_LIMIT = 100;
+  public static final int MAX_LIST_LIMIT = 1000;
+
+  private static final Pattern SEPARATOR = Pattern.compile("\\s+");
+
+  private final TaskManagerService taskManager;
+
+  public CommandInterpreter(TaskManagerService taskManager) {
+    this.taskManager = Objects.requireNonNull(taskManager);
+  }
+
+  /**
+   * Executes a command.
+   *
+   * @param line the command line, without the line terminator.
+   * @return The response line, without the line terminator.
+   */
+  public String execute(String line) {
+    String trimmedLine = line.trim();
+    if (trimmedLine.isEmpty()) {
+      return "ERR EMPTY_COMMAND";
+    }
+    String[] tokens = SEPARATOR.split(trimmedLine);
+    try {
+      return execute(tokens);
+    } catch (IllegalArgumentException exception) {
+      return "ERR BAD_ARGUMENT " + exception.getMessage();
+    } catch (RuntimeException exception) {
+      // The message may span several lines, which would break the one line per response framing
+      log.warn("Command failed [command={}]", trimmedLine, exception);
+      return "ERR INTERNAL_ERROR " + exception.getClass().getSimpleName();
+    }
+  }
+
+  private String execute(String[] tokens) {
+    switch (tokens[0].toUpperCase(Locale.ROOT)) {
+      case "ADD":
+        checkArguments(tokens, 1, 2);
+        AddResult result = tokens.length == 3
+            ? taskManager.tryAdd(priority(tokens[1]), deadline(tokens[2]))
+            : taskManager.tryAdd(priority(tokens[1]));
+        return result.isAdded() ? "OK " + result.getProcess().getPid() : "ERR CAPACITY";
+      case "ADD_FIFO":
+        checkArguments(tokens, 1, 2);
+        Process fifoProcess = tokens.length == 3
+            ? taskManager.addToFifo(priority(tokens[1]), deadline(tokens[2]))
+            : taskManager.addToFifo(priority(tokens[1]));
+        return "OK " + fifoProcess.getPid();
+      case "ADD_PRIORITY":
+        checkArguments(tokens, 1, 2);
+        Process process = tokens.length == 3
+            ? taskManager.addWithPriority(priority(tokens[1]), deadline(tokens[2]))
+            : taskManager.addWithPriority(priority(tokens[1]));
+        return process == null ? "SKIPPED" : "OK " + process.getPid();
+      case "ADD_ALL":
+        return addAll(tokens);
+      case "LIST":
+        return list(tokens);
+      case "TOP":
+        return top(tokens);
+      case "KILL":
+        checkArguments(tokens, 1, Integer.MAX_VALUE);
+        List<Long> pids = new ArrayList<>(tokens.length - 1);
+        for (int i = 1; i < tokens.length; i++) {
+          pids.add(number(tokens[i]));
+        }
+        if (pids.size() == 1) {
+          taskManager.kill(pids.get(0));
+        } else {
+          taskManager.kill(pids);
+        }
+        return "OK";
+      case "KILL_ALL":
+        checkArguments(tokens, 0, 1);
+        if (tokens.length == 2) {
+          taskManager.killAll(priority(tokens[1]));
+        } else {
+          taskManager.killAll();
+        }
+        return "OK";
+      case "CAPACITY":
+        checkArguments(tokens, 0, 1);
+        if (tokens.length == 2) {
+          taskManager.setCapacity(capacity(tokens[1]));
+        }
+        return "OK " + taskManager.getCapacity();
+      case "PING":
+        return "PONG";
+      default:
+        return "ERR UNKNOWN_COMMAND " + tokens[0];
+    }
+  }
+
+  private String addAll(String[] tokens) {
+    checkArguments(tokens, 2, Integer.MAX_VALUE);
+    EvictionPolicy policy = EvictionPolicy.valueOf(tokens[1].toUpperCase(Locale.ROOT));
+    List<PriorityType> priorities = new ArrayList<>(tokens.length - 2);
+    for (int i = 2; i < tokens.length; i++) {
+      priorities.add(priority(tokens[i]));
+    }
+    StringBuilder response = new StringBuilder("OK");
+    for (Process process : taskManager.addAll(priorities, policy)) {
+      response.append(' ');
+      if (process == null) {
+        response.append('-');
+      } else {
+        response.append(process.getPid());
+      }
+    }
+    return response.toString();
+  }
+
+  private String list(String[] tokens) {
+    checkArguments(tokens, 1, 3);
+    SortingType sortingType = SortingType.valueOf(tokens[1].toUpperCase(Locale.ROOT));
+    long cursor = tokens.length > 2 ? number(tokens[2]) : ProcessPage.FIRST_CURSOR;
+    int limit = tokens.length > 3 ? (int) Math.min(number(tokens[3]), MAX_LIST_LIMIT) : DEFAULT_LIST_LIMIT;
+    ProcessPage page = taskManager.listPage(sortingType, cursor, limit);
+
+    StringBuilder response = new StringBuilder("OK ").append(page.getNextCursor()).append(' ').append(page.isLast());
+    for (Process process : page.getProcesses()) {
+      response.append(' ').append(process.getPid()).append(':').append(process.getPriority().name());
+    }
+    return response.toString();
+  }
+
+  private String top(String[] tokens) {
+    checkArguments(tokens, 1, 2);
+    ResourceMetric metric = ResourceMetric.valueOf(tokens[1].toUpperCase(Locale.ROOT));
+    int limit = tokens.length > 2 ? (int) Math.min(number(tokens[2]), MAX_LIST_LIMIT) : DEFAULT_LIST_LIMIT;
+    long nowNanos = System.nanoTime();
+
+    StringBuilder response = new StringBuilder("OK");
+    for (Process process : taskManager.top(limit, metric)) {
+      response.append(' ').append(process.getPid()).append(':').append(metric.measure(process, nowNanos));
+    }
+    return response.toString();
+  }
+
+  private static void checkArguments(String[] tokens, int min, int max) {
+    int arguments = tokens.length - 1;
+    if (arguments < min || arguments > max) {
+      throw new IllegalArgumentException("wrong number of arguments for " + tokens[0].toUpperCase(Locale.ROOT));
+    }
+  }
+
+  private static PriorityType priority(String token) {
+    return PriorityType.valueOf(token.toUpperCase(Locale.ROOT));
+  }
+
+  private static int capacity(String token) {
+    long capacity = number(token);
+    // Checked before narrowing, so a capacity over an int is not silently wrapped around
+    if (capacity < 1 || capacity > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("capacity out of range [capacity=" + token + "]");
+    }
+    return (int) capacity;
+  }
+
+  private static Deadline deadline(String token) {
+    return Deadline.after(number(token), TimeUnit.MILLISECONDS);
+  }
+
+  private static long number(String token) {
+    // NumberFormatException is an IllegalArgumentException
+    return Long.parseLong(token);
+  }
+}
@@ -0,0 +1,61 @@
+package com.company.taskmanager.protocol;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Objects;
+
+/**
+ * Executes a stream of commands of the {@link CommandInterpreter} line protocol, such as a file or
+ * the standard input of a headless task manager, and writes a response line for every command.
+ *
+ * <p>Blank lines and lines starting with {@code #} are skipped, so workload files can be
+ * commented. Responses are only flushed once every command already available has been executed,
+ * so a high rate stream is answered with a few large writes while a client waiting for its
+ * response is never left waiting.
+ */
+public class CommandStreamProcessor {
+
+  public static final String COMMENT_PREFIX = "#";
+
+  private final CommandInterpreter interpreter;
+
+  public CommandStreamProcessor(CommandInterpreter interpreter) {
+    this.interpreter = Objects.requireNonNull(interpreter);
+  }
+
+  /**
+   * Executes every command until the end of the stream.
+   *
+   * @param commands the stream of commands, one per line.
+   * @param responses where the responses are written, one per line in the order of the commands.
+   * @return The number of executed commands.
+   * @throws IOException in case the commands can not be read or the responses can not be written.
+   */
+  public long process(BufferedReader commands, Writer responses) throws IOException {
+    long executed = 0;
+    String line;
+    while ((line = commands.readLine()) != null) {
+      if (!isCommand(line)) {
+        continue;
+      }
+      responses.write(interpreter.execute(line));
+      responses.write('\n');
+      executed++;
+      if (!commands.ready()) {
+        responses.flush();
+      }
+    }
+    responses.flush();
+    return executed;
+  }
+
+  /**
+   * @param line a line of a command stream.
+   * @return True in case the line is a command, false if it is blank or a comment.
+   */
+  public static boolean isCommand(String line) {
+    String trimmedLine = line.trim();
+    return !trimmedLine.isEmpty() && !trimmedLine.startsWith(COMMENT_PREFIX);
+  }
+}
@@ -0,0 +1,170 @@
+package com.company.taskmanager.registry;
+
+import com.company.taskmanager.model.PriorityType;
+import com.company.taskmanager.model.Process;
+import com.company.taskmanager.model.ProcessPage;
+import com.company.taskmanager.model.SortingType;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * Holds the processes managed by the task manager, indexed by pid, by priority and by insertion
+ * order.
+ */
+public interface ProcessRegistry {
+
+  /**
+   * Registers a new process, which becomes the newest one in insertion order.
+   *
+   * @param process {@link Process} the process to register.
+   * @throws IllegalStateException in case a process with the same pid is already registered.
+   */
+  void add(Process process);
+
+  /**
+   * Registers a batch of new processes, which become the newest ones in the list order.
+   *
+   * @param processes List of {@link Process} to register.
+   * @throws IllegalStateException in case a process with the same pid is already registered.
+   */
+  void addAll(List<Process> processes);
+
+  /**
+   * Finds a registered process.
+   *
+   * @param pid Process id.
+   * @return {@link Process} The registered process, or empty if the pid is unknown.
+   */
+  Optional<Process> find(long pid);
+
+  /**
+   * Unregisters a specific process.
+   *
+   * @param pid Process id.
+   * @return {@link Process} The removed process, or empty if the pid is unknown.
+   */
+  Optional<Process> remove(long pid);
+
+  /**
+   * Unregisters the oldest process (First-In, First-Out).
+   *
+   * @return {@link Process} The removed process, or empty if the registry is empty.
+   */
+  Optional<Process> removeOldest();
+
+  /**
+   * Unregisters the oldest process with a specific priority.
+   *
+   * @param priority {@link PriorityType} the priority of the process to remove.
+   * @return {@link Process} The removed process, or empty if there is no process with that
+   *     priority.
+   */
+  Optional<Process> removeOldest(PriorityType priority);
+
+  /**
+   * Unregisters the oldest process among the ones with the lowest priority.
+   *
+   * @return {@link Process} The removed process, or empty if the registry is empty.
+   */
+  Optional<Process> removeLowestPriority();
+
+  /**
+   * Unregisters the oldest process among the ones with the lowest priority, provided that
+   * priority is lower than the given one.
+   *
+   * @param priority {@link PriorityType} the priority the removed process must be lower than.
+   * @return {@link Process} The removed process, or empty if there is no process with a lower
+   *     priority.
+   */
+  Optional<Process> removeLowestPriority(PriorityType priority);
+
+  /**
+   * Unregisters all the processes with a specific priority.
+   *
+   * @param priority {@link PriorityType} the priority of the processes to remove.
+   * @return List with the removed processes in insertion order.
+   */
+  List<Process> removeAll(PriorityType priority);
+
+  /**
+   * Unregisters a batch of processes, unknown pids are ignored.
+   *
+   * @param pids Collection with the ids of the processes to remove.
+   * @return List with the removed processes.
+   */
+  List<Process> removeAll(Collection<Long> pids);
+
+  /**
+   * Unregisters all the processes.
+   *
+   * @return List with the removed processes in insertion order.
+   */
+  List<Process> removeAll();
+
+  /**
+   * Lists the registered processes following one of the orderings maintained by the registry.
+   *
+   * @param type {@link SortingType} the ordering of the processes, priorities are listed in
+   *     ascending order and processes with the same priority in insertion order.
+   * @return Immutable list with a snapshot of the registered processes.
+   */
+  List<Process> list(SortingType type);
+
+  /**
+   * Lists a page of the registered processes following one of the orderings maintained by the
+   * registry.
+   *
+   * @param type {@link SortingType} the ordering of the processes.
+   * @param cursor the position after which the page starts, {@link ProcessPage#FIRST_CURSOR} for
+   *     the first page or the next cursor of the previous page.
+   * @param limit the maximum number of processes of the page.
+   * @return {@link ProcessPage} The page of processes.
+   */
+  ProcessPage list(SortingType type, long cursor, int limit);
+
+  /**
+   * Streams the registered processes following one of the orderings maintained by the registry.
+   * The stream is lazy and weakly consistent: it reflects some of the changes made while it is
+   * consumed.
+   *
+   * @param type {@link SortingType} the ordering of the processes.
+   * @return Stream of the registered processes.
+   */
+  Stream<Process> stream(SortingType type);
+
+  /**
+   * Lists a page of the registered processes in insertion order, keyed by their insertion sequence,
+   * so the orderings of registries that share their insertion sequences can be merged.
+   *
+   * @param priority {@link PriorityType} the priority of the processes, null for every priority.
+   * @param sequence the insertion sequence after which the page starts, {@link
+   *     ProcessPage#FIRST_CURSOR} for the first page.
+   * @param limit the maximum number of processes of the page, greater than zero.
+   * @return Immutable list with the insertion sequences and the processes of the page.
+   */
+  List<Map.Entry<Long, Process>> listBySequence(PriorityType priority, long sequence, int limit);
+
+  /**
+   * Lists the registered processes with a specific priority.
+   *
+   * @param priority {@link PriorityType} the priority of the processes to list.
+   * @return Immutable list with a snapshot of the matching processes in insertion order.
+   */
+  List<Process> list(PriorityType priority);
+
+  /**
+   * @return The number of registered processes.
+   */
+  int size();
+
+  /**
+   * Returns a counter increased by every change of the registered processes, so snapshots built
+   * for a version are valid as long as the version does not change.
+   *
+   * @return The current version of the registry.
+   */
+  long getVersion();
+}
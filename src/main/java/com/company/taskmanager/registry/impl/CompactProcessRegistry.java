@@ -0,0 +1,678 @@
+package com.company.taskmanager.registry.impl;
+
+import com.company.taskmanager.model.PriorityType;
+import com.company.taskmanager.model.Process;
+import com.company.taskmanager.model.ProcessPage;
+import com.company.taskmanager.model.SortingType;
+import com.company.taskmanager.registry.ProcessRegistry;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Registry that keeps the processes in parallel primitive arrays, a struct of arrays, for task
+ * managers holding millions of processes.
+ *
+ * <p>Every process takes a slot, in insertion order, holding its pid, insertion sequence, priority
+ * and a reference to the process, plus an entry of an open addressing pid index and the slot
+ * number in the slots of its priority. There is no node, entry nor boxed key per process, so the
+ * registry costs about 45 bytes per process instead of the few hundred of {@link
+ * ConcurrentProcessRegistry}, listing is a tight scan over the arrays and listing or paging a
+ * priority only visits the slots of that priority. Removed slots are skipped until they are
+ * compacted when the arrays grow.
+ *
+ * <p>Changes take an exclusive lock and reads a shared one, so it trades the write concurrency of
+ * {@link ConcurrentProcessRegistry} for memory. Listing by id needs no sorting as long as the pids
+ * are registered in ascending order, which is the case for the pids of a {@link
+ * com.company.taskmanager.pid.impl.PidSequence}. Otherwise, e.g. with the interleaved blocks of a
+ * {@link com.company.taskmanager.pid.impl.BlockPidAllocator}, listing by id sorts the pids once
+ * into a view kept until the next add, so paging through every process doesn't sort every page.
+ */
+public class CompactProcessRegistry implements ProcessRegistry {
+
+  private static final PriorityType[] PRIORITIES_BY_PRECEDENCE = PriorityType.byPrecedence().toArray(new PriorityType[0]);
+
+  private static final int PRIORITY_CURSOR_SHIFT = 56;
+  private static final long PRIORITY_CURSOR_SEQUENCE_MASK = (1L << PRIORITY_CURSOR_SHIFT) - 1;
+  private static final int INITIAL_CAPACITY = 64;
+  private static final int STREAM_PAGE_SIZE = 256;
+  private static final long EMPTY = Long.MIN_VALUE;
+  private static final byte REMOVED = -1;
+
+  private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+  private final AtomicLong version = new AtomicLong();
+  private final AtomicLong insertionSeqNumber;
+
+  // Slots [head, tail) in insertion order, removed slots keep their pid and sequence so both stay sorted
+  private long[] pids = new long[INITIAL_CAPACITY];
+  private long[] sequences = new long[INITIAL_CAPACITY];
+  private byte[] priorities = new byte[INITIAL_CAPACITY];
+  private Process[] processes = new Process[INITIAL_CAPACITY];
+  private int head;
+  private int tail;
+  private volatile int live;
+  private boolean pidsAscending = true;
+  // Pids sorted on demand while they are not ascending, dropped by any add, removed pids are skipped
+  private volatile long[] sortedPids;
+  // Slots of every priority in insertion order, removed slots are dropped when the arrays are relocated
+  private final int[][] prioritySlots = new int[PriorityType.values().length][];
+  private final int[] prioritySlotCounts = new int[PriorityType.values().length];
+  // The oldest slot of every priority is at or after its start in the slots of the priority
+  private final int[] priorityStarts = new int[PriorityType.values().length];
+
+  // Open addressing pid index with linear probing
+  private long[] indexPids = newIndex(INITIAL_CAPACITY * 2);
+  private int[] indexSlots = new int[INITIAL_CAPACITY * 2];
+
+  public CompactProcessRegistry() {
+    this(new AtomicLong());
+  }
+
+  /**
+   * Creates a registry drawing the insertion sequences of its processes from a counter that may be
+   * shared with other registries, so their insertion orders can be merged into a single one.
+   *
+   * @param insertionSeqNumber the counter of the insertion sequences.
+   */
+  public CompactProcessRegistry(AtomicLong insertionSeqNumber) {
+    this.insertionSeqNumber = Objects.requireNonNull(insertionSeqNumber);
+    for (int ordinal = 0; ordinal < prioritySlots.length; ordinal++) {
+      prioritySlots[ordinal] = new int[INITIAL_CAPACITY];
+    }
+  }
+
+  public void add(Process process) {
+    Objects.requireNonNull(process);
+    lock.writeLock().lock();
+    try {
+      append(process);
+      version.incrementAndGet();
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  public void addAll(List<Process> processes) {
+    processes.forEach(Objects::requireNonNull);
+    lock.writeLock().lock();
+    try {
+      processes.forEach(this::append);
+      version.incrementAndGet();
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  public Optional<Process> find(long pid) {
+    lock.readLock().lock();
+    try {
+      int slot = indexFind(pid);
+      return slot < 0 ? Optional.empty() : Optional.of(processes[slot]);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  public Optional<Process> remove(long pid) {
+    lock.writeLock().lock();
+    try {
+      int slot = indexFind(pid);
+      return slot < 0 ? Optional.empty() : Optional.of(unlink(slot));
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  public Optional<Process> removeOldest() {
+    lock.writeLock().lock();
+    try {
+      return live == 0 ? Optional.empty() : Optional.of(unlink(head));
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  public Optional<Process> removeOldest(PriorityType priority) {
+    Objects.requireNonNull(priority);
+    lock.writeLock().lock();
+    try {
+      int slot = oldestSlot(priority);
+      return slot < 0 ? Optional.empty() : Optional.of(unlink(slot));
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  public Optional<Process> removeLowestPriority() {
+    return removeLowestPriority(Integer.MAX_VALUE);
+  }
+
+  public Optional<Process> removeLowestPriority(PriorityType priority) {
+    Objects.requireNonNull(priority);
+    return removeLowestPriority(priority.getPrecedence());
+  }
+
+  public List<Process> removeAll(PriorityType priority) {
+    Objects.requireNonNull(priority);
+    lock.writeLock().lock();
+    try {
+      List<Process> removedProcesses = new ArrayList<>();
+      int ordinal = priority.ordinal();
+      int[] slots = prioritySlots[ordinal];
+      // Removing the last process resets the slot counts, which ends the walk
+      for (int position = priorityStarts[ordinal]; position < prioritySlotCounts[ordinal]; position++) {
+        if (priorities[slots[position]] == ordinal) {
+          removedProcesses.add(unlink(slots[position]));
+        }
+      }
+      return removedProcesses;
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  public List<Process> removeAll(Collection<Long> pids) {
+    lock.writeLock().lock();
+    try {
+      List<Process> removedProcesses = new ArrayList<>(pids.size());
+      for (long pid : pids) {
+        int slot = indexFind(pid);
+        if (slot >= 0) {
+          removedProcesses.add(unlink(slot));
+        }
+      }
+      return removedProcesses;
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  public List<Process> removeAll() {
+    lock.writeLock().lock();
+    try {
+      List<Process> removedProcesses = new ArrayList<>(live);
+      for (int slot = head; slot < tail; slot++) {
+        if (processes[slot] != null) {
+          removedProcesses.add(processes[slot]);
+        }
+      }
+      Arrays.fill(processes, head, tail, null);
+      Arrays.fill(indexPids, EMPTY);
+      live = 0;
+      reset();
+      version.incrementAndGet();
+      return removedProcesses;
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  public List<Process> list(SortingType type) {
+    Objects.requireNonNull(type);
+    lock.readLock().lock();
+    try {
+      List<Process> listedProcesses = new ArrayList<>(live);
+      if (SortingType.PRIORITY == type) {
+        for (PriorityType priority : PRIORITIES_BY_PRECEDENCE) {
+          collect(priority, listedProcesses);
+        }
+      } else if (SortingType.ID == type && !pidsAscending) {
+        for (long pid : sortedPids()) {
+          int slot = indexFind(pid);
+          if (slot >= 0) {
+            listedProcesses.add(processes[slot]);
+          }
+        }
+      } else {
+        for (int slot = head; slot < tail; slot++) {
+          if (processes[slot] != null) {
+            listedProcesses.add(processes[slot]);
+          }
+        }
+      }
+      return Collections.unmodifiableList(listedProcesses);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  public ProcessPage list(SortingType type, long cursor, int limit) {
+    Objects.requireNonNull(type);
+    if (limit <= 0) {
+      throw new IllegalArgumentException("Page limit must be greater than zero [limit=" + limit + "]");
+    }
+    lock.readLock().lock();
+    try {
+      List<Process> pageProcesses = new ArrayList<>(Math.min(limit, live));
+      if (SortingType.PRIORITY == type) {
+        // The priority position is the bucket index in the highest bits and the insertion sequence in the rest
+        int bucket = (int) (cursor >>> PRIORITY_CURSOR_SHIFT);
+        long sequence = cursor & PRIORITY_CURSOR_SEQUENCE_MASK;
+        for (; bucket < PRIORITIES_BY_PRECEDENCE.length; bucket++) {
+          int ordinal = PRIORITIES_BY_PRECEDENCE[bucket].ordinal();
+          int[] slots = prioritySlots[ordinal];
+          for (int position = firstPositionAfter(ordinal, sequence); position < prioritySlotCounts[ordinal]; position++) {
+            int slot = slots[position];
+            if (priorities[slot] != ordinal) {
+              continue;
+            }
+            if (pageProcesses.size() == limit) {
+              return new ProcessPage(Collections.unmodifiableList(pageProcesses), cursor, false);
+            }
+            pageProcesses.add(processes[slot]);
+            cursor = ((long) bucket << PRIORITY_CURSOR_SHIFT) | sequences[slot];
+          }
+          sequence = 0;
+        }
+        return new ProcessPage(Collections.unmodifiableList(pageProcesses), cursor, true);
+      }
+
+      if (SortingType.ID == type && !pidsAscending) {
+        long[] view = sortedPids();
+        int position = Arrays.binarySearch(view, cursor);
+        for (position = position < 0 ? -position - 1 : position + 1; position < view.length; position++) {
+          int slot = indexFind(view[position]);
+          if (slot < 0) {
+            continue;
+          }
+          if (pageProcesses.size() == limit) {
+            return new ProcessPage(Collections.unmodifiableList(pageProcesses), cursor, false);
+          }
+          pageProcesses.add(processes[slot]);
+          cursor = view[position];
+        }
+        return new ProcessPage(Collections.unmodifiableList(pageProcesses), cursor, true);
+      }
+
+      // Slots are sorted by sequence, and by pid while the pids are ascending
+      long[] keys = SortingType.ID == type ? pids : sequences;
+      for (int slot = firstSlotAfter(keys, cursor); slot < tail; slot++) {
+        if (processes[slot] == null) {
+          continue;
+        }
+        if (pageProcesses.size() == limit) {
+          return new ProcessPage(Collections.unmodifiableList(pageProcesses), cursor, false);
+        }
+        pageProcesses.add(processes[slot]);
+        cursor = keys[slot];
+      }
+      return new ProcessPage(Collections.unmodifiableList(pageProcesses), cursor, true);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Streams the processes page by page, so the stream never copies the whole registry.
+   */
+  public Stream<Process> stream(SortingType type) {
+    Objects.requireNonNull(type);
+    return StreamSupport.stream(Spliterators.spliteratorUnknownSize(
+        new PageIterator(type), Spliterator.ORDERED | Spliterator.NONNULL), false);
+  }
+
+  public List<Map.Entry<Long, Process>> listBySequence(PriorityType priority, long sequence, int limit) {
+    if (limit <= 0) {
+      throw new IllegalArgumentException("Page limit must be greater than zero [limit=" + limit + "]");
+    }
+    lock.readLock().lock();
+    try {
+      List<Map.Entry<Long, Process>> entries = new ArrayList<>(Math.min(limit, live));
+      if (priority == null) {
+        for (int slot = firstSlotAfter(sequences, sequence); slot < tail && entries.size() < limit; slot++) {
+          if (processes[slot] != null) {
+            entries.add(Map.entry(sequences[slot], processes[slot]));
+          }
+        }
+        return Collections.unmodifiableList(entries);
+      }
+      int ordinal = priority.ordinal();
+      int[] slots = prioritySlots[ordinal];
+      for (int position = firstPositionAfter(ordinal, sequence);
+          position < prioritySlotCounts[ordinal] && entries.size() < limit; position++) {
+        int slot = slots[position];
+        if (priorities[slot] == ordinal) {
+          entries.add(Map.entry(sequences[slot], processes[slot]));
+        }
+      }
+      return Collections.unmodifiableList(entries);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  public List<Process> list(PriorityType priority) {
+    Objects.requireNonNull(priority);
+    lock.readLock().lock();
+    try {
+      List<Process> listedProcesses = new ArrayList<>();
+      collect(priority, listedProcesses);
+      return Collections.unmodifiableList(listedProcesses);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  public int size() {
+    return live;
+  }
+
+  public long getVersion() {
+    return version.get();
+  }
+
+  private Optional<Process> removeLowestPriority(int precedenceBound) {
+    lock.writeLock().lock();
+    try {
+      for (PriorityType priority : PRIORITIES_BY_PRECEDENCE) {
+        if (priority.getPrecedence() >= precedenceBound) {
+          break;
+        }
+        int slot = oldestSlot(priority);
+        if (slot >= 0) {
+          return Optional.of(unlink(slot));
+        }
+      }
+      return Optional.empty();
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  private void append(Process process) {
+    long pid = process.getPid();
+    if (pid == EMPTY) {
+      throw new IllegalArgumentException("Unsupported pid [pid=" + pid + "]");
+    }
+    if (indexFind(pid) >= 0) {
+      throw new IllegalStateException("Process already registered [pid=" + pid + "]");
+    }
+    if (tail == pids.length) {
+      // Compacts in place when removed slots are the majority, otherwise doubles the arrays
+      relocate(tail - head - live > live ? pids.length : pids.length * 2);
+    }
+    int slot = tail++;
+    pidsAscending &= slot == head || pid > pids[slot - 1];
+    if (sortedPids != null) {
+      sortedPids = null;
+    }
+    pids[slot] = pid;
+    // Drawn under the write lock, so the sequences of the slots stay ascending even when shared
+    sequences[slot] = insertionSeqNumber.incrementAndGet();
+    priorities[slot] = (byte) process.getPriority().ordinal();
+    processes[slot] = process;
+    live++;
+    indexPut(pid, slot);
+    appendPrioritySlot(slot);
+  }
+
+  private void appendPrioritySlot(int slot) {
+    int ordinal = priorities[slot];
+    int count = prioritySlotCounts[ordinal];
+    if (count == prioritySlots[ordinal].length) {
+      prioritySlots[ordinal] = Arrays.copyOf(prioritySlots[ordinal], count * 2);
+    }
+    prioritySlots[ordinal][count] = slot;
+    prioritySlotCounts[ordinal] = count + 1;
+  }
+
+  private Process unlink(int slot) {
+    Process process = processes[slot];
+    indexRemove(pids[slot]);
+    processes[slot] = null;
+    priorities[slot] = REMOVED;
+    live--;
+    version.incrementAndGet();
+    if (live == 0) {
+      reset();
+    } else {
+      while (processes[head] == null) {
+        head++;
+      }
+    }
+    return process;
+  }
+
+  private void reset() {
+    head = 0;
+    tail = 0;
+    pidsAscending = true;
+    sortedPids = null;
+    Arrays.fill(prioritySlotCounts, 0);
+    Arrays.fill(priorityStarts, 0);
+  }
+
+  /**
+   * Moves the registered processes to the start of arrays of the given length, in order.
+   */
+  private void relocate(int length) {
+    long[] newPids = new long[length];
+    long[] newSequences = new long[length];
+    byte[] newPriorities = new byte[length];
+    Process[] newProcesses = new Process[length];
+    int newTail = 0;
+    boolean ascending = true;
+    for (int slot = head; slot < tail; slot++) {
+      if (processes[slot] != null) {
+        ascending &= newTail == 0 || pids[slot] > newPids[newTail - 1];
+        newPids[newTail] = pids[slot];
+        newSequences[newTail] = sequences[slot];
+        newPriorities[newTail] = priorities[slot];
+        newProcesses[newTail] = processes[slot];
+        newTail++;
+      }
+    }
+    pids = newPids;
+    sequences = newSequences;
+    priorities = newPriorities;
+    processes = newProcesses;
+    head = 0;
+    tail = newTail;
+    pidsAscending = ascending;
+    // Drops the removed pids kept by the sorted view
+    sortedPids = null;
+    Arrays.fill(prioritySlotCounts, 0);
+    Arrays.fill(priorityStarts, 0);
+
+    indexPids = newIndex(Math.max(indexPids.length, Integer.highestOneBit(Math.max(1, live)) << 2));
+    indexSlots = new int[indexPids.length];
+    for (int slot = 0; slot < tail; slot++) {
+      indexPut(pids[slot], slot);
+      appendPrioritySlot(slot);
+    }
+  }
+
+  private int oldestSlot(PriorityType priority) {
+    int ordinal = priority.ordinal();
+    int[] slots = prioritySlots[ordinal];
+    int position = priorityStarts[ordinal];
+    while (position < prioritySlotCounts[ordinal] && priorities[slots[position]] != ordinal) {
+      position++;
+    }
+    priorityStarts[ordinal] = position;
+    return position < prioritySlotCounts[ordinal] ? slots[position] : -1;
+  }
+
+  private void collect(PriorityType priority, List<Process> collectedProcesses) {
+    int ordinal = priority.ordinal();
+    int[] slots = prioritySlots[ordinal];
+    for (int position = priorityStarts[ordinal]; position < prioritySlotCounts[ordinal]; position++) {
+      if (priorities[slots[position]] == ordinal) {
+        collectedProcesses.add(processes[slots[position]]);
+      }
+    }
+  }
+
+  /**
+   * @return The first position in the slots of the priority whose sequence is greater than the given one.
+   */
+  private int firstPositionAfter(int ordinal, long sequence) {
+    int[] slots = prioritySlots[ordinal];
+    int low = priorityStarts[ordinal];
+    int high = prioritySlotCounts[ordinal];
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (sequences[slots[middle]] <= sequence) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Returns the sorted view of the pids, sorting them if no add happened since the last time. Only
+   * adds, under the write lock, drop the view, so readers sorting at once build the same one.
+   *
+   * @return The registered pids sorted, plus the ones removed since they were sorted.
+   */
+  private long[] sortedPids() {
+    long[] view = sortedPids;
+    if (view == null) {
+      view = new long[live];
+      int count = 0;
+      for (int slot = head; slot < tail; slot++) {
+        if (processes[slot] != null) {
+          view[count++] = pids[slot];
+        }
+      }
+      Arrays.sort(view, 0, count);
+      view = count == view.length ? view : Arrays.copyOf(view, count);
+      sortedPids = view;
+    }
+    return view;
+  }
+
+  /**
+   * @return The first slot whose key, ascending over the slots, is greater than the given one.
+   */
+  private int firstSlotAfter(long[] keys, long key) {
+    int low = head;
+    int high = tail;
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (keys[middle] <= key) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return low;
+  }
+
+  private int indexFind(long pid) {
+    int mask = indexPids.length - 1;
+    for (int position = hash(pid) & mask; ; position = (position + 1) & mask) {
+      long indexedPid = indexPids[position];
+      if (indexedPid == EMPTY) {
+        return -1;
+      } else if (indexedPid == pid) {
+        return indexSlots[position];
+      }
+    }
+  }
+
+  private void indexPut(long pid, int slot) {
+    if (live * 2 > indexPids.length) {
+      long[] oldPids = indexPids;
+      int[] oldSlots = indexSlots;
+      indexPids = newIndex(oldPids.length * 2);
+      indexSlots = new int[indexPids.length];
+      for (int position = 0; position < oldPids.length; position++) {
+        if (oldPids[position] != EMPTY) {
+          indexPut(oldPids[position], oldSlots[position]);
+        }
+      }
+    }
+    int mask = indexPids.length - 1;
+    int position = hash(pid) & mask;
+    while (indexPids[position] != EMPTY) {
+      position = (position + 1) & mask;
+    }
+    indexPids[position] = pid;
+    indexSlots[position] = slot;
+  }
+
+  private void indexRemove(long pid) {
+    int mask = indexPids.length - 1;
+    int position = hash(pid) & mask;
+    while (indexPids[position] != pid) {
+      position = (position + 1) & mask;
+    }
+    // Shifts back the following entries of the probe sequence instead of leaving a tombstone
+    int next = position;
+    while (true) {
+      next = (next + 1) & mask;
+      long nextPid = indexPids[next];
+      if (nextPid == EMPTY) {
+        break;
+      }
+      int home = hash(nextPid) & mask;
+      boolean movable = position <= next ? home <= position || home > next : home <= position && home > next;
+      if (movable) {
+        indexPids[position] = nextPid;
+        indexSlots[position] = indexSlots[next];
+        position = next;
+      }
+    }
+    indexPids[position] = EMPTY;
+  }
+
+  private static int hash(long pid) {
+    int hash = Long.hashCode(pid) * 0x9E3779B9;
+    return hash ^ (hash >>> 16);
+  }
+
+  private static long[] newIndex(int length) {
+    long[] index = new long[length];
+    Arrays.fill(index, EMPTY);
+    return index;
+  }
+
+  /**
+   * Walks an ordering page by page, resuming after the cursor of the previous page.
+   */
+  private final class PageIterator implements Iterator<Process> {
+    private final SortingType type;
+    private Iterator<Process> page = Collections.emptyIterator();
+    private long cursor = ProcessPage.FIRST_CURSOR;
+    private boolean last;
+
+    private PageIterator(SortingType type) {
+      this.type = type;
+    }
+
+    @Override
+    public boolean hasNext() {
+      while (!page.hasNext() && !last) {
+        ProcessPage nextPage = list(type, cursor, STREAM_PAGE_SIZE);
+        page = nextPage.getProcesses().iterator();
+        cursor = nextPage.getNextCursor();
+        last = nextPage.isLast();
+      }
+      return page.hasNext();
+    }
+
+    @Override
+    public Process next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      return page.next();
+    }
+  }
+}
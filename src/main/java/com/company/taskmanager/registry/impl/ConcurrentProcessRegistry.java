@@ -0,0 +1,266 @@
+package com.company.taskmanager.registry.impl;
+
+import com.company.taskmanager.model.PriorityType;
+import com.company.taskmanager.model.Process;
+import com.company.taskmanager.model.ProcessPage;
+import com.company.taskmanager.model.SortingType;
+import com.company.taskmanager.registry.ProcessRegistry;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Registry backed by a {@link ConcurrentHashMap} pid index plus ordered skip lists: one by pid and
+ * one by insertion order for the whole table, and one by insertion order per priority.
+ *
+ * <p>The per priority skip lists are the eviction victim index: the lowest priority oldest process
+ * is the first entry of the first non empty bucket in precedence order.
+ *
+ * <p>A process is indexed inside the hash map bin lock of its pid, so a removal of the same pid can
+ * never observe a half indexed process. Removals unindex outside of that lock, which means ordered
+ * views are weakly consistent with the pid index for a short time.
+ */
+public class ConcurrentProcessRegistry implements ProcessRegistry {
+
+  private static final PriorityType[] PRIORITIES_BY_PRECEDENCE = PriorityType.byPrecedence().toArray(new PriorityType[0]);
+
+  private static final int PRIORITY_CURSOR_SHIFT = 56;
+  private static final long PRIORITY_CURSOR_SEQUENCE_MASK = (1L << PRIORITY_CURSOR_SHIFT) - 1;
+
+  private final Map<Long, Entry> processesByPid = new ConcurrentHashMap<>();
+  private final ConcurrentSkipListMap<Long, Process> insertionOrder = new ConcurrentSkipListMap<>();
+  private final ConcurrentSkipListMap<Long, Process> pidOrder = new ConcurrentSkipListMap<>();
+  private final Map<PriorityType, ConcurrentSkipListMap<Long, Process>> priorityBuckets =
+      new EnumMap<>(PriorityType.class);
+  private final AtomicLong insertionSeqNumber;
+  private final AtomicLong version = new AtomicLong();
+
+  public ConcurrentProcessRegistry() {
+    this(new AtomicLong());
+  }
+
+  /**
+   * Creates a registry drawing the insertion sequences of its processes from a counter that may be
+   * shared with other registries, so their insertion orders can be merged into a single one.
+   *
+   * @param insertionSeqNumber the counter of the insertion sequences.
+   */
+  public ConcurrentProcessRegistry(AtomicLong insertionSeqNumber) {
+    this.insertionSeqNumber = Objects.requireNonNull(insertionSeqNumber);
+    for (PriorityType priority : PriorityType.values()) {
+      priorityBuckets.put(priority, new ConcurrentSkipListMap<>());
+    }
+  }
+
+  public void add(Process process) {
+    Objects.requireNonNull(process);
+    processesByPid.compute(process.getPid(), (pid, existing) -> {
+      if (existing != null) {
+        throw new IllegalStateException("Process already registered [pid=" + pid + "]");
+      }
+      Entry entry = new Entry(insertionSeqNumber.incrementAndGet(), process);
+      insertionOrder.put(entry.sequence, process);
+      pidOrder.put(pid, process);
+      priorityBuckets.get(process.getPriority()).put(entry.sequence, process);
+      version.incrementAndGet();
+      return entry;
+    });
+  }
+
+  public void addAll(List<Process> processes) {
+    processes.forEach(this::add);
+  }
+
+  public Optional<Process> find(long pid) {
+    Entry entry = processesByPid.get(pid);
+    return entry == null ? Optional.empty() : Optional.of(entry.process);
+  }
+
+  public Optional<Process> remove(long pid) {
+    Entry entry = processesByPid.remove(pid);
+    if (entry == null) {
+      return Optional.empty();
+    }
+    insertionOrder.remove(entry.sequence);
+    pidOrder.remove(pid);
+    priorityBuckets.get(entry.process.getPriority()).remove(entry.sequence);
+    version.incrementAndGet();
+    return Optional.of(entry.process);
+  }
+
+  public Optional<Process> removeOldest() {
+    return removeFirst(insertionOrder.values());
+  }
+
+  public Optional<Process> removeOldest(PriorityType priority) {
+    Objects.requireNonNull(priority);
+    return removeFirst(priorityBuckets.get(priority).values());
+  }
+
+  public Optional<Process> removeLowestPriority() {
+    return removeLowestPriority(Integer.MAX_VALUE);
+  }
+
+  public Optional<Process> removeLowestPriority(PriorityType priority) {
+    Objects.requireNonNull(priority);
+    return removeLowestPriority(priority.getPrecedence());
+  }
+
+  public List<Process> removeAll(PriorityType priority) {
+    Objects.requireNonNull(priority);
+    return removeEach(priorityBuckets.get(priority).values());
+  }
+
+  public List<Process> removeAll(Collection<Long> pids) {
+    List<Process> removedProcesses = new ArrayList<>(pids.size());
+    for (long pid : pids) {
+      remove(pid).ifPresent(removedProcesses::add);
+    }
+    return removedProcesses;
+  }
+
+  public List<Process> removeAll() {
+    return removeEach(insertionOrder.values());
+  }
+
+  public List<Process> list(SortingType type) {
+    Objects.requireNonNull(type);
+    if (SortingType.PRIORITY == type) {
+      List<Process> processes = new ArrayList<>(size());
+      for (PriorityType priority : PRIORITIES_BY_PRECEDENCE) {
+        processes.addAll(priorityBuckets.get(priority).values());
+      }
+      return Collections.unmodifiableList(processes);
+    } else if (SortingType.ID == type) {
+      return List.copyOf(pidOrder.values());
+    }
+    return List.copyOf(insertionOrder.values());
+  }
+
+  public ProcessPage list(SortingType type, long cursor, int limit) {
+    Objects.requireNonNull(type);
+    if (limit <= 0) {
+      throw new IllegalArgumentException("Page limit must be greater than zero [limit=" + limit + "]");
+    }
+
+    List<Process> processes = new ArrayList<>(Math.min(limit, size()));
+    if (SortingType.PRIORITY == type) {
+      // The priority position is the bucket index in the highest bits and the insertion sequence in the rest
+      int bucket = (int) (cursor >>> PRIORITY_CURSOR_SHIFT);
+      long sequence = cursor & PRIORITY_CURSOR_SEQUENCE_MASK;
+      for (; bucket < PRIORITIES_BY_PRECEDENCE.length; bucket++) {
+        ConcurrentSkipListMap<Long, Process> priorityBucket = priorityBuckets.get(PRIORITIES_BY_PRECEDENCE[bucket]);
+        for (Map.Entry<Long, Process> entry : priorityBucket.tailMap(sequence, false).entrySet()) {
+          if (processes.size() == limit) {
+            return new ProcessPage(Collections.unmodifiableList(processes), cursor, false);
+          }
+          processes.add(entry.getValue());
+          cursor = ((long) bucket << PRIORITY_CURSOR_SHIFT) | entry.getKey();
+        }
+        sequence = 0;
+      }
+      return new ProcessPage(Collections.unmodifiableList(processes), cursor, true);
+    }
+
+    ConcurrentSkipListMap<Long, Process> ordering = SortingType.ID == type ? pidOrder : insertionOrder;
+    for (Map.Entry<Long, Process> entry : ordering.tailMap(cursor, false).entrySet()) {
+      if (processes.size() == limit) {
+        return new ProcessPage(Collections.unmodifiableList(processes), cursor, false);
+      }
+      processes.add(entry.getValue());
+      cursor = entry.getKey();
+    }
+    return new ProcessPage(Collections.unmodifiableList(processes), cursor, true);
+  }
+
+  public Stream<Process> stream(SortingType type) {
+    Objects.requireNonNull(type);
+    if (SortingType.PRIORITY == type) {
+      return Arrays.stream(PRIORITIES_BY_PRECEDENCE).flatMap(priority -> priorityBuckets.get(priority).values().stream());
+    } else if (SortingType.ID == type) {
+      return pidOrder.values().stream();
+    }
+    return insertionOrder.values().stream();
+  }
+
+  public List<Map.Entry<Long, Process>> listBySequence(PriorityType priority, long sequence, int limit) {
+    if (limit <= 0) {
+      throw new IllegalArgumentException("Page limit must be greater than zero [limit=" + limit + "]");
+    }
+    ConcurrentSkipListMap<Long, Process> ordering = priority == null ? insertionOrder : priorityBuckets.get(priority);
+    List<Map.Entry<Long, Process>> entries = new ArrayList<>(Math.min(limit, size()));
+    // The entries of the skip list views are immutable snapshots
+    for (Map.Entry<Long, Process> entry : ordering.tailMap(sequence, false).entrySet()) {
+      if (entries.size() == limit) {
+        break;
+      }
+      entries.add(entry);
+    }
+    return Collections.unmodifiableList(entries);
+  }
+
+  public List<Process> list(PriorityType priority) {
+    Objects.requireNonNull(priority);
+    return List.copyOf(priorityBuckets.get(priority).values());
+  }
+
+  public int size() {
+    return processesByPid.size();
+  }
+
+  public long getVersion() {
+    return version.get();
+  }
+
+  private Optional<Process> removeLowestPriority(int precedenceBound) {
+    for (PriorityType priority : PRIORITIES_BY_PRECEDENCE) {
+      if (priority.getPrecedence() >= precedenceBound) {
+        break;
+      }
+      Optional<Process> removed = removeFirst(priorityBuckets.get(priority).values());
+      if (removed.isPresent()) {
+        return removed;
+      }
+    }
+    return Optional.empty();
+  }
+
+  private Optional<Process> removeFirst(Iterable<Process> processes) {
+    // Processes removed concurrently may still be indexed, so the first one we win is the oldest
+    for (Process process : processes) {
+      Optional<Process> removed = remove(process.getPid());
+      if (removed.isPresent()) {
+        return removed;
+      }
+    }
+    return Optional.empty();
+  }
+
+  private List<Process> removeEach(Iterable<Process> processes) {
+    List<Process> removedProcesses = new ArrayList<>();
+    for (Process process : processes) {
+      remove(process.getPid()).ifPresent(removedProcesses::add);
+    }
+    return removedProcesses;
+  }
+
+  private static final class Entry {
+    private final long sequence;
+    private final Process process;
+
+    private Entry(long sequence, Process process) {
+      this.sequence = sequence;
+      this.process = process;
+    }
+  }
+}
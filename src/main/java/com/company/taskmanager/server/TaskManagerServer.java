@@ -0,0 +1,330 @@
+package com.company.taskmanager.server;
+
+import com.company.taskmanager.protocol.CommandInterpreter;
+import com.company.taskmanager.service.TaskManagerService;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Exposes a task manager over TCP with the line protocol of {@link CommandInterpreter}.
+ *
+ * <p>A single selector thread does the I/O of every connection without blocking, while a pool of
+ * workers executes the commands, so a long command such as {@code KILL_ALL} or a large {@code
+ * ADD_ALL} only delays the connection that sent it. Clients may pipeline any number of commands
+ * without waiting for their responses: the complete lines read are handed to a worker as a batch,
+ * a connection has at most one batch executing so its commands run in order, and the responses of
+ * a batch are written back together. A connection stops executing its buffered commands and being
+ * read while too many responses are waiting to be written, so a client that doesn't read its
+ * responses can't exhaust the memory of the server. A line longer than {@value #MAX_LINE_LENGTH}
+ * bytes is answered with {@code ERR LINE_TOO_LONG} and the connection is closed once its pending
+ * responses are written.
+ */
+public class TaskManagerServer implements AutoCloseable {
+  private static Logger log = LoggerFactory.getLogger(TaskManagerServer.class);
+
+  public static final int MAX_LINE_LENGTH = 64 * 1024;
+  public static final int DEFAULT_WORKERS = Runtime.getRuntime().availableProcessors();
+
+  private static final int OUTPUT_BUFFER_SIZE = 64 * 1024;
+  private static final int MAX_PENDING_OUTPUT = 4 * 1024 * 1024;
+
+  private final CommandInterpreter interpreter;
+  private final Selector selector;
+  private final ServerSocketChannel serverChannel;
+  private final Thread selectorThread;
+  private final ExecutorService workers;
+  // Batches executed by the workers, handed back to the selector thread
+  private final Queue<Runnable> executedBatches = new ConcurrentLinkedQueue<>();
+  private volatile boolean running = true;
+
+  /**
+   * Binds the server and starts serving connections with {@link #DEFAULT_WORKERS} workers.
+   *
+   * @param taskManager {@link TaskManagerService} the task manager the commands are executed in.
+   * @param address the address to listen on, port 0 picks a free port.
+   * @throws IOException in case the address can not be bound.
+   */
+  public TaskManagerServer(TaskManagerService taskManager, InetSocketAddress address) throws IOException {
+    this(taskManager, address, DEFAULT_WORKERS);
+  }
+
+  /**
+   * Binds the server and starts serving connections.
+   *
+   * @param taskManager {@link TaskManagerService} the task manager the commands are executed in.
+   * @param address the address to listen on, port 0 picks a free port.
+   * @param workers the number of threads executing the commands, greater than zero.
+   * @throws IOException in case the address can not be bound.
+   */
+  public TaskManagerServer(TaskManagerService taskManager, InetSocketAddress address, int workers) throws IOException {
+    if (workers <= 0) {
+      throw new IllegalArgumentException("Workers must be greater than zero [workers=" + workers + "]");
+    }
+    this.interpreter = new CommandInterpreter(taskManager);
+    AtomicLong workerSeqNumber = new AtomicLong();
+    this.workers = Executors.newFixedThreadPool(workers, task -> {
+      Thread thread = new Thread(task, "task-manager-server-worker-" + workerSeqNumber.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.selector = Selector.open();
+    this.serverChannel = ServerSocketChannel.open();
+    serverChannel.bind(address);
+    serverChannel.configureBlocking(false);
+    serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+    this.selectorThread = new Thread(this::serve, "task-manager-server");
+    selectorThread.start();
+    log.info("Task manager server listening [address={},workers={}]", serverChannel.getLocalAddress(), workers);
+  }
+
+  public int getPort() {
+    return serverChannel.socket().getLocalPort();
+  }
+
+  /**
+   * Stops serving and closes every connection. Commands already handed to the workers finish, but
+   * their responses are not written.
+   */
+  @Override
+  public void close() {
+    running = false;
+    selector.wakeup();
+    try {
+      selectorThread.join();
+    } catch (InterruptedException exception) {
+      Thread.currentThread().interrupt();
+    }
+    workers.shutdown();
+  }
+
+  private void serve() {
+    try {
+      while (running) {
+        selector.select();
+        for (Runnable executedBatch = executedBatches.poll(); executedBatch != null; executedBatch = executedBatches.poll()) {
+          executedBatch.run();
+        }
+        Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+        while (keys.hasNext()) {
+          SelectionKey key = keys.next();
+          keys.remove();
+          try {
+            if (key.isAcceptable()) {
+              accept();
+            } else {
+              Connection connection = (Connection) key.attachment();
+              if (key.isReadable()) {
+                connection.read();
+              }
+              if (key.isValid() && key.isWritable()) {
+                connection.drain();
+              }
+            }
+          } catch (IOException | UncheckedIOException exception) {
+            log.debug("Closing connection [address={}]", key.channel(), exception);
+            closeQuietly(key);
+          }
+        }
+      }
+    } catch (IOException | ClosedSelectorException exception) {
+      log.error("Task manager server stopped", exception);
+    } finally {
+      for (SelectionKey key : selector.keys()) {
+        closeQuietly(key);
+      }
+      try {
+        selector.close();
+      } catch (IOException exception) {
+        log.debug("Unable to close the selector", exception);
+      }
+    }
+  }
+
+  private void accept() throws IOException {
+    SocketChannel channel = serverChannel.accept();
+    if (channel == null) {
+      return;
+    }
+    channel.configureBlocking(false);
+    channel.socket().setTcpNoDelay(true);
+    SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+    key.attach(new Connection(key, channel));
+  }
+
+  private static void closeQuietly(SelectionKey key) {
+    key.cancel();
+    try {
+      key.channel().close();
+    } catch (IOException exception) {
+      log.debug("Unable to close channel [channel={}]", key.channel(), exception);
+    }
+  }
+
+  /**
+   * Buffers of a client connection, only used by the selector thread. The workers only see the
+   * lines of a batch and the responses they build.
+   */
+  private final class Connection {
+    private final SelectionKey key;
+    private final SocketChannel channel;
+    private final ByteBuffer input = ByteBuffer.allocate(MAX_LINE_LENGTH);
+    private ByteBuffer output = ByteBuffer.allocate(OUTPUT_BUFFER_SIZE);
+    // Complete lines read and not executed yet, the input isn't read until they are
+    private final Deque<String> lines = new ArrayDeque<>();
+    // A worker is executing a batch of the lines
+    private boolean executing;
+    // The line being read is too long, it is answered once the previous lines are
+    private boolean lineTooLong;
+    // The connection is closed once the pending responses are written
+    private boolean closing;
+
+    private Connection(SelectionKey key, SocketChannel channel) {
+      this.key = key;
+      this.channel = channel;
+    }
+
+    private void read() throws IOException {
+      int read = channel.read(input);
+      if (read < 0) {
+        closeQuietly(key);
+        return;
+      }
+      splitLines();
+      executeLines();
+    }
+
+    /**
+     * Writes the pending responses, then executes the waiting lines if they now have room.
+     */
+    private void drain() throws IOException {
+      write();
+      executeLines();
+    }
+
+    private void splitLines() {
+      // Every complete line is a command, a partial line waits for the rest of it
+      input.flip();
+      int lineStart = input.position();
+      for (int i = input.position(); i < input.limit(); i++) {
+        if (input.get(i) == '\n') {
+          int lineEnd = i > lineStart && input.get(i - 1) == '\r' ? i - 1 : i;
+          lines.add(new String(input.array(), lineStart, lineEnd - lineStart, StandardCharsets.US_ASCII));
+          lineStart = i + 1;
+        }
+      }
+      input.position(lineStart);
+      input.compact();
+      lineTooLong = !input.hasRemaining();
+    }
+
+    /**
+     * Hands the waiting lines to a worker, unless a batch is executing or the pending responses are
+     * already too many.
+     */
+    private void executeLines() throws IOException {
+      if (executing || !key.isValid() || output.position() >= MAX_PENDING_OUTPUT) {
+        return;
+      }
+      if (lines.isEmpty()) {
+        if (lineTooLong && !closing) {
+          append("ERR LINE_TOO_LONG\n");
+          closing = true;
+          write();
+        }
+        return;
+      }
+      List<String> batch = new ArrayList<>(lines);
+      lines.clear();
+      int budget = MAX_PENDING_OUTPUT - output.position();
+      executing = true;
+      write();
+      workers.execute(() -> {
+        StringBuilder responses = new StringBuilder();
+        int executed = 0;
+        try {
+          // Stops once the responses fill the budget, the rest of the batch waits for them to be written
+          for (; executed < batch.size() && responses.length() < budget; executed++) {
+            responses.append(interpreter.execute(batch.get(executed))).append('\n');
+          }
+        } finally {
+          int executedLines = executed;
+          executedBatches.add(() -> executed(batch, executedLines, responses));
+          selector.wakeup();
+        }
+      });
+    }
+
+    private void executed(List<String> batch, int executedLines, StringBuilder responses) {
+      executing = false;
+      if (!key.isValid()) {
+        return;
+      }
+      for (int i = batch.size() - 1; i >= executedLines; i--) {
+        lines.addFirst(batch.get(i));
+      }
+      try {
+        append(responses);
+        write();
+        executeLines();
+      } catch (IOException | UncheckedIOException exception) {
+        log.debug("Closing connection [address={}]", channel, exception);
+        closeQuietly(key);
+      }
+    }
+
+    private void append(CharSequence responses) {
+      byte[] bytes = responses.toString().getBytes(StandardCharsets.US_ASCII);
+      if (output.remaining() < bytes.length) {
+        ByteBuffer largerOutput = ByteBuffer.allocate(Math.max(output.capacity() * 2, output.position() + bytes.length));
+        output.flip();
+        largerOutput.put(output);
+        output = largerOutput;
+      }
+      output.put(bytes);
+    }
+
+    private void write() throws IOException {
+      output.flip();
+      channel.write(output);
+      output.compact();
+
+      int pending = output.position();
+      if (pending == 0 && closing) {
+        closeQuietly(key);
+        return;
+      }
+      if (pending == 0 && output.capacity() > OUTPUT_BUFFER_SIZE) {
+        output = ByteBuffer.allocate(OUTPUT_BUFFER_SIZE);
+      }
+      // Reading stops while lines wait to be executed, while the client is not reading its responses,
+      // and for good once the line is too long
+      int interest = pending > 0 ? SelectionKey.OP_WRITE : 0;
+      if (pending < MAX_PENDING_OUTPUT && !executing && lines.isEmpty() && !lineTooLong && !closing) {
+        interest |= SelectionKey.OP_READ;
+      }
+      if (key.isValid()) {
+        key.interestOps(interest);
+      }
+    }
+  }
+}
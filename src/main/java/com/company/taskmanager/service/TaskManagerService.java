@@ -1,10 +1,25 @@
 package com.company.taskmanager.service;
 
 import com.company.taskmanager.exception.TaskManagerException;
+import com.company.taskmanager.journal.ChangeFeed;
+import com.company.taskmanager.journal.ChangeListener;
+import com.company.taskmanager.metrics.TaskManagerMetrics;
+import com.company.taskmanager.model.AddResult;
+import com.company.taskmanager.model.Deadline;
+import com.company.taskmanager.model.EvictionPolicy;
 import com.company.taskmanager.model.PriorityType;
 import com.company.taskmanager.model.Process;
+import com.company.taskmanager.model.ProcessPage;
+import com.company.taskmanager.model.ResourceMetric;
 import com.company.taskmanager.model.SortingType;
+import com.company.taskmanager.model.TaskHandle;
+import com.company.taskmanager.model.Termination;
+import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
 
 /**
  * Exposes the available functionality in task manager.
@@ -21,6 +36,79 @@ public interface TaskManagerService {
    */
    Process add(PriorityType priority) throws TaskManagerException;
 
+  /**
+   * Tries to add a process - behaves as {@link #add(PriorityType)} but reports a rejection at max
+   * capacity through the result instead of throwing, without allocating anything.
+   *
+   * @param priority {@link PriorityType} the priority of the process that will be added.
+   * @return {@link AddResult} The added process, or {@link AddResult#REJECTED} in case the task
+   *     manager is at max capacity.
+   */
+  AddResult tryAdd(PriorityType priority);
+
+  /**
+   * Add a timed process - behaves as {@link #add(PriorityType)}, the process is killed once its
+   * deadline passes unless it left the task manager before. Expired processes are killed in
+   * batches by a single timer thread.
+   *
+   * @param priority {@link PriorityType} the priority of the process that will be added.
+   * @param deadline {@link Deadline} the moment the process expires.
+   * @return {@link Process} The added process.
+   * @throws TaskManagerException in case the task manager is at max capacity.
+   */
+  Process add(PriorityType priority, Deadline deadline) throws TaskManagerException;
+
+  /**
+   * Tries to add a timed process - behaves as {@link #tryAdd(PriorityType)}, the process expires
+   * as with {@link #add(PriorityType, Deadline)}.
+   *
+   * @param priority {@link PriorityType} the priority of the process that will be added.
+   * @param deadline {@link Deadline} the moment the process expires.
+   * @return {@link AddResult} The added process, or {@link AddResult#REJECTED} in case the task
+   *     manager is at max capacity.
+   */
+  AddResult tryAdd(PriorityType priority, Deadline deadline);
+
+  /**
+   * Add a process waiting for capacity - behaves as {@link #add(PriorityType)} but, when the task
+   * manager is at max capacity, waits until a kill or an exit frees capacity or the timeout
+   * expires. Waiting adds are admitted by precedence of their priority, then in arrival order.
+   *
+   * @param priority {@link PriorityType} the priority of the process that will be added.
+   * @param timeout the maximum time to wait, zero or less to not wait.
+   * @param unit {@link TimeUnit} of the timeout.
+   * @return {@link Process} The added process.
+   * @throws TaskManagerException in case the timeout expires or too many adds are already waiting.
+   * @throws InterruptedException in case the thread is interrupted while waiting.
+   */
+  Process add(PriorityType priority, long timeout, TimeUnit unit) throws TaskManagerException, InterruptedException;
+
+  /**
+   * Add a process asynchronously - behaves as {@link #add(PriorityType, long, TimeUnit)} without
+   * blocking the caller. Cancelling the future gives up waiting.
+   *
+   * @param priority {@link PriorityType} the priority of the process that will be added.
+   * @param timeout the maximum time to wait, zero or less to not wait.
+   * @param unit {@link TimeUnit} of the timeout.
+   * @return {@link CompletableFuture} The added process, completed exceptionally with a
+   *     {@link TaskManagerException} in case the timeout expires or too many adds are already
+   *     waiting.
+   */
+  CompletableFuture<Process> addAsync(PriorityType priority, long timeout, TimeUnit unit);
+
+  /**
+   * Add a process running a payload - behaves as {@link #add(PriorityType)}, the process leaves
+   * the task manager by itself once its payload finishes.
+   *
+   * @param priority {@link PriorityType} the priority of the process that will be added.
+   * @param payload the code executed by the process, a Runnable can be adapted with
+   *     {@link java.util.concurrent.Executors#callable(Runnable)}.
+   * @param <T> the type of the payload result.
+   * @return {@link TaskHandle} The handle of the added process and its result.
+   * @throws TaskManagerException in case the task manager is at max capacity.
+   */
+  <T> TaskHandle<T> add(PriorityType priority, Callable<T> payload) throws TaskManagerException;
+
   /**
    * Add a process - accepts all new processes killing and removing from the TM list the oldest one
    * (First-In, First-Out) when the max size is reached.
@@ -30,6 +118,27 @@ public interface TaskManagerService {
    */
    Process addToFifo(PriorityType priority);
 
+  /**
+   * Add a timed process - behaves as {@link #addToFifo(PriorityType)}, the process expires as with
+   * {@link #add(PriorityType, Deadline)}.
+   *
+   * @param priority {@link PriorityType} the priority of the process that will be added.
+   * @param deadline {@link Deadline} the moment the process expires.
+   * @return {@link Process} The added process.
+   */
+  Process addToFifo(PriorityType priority, Deadline deadline);
+
+  /**
+   * Add a process running a payload - behaves as {@link #addToFifo(PriorityType)}, the process
+   * leaves the task manager by itself once its payload finishes.
+   *
+   * @param priority {@link PriorityType} the priority of the process that will be added.
+   * @param payload the code executed by the process.
+   * @param <T> the type of the payload result.
+   * @return {@link TaskHandle} The handle of the added process and its result.
+   */
+  <T> TaskHandle<T> addToFifo(PriorityType priority, Callable<T> payload);
+
   /**
    * Adds a process – If the max size is reached it is evaluated if the new process passed in the
    * add() call has a higher priority compared to any of the existing one, we remove the lowest
@@ -40,31 +149,165 @@ public interface TaskManagerService {
    */
    Process addWithPriority(PriorityType priority);
 
+  /**
+   * Adds a timed process - behaves as {@link #addWithPriority(PriorityType)}, the process expires
+   * as with {@link #add(PriorityType, Deadline)}.
+   *
+   * @param priority {@link PriorityType} the priority of the process that will be added.
+   * @param deadline {@link Deadline} the moment the process expires.
+   * @return {@link Process} The added process, null if skipped.
+   */
+  Process addWithPriority(PriorityType priority, Deadline deadline);
+
+  /**
+   * Adds a process running a payload - behaves as {@link #addWithPriority(PriorityType)}, the
+   * process leaves the task manager by itself once its payload finishes.
+   *
+   * @param priority {@link PriorityType} the priority of the process that will be added.
+   * @param payload the code executed by the process.
+   * @param <T> the type of the payload result.
+   * @return {@link TaskHandle} The handle of the added process and its result, null if skipped.
+   */
+  <T> TaskHandle<T> addWithPriority(PriorityType priority, Callable<T> payload);
+
+  /**
+   * Adds a batch of processes with a single admission pass, behaving as if every process was added
+   * one after the other with the add method matching the policy: {@link EvictionPolicy#NONE} for
+   * {@link #add(PriorityType)}, {@link EvictionPolicy#FIFO} for {@link #addToFifo(PriorityType)}
+   * and {@link EvictionPolicy#PRIORITY} for {@link #addWithPriority(PriorityType)}. Processes that
+   * would be evicted by a later process of the same batch are never started, and skipped without
+   * being counted nor journaled as rejections or evictions: only the processes that could not be
+   * added at all are rejected.
+   *
+   * @param priorities List with the {@link PriorityType} of each process that will be added.
+   * @param policy {@link EvictionPolicy} applied when the max size is reached.
+   * @return List with the added {@link Process} at the position of its priority, null for the
+   *     processes that were not added.
+   */
+  List<Process> addAll(List<PriorityType> priorities, EvictionPolicy policy);
+
   /**
    * List running processes sorting them by time of creation (implicitly we can consider it the time
    * in which has been added to the TM), priority or id.
    *
    * @param type {@link SortingType} the type of sorting we want to apply.
-   * @return List with the available processes in the system sorted by the provided SortingType.
+   * @return Immutable list with a snapshot of the available processes in the system sorted by the
+   *     provided SortingType.
    */
    List<Process> listAll(SortingType type);
 
+  /**
+   * List a page of the running processes sorting them by time of creation, priority or id. Every
+   * page costs the same regardless of the number of processes in the task manager.
+   *
+   * @param type {@link SortingType} the type of sorting we want to apply.
+   * @param cursor {@link ProcessPage#FIRST_CURSOR} for the first page, otherwise the next cursor
+   *     of the previous page.
+   * @param limit the maximum number of processes of the page, greater than zero.
+   * @return {@link ProcessPage} The page with the processes after the cursor.
+   */
+  ProcessPage listPage(SortingType type, long cursor, int limit);
+
+  /**
+   * Streams the running processes sorting them by time of creation, priority or id. The
+   * processes are read lazily while the stream is consumed, so the stream may reflect processes
+   * added or killed in the meantime.
+   *
+   * @param type {@link SortingType} the type of sorting we want to apply.
+   * @return Stream of the available processes in the system sorted by the provided SortingType.
+   */
+  Stream<Process> stream(SortingType type);
+
+  /**
+   * Returns the heaviest running processes by a resource, without sorting all of them. CPU time and
+   * allocated bytes are the ones recorded by a {@link com.company.taskmanager.metrics.ResourceSampler}.
+   *
+   * @param limit the maximum number of processes returned, greater than zero.
+   * @param metric {@link ResourceMetric} by which the processes are ranked.
+   * @return Immutable list with the heaviest processes, heaviest first.
+   */
+  List<Process> top(int limit, ResourceMetric metric);
+
+  /**
+   * Subscribes a listener to the changes of the task manager, so it doesn't have to poll the
+   * listings. The listener first receives a snapshot of the running processes, then the add,
+   * rejection, eviction, kill and exit events, from a thread of its own that never blocks the task
+   * manager. A listener that falls too far behind receives a new snapshot instead of the lost events.
+   *
+   * @param listener {@link ChangeListener} that receives the snapshots and the events.
+   * @return {@link ChangeFeed.Subscription} The subscription, to be closed once the listener is done.
+   */
+  ChangeFeed.Subscription subscribe(ChangeListener listener);
+
   /**
    * Kills a specific process.
    *
    * @param pid Process id.
+   * @return {@link Termination} The handle confirming the termination of the killed process, if any.
    */
-   void kill(long pid);
+  Termination kill(long pid);
+
+  /**
+   * Kills a batch of processes, unknown pids are ignored.
+   *
+   * @param pids Collection with the process ids.
+   * @return {@link Termination} The handle confirming the termination of the killed processes.
+   */
+  Termination kill(Collection<Long> pids);
 
   /**
    * Kills all the processes with a specific priority.
    *
    * @param priority {@link PriorityType} the priority of the process that will be killed.
+   * @return {@link Termination} The handle confirming the termination of the killed processes.
+   */
+  Termination killAll(PriorityType priority);
+
+  /**
+   * Kills all running processes, stopping large numbers of them in parallel.
+   *
+   * @return {@link Termination} The handle confirming the termination of the killed processes.
+   */
+  Termination killAll();
+
+  /**
+   * Shuts the task manager down: stops admitting processes, fails the adds waiting for capacity,
+   * kills every process and waits for their termination until the deadline. Afterwards the adds
+   * throw an IllegalStateException, except {@link #tryAdd(PriorityType)} which rejects them.
+   *
+   * @param timeout the maximum time to wait for the termination of the processes.
+   * @param unit {@link TimeUnit} of the timeout.
+   * @return {@link Termination} The handle of the killed processes, its stragglers are the ones
+   *     still running when the deadline expired.
+   * @throws InterruptedException in case the thread is interrupted while waiting.
    */
-  void killAll(PriorityType priority);
+  Termination shutdown(long timeout, TimeUnit unit) throws InterruptedException;
 
   /**
-   * Kills all running processes.
+   * @return True in case the task manager has been shut down.
+   */
+  boolean isShutdown();
+
+  /**
+   * Returns the metrics of the task manager, which can also be published through JMX.
+   *
+   * @return {@link TaskManagerMetrics} The live metrics.
+   */
+  TaskManagerMetrics getMetrics();
+
+  /**
+   * Returns the maximum number of processes the task manager can hold.
+   *
+   * @return The current capacity.
+   */
+  int getCapacity();
+
+  /**
+   * Changes the maximum number of processes the task manager can hold. When the new capacity is
+   * lower than the number of running processes, the processes over capacity are evicted following
+   * the configured {@link com.company.taskmanager.model.EvictionPolicy}.
+   *
+   * @param capacity The new capacity, greater than zero.
    */
-  void killAll();
+  void setCapacity(int capacity);
 }
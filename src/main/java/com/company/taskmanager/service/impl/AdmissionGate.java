@@ -0,0 +1,97 @@
+package com.company.taskmanager.service.impl;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Counts the processes admitted in the task manager against its capacity.
+ *
+ * <p>Admissions are taken with a compare-and-set loop, so parallel callers can never admit more
+ * processes than the capacity. The capacity may be lowered below the admitted count, in that case
+ * no admission is granted until enough processes are released.
+ */
+public class AdmissionGate {
+
+  private final AtomicInteger admitted = new AtomicInteger();
+  private volatile int capacity;
+
+  public AdmissionGate(int capacity) {
+    this.capacity = capacity;
+  }
+
+  public boolean tryAcquire() {
+    int current;
+    do {
+      current = admitted.get();
+      if (current >= capacity) {
+        return false;
+      }
+    } while (!admitted.compareAndSet(current, current + 1));
+    return true;
+  }
+
+  /**
+   * Takes as many admissions as possible, up to the requested ones, in a single step.
+   *
+   * @param admissions the number of requested admissions.
+   * @return The number of admissions taken.
+   */
+  public int tryAcquire(int admissions) {
+    int current;
+    int granted;
+    do {
+      current = admitted.get();
+      granted = Math.min(admissions, capacity - current);
+      if (granted <= 0) {
+        return 0;
+      }
+    } while (!admitted.compareAndSet(current, current + granted));
+    return granted;
+  }
+
+  /**
+   * Hands over the admission of an evicted process to the caller, unless the gate is above its
+   * capacity, in which case the admission is released instead.
+   *
+   * @return true if the caller now holds the admission.
+   */
+  public boolean tryTransfer() {
+    int current;
+    do {
+      current = admitted.get();
+      if (current <= capacity) {
+        return true;
+      }
+    } while (!admitted.compareAndSet(current, current - 1));
+    return false;
+  }
+
+  /**
+   * Takes admissions regardless of the capacity, e.g. for processes recovered after a restart. The
+   * gate may end up above its capacity, as when the capacity is lowered.
+   *
+   * @param admissions the number of admissions to take.
+   */
+  public void acquire(int admissions) {
+    admitted.addAndGet(admissions);
+  }
+
+  public void release() {
+    admitted.decrementAndGet();
+  }
+
+  public void release(int admissions) {
+    admitted.addAndGet(-admissions);
+  }
+
+  public int getAdmitted() {
+    return admitted.get();
+  }
+
+  public int getCapacity() {
+    return capacity;
+  }
+
+  public void setCapacity(int capacity) {
+    this.capacity = capacity;
+  }
+}
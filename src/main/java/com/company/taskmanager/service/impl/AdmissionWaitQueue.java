@@ -0,0 +1,218 @@
+package com.company.taskmanager.service.impl;
+
+import com.company.taskmanager.model.PriorityType;
+import com.company.taskmanager.model.Process;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Holds the adds waiting for capacity, ordered by the precedence of their priority and then by
+ * arrival, and hands them the admissions released by the task manager.
+ *
+ * <p>A released admission goes straight to the first waiter instead of back to the
+ * {@link AdmissionGate}, so callers that don't wait can't take it first. Releasing costs a single
+ * volatile read while nobody waits.
+ */
+class AdmissionWaitQueue {
+
+  private static final Comparator<Waiter> WAITING_ORDER = Comparator
+      .comparingInt((Waiter waiter) -> -waiter.priority.getPrecedence())
+      .thenComparingLong(waiter -> waiter.sequence);
+
+  /**
+   * Outcome of offering a waiter.
+   */
+  enum Offer {
+    ACQUIRED, QUEUED, FULL
+  }
+
+  private final AdmissionGate admissionGate;
+  private final int maxWaiters;
+  private final ReentrantLock lock = new ReentrantLock();
+  private final PriorityQueue<Waiter> waiters = new PriorityQueue<>(WAITING_ORDER);
+  // Counts the waiters before they check the gate, so a release never misses one
+  private final AtomicInteger waiting = new AtomicInteger();
+  private long nextSequence;
+
+  AdmissionWaitQueue(AdmissionGate admissionGate, int maxWaiters) {
+    this.admissionGate = admissionGate;
+    this.maxWaiters = maxWaiters;
+  }
+
+  /**
+   * Takes an admission for the waiter right away if there is capacity and nobody waits before it,
+   * otherwise queues it.
+   */
+  Offer offer(Waiter waiter) {
+    lock.lock();
+    try {
+      int waitingNow = waiting.incrementAndGet();
+      if (waiters.isEmpty() && admissionGate.tryAcquire()) {
+        waiting.decrementAndGet();
+        return Offer.ACQUIRED;
+      }
+      if (waitingNow > maxWaiters) {
+        waiting.decrementAndGet();
+        return Offer.FULL;
+      }
+      waiter.sequence = nextSequence++;
+      waiters.offer(waiter);
+      return Offer.QUEUED;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Removes a waiter that gave up, unless it has already been handed an admission.
+   *
+   * @return True in case the waiter was removed.
+   */
+  boolean remove(Waiter waiter) {
+    if (!waiter.claim()) {
+      return false;
+    }
+    lock.lock();
+    try {
+      if (waiters.remove(waiter)) {
+        waiting.decrementAndGet();
+      }
+      return true;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  boolean hasWaiters() {
+    return waiting.get() > 0;
+  }
+
+  int size() {
+    return waiting.get();
+  }
+
+  /**
+   * Hands released admissions to the first waiters.
+   *
+   * @param admissions the number of released admissions.
+   * @param admitted List where the waiters that now hold an admission are added.
+   * @return The number of admissions no waiter took, which must be released to the gate.
+   */
+  int handOff(int admissions, List<Waiter> admitted) {
+    lock.lock();
+    try {
+      while (admissions > 0 && !waiters.isEmpty()) {
+        admissions--;
+        // The gate above its capacity, after lowering it, takes the admission back instead
+        if (admissionGate.tryTransfer()) {
+          if (!pollInto(admitted)) {
+            admissionGate.release();
+            break;
+          }
+        }
+      }
+      return admissions;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Admits the first waiters while the gate has capacity.
+   *
+   * @return List with the waiters that now hold an admission.
+   */
+  List<Waiter> admitWaiting() {
+    lock.lock();
+    try {
+      List<Waiter> admitted = Collections.emptyList();
+      while (!waiters.isEmpty() && admissionGate.tryAcquire()) {
+        if (admitted.isEmpty()) {
+          admitted = new ArrayList<>();
+        }
+        if (!pollInto(admitted)) {
+          admissionGate.release();
+          break;
+        }
+      }
+      return admitted;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Removes every waiter.
+   *
+   * @return List with the waiters that didn't give up in the meantime.
+   */
+  List<Waiter> drain() {
+    lock.lock();
+    try {
+      List<Waiter> drained = new ArrayList<>(waiters.size());
+      while (pollInto(drained)) {
+        // Keeps polling until the queue is empty
+      }
+      return drained;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Moves the first waiter that didn't give up in the meantime to the admitted ones.
+   */
+  private boolean pollInto(List<Waiter> admitted) {
+    Waiter waiter;
+    while ((waiter = waiters.poll()) != null) {
+      waiting.decrementAndGet();
+      if (waiter.claim()) {
+        admitted.add(waiter);
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * An add waiting for capacity, completed with the added process.
+   */
+  static final class Waiter {
+    private final PriorityType priority;
+    private final long startNanos;
+    private final CompletableFuture<Process> admission = new CompletableFuture<>();
+    private final AtomicBoolean claimed = new AtomicBoolean();
+    private long sequence;
+
+    Waiter(PriorityType priority, long startNanos) {
+      this.priority = priority;
+      this.startNanos = startNanos;
+    }
+
+    PriorityType getPriority() {
+      return priority;
+    }
+
+    long getStartNanos() {
+      return startNanos;
+    }
+
+    CompletableFuture<Process> getAdmission() {
+      return admission;
+    }
+
+    /**
+     * Either the admission or the give up claims the waiter, never both.
+     */
+    private boolean claim() {
+      return claimed.compareAndSet(false, true);
+    }
+  }
+}
@@ -0,0 +1,611 @@
+package com.company.taskmanager.service.impl;
+
+import com.company.taskmanager.engine.ExecutionEngine;
+import com.company.taskmanager.engine.ExecutionEngines;
+import com.company.taskmanager.exception.TaskManagerException;
+import com.company.taskmanager.exception.TaskManagerExternalException;
+import com.company.taskmanager.exception.TaskManagerInternalException;
+import com.company.taskmanager.journal.ChangeFeed;
+import com.company.taskmanager.journal.ChangeListener;
+import com.company.taskmanager.journal.EventJournal;
+import com.company.taskmanager.metrics.TaskManagerMetrics;
+import com.company.taskmanager.model.AddResult;
+import com.company.taskmanager.model.Deadline;
+import com.company.taskmanager.model.EvictionPolicy;
+import com.company.taskmanager.model.PriorityType;
+import com.company.taskmanager.model.Process;
+import com.company.taskmanager.model.ProcessPage;
+import com.company.taskmanager.model.ResourceMetric;
+import com.company.taskmanager.model.ShardingStrategy;
+import com.company.taskmanager.model.SortingType;
+import com.company.taskmanager.model.TaskHandle;
+import com.company.taskmanager.model.Termination;
+import com.company.taskmanager.pid.impl.PidSequence;
+import com.company.taskmanager.registry.ProcessRegistry;
+import com.company.taskmanager.registry.impl.ConcurrentProcessRegistry;
+import com.company.taskmanager.service.TaskManagerService;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Partitions the processes across independent {@link TaskManagerServiceImpl} shards, each one
+ * with its own registry, admission gate and pid sequence, so parallel callers admit processes
+ * without contending with each other.
+ *
+ * <p>A new process goes to the shard chosen by the {@link ShardingStrategy} and spills over to the
+ * next shards when that one is full, so the whole capacity, the sum of the shard capacities, is
+ * used before any eviction or rejection. Evictions happen inside a single shard. The pids of a
+ * shard are {@code shard + 1} modulo the number of shards, so killing a pid goes straight to its
+ * shard. Listings merge the orderings kept by every shard: the registries of the shards draw their
+ * insertion sequences from a single counter, so the creation orders merge by insertion sequence and
+ * pages continue after the position of their cursor as in a single task manager.
+ */
+public class ShardedTaskManagerService implements TaskManagerService {
+
+  private static final PriorityType[] PRIORITIES_BY_PRECEDENCE = PriorityType.byPrecedence().toArray(new PriorityType[0]);
+
+  private static final int PRIORITY_CURSOR_SHIFT = 56;
+  private static final long PRIORITY_CURSOR_SEQUENCE_MASK = (1L << PRIORITY_CURSOR_SHIFT) - 1;
+  private static final int STREAM_PAGE_SIZE = 256;
+
+  private final TaskManagerServiceImpl[] shards;
+  private final ProcessRegistry[] registries;
+  private final ShardingStrategy shardingStrategy;
+  private final EventJournal journal;
+  private final TaskManagerMetrics metrics = new TaskManagerMetrics();
+
+  public ShardedTaskManagerService(int shardCount, int capacityPerShard) {
+    this(shardCount, capacityPerShard, EvictionPolicy.PRIORITY, ShardingStrategy.PID,
+        ExecutionEngines.defaultEngine(), EventJournal.defaultJournal());
+  }
+
+  /**
+   * Creates the task manager and its shards.
+   *
+   * @param shardCount the number of shards, greater than zero.
+   * @param capacityPerShard the maximum number of processes of every shard, greater than zero.
+   * @param evictionPolicy {@link EvictionPolicy} applied by every shard when its capacity is lowered.
+   * @param shardingStrategy {@link ShardingStrategy} that chooses the shard of a new process.
+   * @param executionEngine {@link ExecutionEngine} shared by the shards.
+   * @param journal {@link EventJournal} shared by the shards.
+   */
+  public ShardedTaskManagerService(int shardCount, int capacityPerShard, EvictionPolicy evictionPolicy,
+      ShardingStrategy shardingStrategy, ExecutionEngine executionEngine, EventJournal journal) {
+    this(shardCount, capacityPerShard, evictionPolicy, shardingStrategy, executionEngine, journal,
+        ConcurrentProcessRegistry::new);
+  }
+
+  /**
+   * Creates the task manager and its shards, with the registry backend of the shards.
+   *
+   * @param shardCount the number of shards, greater than zero.
+   * @param capacityPerShard the maximum number of processes of every shard, greater than zero.
+   * @param evictionPolicy {@link EvictionPolicy} applied by every shard when its capacity is lowered.
+   * @param shardingStrategy {@link ShardingStrategy} that chooses the shard of a new process.
+   * @param executionEngine {@link ExecutionEngine} shared by the shards.
+   * @param journal {@link EventJournal} shared by the shards.
+   * @param registryFactory creates the {@link ProcessRegistry} of every shard from the counter of
+   *     insertion sequences the shards share.
+   */
+  public ShardedTaskManagerService(int shardCount, int capacityPerShard, EvictionPolicy evictionPolicy,
+      ShardingStrategy shardingStrategy, ExecutionEngine executionEngine, EventJournal journal,
+      Function<AtomicLong, ProcessRegistry> registryFactory) {
+    if (shardCount <= 0) {
+      throw new IllegalArgumentException("Shard count must be greater than zero [shardCount=" + shardCount + "]");
+    }
+    this.shardingStrategy = Objects.requireNonNull(shardingStrategy);
+    this.journal = Objects.requireNonNull(journal);
+    this.shards = new TaskManagerServiceImpl[shardCount];
+    this.registries = new ProcessRegistry[shardCount];
+    AtomicLong insertionSeqNumber = new AtomicLong();
+    for (int i = 0; i < shardCount; i++) {
+      registries[i] = Objects.requireNonNull(registryFactory.apply(insertionSeqNumber));
+      // Every shard records in the same metrics, so they describe the whole task manager
+      shards[i] = new TaskManagerServiceImpl(capacityPerShard, evictionPolicy, executionEngine, journal, null,
+          registries[i], metrics, new PidSequence(i + 1, shardCount));
+    }
+  }
+
+  public Process add(PriorityType priority) throws TaskManagerException {
+    checkNotShutdown();
+    return admittedOrThrow(addProcess(priority, null));
+  }
+
+  public <T> TaskHandle<T> add(PriorityType priority, Callable<T> payload) throws TaskManagerException {
+    Objects.requireNonNull(payload);
+    checkNotShutdown();
+    return new TaskHandle<>(admittedOrThrow(addProcess(priority, payload)));
+  }
+
+  public AddResult tryAdd(PriorityType priority) {
+    if (isShutdown()) {
+      return AddResult.REJECTED;
+    }
+    Process process = addProcess(priority, null);
+    return process == null ? AddResult.REJECTED : AddResult.added(process);
+  }
+
+  public Process add(PriorityType priority, Deadline deadline) throws TaskManagerException {
+    Objects.requireNonNull(deadline);
+    return expireAt(add(priority), deadline);
+  }
+
+  public AddResult tryAdd(PriorityType priority, Deadline deadline) {
+    Objects.requireNonNull(deadline);
+    AddResult result = tryAdd(priority);
+    if (result.isAdded()) {
+      try {
+        expireAt(result.getProcess(), deadline);
+      } catch (IllegalStateException shutDown) {
+        return AddResult.REJECTED;
+      }
+    }
+    return result;
+  }
+
+  public Process add(PriorityType priority, long timeout, TimeUnit unit)
+      throws TaskManagerException, InterruptedException {
+    Objects.requireNonNull(priority);
+    checkNotShutdown();
+    int home = homeShard(priority);
+    Process process = admitInAnyShard(home, priority, null, System.nanoTime());
+    return process != null ? process : shards[home].add(priority, timeout, unit);
+  }
+
+  /**
+   * Admits the process in any shard with free capacity, otherwise it waits for capacity in its home
+   * shard.
+   */
+  public CompletableFuture<Process> addAsync(PriorityType priority, long timeout, TimeUnit unit) {
+    Objects.requireNonNull(priority);
+    checkNotShutdown();
+    int home = homeShard(priority);
+    Process process = admitInAnyShard(home, priority, null, System.nanoTime());
+    return process != null ? CompletableFuture.completedFuture(process) : shards[home].addAsync(priority, timeout, unit);
+  }
+
+  public Process addToFifo(PriorityType priority) {
+    return addToFifoProcess(priority, null);
+  }
+
+  public Process addToFifo(PriorityType priority, Deadline deadline) {
+    Objects.requireNonNull(deadline);
+    return expireAt(addToFifo(priority), deadline);
+  }
+
+  public <T> TaskHandle<T> addToFifo(PriorityType priority, Callable<T> payload) {
+    Objects.requireNonNull(payload);
+    return new TaskHandle<>(addToFifoProcess(priority, payload));
+  }
+
+  public Process addWithPriority(PriorityType priority) {
+    return addWithPriorityProcess(priority, null);
+  }
+
+  public Process addWithPriority(PriorityType priority, Deadline deadline) {
+    Objects.requireNonNull(deadline);
+    Process process = addWithPriority(priority);
+    return process == null ? null : expireAt(process, deadline);
+  }
+
+  public <T> TaskHandle<T> addWithPriority(PriorityType priority, Callable<T> payload) {
+    Objects.requireNonNull(payload);
+    Process process = addWithPriorityProcess(priority, payload);
+    return process == null ? null : new TaskHandle<>(process);
+  }
+
+  /**
+   * Adds every process of the batch to the shard chosen for it, so each shard admits its part of
+   * the batch following the policy. Processes don't spill over to other shards.
+   */
+  public List<Process> addAll(List<PriorityType> priorities, EvictionPolicy policy) {
+    Objects.requireNonNull(priorities);
+    Objects.requireNonNull(policy);
+    priorities.forEach(Objects::requireNonNull);
+
+    List<List<Integer>> positionsByShard = new ArrayList<>(shards.length);
+    for (int i = 0; i < shards.length; i++) {
+      positionsByShard.add(new ArrayList<>());
+    }
+    int home = homeShard(null);
+    for (int i = 0; i < priorities.size(); i++) {
+      int shard = ShardingStrategy.PRIORITY == shardingStrategy ? homeShard(priorities.get(i)) : (home + i) % shards.length;
+      positionsByShard.get(shard).add(i);
+    }
+
+    Process[] addedProcesses = new Process[priorities.size()];
+    for (int shard = 0; shard < shards.length; shard++) {
+      List<Integer> positions = positionsByShard.get(shard);
+      if (positions.isEmpty()) {
+        continue;
+      }
+      List<PriorityType> shardPriorities = positions.stream().map(priorities::get).collect(Collectors.toList());
+      List<Process> shardProcesses = shards[shard].addAll(shardPriorities, policy);
+      for (int i = 0; i < positions.size(); i++) {
+        addedProcesses[positions.get(i)] = shardProcesses.get(i);
+      }
+    }
+    return Arrays.asList(addedProcesses);
+  }
+
+  public List<Process> listAll(SortingType type) {
+    return Collections.unmodifiableList(stream(type).collect(Collectors.toList()));
+  }
+
+  /**
+   * Lists a page of the processes of every shard, merging a page of every shard. Pages continue
+   * after the position of the cursor, as in a single task manager: the pid by id, the insertion
+   * sequence shared by the shards by creation time, and the priority bucket in the highest bits
+   * plus the insertion sequence by priority.
+   */
+  public ProcessPage listPage(SortingType type, long cursor, int limit) {
+    Objects.requireNonNull(type);
+    if (limit <= 0) {
+      throw new IllegalArgumentException("Page limit must be greater than zero [limit=" + limit + "]");
+    }
+
+    if (SortingType.ID == type) {
+      List<Iterator<Process>> shardPages = new ArrayList<>(shards.length);
+      boolean shardsLast = true;
+      for (TaskManagerServiceImpl shard : shards) {
+        ProcessPage shardPage = shard.listPage(type, cursor, limit);
+        shardPages.add(shardPage.getProcesses().iterator());
+        shardsLast &= shardPage.isLast();
+      }
+      List<Process> processes = new ArrayList<>(limit);
+      Iterator<Process> merged = new MergingIterator<>(shardPages, Comparator.comparingLong(Process::getPid));
+      while (merged.hasNext() && processes.size() < limit) {
+        processes.add(merged.next());
+      }
+      long nextCursor = processes.isEmpty() ? cursor : processes.get(processes.size() - 1).getPid();
+      // The pages of the shards hold every process after the cursor only if all of them are the last one
+      boolean last = shardsLast && !merged.hasNext();
+      return new ProcessPage(Collections.unmodifiableList(processes), nextCursor, last);
+    }
+
+    List<Process> processes = new ArrayList<>(limit);
+    if (SortingType.PRIORITY == type) {
+      // The priority position is the bucket index in the highest bits and the insertion sequence in the rest
+      int bucket = (int) (cursor >>> PRIORITY_CURSOR_SHIFT);
+      long sequence = cursor & PRIORITY_CURSOR_SEQUENCE_MASK;
+      for (; bucket < PRIORITIES_BY_PRECEDENCE.length; bucket++) {
+        Iterator<Map.Entry<Long, Process>> merged =
+            mergeBySequence(PRIORITIES_BY_PRECEDENCE[bucket], sequence, limit - processes.size());
+        while (merged.hasNext()) {
+          if (processes.size() == limit) {
+            return new ProcessPage(Collections.unmodifiableList(processes), cursor, false);
+          }
+          Map.Entry<Long, Process> entry = merged.next();
+          processes.add(entry.getValue());
+          cursor = ((long) bucket << PRIORITY_CURSOR_SHIFT) | entry.getKey();
+        }
+        sequence = 0;
+      }
+      return new ProcessPage(Collections.unmodifiableList(processes), cursor, true);
+    }
+
+    Iterator<Map.Entry<Long, Process>> merged = mergeBySequence(null, cursor, limit);
+    while (merged.hasNext()) {
+      if (processes.size() == limit) {
+        return new ProcessPage(Collections.unmodifiableList(processes), cursor, false);
+      }
+      Map.Entry<Long, Process> entry = merged.next();
+      processes.add(entry.getValue());
+      cursor = entry.getKey();
+    }
+    return new ProcessPage(Collections.unmodifiableList(processes), cursor, true);
+  }
+
+  /**
+   * Merges a page of every shard in insertion order by the insertion sequence the shards share,
+   * the order the processes were registered in. Every page holds one process more than the limit,
+   * so processes follow the merged ones in case all of them can't be taken.
+   */
+  private Iterator<Map.Entry<Long, Process>> mergeBySequence(PriorityType priority, long sequence, int limit) {
+    List<Iterator<Map.Entry<Long, Process>>> shardPages = new ArrayList<>(registries.length);
+    for (ProcessRegistry registry : registries) {
+      shardPages.add(registry.listBySequence(priority, sequence, limit + 1).iterator());
+    }
+    return new MergingIterator<>(shardPages, Map.Entry.comparingByKey());
+  }
+
+  /**
+   * Streams the processes page by page, so the stream never copies every shard.
+   */
+  public Stream<Process> stream(SortingType type) {
+    Objects.requireNonNull(type);
+    Iterator<Process> iterator;
+    if (SortingType.ID == type) {
+      List<Iterator<Process>> shardIterators = new ArrayList<>(shards.length);
+      for (TaskManagerServiceImpl shard : shards) {
+        shardIterators.add(shard.stream(type).iterator());
+      }
+      iterator = new MergingIterator<>(shardIterators, Comparator.comparingLong(Process::getPid));
+    } else {
+      iterator = new PageIterator(type);
+    }
+    return StreamSupport.stream(
+        Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false);
+  }
+
+  public List<Process> top(int limit, ResourceMetric metric) {
+    // The heaviest processes are among the heaviest ones of their shard
+    return TopProcesses.of(Arrays.stream(shards).flatMap(shard -> shard.top(limit, metric).stream()), limit, metric);
+  }
+
+  /**
+   * Subscribes to the change feed of the journal shared by the shards, filtered to the events of
+   * the shards and resyncing from a snapshot of every shard.
+   */
+  public ChangeFeed.Subscription subscribe(ChangeListener listener) {
+    Set<Integer> owners = Arrays.stream(shards).map(TaskManagerServiceImpl::getJournalOwner).collect(Collectors.toSet());
+    return journal.getChangeFeed().subscribe(listener, () -> listAll(SortingType.CREATION_TIME), owners::contains);
+  }
+
+  public Termination kill(long pid) {
+    return pid > 0 ? shardOf(pid).kill(pid) : Termination.NONE;
+  }
+
+  public Termination kill(Collection<Long> pids) {
+    Objects.requireNonNull(pids);
+    List<List<Long>> pidsByShard = new ArrayList<>(shards.length);
+    for (int i = 0; i < shards.length; i++) {
+      pidsByShard.add(new ArrayList<>());
+    }
+    for (long pid : pids) {
+      if (pid > 0) {
+        pidsByShard.get(shardIndexOf(pid)).add(pid);
+      }
+    }
+    List<Termination> terminations = new ArrayList<>(shards.length);
+    for (int i = 0; i < shards.length; i++) {
+      if (!pidsByShard.get(i).isEmpty()) {
+        terminations.add(shards[i].kill(pidsByShard.get(i)));
+      }
+    }
+    return Termination.of(terminations);
+  }
+
+  public Termination killAll(PriorityType priority) {
+    Objects.requireNonNull(priority);
+    // Processes spill over to any shard, so every shard may hold the priority
+    return inEveryShard(shard -> shard.killAll(priority));
+  }
+
+  public Termination killAll() {
+    return inEveryShard(TaskManagerServiceImpl::killAll);
+  }
+
+  /**
+   * Shuts every shard down in parallel and waits for all their processes with a single deadline.
+   */
+  public Termination shutdown(long timeout, TimeUnit unit) throws InterruptedException {
+    Objects.requireNonNull(unit);
+    Termination termination = inEveryShard(TaskManagerServiceImpl::stop);
+    termination.await(timeout, unit);
+    return termination;
+  }
+
+  public boolean isShutdown() {
+    return shards[0].isShutdown();
+  }
+
+  public TaskManagerMetrics getMetrics() {
+    return metrics;
+  }
+
+  public int getShardCount() {
+    return shards.length;
+  }
+
+  public int getCapacity() {
+    int capacity = 0;
+    for (TaskManagerServiceImpl shard : shards) {
+      capacity += shard.getCapacity();
+    }
+    return capacity;
+  }
+
+  /**
+   * Spreads the capacity evenly across the shards.
+   *
+   * @param capacity The new capacity, at least one process per shard.
+   */
+  public void setCapacity(int capacity) {
+    if (capacity < shards.length) {
+      throw new IllegalArgumentException(
+          "Capacity must hold a process per shard [capacity=" + capacity + ",shards=" + shards.length + "]");
+    }
+    for (int i = 0; i < shards.length; i++) {
+      shards[i].setCapacity(capacity / shards.length + (i < capacity % shards.length ? 1 : 0));
+    }
+  }
+
+  private Process addProcess(PriorityType priority, Callable<?> payload) {
+    Objects.requireNonNull(priority);
+    long startNanos = System.nanoTime();
+    int home = homeShard(priority);
+    Process process = admitInAnyShard(home, priority, payload, startNanos);
+    if (process == null) {
+      shards[home].rejected(EvictionPolicy.NONE, priority, startNanos);
+    }
+    return process;
+  }
+
+  private Process addToFifoProcess(PriorityType priority, Callable<?> payload) {
+    Objects.requireNonNull(priority);
+    checkNotShutdown();
+    long startNanos = System.nanoTime();
+    int home = homeShard(priority);
+    Process process = admitInAnyShard(home, priority, payload, startNanos);
+    return process != null ? process : shards[home].admitToFifo(priority, payload, startNanos);
+  }
+
+  private Process addWithPriorityProcess(PriorityType priority, Callable<?> payload) {
+    Objects.requireNonNull(priority);
+    checkNotShutdown();
+    long startNanos = System.nanoTime();
+    int home = homeShard(priority);
+    Process process = admitInAnyShard(home, priority, payload, startNanos);
+    for (int i = 0; process == null && i < shards.length; i++) {
+      process = shards[(home + i) % shards.length].admitWithPriority(priority, payload, startNanos);
+    }
+    if (process == null) {
+      shards[home].rejected(EvictionPolicy.PRIORITY, priority, System.nanoTime());
+    }
+    return process;
+  }
+
+  /**
+   * Admits the process in the first shard with free capacity, starting at its home shard.
+   */
+  private Process admitInAnyShard(int home, PriorityType priority, Callable<?> payload, long startNanos) {
+    for (int i = 0; i < shards.length; i++) {
+      Process process = shards[(home + i) % shards.length].admit(priority, payload, startNanos);
+      if (process != null) {
+        return process;
+      }
+    }
+    return null;
+  }
+
+  private void checkNotShutdown() {
+    if (isShutdown()) {
+      throw new IllegalStateException("The task manager has been shut down");
+    }
+  }
+
+  private Termination inEveryShard(Function<TaskManagerServiceImpl, Termination> kill) {
+    return Termination.of(Arrays.stream(shards).parallel().map(kill).collect(Collectors.toList()));
+  }
+
+  private int homeShard(PriorityType priority) {
+    if (ShardingStrategy.PRIORITY == shardingStrategy && priority != null) {
+      return priority.ordinal() % shards.length;
+    }
+    // A thread keeps adding to the same shard, so parallel callers spread across the shards
+    return (int) (Thread.currentThread().getId() % shards.length);
+  }
+
+  /**
+   * Schedules the expiry in the shard holding the process, so it is killed with the other expired
+   * processes of that shard.
+   */
+  private Process expireAt(Process process, Deadline deadline) {
+    return shardOf(process.getPid()).expireAt(process, deadline);
+  }
+
+  private TaskManagerServiceImpl shardOf(long pid) {
+    return shards[shardIndexOf(pid)];
+  }
+
+  private int shardIndexOf(long pid) {
+    return (int) ((pid - 1) % shards.length);
+  }
+
+  private static Process admittedOrThrow(Process process) throws TaskManagerException {
+    if (process == null) {
+      throw new TaskManagerException(
+          TaskManagerExternalException.INTERNAL_ERROR, TaskManagerInternalException.MAX_CAPACITY_EXCEPTION);
+    }
+    return process;
+  }
+
+  /**
+   * Merges iterators that are already sorted by the same comparator, reading each one lazily.
+   */
+  private static final class MergingIterator<T> implements Iterator<T> {
+    private final PriorityQueue<Head<T>> heads;
+
+    private MergingIterator(List<Iterator<T>> iterators, Comparator<? super T> comparator) {
+      this.heads = new PriorityQueue<>(Math.max(1, iterators.size()),
+          Comparator.comparing((Head<T> head) -> head.element, comparator));
+      for (Iterator<T> iterator : iterators) {
+        if (iterator.hasNext()) {
+          heads.add(new Head<>(iterator.next(), iterator));
+        }
+      }
+    }
+
+    @Override
+    public boolean hasNext() {
+      return !heads.isEmpty();
+    }
+
+    @Override
+    public T next() {
+      Head<T> head = heads.poll();
+      if (head == null) {
+        throw new NoSuchElementException();
+      }
+      T element = head.element;
+      if (head.iterator.hasNext()) {
+        heads.add(new Head<>(head.iterator.next(), head.iterator));
+      }
+      return element;
+    }
+  }
+
+  /**
+   * Reads the pages of an ordering one after the other.
+   */
+  private final class PageIterator implements Iterator<Process> {
+    private final SortingType type;
+    private Iterator<Process> page = Collections.emptyIterator();
+    private long cursor = ProcessPage.FIRST_CURSOR;
+    private boolean last;
+
+    private PageIterator(SortingType type) {
+      this.type = type;
+    }
+
+    @Override
+    public boolean hasNext() {
+      while (!page.hasNext() && !last) {
+        ProcessPage nextPage = listPage(type, cursor, STREAM_PAGE_SIZE);
+        page = nextPage.getProcesses().iterator();
+        cursor = nextPage.getNextCursor();
+        last = nextPage.isLast();
+      }
+      return page.hasNext();
+    }
+
+    @Override
+    public Process next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      return page.next();
+    }
+  }
+
+  private static final class Head<T> {
+    private final T element;
+    private final Iterator<T> iterator;
+
+    private Head(T element, Iterator<T> iterator) {
+      this.element = element;
+      this.iterator = iterator;
+    }
+  }
+}
@@ -1,138 +1,908 @@
 package com.company.taskmanager.service.impl;
 
+import com.company.taskmanager.engine.ExecutionEngine;
+import com.company.taskmanager.engine.ExecutionEngines;
 import com.company.taskmanager.exception.TaskManagerException;
 import com.company.taskmanager.exception.TaskManagerExternalException;
 import com.company.taskmanager.exception.TaskManagerInternalException;
+import com.company.taskmanager.journal.ChangeFeed;
+import com.company.taskmanager.journal.ChangeListener;
+import com.company.taskmanager.journal.EventJournal;
+import com.company.taskmanager.journal.JournalEvent;
+import com.company.taskmanager.journal.JournalEventType;
+import com.company.taskmanager.metrics.TaskManagerMetrics;
+import com.company.taskmanager.model.AddResult;
+import com.company.taskmanager.model.Deadline;
+import com.company.taskmanager.model.EvictionPolicy;
 import com.company.taskmanager.model.SortingType;
 import com.company.taskmanager.model.PriorityType;
 import com.company.taskmanager.model.Process;
+import com.company.taskmanager.model.ProcessPage;
+import com.company.taskmanager.model.ResourceMetric;
+import com.company.taskmanager.model.TaskHandle;
+import com.company.taskmanager.model.Termination;
+import com.company.taskmanager.persistence.WriteAheadLog;
+import com.company.taskmanager.pid.PidAllocator;
+import com.company.taskmanager.pid.impl.BlockPidAllocator;
+import com.company.taskmanager.pid.impl.PidSequence;
+import com.company.taskmanager.registry.ProcessRegistry;
+import com.company.taskmanager.registry.impl.CompactProcessRegistry;
+import com.company.taskmanager.registry.impl.ConcurrentProcessRegistry;
 import com.company.taskmanager.service.TaskManagerService;
-import java.util.Comparator;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
-import java.util.concurrent.CopyOnWriteArrayList;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.LongConsumer;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 public class TaskManagerServiceImpl implements TaskManagerService {
   private static Logger log = LoggerFactory.getLogger(TaskManagerServiceImpl.class);
 
-  private static final int FIXED_CAPACITY = 4;
-  private final static List<Process> tasks;
-  private static long pidSeqNumber = 0;
+  private static final int PROCESSES_PER_CORE = 4;
+  public static final int DEFAULT_CAPACITY = Runtime.getRuntime().availableProcessors() * PROCESSES_PER_CORE;
 
-  static {
-    tasks = new CopyOnWriteArrayList<>();
-  }
+  /**
+   * Maximum number of adds waiting for capacity at the same time, further ones are rejected.
+   */
+  public static final int MAX_WAITING_ADDS = 10_000;
+
+  /**
+   * Milliseconds between the checks for expired timed processes, which expire at most this late.
+   */
+  public static final long EXPIRY_TICK_MILLIS = 10;
+
+  /**
+   * Minimum number of processes killed at once that are stopped in parallel.
+   */
+  static final int PARALLEL_STOP_THRESHOLD = 256;
+
+  private static final long REJECTION_LOG_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+  private static final AtomicInteger journalOwnerSeqNumber = new AtomicInteger(JournalEvent.NO_OWNER);
+
+  private final ProcessRegistry tasks;
+  private final AdmissionGate admissionGate;
+  private final AdmissionWaitQueue admissionWaitQueue;
+  private final EvictionPolicy evictionPolicy;
+  private final ExecutionEngine executionEngine;
+  private final EventJournal journal;
+  // Tags the journal events of this task manager, which may share the journal with others
+  private final int journalOwner = journalOwnerSeqNumber.incrementAndGet();
+  private final WriteAheadLog writeAheadLog;
+  private final AtomicReferenceArray<Listing> cachedListings = new AtomicReferenceArray<>(SortingType.values().length);
+  private final TaskManagerMetrics metrics;
+  private final LongConsumer startLatencyRecorder;
+  private final PidAllocator pidAllocator;
+  private final TimingWheel<Process> expiryWheel = new TimingWheel<>(EXPIRY_TICK_MILLIS, this::expired);
+  private final Map<Long, TimingWheel.Timeout<Process>> expiries = new ConcurrentHashMap<>();
+  private final AtomicLong nextRejectionLogNanos = new AtomicLong(System.nanoTime());
+  private volatile boolean shutdown;
 
   public TaskManagerServiceImpl() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  public TaskManagerServiceImpl(int capacity) {
+    this(capacity, EvictionPolicy.PRIORITY);
+  }
+
+  public TaskManagerServiceImpl(int capacity, EvictionPolicy evictionPolicy) {
+    this(capacity, evictionPolicy, ExecutionEngines.defaultEngine());
+  }
+
+  public TaskManagerServiceImpl(int capacity, EvictionPolicy evictionPolicy, ExecutionEngine executionEngine) {
+    this(capacity, evictionPolicy, executionEngine, EventJournal.defaultJournal());
+  }
+
+  public TaskManagerServiceImpl(int capacity, EvictionPolicy evictionPolicy, ExecutionEngine executionEngine,
+      EventJournal journal) {
+    this(capacity, evictionPolicy, executionEngine, journal, null);
+  }
+
+  /**
+   * Creates a task manager that persists its processes in a write-ahead log. The processes recovered by
+   * the log are re-created, without payload, and new pids continue after the highest recovered one.
+   *
+   * @param writeAheadLog {@link WriteAheadLog} the log of the processes, null to keep them only in memory.
+   */
+  public TaskManagerServiceImpl(int capacity, EvictionPolicy evictionPolicy, ExecutionEngine executionEngine,
+      EventJournal journal, WriteAheadLog writeAheadLog) {
+    this(capacity, evictionPolicy, executionEngine, journal, writeAheadLog, new ConcurrentProcessRegistry());
+  }
+
+  /**
+   * Creates a task manager that holds its processes in the given registry, such as a
+   * {@link CompactProcessRegistry} for millions of processes.
+   *
+   * @param registry {@link ProcessRegistry} empty registry used only by this task manager.
+   */
+  public TaskManagerServiceImpl(int capacity, EvictionPolicy evictionPolicy, ExecutionEngine executionEngine,
+      EventJournal journal, WriteAheadLog writeAheadLog, ProcessRegistry registry) {
+    this(capacity, evictionPolicy, executionEngine, journal, writeAheadLog, registry, new PidSequence());
+  }
+
+  /**
+   * Creates a task manager whose pids are handed out by the given allocator, such as a
+   * {@link BlockPidAllocator} for many parallel callers.
+   *
+   * @param pidAllocator {@link PidAllocator} allocator used only by this task manager.
+   */
+  public TaskManagerServiceImpl(int capacity, EvictionPolicy evictionPolicy, ExecutionEngine executionEngine,
+      EventJournal journal, WriteAheadLog writeAheadLog, ProcessRegistry registry, PidAllocator pidAllocator) {
+    this(capacity, evictionPolicy, executionEngine, journal, writeAheadLog, registry, new TaskManagerMetrics(),
+        pidAllocator);
+  }
+
+  TaskManagerServiceImpl(int capacity, EvictionPolicy evictionPolicy, ExecutionEngine executionEngine,
+      EventJournal journal, WriteAheadLog writeAheadLog, ProcessRegistry registry, TaskManagerMetrics metrics,
+      PidAllocator pidAllocator) {
+    checkCapacity(capacity);
+    if (registry.size() > 0) {
+      throw new IllegalArgumentException("The registry must be empty [size=" + registry.size() + "]");
+    }
+    this.tasks = registry;
+    this.metrics = Objects.requireNonNull(metrics);
+    this.startLatencyRecorder = metrics::running;
+    this.pidAllocator = Objects.requireNonNull(pidAllocator);
+    this.admissionGate = new AdmissionGate(capacity);
+    this.admissionWaitQueue = new AdmissionWaitQueue(admissionGate, MAX_WAITING_ADDS);
+    this.evictionPolicy = Objects.requireNonNull(evictionPolicy);
+    this.executionEngine = Objects.requireNonNull(executionEngine);
+    this.journal = Objects.requireNonNull(journal);
+    this.writeAheadLog = writeAheadLog;
+    if (writeAheadLog != null) {
+      recover(writeAheadLog);
+    }
   }
 
   public Process add(PriorityType priority) throws TaskManagerException {
-    Objects.requireNonNull(priority);
-    if (tasks.size() == FIXED_CAPACITY) {
-      TaskManagerException taskManagerException = new TaskManagerException(
-          TaskManagerExternalException.INTERNAL_ERROR, TaskManagerInternalException.MAX_CAPACITY_EXCEPTION);
-      log.error("Could not add a new process, max capacity reached [priority={},capacity={},exception={}]",
-          priority, tasks.size(), taskManagerException.toString());
-      throw taskManagerException;
-    } else {
-      return add(new Process(nextPid(), priority));
+    checkNotShutdown();
+    return admittedOrThrow(addProcess(priority, null));
+  }
+
+  public <T> TaskHandle<T> add(PriorityType priority, Callable<T> payload) throws TaskManagerException {
+    Objects.requireNonNull(payload);
+    checkNotShutdown();
+    return new TaskHandle<>(admittedOrThrow(addProcess(priority, payload)));
+  }
+
+  public AddResult tryAdd(PriorityType priority) {
+    if (shutdown) {
+      return AddResult.REJECTED;
     }
+    Process process = addProcess(priority, null);
+    return process == null ? AddResult.REJECTED : AddResult.added(process);
   }
 
-  public Process addToFifo(PriorityType priority) {
+  public Process add(PriorityType priority, Deadline deadline) throws TaskManagerException {
+    Objects.requireNonNull(deadline);
+    return expireAt(add(priority), deadline);
+  }
+
+  public AddResult tryAdd(PriorityType priority, Deadline deadline) {
+    Objects.requireNonNull(deadline);
+    AddResult result = tryAdd(priority);
+    if (result.isAdded()) {
+      try {
+        expireAt(result.getProcess(), deadline);
+      } catch (IllegalStateException shutDown) {
+        return AddResult.REJECTED;
+      }
+    }
+    return result;
+  }
+
+  public Process add(PriorityType priority, long timeout, TimeUnit unit)
+      throws TaskManagerException, InterruptedException {
+    CompletableFuture<Process> admission = addAsync(priority, timeout, unit);
+    try {
+      return admission.get();
+    } catch (ExecutionException exception) {
+      throw (TaskManagerException) exception.getCause();
+    } catch (InterruptedException exception) {
+      if (admission.cancel(false)) {
+        throw exception;
+      }
+      // The process was added in the meantime, it is not lost
+      Thread.currentThread().interrupt();
+      return admittedOrThrow(admission);
+    }
+  }
+
+  public CompletableFuture<Process> addAsync(PriorityType priority, long timeout, TimeUnit unit) {
     Objects.requireNonNull(priority);
-    if (tasks.size() == FIXED_CAPACITY) {
-      log.warn("Maximum Task Manager capacity reached [capacity={}]", tasks.size());
-      // The first element that entered the list is the first one
-      kill(tasks.get(0).getPid());
+    Objects.requireNonNull(unit);
+    checkNotShutdown();
+    long startNanos = System.nanoTime();
+    if (timeout <= 0) {
+      Process process = addProcess(priority, null);
+      return process != null ? CompletableFuture.completedFuture(process)
+          : CompletableFuture.failedFuture(capacityException(TaskManagerInternalException.MAX_CAPACITY_EXCEPTION));
+    }
+
+    AdmissionWaitQueue.Waiter waiter = new AdmissionWaitQueue.Waiter(priority, startNanos);
+    AdmissionWaitQueue.Offer offer = admissionWaitQueue.offer(waiter);
+    if (AdmissionWaitQueue.Offer.ACQUIRED == offer) {
+      metrics.admitted(EvictionPolicy.NONE, priority, startNanos);
+      return CompletableFuture.completedFuture(add(new Process(nextPid(), priority, null)));
+    } else if (AdmissionWaitQueue.Offer.FULL == offer) {
+      rejected(EvictionPolicy.NONE, priority, startNanos);
+      return CompletableFuture.failedFuture(capacityException(TaskManagerInternalException.WAIT_QUEUE_FULL_EXCEPTION));
     }
-    return add(new Process(nextPid(), priority));
+
+    CompletableFuture<Process> admission = waiter.getAdmission();
+    ScheduledFuture<?> admissionTimeout = AdmissionTimeoutsHolder.SCHEDULER.schedule(() -> {
+      if (admissionWaitQueue.remove(waiter)) {
+        rejected(EvictionPolicy.NONE, priority, System.nanoTime());
+        admission.completeExceptionally(capacityException(TaskManagerInternalException.ADMISSION_TIMEOUT_EXCEPTION));
+      }
+    }, timeout, unit);
+    // An admitted or cancelled waiter releases its timeout right away, a cancelled one also leaves the queue
+    admission.whenComplete((process, failure) -> {
+      admissionTimeout.cancel(false);
+      if (failure != null) {
+        admissionWaitQueue.remove(waiter);
+      }
+    });
+    // Capacity may have been freed before the waiter was queued behind others
+    admitWaiting();
+    return admission;
+  }
+
+  public Process addToFifo(PriorityType priority) {
+    return addToFifoProcess(priority, null);
+  }
+
+  public Process addToFifo(PriorityType priority, Deadline deadline) {
+    Objects.requireNonNull(deadline);
+    return expireAt(addToFifo(priority), deadline);
+  }
+
+  public <T> TaskHandle<T> addToFifo(PriorityType priority, Callable<T> payload) {
+    Objects.requireNonNull(payload);
+    return new TaskHandle<>(addToFifoProcess(priority, payload));
   }
 
   public Process addWithPriority(PriorityType priority) {
+    return addWithPriorityProcess(priority, null);
+  }
+
+  public Process addWithPriority(PriorityType priority, Deadline deadline) {
+    Objects.requireNonNull(deadline);
+    Process process = addWithPriority(priority);
+    return process == null ? null : expireAt(process, deadline);
+  }
+
+  public <T> TaskHandle<T> addWithPriority(PriorityType priority, Callable<T> payload) {
+    Objects.requireNonNull(payload);
+    Process process = addWithPriorityProcess(priority, payload);
+    return process == null ? null : new TaskHandle<>(process);
+  }
+
+  /**
+   * Admits a process without evicting any other one, null when the task manager is at max capacity.
+   * Overload makes rejection the common outcome, so rejecting allocates nothing and is only logged
+   * once in a while.
+   */
+  private Process addProcess(PriorityType priority, Callable<?> payload) {
+    long startNanos = System.nanoTime();
+    Process process = admit(priority, payload, startNanos);
+    if (process == null) {
+      rejected(EvictionPolicy.NONE, priority, startNanos);
+    }
+    return process;
+  }
+
+  /**
+   * Admits a process without evicting any other one.
+   *
+   * @return The started process, null when the task manager is at max capacity. The rejection is
+   *     not recorded, see {@link #rejected(EvictionPolicy, PriorityType, long)}.
+   */
+  Process admit(PriorityType priority, Callable<?> payload, long startNanos) {
     Objects.requireNonNull(priority);
-    final Process newProcess = new Process(nextPid(), priority);
+    if (!admissionGate.tryAcquire()) {
+      return null;
+    }
+    metrics.admitted(EvictionPolicy.NONE, priority, startNanos);
+    return add(new Process(nextPid(), priority, payload));
+  }
+
+  /**
+   * Records the rejection of a process in the metrics, the journal and, once in a while, the log.
+   */
+  void rejected(EvictionPolicy policy, PriorityType priority, long nowNanos) {
+    metrics.rejected(policy);
+    journal.record(journalOwner, JournalEventType.REJECTED, JournalEvent.NO_PID, priority);
+    logRejection(policy, nowNanos);
+  }
 
-    if (tasks.size() == FIXED_CAPACITY) {
-      log.warn("Maximum Task Manager capacity reached [capacity={}]", tasks.size());
-      AtomicBoolean added = new AtomicBoolean(false);
+  private Process admittedOrThrow(Process process) throws TaskManagerException {
+    if (process == null) {
+      throw capacityException(TaskManagerInternalException.MAX_CAPACITY_EXCEPTION);
+    }
+    return process;
+  }
 
-      tasks.forEach(process -> {
-        boolean existsAnyLowerPriority = newProcess.getPriority().getPrecedence() > process.getPriority().getPrecedence();
+  private static Process admittedOrThrow(CompletableFuture<Process> admission) throws TaskManagerException {
+    try {
+      return admission.join();
+    } catch (CompletionException exception) {
+      throw (TaskManagerException) exception.getCause();
+    }
+  }
 
-        if (existsAnyLowerPriority && !added.get()) {
-          kill(process.getPid());
-          added.set(true);
+  private static TaskManagerException capacityException(TaskManagerInternalException innerException) {
+    return new TaskManagerException(TaskManagerExternalException.INTERNAL_ERROR, innerException);
+  }
+
+  private void logRejection(EvictionPolicy policy, long nowNanos) {
+    long nextLogNanos = nextRejectionLogNanos.get();
+    if (nowNanos - nextLogNanos >= 0
+        && nextRejectionLogNanos.compareAndSet(nextLogNanos, nowNanos + REJECTION_LOG_INTERVAL_NANOS)) {
+      log.warn("Processes rejected at max capacity [policy={},capacity={},rejectedSoFar={}]",
+          policy, admissionGate.getCapacity(), metrics.getRejected(policy));
+    }
+  }
+
+  private Process addToFifoProcess(PriorityType priority, Callable<?> payload) {
+    checkNotShutdown();
+    return admitToFifo(priority, payload, System.nanoTime());
+  }
+
+  /**
+   * Admits a process evicting the oldest one when the task manager is at max capacity.
+   */
+  Process admitToFifo(PriorityType priority, Callable<?> payload, long startNanos) {
+    Objects.requireNonNull(priority);
+    while (!admissionGate.tryAcquire()) {
+      log.debug("Maximum Task Manager capacity reached [capacity={}]", admissionGate.getCapacity());
+      // The first element that entered the registry is the oldest one
+      Optional<Process> oldestProcess = tasks.removeOldest();
+      if (oldestProcess.isPresent()) {
+        evicted(oldestProcess.get(), EvictionPolicy.FIFO);
+        if (admissionGate.tryTransfer()) {
+          break;
         }
-      });
+      } else {
+        // Every admission is held by an add that did not register its process yet
+        Thread.yield();
+      }
+    }
+    metrics.admitted(EvictionPolicy.FIFO, priority, startNanos);
+    return add(new Process(nextPid(), priority, payload));
+  }
 
-      if (added.get() == true) {
-        return add(newProcess);
+  private Process addWithPriorityProcess(PriorityType priority, Callable<?> payload) {
+    checkNotShutdown();
+    long startNanos = System.nanoTime();
+    Process process = admitWithPriority(priority, payload, startNanos);
+    if (process == null) {
+      rejected(EvictionPolicy.PRIORITY, priority, System.nanoTime());
+    }
+    return process;
+  }
+
+  /**
+   * Admits a process evicting a lower priority one when the task manager is at max capacity.
+   *
+   * @return The started process, null when every process has the same or a higher priority. The
+   *     rejection is not recorded, see {@link #rejected(EvictionPolicy, PriorityType, long)}.
+   */
+  Process admitWithPriority(PriorityType priority, Callable<?> payload, long startNanos) {
+    Objects.requireNonNull(priority);
+    while (!admissionGate.tryAcquire()) {
+      log.debug("Maximum Task Manager capacity reached [capacity={}]", admissionGate.getCapacity());
+      // The lowest priority process that is the oldest, only if it has a lower priority than the new one
+      Optional<Process> lowerPriorityProcess = tasks.removeLowestPriority(priority);
+      if (!lowerPriorityProcess.isPresent()) {
+        return null;
+      }
+      evicted(lowerPriorityProcess.get(), EvictionPolicy.PRIORITY);
+      if (admissionGate.tryTransfer()) {
+        break;
       }
-    } else if (tasks.size() < FIXED_CAPACITY) {
-      return add(newProcess);
+    }
+    metrics.admitted(EvictionPolicy.PRIORITY, priority, startNanos);
+    return add(new Process(nextPid(), priority, payload));
+  }
+
+  public List<Process> addAll(List<PriorityType> priorities, EvictionPolicy policy) {
+    Objects.requireNonNull(priorities);
+    Objects.requireNonNull(policy);
+    priorities.forEach(Objects::requireNonNull);
+    checkNotShutdown();
+
+    // Admissions and evictions of the whole batch are decided before touching any process
+    boolean[] admitted = new boolean[priorities.size()];
+    // Admitted at first, then evicted by a later process of the batch
+    boolean[] superseded = new boolean[priorities.size()];
+    List<Process> evictedProcesses = new ArrayList<>();
+    if (EvictionPolicy.FIFO == policy) {
+      admitBatchToFifo(admitted, superseded, evictedProcesses);
+    } else if (EvictionPolicy.PRIORITY == policy) {
+      admitBatchWithPriority(priorities, admitted, superseded, evictedProcesses);
+    } else {
+      Arrays.fill(admitted, 0, admissionGate.tryAcquire(admitted.length), true);
     }
 
-    return null;
+    Process[] addedProcesses = new Process[admitted.length];
+    List<Process> newProcesses = new ArrayList<>(admitted.length);
+    int rejectedProcesses = 0;
+    for (int i = 0; i < admitted.length; i++) {
+      if (admitted[i]) {
+        addedProcesses[i] = new Process(nextPid(), priorities.get(i), null);
+        newProcesses.add(addedProcesses[i]);
+        metrics.admitted(policy, priorities.get(i));
+      } else if (!superseded[i]) {
+        journal.record(journalOwner, JournalEventType.REJECTED, JournalEvent.NO_PID, priorities.get(i));
+        rejectedProcesses++;
+      }
+    }
+    metrics.rejected(policy, rejectedProcesses);
+
+    evictedProcesses.forEach(process -> evicted(process, policy));
+    add(newProcesses);
+    return Arrays.asList(addedProcesses);
   }
 
   public List<Process> listAll(SortingType type) {
     Objects.requireNonNull(type);
-    log.info("List all processes by {}", type.name());
 
-    if (SortingType.PRIORITY == type) {
-      tasks.sort(Comparator.comparing(process -> process.getPriority().getPrecedence()));
-    } else if(SortingType.ID == type) {
-      tasks.sort(Comparator.comparing(Process::getPid));
+    // The version is read before listing, so a listing racing with a mutation is rebuilt next time
+    long version = tasks.getVersion();
+    Listing cachedListing = cachedListings.get(type.ordinal());
+    if (cachedListing != null && cachedListing.version == version) {
+      return cachedListing.processes;
     }
 
-    // The tasks queue is already ordered by creation or insertion time
-    return tasks;
+    // The registry maintains every ordering, so building a listing never sorts
+    List<Process> processes = tasks.list(type);
+    cachedListings.set(type.ordinal(), new Listing(version, processes));
+    return processes;
+  }
+
+  public ProcessPage listPage(SortingType type, long cursor, int limit) {
+    Objects.requireNonNull(type);
+    return tasks.list(type, cursor, limit);
+  }
+
+  public Stream<Process> stream(SortingType type) {
+    Objects.requireNonNull(type);
+    return tasks.stream(type);
+  }
+
+  public List<Process> top(int limit, ResourceMetric metric) {
+    return TopProcesses.of(tasks.stream(SortingType.CREATION_TIME), limit, metric);
+  }
+
+  /**
+   * Subscribes to the change feed of the journal, filtered to the events of this task manager, so
+   * the events agree with the snapshots even if the journal is shared, e.g. the
+   * {@link EventJournal#defaultJournal()}.
+   */
+  public ChangeFeed.Subscription subscribe(ChangeListener listener) {
+    return journal.getChangeFeed().subscribe(listener, () -> listAll(SortingType.CREATION_TIME),
+        owner -> owner == journalOwner);
   }
 
-  public void kill(long pid) {
-    log.info("Kill process [pid={}]", pid);
-    Optional<Process> processToKill = tasks.stream().filter(process -> process.getPid() == pid)
-        .findAny();
+  /**
+   * @return The id that tags the journal events of this task manager.
+   */
+  int getJournalOwner() {
+    return journalOwner;
+  }
+
+  /**
+   * @return The number of timed adds whose timeout is still scheduled, across the task managers.
+   */
+  static int getScheduledAdmissionTimeouts() {
+    return AdmissionTimeoutsHolder.SCHEDULER.getQueue().size();
+  }
+
+  public Termination kill(long pid) {
+    Optional<Process> processToKill = tasks.remove(pid);
     if (processToKill.isPresent()) {
-      processToKill.get().stop();
-      tasks.remove(processToKill.get());
-    } else {
-      log.warn("Unable to kill, process not found [pid={}]", pid);
+      killed(processToKill.get());
+      release(1);
+      return new Termination(Collections.singletonList(processToKill.get()));
     }
+    log.debug("Unable to kill, process not found [pid={}]", pid);
+    return Termination.NONE;
+  }
+
+  public Termination kill(Collection<Long> pids) {
+    Objects.requireNonNull(pids);
+    return killed(tasks.removeAll(pids));
   }
 
-  public void killAll(PriorityType priority) {
+  public Termination killAll(PriorityType priority) {
     Objects.requireNonNull(priority);
-    log.info("Kill processes with priority " + priority);
+    return killed(tasks.removeAll(priority));
+  }
+
+  public Termination killAll() {
+    return killed(tasks.removeAll());
+  }
+
+  public Termination shutdown(long timeout, TimeUnit unit) throws InterruptedException {
+    Objects.requireNonNull(unit);
+    long startNanos = System.nanoTime();
+    Termination termination = stop();
+    boolean terminated = termination.await(timeout, unit);
+    log.info("Task Manager shut down [killed={},stragglers={},elapsedMillis={}]", termination.getProcesses().size(),
+        terminated ? 0 : termination.getStragglers().size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+    return termination;
+  }
+
+  public boolean isShutdown() {
+    return shutdown;
+  }
+
+  /**
+   * Stops admitting processes, fails the waiting adds and kills every process without waiting for
+   * their termination.
+   */
+  Termination stop() {
+    shutdown = true;
+    expiryWheel.close();
+    for (AdmissionWaitQueue.Waiter waiter : admissionWaitQueue.drain()) {
+      waiter.getAdmission().completeExceptionally(capacityException(TaskManagerInternalException.SHUTDOWN_EXCEPTION));
+    }
+    return killAll();
+  }
+
+  public TaskManagerMetrics getMetrics() {
+    return metrics;
+  }
+
+  public int getCapacity() {
+    return admissionGate.getCapacity();
+  }
+
+  public void setCapacity(int capacity) {
+    checkCapacity(capacity);
+    log.info("Change Task Manager capacity [capacity={},evictionPolicy={}]", capacity, evictionPolicy);
+    admissionGate.setCapacity(capacity);
+    evictOverCapacity();
+    admitWaiting();
+  }
+
+  /**
+   * Returns the number of adds waiting for capacity.
+   *
+   * @return The waiting adds.
+   */
+  public int getWaitingAdds() {
+    return admissionWaitQueue.size();
+  }
+
+  private void recover(WriteAheadLog writeAheadLog) {
+    List<Process> recoveredProcesses = new ArrayList<>(writeAheadLog.getRecoveredProcesses().size());
+    writeAheadLog.getRecoveredProcesses().forEach((pid, priority) -> {
+      recoveredProcesses.add(new Process(pid, priority));
+      metrics.recovered(priority);
+    });
+    pidAllocator.continueAfter(writeAheadLog.getRecoveredMaxPid());
+    log.info("Recover processes [processes={},capacity={}]", recoveredProcesses.size(), getCapacity());
+
+    // The recovered processes are already in the log
+    admissionGate.acquire(recoveredProcesses.size());
+    tasks.addAll(recoveredProcesses);
+    for (Process recoveredProcess : recoveredProcesses) {
+      recoveredProcess.getResult().whenComplete((result, failure) -> exited(recoveredProcess));
+      recoveredProcess.start(executionEngine, startLatencyRecorder);
+    }
+    evictOverCapacity();
+  }
+
+  private void evictOverCapacity() {
+    while (admissionGate.getAdmitted() > admissionGate.getCapacity()) {
+      Optional<Process> processToEvict = nextToEvict();
+      if (!processToEvict.isPresent()) {
+        break;
+      }
+      evicted(processToEvict.get(), evictionPolicy);
+      admissionGate.release();
+    }
+  }
+
+  private void admitBatchToFifo(boolean[] admitted, boolean[] superseded, List<Process> evictedProcesses) {
+    int count = admitted.length;
+    int slots = admissionGate.tryAcquire(count);
+    while (slots < count) {
+      Optional<Process> oldestProcess = tasks.removeOldest();
+      if (oldestProcess.isPresent()) {
+        evictedProcesses.add(oldestProcess.get());
+        if (admissionGate.tryTransfer()) {
+          slots++;
+        }
+      } else if (slots > 0) {
+        // Nothing older is left, so the batch evicts its own oldest processes
+        break;
+      } else {
+        // Every admission is held by an add that did not register its process yet
+        Thread.yield();
+        slots += admissionGate.tryAcquire(count - slots);
+      }
+    }
+    // The newest processes of the batch are the ones that survive
+    Arrays.fill(superseded, 0, count - slots, true);
+    Arrays.fill(admitted, count - slots, count, true);
+  }
+
+  private void admitBatchWithPriority(List<PriorityType> priorities, boolean[] admitted, boolean[] superseded,
+      List<Process> evictedProcesses) {
+    int slots = admissionGate.tryAcquire(priorities.size());
+    Map<PriorityType, Deque<Integer>> admittedByPriority = new EnumMap<>(PriorityType.class);
+    for (int i = 0; i < priorities.size(); i++) {
+      PriorityType priority = priorities.get(i);
+      if (i < slots || evictLowerPriority(priority, admitted, superseded, admittedByPriority, evictedProcesses)) {
+        admitted[i] = true;
+        admittedByPriority.computeIfAbsent(priority, key -> new ArrayDeque<>()).addLast(i);
+      }
+    }
+  }
+
+  private boolean evictLowerPriority(PriorityType priority, boolean[] admitted, boolean[] superseded,
+      Map<PriorityType, Deque<Integer>> admittedByPriority, List<Process> evictedProcesses) {
+    boolean retry;
+    do {
+      retry = false;
+      for (PriorityType lowerPriority : PriorityType.byPrecedence()) {
+        if (lowerPriority.getPrecedence() >= priority.getPrecedence()) {
+          return false;
+        }
+        // Registered processes are older than the ones of the batch with the same priority
+        Optional<Process> registeredProcess = tasks.removeOldest(lowerPriority);
+        if (registeredProcess.isPresent()) {
+          evictedProcesses.add(registeredProcess.get());
+          if (admissionGate.tryTransfer()) {
+            return true;
+          }
+          retry = true;
+          break;
+        }
+        Deque<Integer> admittedInBatch = admittedByPriority.get(lowerPriority);
+        if (admittedInBatch != null && !admittedInBatch.isEmpty()) {
+          int supersededIndex = admittedInBatch.pollFirst();
+          admitted[supersededIndex] = false;
+          superseded[supersededIndex] = true;
+          return true;
+        }
+      }
+    } while (retry);
+    return false;
+  }
+
+  private Optional<Process> nextToEvict() {
+    if (EvictionPolicy.FIFO == evictionPolicy) {
+      return tasks.removeOldest();
+    } else if (EvictionPolicy.PRIORITY == evictionPolicy) {
+      return tasks.removeLowestPriority();
+    }
+    // EvictionPolicy.NONE lets the processes over capacity run until they are killed
+    return Optional.empty();
+  }
 
-    List<Process> processToKillList = tasks.stream()
-        .filter(process -> priority.getPrecedence() == process.getPriority().getPrecedence())
-        .collect(Collectors.toList());
+  private void checkNotShutdown() {
+    if (shutdown) {
+      throw shutdownException();
+    }
+  }
 
-    log.info("Processes to be killed: " + processToKillList);
-    processToKillList.forEach(process -> process.stop());
-    tasks.removeAll(processToKillList);
+  private static IllegalStateException shutdownException() {
+    return new IllegalStateException("The task manager has been shut down");
   }
 
-  public void killAll() {
-    log.info("Killing all the existing processes: " + tasks);
-    tasks.forEach(process -> process.stop());
-    tasks.clear();
+  private static void checkCapacity(int capacity) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("Capacity must be greater than zero [capacity=" + capacity + "]");
+    }
   }
 
-  private static synchronized long nextPid() {
-    return ++pidSeqNumber;
+  private long nextPid() {
+    return pidAllocator.next();
   }
 
   private Process add(Process newProcess) {
+    persist(JournalEventType.ADDED, newProcess);
     tasks.add(newProcess);
-    newProcess.start();
+    journal.record(journalOwner, JournalEventType.ADDED, newProcess.getPid(), newProcess.getPriority());
+    // Killed processes are already unregistered, so this only releases processes that finished by themselves
+    newProcess.getResult().whenComplete((result, failure) -> exited(newProcess));
+    newProcess.start(executionEngine, startLatencyRecorder);
+    if (shutdown) {
+      // Admitted while shutting down, after the processes were killed
+      kill(newProcess.getPid());
+    }
     return newProcess;
   }
+
+  private void add(List<Process> newProcesses) {
+    newProcesses.forEach(newProcess -> persist(JournalEventType.ADDED, newProcess));
+    tasks.addAll(newProcesses);
+    for (Process newProcess : newProcesses) {
+      journal.record(journalOwner, JournalEventType.ADDED, newProcess.getPid(), newProcess.getPriority());
+      newProcess.getResult().whenComplete((result, failure) -> exited(newProcess));
+    }
+    newProcesses.forEach(newProcess -> newProcess.start(executionEngine, startLatencyRecorder));
+    if (shutdown) {
+      killed(tasks.removeAll(newProcesses.stream().map(Process::getPid).collect(Collectors.toList())));
+    }
+  }
+
+  /**
+   * Stops the processes removed from the registry and releases their admissions. Stopping
+   * interrupts the threads running their payload, so large batches are stopped in parallel.
+   */
+  private Termination killed(List<Process> processes) {
+    if (processes.isEmpty()) {
+      return Termination.NONE;
+    }
+    if (processes.size() >= PARALLEL_STOP_THRESHOLD) {
+      processes.parallelStream().forEach(Process::stop);
+    }
+    processes.forEach(this::killed);
+    release(processes.size());
+    return new Termination(processes);
+  }
+
+  /**
+   * Schedules the expiry of an added process. A process admitted while the task manager shuts down
+   * can't be scheduled anymore, so it is killed instead of running past its deadline.
+   *
+   * @return {@link Process} The given process.
+   * @throws IllegalStateException in case the task manager has been shut down.
+   */
+  Process expireAt(Process process, Deadline deadline) {
+    TimingWheel.Timeout<Process> timeout;
+    try {
+      timeout = expiryWheel.schedule(process, deadline.getNanoTime());
+    } catch (IllegalStateException closed) {
+      // The wheel is only closed by the shutdown, which may have killed the processes before this one was added
+      kill(process.getPid());
+      throw shutdownException();
+    }
+    expiries.put(process.getPid(), timeout);
+    // A process killed in the meantime already missed its cancellation
+    if (process.getState().isFinished()) {
+      forgetExpiry(process);
+    }
+    return process;
+  }
+
+  /**
+   * Kills the processes whose deadline passed, with a single batch kill per timer tick.
+   */
+  private void expired(List<Process> processes) {
+    List<Long> pids = new ArrayList<>(processes.size());
+    for (Process process : processes) {
+      expiries.remove(process.getPid());
+      pids.add(process.getPid());
+    }
+    Termination termination = kill(pids);
+    metrics.expired(termination.getProcesses().size());
+  }
+
+  private void forgetExpiry(Process process) {
+    if (!expiries.isEmpty()) {
+      TimingWheel.Timeout<Process> timeout = expiries.remove(process.getPid());
+      if (timeout != null) {
+        timeout.cancel();
+      }
+    }
+  }
+
+  private void killed(Process process) {
+    process.stop();
+    forgetExpiry(process);
+    metrics.killed(process.getPriority());
+    persist(JournalEventType.KILLED, process);
+    journal.record(journalOwner, JournalEventType.KILLED, process.getPid(), process.getPriority());
+  }
+
+  private void evicted(Process process, EvictionPolicy policy) {
+    process.stop();
+    forgetExpiry(process);
+    metrics.evicted(policy, process.getPriority());
+    persist(JournalEventType.EVICTED, process);
+    journal.record(journalOwner, JournalEventType.EVICTED, process.getPid(), process.getPriority());
+  }
+
+  private void exited(Process process) {
+    if (tasks.remove(process.getPid()).isPresent()) {
+      forgetExpiry(process);
+      metrics.exited(process.getPriority());
+      persist(JournalEventType.EXITED, process);
+      journal.record(journalOwner, JournalEventType.EXITED, process.getPid(), process.getPriority());
+      release(1);
+    }
+  }
+
+  /**
+   * Releases admissions, handing them over to the adds waiting for capacity first.
+   */
+  private void release(int admissions) {
+    if (admissions == 0) {
+      return;
+    }
+    List<AdmissionWaitQueue.Waiter> admittedWaiters = Collections.emptyList();
+    if (admissionWaitQueue.hasWaiters()) {
+      admittedWaiters = new ArrayList<>(admissions);
+      admissions = admissionWaitQueue.handOff(admissions, admittedWaiters);
+    }
+    admissionGate.release(admissions);
+    admittedWaiters.forEach(this::admitWaiter);
+    // A waiter queued while the admissions were released checks the gate before queueing
+    admitWaiting();
+  }
+
+  private void admitWaiting() {
+    if (admissionWaitQueue.hasWaiters()) {
+      admissionWaitQueue.admitWaiting().forEach(this::admitWaiter);
+    }
+  }
+
+  private void admitWaiter(AdmissionWaitQueue.Waiter waiter) {
+    metrics.admitted(EvictionPolicy.NONE, waiter.getPriority(), waiter.getStartNanos());
+    Process process = add(new Process(nextPid(), waiter.getPriority(), null));
+    if (!waiter.getAdmission().complete(process)) {
+      // The waiter was cancelled while its process was being added
+      kill(process.getPid());
+    }
+  }
+
+  private void persist(JournalEventType type, Process process) {
+    if (writeAheadLog != null) {
+      writeAheadLog.append(type, process.getPid(), process.getPriority());
+    }
+  }
+
+  /**
+   * Holds the timer of the timed adds, shared by the task managers. Cancelled timeouts leave its
+   * queue right away, so admitted waiters don't leave their timeout behind until it fires.
+   */
+  private static final class AdmissionTimeoutsHolder {
+    private static final ScheduledThreadPoolExecutor SCHEDULER = new ScheduledThreadPoolExecutor(1, task -> {
+      Thread thread = new Thread(task, "admission-timeouts");
+      thread.setDaemon(true);
+      return thread;
+    });
+
+    static {
+      SCHEDULER.setRemoveOnCancelPolicy(true);
+    }
+  }
+
+  private static final class Listing {
+    private final long version;
+    private final List<Process> processes;
+
+    private Listing(long version, List<Process> processes) {
+      this.version = version;
+      this.processes = processes;
+    }
+  }
 }
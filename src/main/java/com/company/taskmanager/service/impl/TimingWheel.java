@@ -0,0 +1,370 @@
+package com.company.taskmanager.service.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Expires a very large number of timeouts from a single ticker thread, with constant cost to
+ * schedule and to cancel each of them.
+ *
+ * <p>The wheel is hierarchical: {@value #LEVELS} levels of {@value #BUCKETS} buckets, where a
+ * bucket of level {@code L} spans {@code 256^L} ticks, so {@code 2^32} ticks are covered without
+ * any bucket per tick. A timeout goes to the lowest level whose span holds its deadline, and the
+ * buckets of the upper levels are cascaded to the lower ones as the ticker reaches them, so a
+ * timeout is moved at most once per level. Buckets are intrusive doubly linked lists, only touched
+ * by the ticker thread. Scheduling and cancelling threads push the timeouts to lock-free stacks
+ * that the ticker drains on every tick, so they never contend on the buckets.
+ *
+ * <p>Timeouts expire at most one tick after their deadline, never before. The timeouts expired in
+ * a tick are handed to the expiry handler together. The ticker thread only wakes up for the ticks
+ * whose bucket holds timeouts, for the cascades, and when a timeout due earlier is scheduled. It is
+ * started by the first scheduled timeout and stops once the wheel has been empty for
+ * {@value #IDLE_STOP_MILLIS} ms, so an idle wheel holds no thread.
+ *
+ * @param <T> the type of the values expired by the timeouts.
+ */
+class TimingWheel<T> implements AutoCloseable {
+  private static Logger log = LoggerFactory.getLogger(TimingWheel.class);
+
+  static final int LEVELS = 4;
+  static final int BUCKETS = 256;
+
+  static final long IDLE_STOP_MILLIS = 1000;
+
+  private static final int BUCKET_BITS = 8;
+  private static final long NEVER = Long.MAX_VALUE;
+  private static final long MAX_DELTA_TICKS = (1L << (BUCKET_BITS * LEVELS)) - 1;
+  private static final AtomicInteger wheelSeqNumber = new AtomicInteger();
+
+  private final long tickNanos;
+  private final Consumer<List<T>> expiryHandler;
+  private final long startNanos = System.nanoTime();
+  private final Timeout<T>[] buckets = newBuckets(LEVELS * BUCKETS);
+  private final AtomicReference<Timeout<T>> scheduled = new AtomicReference<>();
+  private final AtomicReference<Timeout<T>> cancelled = new AtomicReference<>();
+  private final AtomicInteger pending = new AtomicInteger();
+  private final AtomicBoolean ticking = new AtomicBoolean();
+  private volatile Thread ticker;
+  // The tick the ticker sleeps until, a timeout due earlier wakes it up
+  private volatile long wakeTick = NEVER;
+  private volatile boolean closed;
+  // The next tick to process, only the ticker thread reads and writes it
+  private long currentTick;
+
+  /**
+   * Creates the wheel, its ticker thread starts with the first timeout.
+   *
+   * @param tickMillis the milliseconds between ticks, greater than zero.
+   * @param expiryHandler receives the values of the timeouts expired in the same tick.
+   */
+  TimingWheel(long tickMillis, Consumer<List<T>> expiryHandler) {
+    if (tickMillis <= 0) {
+      throw new IllegalArgumentException("Tick must be greater than zero [tickMillis=" + tickMillis + "]");
+    }
+    this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+    this.expiryHandler = Objects.requireNonNull(expiryHandler);
+  }
+
+  /**
+   * Schedules the expiry of a value.
+   *
+   * @param value the value handed to the expiry handler.
+   * @param deadlineNanos the {@link System#nanoTime()} after which the value expires.
+   * @return {@link Timeout} The handle to cancel the expiry.
+   */
+  Timeout<T> schedule(T value, long deadlineNanos) {
+    if (closed) {
+      throw new IllegalStateException("The timing wheel has been closed");
+    }
+    // Rounded up, so a timeout never expires before its deadline
+    long deadlineTick = Math.max(0, Math.floorDiv(deadlineNanos - startNanos + tickNanos - 1, tickNanos));
+    Timeout<T> timeout = new Timeout<>(this, Objects.requireNonNull(value), deadlineTick);
+    pending.incrementAndGet();
+    push(scheduled, timeout, false);
+    if (!ticking.get() && ticking.compareAndSet(false, true)) {
+      startTicker();
+    } else if (deadlineTick < wakeTick) {
+      LockSupport.unpark(ticker);
+    }
+    return timeout;
+  }
+
+  /**
+   * @return The number of timeouts neither expired nor cancelled yet.
+   */
+  int size() {
+    return pending.get();
+  }
+
+  /**
+   * @return True in case the ticker thread is running.
+   */
+  boolean isTicking() {
+    return ticking.get();
+  }
+
+  @Override
+  public void close() {
+    closed = true;
+    Thread ticker = this.ticker;
+    if (ticker != null) {
+      LockSupport.unpark(ticker);
+    }
+  }
+
+  private void startTicker() {
+    Thread thread = new Thread(this::tickUntilIdle, "timing-wheel-" + wheelSeqNumber.incrementAndGet());
+    thread.setDaemon(true);
+    ticker = thread;
+    thread.start();
+  }
+
+  private void tickUntilIdle() {
+    // The wheel held no pending timeout while the ticker was stopped, so the ticks since are empty
+    currentTick = Math.max(currentTick, elapsedTicks());
+    long idleSinceNanos = System.nanoTime();
+    List<T> expired = new ArrayList<>();
+    while (!closed) {
+      long elapsedTicks = elapsedTicks();
+      drainCancelled();
+      drainScheduled();
+      // Catches up with every tick elapsed since the previous round
+      while (currentTick <= elapsedTicks) {
+        tick(expired);
+      }
+      if (!expired.isEmpty()) {
+        try {
+          expiryHandler.accept(expired);
+        } catch (RuntimeException exception) {
+          log.warn("Unexpected error expiring timeouts [expired={}]", expired.size(), exception);
+        }
+        expired = new ArrayList<>();
+      }
+      long nowNanos = System.nanoTime();
+      long wakeNanos;
+      if (pending.get() > 0) {
+        idleSinceNanos = nowNanos;
+        wakeTick = nextBusyTick();
+        wakeNanos = startNanos + wakeTick * tickNanos;
+      } else if (nowNanos - idleSinceNanos >= TimeUnit.MILLISECONDS.toNanos(IDLE_STOP_MILLIS)) {
+        if (stopTicking()) {
+          return;
+        }
+        continue;
+      } else {
+        wakeTick = NEVER;
+        wakeNanos = idleSinceNanos + TimeUnit.MILLISECONDS.toNanos(IDLE_STOP_MILLIS);
+      }
+      // A timeout scheduled after the drain either is seen here or reads the wake tick and unparks
+      if (scheduled.get() == null) {
+        LockSupport.parkNanos(this, wakeNanos - nowNanos);
+      }
+    }
+    ticking.set(false);
+  }
+
+  /**
+   * Stops the ticker, unless a timeout was scheduled in the meantime.
+   *
+   * @return True in case the ticker must stop.
+   */
+  private boolean stopTicking() {
+    wakeTick = NEVER;
+    ticking.set(false);
+    // A timeout scheduled meanwhile either sees the ticker stopped and starts one, or is seen here
+    return pending.get() == 0 || !ticking.compareAndSet(false, true);
+  }
+
+  /**
+   * @return The first tick from the current one whose bucket holds timeouts, or the next cascade.
+   */
+  private long nextBusyTick() {
+    long tick = currentTick;
+    // The first tick of every BUCKETS cascades the levels above, whatever its own bucket holds
+    while ((tick & (BUCKETS - 1)) != 0 && buckets[(int) tick & (BUCKETS - 1)] == null) {
+      tick++;
+    }
+    return tick;
+  }
+
+  private long elapsedTicks() {
+    return (System.nanoTime() - startNanos) / tickNanos;
+  }
+
+  private void tick(List<T> expired) {
+    long tick = currentTick;
+    // Every BUCKETS ticks the next bucket of the level above is spread over the levels below
+    for (int level = 1; level < LEVELS && (tick & ((1L << (BUCKET_BITS * level)) - 1)) == 0; level++) {
+      cascade(level, (int) (tick >>> (BUCKET_BITS * level)) & (BUCKETS - 1));
+    }
+    int index = (int) tick & (BUCKETS - 1);
+    Timeout<T> timeout = buckets[index];
+    buckets[index] = null;
+    currentTick = tick + 1;
+    while (timeout != null) {
+      Timeout<T> next = timeout.next;
+      timeout.unlinked();
+      if (timeout.state != Timeout.PENDING) {
+        // Cancelled, its cancellation is drained on the next round
+      } else if (timeout.deadlineTick > tick) {
+        // Deadlines beyond the span of the wheel go round again
+        insert(timeout);
+      } else if (timeout.expire()) {
+        pending.decrementAndGet();
+        expired.add(timeout.value);
+      }
+      timeout = next;
+    }
+  }
+
+  private void cascade(int level, int index) {
+    int bucket = level * BUCKETS + index;
+    Timeout<T> timeout = buckets[bucket];
+    buckets[bucket] = null;
+    while (timeout != null) {
+      Timeout<T> next = timeout.next;
+      timeout.unlinked();
+      insert(timeout);
+      timeout = next;
+    }
+  }
+
+  private void insert(Timeout<T> timeout) {
+    long delta = Math.min(Math.max(timeout.deadlineTick - currentTick, 0), MAX_DELTA_TICKS);
+    long placedTick = currentTick + delta;
+    int level = 0;
+    while (level < LEVELS - 1 && delta >= 1L << (BUCKET_BITS * (level + 1))) {
+      level++;
+    }
+    int bucket = level * BUCKETS + ((int) (placedTick >>> (BUCKET_BITS * level)) & (BUCKETS - 1));
+    Timeout<T> head = buckets[bucket];
+    timeout.bucket = bucket;
+    timeout.next = head;
+    if (head != null) {
+      head.previous = timeout;
+    }
+    buckets[bucket] = timeout;
+  }
+
+  private void drainScheduled() {
+    Timeout<T> timeout = scheduled.getAndSet(null);
+    while (timeout != null) {
+      Timeout<T> next = timeout.nextScheduled;
+      timeout.nextScheduled = null;
+      if (timeout.state == Timeout.PENDING) {
+        insert(timeout);
+      }
+      timeout = next;
+    }
+  }
+
+  private void drainCancelled() {
+    Timeout<T> timeout = cancelled.getAndSet(null);
+    while (timeout != null) {
+      Timeout<T> next = timeout.nextCancelled;
+      timeout.nextCancelled = null;
+      if (timeout.bucket >= 0) {
+        if (timeout.previous == null) {
+          buckets[timeout.bucket] = timeout.next;
+        } else {
+          timeout.previous.next = timeout.next;
+        }
+        if (timeout.next != null) {
+          timeout.next.previous = timeout.previous;
+        }
+        timeout.unlinked();
+      }
+      timeout = next;
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <T> Timeout<T>[] newBuckets(int length) {
+    return (Timeout<T>[]) new Timeout<?>[length];
+  }
+
+  private static <T> void push(AtomicReference<Timeout<T>> stack, Timeout<T> timeout, boolean cancellation) {
+    Timeout<T> head;
+    do {
+      head = stack.get();
+      if (cancellation) {
+        timeout.nextCancelled = head;
+      } else {
+        timeout.nextScheduled = head;
+      }
+    } while (!stack.compareAndSet(head, timeout));
+  }
+
+  /**
+   * The scheduled expiry of a value, which either expires or is cancelled.
+   *
+   * @param <T> the type of the expired value.
+   */
+  static final class Timeout<T> {
+    private static final int PENDING = 0;
+    private static final int EXPIRED = 1;
+    private static final int CANCELLED = 2;
+    @SuppressWarnings("rawtypes")
+    private static final AtomicIntegerFieldUpdater<Timeout> STATE =
+        AtomicIntegerFieldUpdater.newUpdater(Timeout.class, "state");
+
+    private final TimingWheel<T> wheel;
+    private final T value;
+    private final long deadlineTick;
+    private volatile int state = PENDING;
+    // Links of the bucket and of the stacks, the bucket is -1 while in none
+    private int bucket = -1;
+    private Timeout<T> previous;
+    private Timeout<T> next;
+    private Timeout<T> nextScheduled;
+    private Timeout<T> nextCancelled;
+
+    private Timeout(TimingWheel<T> wheel, T value, long deadlineTick) {
+      this.wheel = wheel;
+      this.value = value;
+      this.deadlineTick = deadlineTick;
+    }
+
+    /**
+     * Cancels the expiry, the ticker thread releases the timeout on its next tick.
+     *
+     * @return True in case the timeout was cancelled, false if it already expired or was cancelled.
+     */
+    boolean cancel() {
+      if (!STATE.compareAndSet(this, PENDING, CANCELLED)) {
+        return false;
+      }
+      wheel.pending.decrementAndGet();
+      push(wheel.cancelled, this, true);
+      return true;
+    }
+
+    boolean isExpired() {
+      return state == EXPIRED;
+    }
+
+    T getValue() {
+      return value;
+    }
+
+    private boolean expire() {
+      return STATE.compareAndSet(this, PENDING, EXPIRED);
+    }
+
+    private void unlinked() {
+      bucket = -1;
+      previous = null;
+      next = null;
+    }
+  }
+}
@@ -0,0 +1,69 @@
+package com.company.taskmanager.service.impl;
+
+import com.company.taskmanager.model.Process;
+import com.company.taskmanager.model.ResourceMetric;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.stream.Stream;
+
+/**
+ * Picks the heaviest processes by a {@link ResourceMetric} with a heap bounded to the number of
+ * requested processes, so the ranking costs {@code O(n log limit)} and never sorts the whole table.
+ */
+final class TopProcesses {
+
+  private static final Comparator<Ranked> LIGHTEST_FIRST = Comparator
+      .comparingLong((Ranked ranked) -> ranked.value)
+      .thenComparing(Comparator.comparingLong((Ranked ranked) -> ranked.process.getPid()).reversed());
+
+  private TopProcesses() {
+  }
+
+  /**
+   * @param processes Stream of the processes to rank.
+   * @param limit the maximum number of processes returned, greater than zero.
+   * @param metric {@link ResourceMetric} by which the processes are ranked.
+   * @return Immutable list with the heaviest processes, heaviest first, ties by lowest pid.
+   */
+  static List<Process> of(Stream<Process> processes, int limit, ResourceMetric metric) {
+    if (limit <= 0) {
+      throw new IllegalArgumentException("Top limit must be greater than zero [limit=" + limit + "]");
+    }
+    Objects.requireNonNull(metric);
+    long nowNanos = System.nanoTime();
+    // The root is the lightest of the heaviest processes seen so far
+    PriorityQueue<Ranked> heaviest = new PriorityQueue<>(Math.min(limit, 1024), LIGHTEST_FIRST);
+    processes.forEach(process -> {
+      Ranked ranked = new Ranked(process, metric.measure(process, nowNanos));
+      if (heaviest.size() < limit) {
+        heaviest.offer(ranked);
+      } else if (LIGHTEST_FIRST.compare(ranked, heaviest.peek()) > 0) {
+        heaviest.poll();
+        heaviest.offer(ranked);
+      }
+    });
+    List<Process> top = new ArrayList<>(heaviest.size());
+    while (!heaviest.isEmpty()) {
+      top.add(heaviest.poll().process);
+    }
+    Collections.reverse(top);
+    return Collections.unmodifiableList(top);
+  }
+
+  /**
+   * A process with its measure taken once, so the heap order never changes while ranking.
+   */
+  private static final class Ranked {
+    private final Process process;
+    private final long value;
+
+    private Ranked(Process process, long value) {
+      this.process = process;
+      this.value = value;
+    }
+  }
+}
@@ -0,0 +1,118 @@
+package com.company.taskmanager.capacity;
+
+import static org.junit.Assert.*;
+
+import com.company.taskmanager.exception.TaskManagerException;
+import com.company.taskmanager.model.EvictionPolicy;
+import com.company.taskmanager.model.PriorityType;
+import com.company.taskmanager.model.Process;
+import com.company.taskmanager.model.SortingType;
+import com.company.taskmanager.service.impl.TaskManagerServiceImpl;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Test;
+
+public class CapacityControllerTest {
+
+  private static final long NEVER_MILLIS = TimeUnit.HOURS.toMillis(1);
+  private static final LoadSample IDLE = new LoadSample(0.1, 0.1, 0, 0, 0);
+  private static final LoadSample OVERLOADED = new LoadSample(2.0, 0.5, 0, 0, 0);
+
+  private final TaskManagerServiceImpl taskManager = new TaskManagerServiceImpl(10, EvictionPolicy.PRIORITY);
+  private volatile LoadSample sample = IDLE;
+  private final CapacityController underTest = new CapacityController(taskManager, 4, 20, NEVER_MILLIS, () -> sample);
+
+  @After
+  public void tearDown() {
+    underTest.close();
+    taskManager.killAll();
+  }
+
+  @Test
+  public void overloadShrinksCapacityAndShedsLowPriorityFirst() throws TaskManagerException {
+    // Given the task manager full of low and high priority processes
+    List<Process> high = new ArrayList<>();
+    for (int i = 0; i < 5; i++) {
+      taskManager.add(PriorityType.LOW);
+      high.add(taskManager.add(PriorityType.HIGH));
+    }
+
+    // When the machine is overloaded
+    sample = OVERLOADED;
+
+    // Then the capacity decreases multiplicatively down to the minimum, shedding the low priorities
+    assertEquals(9, underTest.adjust());
+    assertEquals(4, taskManager.getMetrics().getLiveLow());
+    assertEquals(8, underTest.adjust());
+    assertEquals(7, underTest.adjust());
+    assertEquals(6, underTest.adjust());
+    assertEquals(5, underTest.adjust());
+    assertEquals(4, underTest.adjust());
+    assertEquals(4, underTest.adjust());
+    assertEquals(4, taskManager.getCapacity());
+    assertEquals(high.subList(1, 5), taskManager.listAll(SortingType.CREATION_TIME));
+  }
+
+  @Test
+  public void rejectionsGrowCapacityAdditivelyUpToTheMaximum() {
+    // Given adds rejected for lack of capacity
+    sample = new LoadSample(0.1, 0.1, 0, 3, 10);
+
+    // Then the capacity grows by its square root up to the maximum
+    assertEquals(13, underTest.adjust());
+    assertEquals(16, underTest.adjust());
+    assertEquals(20, underTest.adjust());
+    assertEquals(20, underTest.adjust());
+    assertEquals(20, taskManager.getCapacity());
+  }
+
+  @Test
+  public void capacityIsKeptWhileItDoesNotLimitTheWork() {
+    // Given a task manager with room to spare and an idle machine
+    sample = IDLE;
+
+    // Then the capacity is kept
+    assertEquals(10, underTest.adjust());
+    assertEquals(10, taskManager.getCapacity());
+    assertSame(IDLE, underTest.getLastSample());
+  }
+
+  @Test
+  public void latencyGrowthOverTheLowestObservedBacksOff() {
+    // Given the task manager full, processes running 2ms after their add
+    sample = new LoadSample(0.1, 0.1, TimeUnit.MILLISECONDS.toNanos(2), 0, 10);
+    assertEquals(13, underTest.adjust());
+
+    // When the latency grows far over the lowest one
+    sample = new LoadSample(0.1, 0.1, TimeUnit.MILLISECONDS.toNanos(10), 0, 13);
+
+    // Then the capacity backs off although the task manager is full
+    assertEquals(11, underTest.adjust());
+  }
+
+  @Test
+  public void unavailableSignalsAreIgnored() {
+    sample = new LoadSample(LoadSample.UNAVAILABLE, LoadSample.UNAVAILABLE, 0, 0, 10);
+
+    assertEquals(13, underTest.adjust());
+  }
+
+  @Test
+  public void liveSignalsAreSampled() throws TaskManagerException {
+    taskManager.add(PriorityType.MEDIUM);
+    try (CapacityController controller = new CapacityController(taskManager, 1, 100, NEVER_MILLIS)) {
+      int capacity = controller.adjust();
+
+      assertTrue(capacity >= 9 && capacity <= 10);
+      assertEquals(1, controller.getLastSample().getLive());
+      assertTrue(controller.getLastSample().getProcessCpuLoad() <= 1);
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void boundsMustBeOrdered() {
+    new CapacityController(taskManager, 10, 5);
+  }
+}
@@ -0,0 +1,67 @@
+package com.company.taskmanager.engine;
+
+import static org.junit.Assert.*;
+
+import com.company.taskmanager.model.PriorityType;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+public class ExecutionEnginesTest {
+
+  @Test
+  public void defaultEngineIsShared() {
+    assertSame(ExecutionEngines.defaultEngine(), ExecutionEngines.defaultEngine());
+  }
+
+  @Test
+  public void everyEngineRunsSubmittedTasks() throws Exception {
+    ExecutionEngine[] engines = {ExecutionEngines.defaultEngine(), ExecutionEngines.threadPerProcess(),
+        ExecutionEngines.pooled(2), ExecutionEngines.cached(), ExecutionEngines.forkJoin(2),
+        ExecutionEngines.priorityScheduled(2)};
+    for (ExecutionEngine engine : engines) {
+      CountDownLatch executed = new CountDownLatch(1);
+      Future<?> execution = engine.submit(executed::countDown, PriorityType.MEDIUM);
+      assertTrue(engine.getName(), executed.await(1, TimeUnit.MINUTES));
+      execution.get(1, TimeUnit.MINUTES);
+    }
+  }
+
+  @Test
+  public void cancelInterruptsTheRunningTask() throws InterruptedException {
+    // Given a blocked task
+    ExecutionEngine engine = ExecutionEngines.threadPerProcess();
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch interrupted = new CountDownLatch(1);
+    Future<?> execution = engine.submit(() -> {
+      started.countDown();
+      try {
+        Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+      } catch (InterruptedException exception) {
+        interrupted.countDown();
+      }
+    }, PriorityType.LOW);
+    assertTrue(started.await(1, TimeUnit.MINUTES));
+
+    // When
+    execution.cancel(true);
+
+    // Then
+    assertTrue(interrupted.await(1, TimeUnit.MINUTES));
+  }
+
+  @Test
+  public void virtualThreadsDependOnTheJdk() {
+    if (ExecutionEngines.isVirtualThreadsSupported()) {
+      assertEquals("virtual-threads", ExecutionEngines.virtualThreads().getName());
+    } else {
+      try {
+        ExecutionEngines.virtualThreads();
+        fail("Expected virtual threads to be unsupported");
+      } catch (UnsupportedOperationException expected) {
+        // Running on a JDK older than 21
+      }
+    }
+  }
+}
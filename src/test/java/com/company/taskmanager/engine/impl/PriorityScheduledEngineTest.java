@@ -0,0 +1,133 @@
+package com.company.taskmanager.engine.impl;
+
+import static org.junit.Assert.*;
+
+import com.company.taskmanager.model.PriorityType;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Test;
+
+public class PriorityScheduledEngineTest {
+
+  private PriorityScheduledEngine underTest;
+
+  @After
+  public void tearDown() {
+    underTest.shutdown();
+  }
+
+  @Test
+  public void prioritiesShareTheWorkersByPrecedence() throws Exception {
+    // Given a busy worker with queued LOW and HIGH tasks
+    underTest = new PriorityScheduledEngine(1, TimeUnit.MINUTES.toMillis(1));
+    CountDownLatch release = blockWorkers(1);
+    List<PriorityType> dispatched = Collections.synchronizedList(new ArrayList<>());
+    List<Future<?>> executions = new ArrayList<>();
+    for (int i = 0; i < 300; i++) {
+      executions.add(underTest.submit(() -> dispatched.add(PriorityType.LOW), PriorityType.LOW));
+      executions.add(underTest.submit(() -> dispatched.add(PriorityType.HIGH), PriorityType.HIGH));
+    }
+
+    // When
+    release.countDown();
+    for (Future<?> execution : executions) {
+      execution.get(1, TimeUnit.MINUTES);
+    }
+
+    // Then HIGH gets three dispatches for every LOW one while both have work
+    long high = dispatched.subList(0, 200).stream().filter(PriorityType.HIGH::equals).count();
+    assertEquals(150, high, 2);
+  }
+
+  @Test
+  public void agedTasksRunBeforeHigherPriorities() throws Exception {
+    // Given a LOW task waiting longer than the aging threshold and newer HIGH tasks
+    underTest = new PriorityScheduledEngine(1, 20);
+    CountDownLatch release = blockWorkers(1);
+    List<PriorityType> dispatched = Collections.synchronizedList(new ArrayList<>());
+    Future<?> low = underTest.submit(() -> dispatched.add(PriorityType.LOW), PriorityType.LOW);
+    Thread.sleep(50);
+    List<Future<?>> executions = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      executions.add(underTest.submit(() -> dispatched.add(PriorityType.HIGH), PriorityType.HIGH));
+    }
+
+    // When
+    release.countDown();
+    low.get(1, TimeUnit.MINUTES);
+    for (Future<?> execution : executions) {
+      execution.get(1, TimeUnit.MINUTES);
+    }
+
+    // Then
+    assertEquals(PriorityType.LOW, dispatched.get(0));
+  }
+
+  @Test
+  public void idleWorkersStealQueuedTasks() throws Exception {
+    // Given a task which queues work on its own busy worker and waits for it
+    underTest = new PriorityScheduledEngine(2);
+    CountDownLatch stolen = new CountDownLatch(10);
+    Future<?> execution = underTest.submit(() -> {
+      for (int i = 0; i < 10; i++) {
+        underTest.submit(stolen::countDown, PriorityType.MEDIUM);
+      }
+      try {
+        assertTrue(stolen.await(1, TimeUnit.MINUTES));
+      } catch (InterruptedException exception) {
+        Thread.currentThread().interrupt();
+      }
+    }, PriorityType.MEDIUM);
+
+    // Then the other worker runs them
+    execution.get(1, TimeUnit.MINUTES);
+    assertEquals(0, stolen.getCount());
+    assertEquals(0, underTest.getQueuedTasks());
+  }
+
+  @Test
+  public void cancelledTasksDoNotRun() throws Exception {
+    underTest = new PriorityScheduledEngine(1);
+    CountDownLatch release = blockWorkers(1);
+    CountDownLatch executed = new CountDownLatch(1);
+    Future<?> cancelled = underTest.submit(() -> fail("Cancelled task executed"), PriorityType.HIGH);
+    Future<?> execution = underTest.submit(executed::countDown, PriorityType.LOW);
+
+    cancelled.cancel(true);
+    release.countDown();
+
+    execution.get(1, TimeUnit.MINUTES);
+    assertTrue(cancelled.isCancelled());
+    assertEquals(0, executed.getCount());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void shutdownRejectsNewTasks() {
+    underTest = new PriorityScheduledEngine(1);
+    underTest.shutdown();
+
+    underTest.submit(() -> { }, PriorityType.LOW);
+  }
+
+  private CountDownLatch blockWorkers(int workers) throws InterruptedException {
+    CountDownLatch release = new CountDownLatch(1);
+    CountDownLatch started = new CountDownLatch(workers);
+    for (int i = 0; i < workers; i++) {
+      underTest.submit(() -> {
+        started.countDown();
+        try {
+          release.await();
+        } catch (InterruptedException exception) {
+          Thread.currentThread().interrupt();
+        }
+      }, PriorityType.HIGH);
+    }
+    assertTrue(started.await(1, TimeUnit.MINUTES));
+    return release;
+  }
+}
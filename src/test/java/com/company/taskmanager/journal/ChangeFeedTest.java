@@ -0,0 +1,160 @@
+package com.company.taskmanager.journal;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.Assert.*;
+
+import com.company.taskmanager.model.PriorityType;
+import com.company.taskmanager.model.Process;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.awaitility.Durations;
+import org.junit.Test;
+
+public class ChangeFeedTest {
+
+  @Test
+  public void subscriberReceivesSnapshotThenEventsInOrder() {
+    // Given a subscription
+    RecordingListener listener = new RecordingListener();
+    try (EventJournal journal = new EventJournal(64, 8, OverflowPolicy.BLOCK, Collections.emptyList());
+        ChangeFeed.Subscription subscription = journal.getChangeFeed().subscribe(listener, Collections::emptyList)) {
+      await().atMost(Durations.ONE_MINUTE).until(() -> listener.resyncs.get() == 1);
+
+      // When events are recorded
+      for (long pid = 1; pid <= 20; pid++) {
+        journal.record(JournalEventType.ADDED, pid, PriorityType.LOW);
+      }
+
+      // Then they are pushed once and in order
+      await().atMost(Durations.ONE_MINUTE).until(() -> listener.events.size() == 20);
+      for (int i = 0; i < 20; i++) {
+        assertEquals(i, listener.events.get(i).getSequence());
+        assertEquals(i + 1, listener.events.get(i).getPid());
+        assertEquals(JournalEventType.ADDED, listener.events.get(i).getType());
+      }
+      assertEquals(1, listener.resyncs.get());
+      assertEquals(0, subscription.getOverruns());
+      assertEquals(0, subscription.getLag());
+    }
+  }
+
+  @Test
+  public void slowSubscriberResyncsWithoutBlockingTheJournal() throws InterruptedException {
+    // Given a subscriber blocked in its first batch
+    CountDownLatch release = new CountDownLatch(1);
+    RecordingListener slowListener = new RecordingListener(release);
+    RecordingListener fastListener = new RecordingListener();
+    try (EventJournal journal = new EventJournal(8, 4, OverflowPolicy.BLOCK, Collections.emptyList());
+        ChangeFeed.Subscription slow = journal.getChangeFeed().subscribe(slowListener, Collections::emptyList);
+        ChangeFeed.Subscription fast = journal.getChangeFeed().subscribe(fastListener, Collections::emptyList)) {
+      await().atMost(Durations.ONE_MINUTE).until(() -> slowListener.resyncs.get() == 1 && fastListener.resyncs.get() == 1);
+      journal.record(JournalEventType.ADDED, 1, PriorityType.HIGH);
+      assertTrue(slowListener.delivering.await(1, TimeUnit.MINUTES));
+
+      // When many more events than the feed holds are recorded
+      for (long pid = 2; pid <= 100; pid++) {
+        journal.record(JournalEventType.KILLED, pid, PriorityType.HIGH);
+        // Paced by the other subscriber, so only the blocked one falls behind
+        journal.flush();
+        await().atMost(Durations.ONE_MINUTE).pollInterval(Duration.ofMillis(1)).until(() -> fast.getLag() == 0);
+      }
+
+      // Then the journal and the other subscriber are not held back
+      await().atMost(Durations.ONE_MINUTE).until(() -> fastListener.events.size() == 100);
+      assertEquals(0, fast.getOverruns());
+      assertTrue(slow.getLag() > journal.getChangeFeed().getCapacity());
+
+      // And the slow subscriber resyncs once released
+      release.countDown();
+      await().atMost(Durations.ONE_MINUTE).until(() -> slow.getOverruns() == 1 && slowListener.resyncs.get() == 2);
+      assertEquals(0, slow.getLag());
+    }
+  }
+
+  @Test
+  public void droppedJournalEventsResyncSubscribers() throws InterruptedException {
+    // Given a subscriber and a sink that blocks the journal thread
+    CountDownLatch writing = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    JournalSink blockedSink = events -> {
+      writing.countDown();
+      awaitQuietly(release);
+    };
+    RecordingListener listener = new RecordingListener();
+    try (EventJournal journal = new EventJournal(4, 1, OverflowPolicy.DROP, Collections.singletonList(blockedSink));
+        ChangeFeed.Subscription subscription = journal.getChangeFeed().subscribe(listener, Collections::emptyList)) {
+      await().atMost(Durations.ONE_MINUTE).until(() -> listener.resyncs.get() == 1);
+      journal.record(JournalEventType.ADDED, 1, PriorityType.LOW);
+      assertTrue(writing.await(1, TimeUnit.MINUTES));
+
+      // When the journal drops events
+      for (long pid = 2; pid <= 10; pid++) {
+        journal.record(JournalEventType.ADDED, pid, PriorityType.LOW);
+      }
+      release.countDown();
+
+      // Then the subscriber resyncs instead of missing them silently
+      await().atMost(Durations.ONE_MINUTE).until(() -> subscription.getOverruns() == 1 && listener.resyncs.get() == 2);
+    }
+  }
+
+  @Test
+  public void closedSubscriptionStopsReceivingEvents() {
+    // Given
+    RecordingListener listener = new RecordingListener();
+    try (EventJournal journal = new EventJournal(64, 8, OverflowPolicy.BLOCK, Collections.emptyList())) {
+      ChangeFeed.Subscription subscription = journal.getChangeFeed().subscribe(listener, Collections::emptyList);
+      assertEquals(1, journal.getChangeFeed().getSubscriptions());
+
+      // When
+      subscription.close();
+      journal.record(JournalEventType.EXITED, 1, PriorityType.MEDIUM);
+      journal.flush();
+
+      // Then
+      assertEquals(0, journal.getChangeFeed().getSubscriptions());
+      assertTrue(listener.events.isEmpty());
+    }
+  }
+
+  private static void awaitQuietly(CountDownLatch latch) {
+    try {
+      latch.await(1, TimeUnit.MINUTES);
+    } catch (InterruptedException exception) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static class RecordingListener implements ChangeListener {
+    private final List<ChangeEvent> events = Collections.synchronizedList(new ArrayList<>());
+    private final AtomicInteger resyncs = new AtomicInteger();
+    private final CountDownLatch delivering = new CountDownLatch(1);
+    private final CountDownLatch release;
+
+    RecordingListener() {
+      this(new CountDownLatch(0));
+    }
+
+    RecordingListener(CountDownLatch release) {
+      this.release = release;
+    }
+
+    @Override
+    public void onResync(List<Process> processes) {
+      events.clear();
+      resyncs.incrementAndGet();
+    }
+
+    @Override
+    public void onEvents(List<ChangeEvent> events) {
+      delivering.countDown();
+      awaitQuietly(release);
+      this.events.addAll(events);
+    }
+  }
+}
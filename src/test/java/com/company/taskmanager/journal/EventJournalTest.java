@@ -0,0 +1,135 @@
+package com.company.taskmanager.journal;
+
+import static org.junit.Assert.*;
+
+import com.company.taskmanager.journal.impl.FileJournalSink;
+import com.company.taskmanager.model.PriorityType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+public class EventJournalTest {
+
+  @Test
+  public void eventsAreWrittenInSequenceOrder() {
+    // Given
+    CollectingSink sink = new CollectingSink();
+    try (EventJournal journal = new EventJournal(8, 3, OverflowPolicy.BLOCK, Collections.singletonList(sink))) {
+      // When more events than the buffer holds are recorded
+      for (long pid = 1; pid <= 100; pid++) {
+        assertTrue(journal.record(JournalEventType.ADDED, pid, PriorityType.MEDIUM));
+      }
+      journal.flush();
+
+      // Then every event is written once and in order
+      assertEquals(100, sink.pids.size());
+      for (int i = 0; i < 100; i++) {
+        assertEquals(i + 1, (long) sink.pids.get(i));
+      }
+      assertEquals(0, journal.getDropped());
+      assertEquals(0, journal.getPending());
+    }
+  }
+
+  @Test
+  public void fullBufferDropsEvents() throws InterruptedException {
+    // Given a sink that blocks the journal thread
+    CountDownLatch writing = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    JournalSink blockedSink = events -> {
+      writing.countDown();
+      awaitQuietly(release);
+    };
+    try (EventJournal journal = new EventJournal(4, 1, OverflowPolicy.DROP, Collections.singletonList(blockedSink))) {
+      journal.record(JournalEventType.ADDED, 1, PriorityType.LOW);
+      assertTrue(writing.await(1, TimeUnit.MINUTES));
+
+      // When the buffer is filled while the sink is blocked
+      for (long pid = 2; pid <= 10; pid++) {
+        journal.record(JournalEventType.ADDED, pid, PriorityType.LOW);
+      }
+
+      // Then the events without room are dropped
+      assertEquals(6, journal.getDropped());
+      release.countDown();
+    }
+  }
+
+  @Test
+  public void concurrentProducersLoseNoEvent() throws InterruptedException {
+    // Given
+    CollectingSink sink = new CollectingSink();
+    int producers = 4;
+    int eventsPerProducer = 10_000;
+    try (EventJournal journal = new EventJournal(64, 16, OverflowPolicy.BLOCK, Collections.singletonList(sink))) {
+      // When
+      List<Thread> threads = new ArrayList<>();
+      for (int p = 0; p < producers; p++) {
+        Thread thread = new Thread(() -> {
+          for (int i = 0; i < eventsPerProducer; i++) {
+            journal.record(JournalEventType.KILLED, 1, PriorityType.HIGH);
+          }
+        });
+        threads.add(thread);
+        thread.start();
+      }
+      for (Thread thread : threads) {
+        thread.join();
+      }
+      journal.flush();
+
+      // Then
+      assertEquals(producers * eventsPerProducer, sink.sequences.size());
+      for (int i = 0; i < sink.sequences.size(); i++) {
+        assertEquals(i, (long) sink.sequences.get(i));
+      }
+    }
+  }
+
+  @Test
+  public void fileSinkAppendsOneLinePerEvent() throws Exception {
+    // Given
+    Path file = Files.createTempFile("journal", ".csv");
+    try {
+      // When
+      try (EventJournal journal = new EventJournal(OverflowPolicy.BLOCK, new FileJournalSink(file))) {
+        journal.record(JournalEventType.ADDED, 7, PriorityType.HIGH);
+        journal.record(JournalEventType.REJECTED, JournalEvent.NO_PID, PriorityType.LOW);
+      }
+
+      // Then
+      List<String> lines = Files.readAllLines(file);
+      assertEquals(2, lines.size());
+      assertTrue(lines.get(0), lines.get(0).endsWith(",0,ADDED,7,HIGH"));
+      assertTrue(lines.get(1), lines.get(1).endsWith(",1,REJECTED,0,LOW"));
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  private static void awaitQuietly(CountDownLatch latch) {
+    try {
+      latch.await(1, TimeUnit.MINUTES);
+    } catch (InterruptedException exception) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static class CollectingSink implements JournalSink {
+    private final List<Long> pids = Collections.synchronizedList(new ArrayList<>());
+    private final List<Long> sequences = Collections.synchronizedList(new ArrayList<>());
+
+    @Override
+    public void write(List<JournalEvent> events) {
+      for (JournalEvent event : events) {
+        pids.add(event.getPid());
+        sequences.add(event.getSequence());
+      }
+    }
+  }
+}
@@ -0,0 +1,71 @@
+package com.company.taskmanager.loadgen;
+
+import static org.junit.Assert.*;
+
+import com.company.taskmanager.model.EvictionPolicy;
+import com.company.taskmanager.model.SortingType;
+import com.company.taskmanager.service.impl.TaskManagerServiceImpl;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class LoadGeneratorTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private final TaskManagerServiceImpl taskManager = new TaskManagerServiceImpl(64, EvictionPolicy.PRIORITY);
+  private final LoadGenerator underTest = new LoadGenerator(taskManager);
+
+  @After
+  public void tearDown() {
+    taskManager.killAll();
+  }
+
+  @Test
+  public void syntheticWorkloadIsReproducible() {
+    List<String> workload = SyntheticWorkload.bursts(10, 50, 0.3, 5, 42);
+
+    assertEquals(workload, SyntheticWorkload.bursts(10, 50, 0.3, 5, 42));
+    assertEquals(10 * 51, workload.size());
+    assertTrue(workload.get(0).startsWith("ADD_PRIORITY "));
+    assertEquals("SLEEP 5", workload.get(50));
+    long kills = workload.stream().filter(command -> command.startsWith("KILL ")).count();
+    assertTrue(String.valueOf(kills), kills > 100 && kills < 200);
+  }
+
+  @Test
+  public void runReportsEveryCommandOfEveryClient() throws Exception {
+    List<String> workload = SyntheticWorkload.bursts(20, 100, 0.3, 1, 7);
+
+    LoadReport report = underTest.run(workload, 4);
+
+    assertEquals(4 * 20 * 100, report.getCommands());
+    assertEquals(0, report.getErrors());
+    assertEquals(report.getCommands(), report.getLatencies().getCount());
+    assertTrue(report.getElapsedNanos() >= 20_000_000L);
+    assertTrue(report.getThroughput() > 0);
+    assertTrue(report.getLatencies().getPercentile(50) <= report.getLatencies().getPercentile(99));
+    assertTrue(report.summary().contains("p99.9="));
+    assertTrue(taskManager.listAll(SortingType.ID).size() <= 64);
+  }
+
+  @Test
+  public void recordedWorkloadIsReplayed() throws Exception {
+    Path file = folder.newFile("workload.txt").toPath();
+    Files.write(file, Arrays.asList("# recorded", "CAPACITY 2", "ADD LOW", "", "ADD LOW", "ADD LOW", "FOO"),
+        StandardCharsets.US_ASCII);
+
+    LoadReport report = underTest.run(LoadGenerator.readWorkload(file), 1);
+
+    assertEquals(5, report.getCommands());
+    assertEquals(1, report.getRejections());
+    assertEquals(1, report.getErrors());
+  }
+}
@@ -0,0 +1,59 @@
+package com.company.taskmanager.metrics;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+  @Test
+  public void emptyHistogramReportsZero() {
+    LatencyHistogram histogram = new LatencyHistogram();
+
+    assertEquals(0, histogram.getCount());
+    assertEquals(0, histogram.getMax());
+    assertEquals(0, histogram.getPercentile(99), 0);
+    assertEquals(0, histogram.getMean(), 0);
+  }
+
+  @Test
+  public void percentilesAreWithinTheBucketPrecision() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (long value = 1; value <= 100_000; value++) {
+      histogram.record(value);
+    }
+
+    assertEquals(100_000, histogram.getCount());
+    assertEquals(100_000, histogram.getMax());
+    assertEquals(50_000.5, histogram.getMean(), 0.001);
+    assertWithinPrecision(50_000, histogram.getPercentile(50));
+    assertWithinPrecision(99_000, histogram.getPercentile(99));
+    assertEquals(100_000, histogram.getPercentile(100));
+  }
+
+  @Test
+  public void everyValueFallsInsideItsBucket() {
+    long[] values = {0, 1, 31, 32, 63, 64, 65, 1_000, 123_456_789, Long.MAX_VALUE};
+    for (long value : values) {
+      int index = LatencyHistogram.indexOf(value);
+      assertTrue(String.valueOf(value), value <= LatencyHistogram.highestValueAt(index));
+      assertTrue(String.valueOf(value), index == 0 || value > LatencyHistogram.highestValueAt(index - 1));
+    }
+  }
+
+  @Test
+  public void resetClearsTheRecordedValues() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    histogram.record(42);
+
+    histogram.reset();
+
+    assertEquals(0, histogram.getCount());
+    assertEquals(0, histogram.getMax());
+  }
+
+  private static void assertWithinPrecision(long expected, long actual) {
+    // 32 sub-buckets per power of two keep the error under 1/32 of the value
+    assertTrue(actual + " not close to " + expected, Math.abs(actual - expected) <= expected / 32);
+  }
+}
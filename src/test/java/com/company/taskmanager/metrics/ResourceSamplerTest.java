@@ -0,0 +1,104 @@
+package com.company.taskmanager.metrics;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.Assert.*;
+
+import com.company.taskmanager.engine.ExecutionEngines;
+import com.company.taskmanager.model.EvictionPolicy;
+import com.company.taskmanager.model.PriorityType;
+import com.company.taskmanager.model.Process;
+import com.company.taskmanager.model.ResourceMetric;
+import com.company.taskmanager.model.SortingType;
+import com.company.taskmanager.model.TaskHandle;
+import com.company.taskmanager.service.impl.TaskManagerServiceImpl;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.After;
+import org.junit.Test;
+
+public class ResourceSamplerTest {
+
+  // Platform threads, which count their CPU time and allocations
+  private final TaskManagerServiceImpl taskManager =
+      new TaskManagerServiceImpl(2, EvictionPolicy.PRIORITY, ExecutionEngines.cached());
+  private final ResourceSampler underTest = new ResourceSampler(() -> taskManager.stream(SortingType.CREATION_TIME), 10);
+  private final AtomicBoolean release = new AtomicBoolean();
+
+  @After
+  public void tearDown() {
+    release.set(true);
+    underTest.close();
+    taskManager.killAll();
+  }
+
+  @Test
+  public void samplerRecordsTheUsageOfRunningPayloads() throws Exception {
+    // Given a busy payload and an idle process
+    TaskHandle<Long> busy = taskManager.addWithPriority(PriorityType.LOW, () -> {
+      long checksum = 0;
+      while (!release.get()) {
+        checksum += Arrays.hashCode(new byte[256]);
+      }
+      return checksum;
+    });
+    Process idle = taskManager.addWithPriority(PriorityType.HIGH);
+
+    // Then the sampler records the CPU and memory of the busy one only
+    Process busyProcess = busy.getProcess();
+    await().atMost(1, TimeUnit.MINUTES).until(() -> busyProcess.getCpuNanos() > 0);
+    assertEquals(Arrays.asList(busyProcess), taskManager.top(1, ResourceMetric.CPU_TIME));
+    assertEquals(0, idle.getCpuNanos());
+    assertEquals(0, idle.getAllocatedBytes());
+    release.set(true);
+    busy.getResult().get(1, TimeUnit.MINUTES);
+    assertNull(busyProcess.getPayloadThread());
+  }
+
+  @Test
+  public void payloadRecordsItsWholeUsageOnceFinished() throws Exception {
+    // Given a payload much shorter than the sampling interval
+    ResourceSampler sampler = new ResourceSampler(() -> taskManager.stream(SortingType.CREATION_TIME), 60_000);
+    try {
+      TaskHandle<Integer> task = taskManager.addWithPriority(PriorityType.MEDIUM, ResourceSamplerTest::allocate);
+
+      // When it finishes
+      task.getResult().get(1, TimeUnit.MINUTES);
+
+      // Then its usage is recorded without waiting for a sample
+      assertTrue(task.getProcess().getCpuNanos() > 0);
+      assertTrue(task.getProcess().getAllocatedBytes() >= 1 << 20);
+    } finally {
+      sampler.close();
+    }
+  }
+
+  @Test
+  public void defaultEngineReportsUsageOrUnavailable() throws Exception {
+    TaskManagerServiceImpl defaultTaskManager = new TaskManagerServiceImpl(1);
+    try {
+      // Given a payload run by the default engine
+      TaskHandle<Integer> task = defaultTaskManager.addWithPriority(PriorityType.LOW, ResourceSamplerTest::allocate);
+      task.getResult().get(1, TimeUnit.MINUTES);
+
+      // Then virtual threads report the usage as unavailable instead of zero
+      if (ExecutionEngines.isVirtualThreadsSupported()) {
+        assertEquals(ThreadUsage.UNAVAILABLE, task.getProcess().getCpuNanos());
+        assertEquals(ThreadUsage.UNAVAILABLE, task.getProcess().getAllocatedBytes());
+      } else {
+        assertTrue(task.getProcess().getCpuNanos() > 0);
+        assertTrue(task.getProcess().getAllocatedBytes() > 0);
+      }
+    } finally {
+      defaultTaskManager.killAll();
+    }
+  }
+
+  private static int allocate() {
+    int checksum = 0;
+    for (int i = 0; i < 1024; i++) {
+      checksum += Arrays.hashCode(new byte[1024]);
+    }
+    return checksum;
+  }
+}
@@ -0,0 +1,109 @@
+package com.company.taskmanager.persistence;
+
+import static org.junit.Assert.*;
+
+import com.company.taskmanager.journal.JournalEventType;
+import com.company.taskmanager.model.PriorityType;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class WriteAheadLogTest {
+
+  private static final int SEGMENT_SIZE = 8 * WriteAheadLog.RECORD_SIZE;
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void emptyLogRecoversNothing() throws IOException {
+    try (WriteAheadLog writeAheadLog = WriteAheadLog.open(folder.getRoot().toPath())) {
+      assertTrue(writeAheadLog.getRecoveredProcesses().isEmpty());
+      assertEquals(0, writeAheadLog.getRecoveredMaxPid());
+    }
+  }
+
+  @Test
+  public void liveProcessesAreRecoveredInInsertionOrder() throws IOException {
+    // Given
+    Path directory = folder.getRoot().toPath();
+    try (WriteAheadLog writeAheadLog = new WriteAheadLog(directory, SEGMENT_SIZE, 1)) {
+      writeAheadLog.append(JournalEventType.ADDED, 3, PriorityType.HIGH);
+      writeAheadLog.append(JournalEventType.ADDED, 1, PriorityType.LOW);
+      writeAheadLog.append(JournalEventType.ADDED, 7, PriorityType.MEDIUM);
+      writeAheadLog.append(JournalEventType.KILLED, 1, PriorityType.LOW);
+      writeAheadLog.append(JournalEventType.ADDED, 8, PriorityType.LOW);
+      writeAheadLog.append(JournalEventType.EXITED, 8, PriorityType.LOW);
+    }
+
+    // When
+    try (WriteAheadLog writeAheadLog = new WriteAheadLog(directory, SEGMENT_SIZE, 1)) {
+      // Then
+      assertEquals(Arrays.asList(3L, 7L), Arrays.asList(writeAheadLog.getRecoveredProcesses().keySet().toArray()));
+      assertEquals(PriorityType.HIGH, writeAheadLog.getRecoveredProcesses().get(3L));
+      assertEquals(PriorityType.MEDIUM, writeAheadLog.getRecoveredProcesses().get(7L));
+      assertEquals(8, writeAheadLog.getRecoveredMaxPid());
+    }
+  }
+
+  @Test
+  public void fullSegmentsAreCompactedIntoSnapshots() throws IOException {
+    // Given more records than several segments hold
+    Path directory = folder.getRoot().toPath();
+    try (WriteAheadLog writeAheadLog = new WriteAheadLog(directory, SEGMENT_SIZE, 1)) {
+      for (long pid = 1; pid <= 100; pid++) {
+        writeAheadLog.append(JournalEventType.ADDED, pid, PriorityType.MEDIUM);
+        if (pid % 2 == 0) {
+          writeAheadLog.append(JournalEventType.EVICTED, pid, PriorityType.MEDIUM);
+        }
+      }
+      writeAheadLog.checkpoint();
+
+      // Then only the snapshot and the segment after it are left
+      assertEquals(1, files(directory, "snapshot-").size());
+      assertEquals(1, files(directory, "wal-").size());
+    }
+
+    // And the snapshot recovers the live processes
+    try (WriteAheadLog writeAheadLog = new WriteAheadLog(directory, SEGMENT_SIZE, 1)) {
+      assertEquals(50, writeAheadLog.getRecoveredProcesses().size());
+      assertTrue(writeAheadLog.getRecoveredProcesses().keySet().stream().allMatch(pid -> pid % 2 == 1));
+      assertEquals(100, writeAheadLog.getRecoveredMaxPid());
+    }
+  }
+
+  @Test
+  public void tornRecordIsIgnored() throws IOException {
+    // Given
+    Path directory = folder.getRoot().toPath();
+    try (WriteAheadLog writeAheadLog = new WriteAheadLog(directory, SEGMENT_SIZE, 1)) {
+      writeAheadLog.append(JournalEventType.ADDED, 1, PriorityType.HIGH);
+      writeAheadLog.append(JournalEventType.ADDED, 2, PriorityType.HIGH);
+    }
+
+    // When the last record is torn by a crash
+    try (RandomAccessFile segment = new RandomAccessFile(files(directory, "wal-").get(0).toFile(), "rw")) {
+      segment.seek(WriteAheadLog.RECORD_SIZE + 12);
+      segment.writeInt(0);
+    }
+
+    // Then the records before it are recovered
+    try (WriteAheadLog writeAheadLog = new WriteAheadLog(directory, SEGMENT_SIZE, 1)) {
+      assertEquals(Arrays.asList(1L), Arrays.asList(writeAheadLog.getRecoveredProcesses().keySet().toArray()));
+    }
+  }
+
+  private static List<Path> files(Path directory, String prefix) throws IOException {
+    try (Stream<Path> files = Files.list(directory)) {
+      return files.filter(file -> file.getFileName().toString().startsWith(prefix)).collect(Collectors.toList());
+    }
+  }
+}
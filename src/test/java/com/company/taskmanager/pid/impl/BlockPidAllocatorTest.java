@@ -0,0 +1,89 @@
+package com.company.taskmanager.pid.impl;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+public class BlockPidAllocatorTest {
+
+  @Test
+  public void allocatorHandsOutEveryStrideOfItsBlock() {
+    BlockPidAllocator pidAllocator = new BlockPidAllocator(3, 4, 2);
+
+    assertEquals(3, pidAllocator.next());
+    assertEquals(7, pidAllocator.next());
+    assertEquals(11, pidAllocator.next());
+    assertEquals(15, pidAllocator.next());
+  }
+
+  @Test
+  public void allocatorContinuesAfterAPreviousPid() {
+    BlockPidAllocator pidAllocator = new BlockPidAllocator(2, 4, 16);
+    assertEquals(2, pidAllocator.next());
+
+    // The rest of the current block is dropped
+    pidAllocator.continueAfter(13);
+    assertEquals(14, pidAllocator.next());
+    assertEquals(18, pidAllocator.next());
+
+    // Older pids never move the allocator back
+    pidAllocator.continueAfter(5);
+    assertEquals(22, pidAllocator.next());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void allocatorWithoutBlockSizeThrowsException() {
+    new BlockPidAllocator(1, 1, 0);
+  }
+
+  @Test
+  public void contendedAllocationIsUniqueAndMonotonicPerThread() throws InterruptedException {
+    // Given many threads allocating at the same time with small blocks
+    int threads = 16;
+    int pidsPerThread = 50_000;
+    BlockPidAllocator pidAllocator = new BlockPidAllocator(2, 3, 64);
+    long[][] allocated = new long[threads][pidsPerThread];
+    CountDownLatch start = new CountDownLatch(1);
+    CountDownLatch done = new CountDownLatch(threads);
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    for (int i = 0; i < threads; i++) {
+      long[] pids = allocated[i];
+      executor.execute(() -> {
+        try {
+          start.await();
+          for (int j = 0; j < pidsPerThread; j++) {
+            pids[j] = pidAllocator.next();
+          }
+        } catch (InterruptedException exception) {
+          Thread.currentThread().interrupt();
+        } finally {
+          done.countDown();
+        }
+      });
+    }
+    start.countDown();
+    assertTrue(done.await(1, TimeUnit.MINUTES));
+    executor.shutdown();
+
+    // Then every thread got growing pids of the sequence and no pid was handed out twice
+    long[] all = new long[threads * pidsPerThread];
+    for (int i = 0; i < threads; i++) {
+      for (int j = 0; j < pidsPerThread; j++) {
+        assertEquals(2, Math.floorMod(allocated[i][j], 3));
+        if (j > 0) {
+          assertTrue(allocated[i][j] > allocated[i][j - 1]);
+        }
+      }
+      System.arraycopy(allocated[i], 0, all, i * pidsPerThread, pidsPerThread);
+    }
+    Arrays.sort(all);
+    for (int i = 1; i < all.length; i++) {
+      assertNotEquals(all[i - 1], all[i]);
+    }
+  }
+}
@@ -0,0 +1,32 @@
+package com.company.taskmanager.pid.impl;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class PidSequenceTest {
+
+  @Test
+  public void sequenceHandsOutEveryStride() {
+    PidSequence pidSequence = new PidSequence(3, 4);
+
+    assertEquals(3, pidSequence.next());
+    assertEquals(7, pidSequence.next());
+    assertEquals(11, pidSequence.next());
+  }
+
+  @Test
+  public void sequenceContinuesAfterAPreviousPid() {
+    PidSequence pidSequence = new PidSequence(2, 4);
+
+    pidSequence.continueAfter(13);
+    assertEquals(14, pidSequence.next());
+
+    pidSequence.continueAfter(18);
+    assertEquals(22, pidSequence.next());
+
+    // Older pids never move the sequence back
+    pidSequence.continueAfter(5);
+    assertEquals(26, pidSequence.next());
+  }
+}
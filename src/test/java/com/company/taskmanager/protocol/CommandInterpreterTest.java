@@ -0,0 +1,127 @@
+package com.company.taskmanager.protocol;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.Assert.*;
+
+import com.company.taskmanager.model.SortingType;
+import com.company.taskmanager.model.Termination;
+import com.company.taskmanager.service.impl.TaskManagerServiceImpl;
+import org.awaitility.Durations;
+import org.junit.After;
+import org.junit.Test;
+
+public class CommandInterpreterTest {
+
+  private final TaskManagerServiceImpl taskManager = new TaskManagerServiceImpl(3);
+  private final CommandInterpreter underTest = new CommandInterpreter(taskManager);
+
+  @After
+  public void tearDown() {
+    taskManager.killAll();
+  }
+
+  @Test
+  public void addCommandsAnswerThePid() {
+    String first = underTest.execute("ADD high");
+    String second = underTest.execute("add_fifo LOW");
+    String third = underTest.execute("ADD_PRIORITY medium");
+
+    assertTrue(first, first.matches("OK \\d+"));
+    assertTrue(second, second.matches("OK \\d+"));
+    assertTrue(third, third.matches("OK \\d+"));
+    assertEquals("ERR CAPACITY", underTest.execute("ADD MEDIUM"));
+    assertEquals("SKIPPED", underTest.execute("ADD_PRIORITY LOW"));
+  }
+
+  @Test
+  public void listAnswersAPage() {
+    long low = pid(underTest.execute("ADD LOW"));
+    long high = pid(underTest.execute("ADD HIGH"));
+
+    assertEquals("OK " + high + " true " + low + ":LOW " + high + ":HIGH", underTest.execute("LIST ID"));
+    assertEquals("OK " + low + " false " + low + ":LOW", underTest.execute("LIST id 0 1"));
+    assertEquals("OK " + high + " true " + high + ":HIGH", underTest.execute("LIST ID " + low + " 1"));
+  }
+
+  @Test
+  public void addWithTimeToLiveExpires() {
+    String response = underTest.execute("ADD LOW 20");
+    assertTrue(response, response.matches("OK \\d+"));
+    assertTrue(underTest.execute("ADD_FIFO high 20").matches("OK \\d+"));
+
+    await().atMost(Durations.ONE_MINUTE).until(() -> taskManager.listAll(SortingType.ID).isEmpty());
+  }
+
+  @Test
+  public void topAnswersTheHeaviestProcesses() {
+    long oldest = pid(underTest.execute("ADD LOW"));
+    underTest.execute("ADD HIGH");
+
+    String response = underTest.execute("TOP age 1");
+    assertTrue(response, response.matches("OK " + oldest + ":\\d+"));
+    // Payloadless processes never use CPU
+    assertTrue(underTest.execute("TOP CPU_TIME 2").matches("OK \\d+:0 \\d+:0"));
+  }
+
+  @Test
+  public void killCommandsRemoveProcesses() {
+    long first = pid(underTest.execute("ADD LOW"));
+    long second = pid(underTest.execute("ADD LOW"));
+    underTest.execute("ADD HIGH");
+
+    assertEquals("OK", underTest.execute("KILL " + first));
+    assertEquals("OK", underTest.execute("KILL_ALL high"));
+    assertEquals(1, taskManager.listAll(SortingType.ID).size());
+    assertEquals("OK", underTest.execute("KILL " + second + " 12345"));
+    assertTrue(taskManager.listAll(SortingType.ID).isEmpty());
+  }
+
+  @Test
+  public void addAllAndCapacity() {
+    assertEquals("OK 5", underTest.execute("CAPACITY 5"));
+    String response = underTest.execute("ADD_ALL NONE LOW LOW LOW LOW LOW LOW");
+
+    assertTrue(response, response.matches("OK( \\d+){5} -"));
+    assertEquals("OK 5", underTest.execute("CAPACITY"));
+  }
+
+  @Test
+  public void capacityOutOfRangeIsRejected() {
+    String capacity = underTest.execute("CAPACITY");
+
+    assertTrue(underTest.execute("CAPACITY -1").startsWith("ERR BAD_ARGUMENT"));
+    assertTrue(underTest.execute("CAPACITY " + (1L << 32 | 1)).startsWith("ERR BAD_ARGUMENT"));
+    assertTrue(underTest.execute("CAPACITY " + ((long) Integer.MAX_VALUE + 1)).startsWith("ERR BAD_ARGUMENT"));
+    assertEquals(capacity, underTest.execute("CAPACITY"));
+  }
+
+  @Test
+  public void invalidCommandsAnswerAnError() {
+    assertEquals("ERR EMPTY_COMMAND", underTest.execute("  "));
+    assertEquals("ERR UNKNOWN_COMMAND FOO", underTest.execute("FOO 1"));
+    assertTrue(underTest.execute("ADD").startsWith("ERR BAD_ARGUMENT"));
+    assertTrue(underTest.execute("ADD URGENT").startsWith("ERR BAD_ARGUMENT"));
+    assertTrue(underTest.execute("KILL abc").startsWith("ERR BAD_ARGUMENT"));
+    assertTrue(underTest.execute("CAPACITY 0").startsWith("ERR BAD_ARGUMENT"));
+    assertEquals("PONG", underTest.execute("PING"));
+  }
+
+  @Test
+  public void internalErrorsAnswerASingleLine() {
+    // Given a task manager failing with a message of several lines
+    TaskManagerServiceImpl failingTaskManager = new TaskManagerServiceImpl(3) {
+      @Override
+      public Termination killAll() {
+        throw new IllegalStateException("first line\r\nsecond line");
+      }
+    };
+
+    // Then the response names the failure on a single line
+    assertEquals("ERR INTERNAL_ERROR IllegalStateException",
+        new CommandInterpreter(failingTaskManager).execute("KILL_ALL"));
+  }
+
+  private static long pid(String response) {
+    return Long.parseLong(response.substring("OK ".length()));
+  }
+}
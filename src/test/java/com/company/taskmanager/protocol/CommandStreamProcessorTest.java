@@ -0,0 +1,45 @@
+package com.company.taskmanager.protocol;
+
+import static org.junit.Assert.*;
+
+import com.company.taskmanager.service.impl.TaskManagerServiceImpl;
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import org.junit.After;
+import org.junit.Test;
+
+public class CommandStreamProcessorTest {
+
+  private final TaskManagerServiceImpl taskManager = new TaskManagerServiceImpl(2);
+  private final CommandStreamProcessor underTest = new CommandStreamProcessor(new CommandInterpreter(taskManager));
+
+  @After
+  public void tearDown() {
+    taskManager.killAll();
+  }
+
+  @Test
+  public void everyCommandIsAnsweredInOrder() throws Exception {
+    String commands = "# burst\nADD LOW\n\nADD HIGH\r\nADD MEDIUM\nKILL_ALL\n  # done\nLIST ID";
+    StringWriter responses = new StringWriter();
+
+    long executed = underTest.process(new BufferedReader(new StringReader(commands)), responses);
+
+    assertEquals(5, executed);
+    String[] lines = responses.toString().split("\n");
+    assertEquals(5, lines.length);
+    assertTrue(lines[0].matches("OK \\d+"));
+    assertTrue(lines[1].matches("OK \\d+"));
+    assertEquals("ERR CAPACITY", lines[2]);
+    assertEquals("OK", lines[3]);
+    assertEquals("OK 0 true", lines[4]);
+  }
+
+  @Test
+  public void blankLinesAndCommentsAreNotCommands() {
+    assertFalse(CommandStreamProcessor.isCommand("   "));
+    assertFalse(CommandStreamProcessor.isCommand(" # ADD LOW"));
+    assertTrue(CommandStreamProcessor.isCommand("ADD LOW # comment"));
+  }
+}
@@ -0,0 +1,194 @@
+package com.company.taskmanager.registry.impl;
+
+import static org.junit.Assert.*;
+
+import com.company.taskmanager.model.PriorityType;
+import com.company.taskmanager.model.Process;
+import com.company.taskmanager.model.ProcessPage;
+import com.company.taskmanager.model.SortingType;
+import com.company.taskmanager.pid.impl.BlockPidAllocator;
+import com.company.taskmanager.registry.ProcessRegistry;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import org.junit.Test;
+
+/**
+ * Runs the registry tests against the compact registry, plus the ones covering its slot compaction.
+ */
+public class CompactProcessRegistryTest extends ConcurrentProcessRegistryTest {
+
+  @Override
+  protected ProcessRegistry newRegistry(AtomicLong insertionSeqNumber) {
+    return new CompactProcessRegistry(insertionSeqNumber);
+  }
+
+  @Test
+  public void growAndCompactKeepOrderingsAndIndex() {
+    // Given many processes of which every other one is removed while more are added
+    List<Process> expected = new ArrayList<>();
+    for (long pid = 1; pid <= 20_000; pid++) {
+      Process process = new Process(pid, PriorityType.values()[(int) pid % 3]);
+      underTest.add(process);
+      expected.add(process);
+      if (pid % 2 == 0) {
+        assertEquals(pid - 1, underTest.remove(pid - 1).get().getPid());
+        expected.remove(expected.size() - 2);
+      }
+    }
+
+    // Then the survivors keep their insertion order and are still found by pid
+    assertEquals(expected.size(), underTest.size());
+    assertEquals(expected, underTest.list(SortingType.CREATION_TIME));
+    assertEquals(expected, underTest.list(SortingType.ID));
+    assertEquals(expected, underTest.stream(SortingType.CREATION_TIME).collect(Collectors.toList()));
+    for (Process process : expected) {
+      assertSame(process, underTest.find(process.getPid()).get());
+    }
+    assertFalse(underTest.find(1).isPresent());
+  }
+
+  @Test
+  public void listByIdSortsUnorderedPids() {
+    // Given pids registered out of order
+    for (long pid : new long[] {40, 10, 30, 20, 50}) {
+      underTest.add(new Process(pid, PriorityType.MEDIUM));
+    }
+
+    // Then the id ordering and its pages are sorted
+    List<Process> byId = underTest.list(SortingType.ID);
+    assertEquals(Arrays.asList(10L, 20L, 30L, 40L, 50L),
+        byId.stream().map(Process::getPid).collect(Collectors.toList()));
+    ProcessPage page = underTest.list(SortingType.ID, 20, 2);
+    assertEquals(Arrays.asList(byId.get(2), byId.get(3)), page.getProcesses());
+    assertFalse(page.isLast());
+  }
+
+  @Test
+  public void pagesByIdFollowThePidsOfABlockAllocator() throws InterruptedException {
+    // Given processes added in turns by two threads, whose pid blocks interleave
+    BlockPidAllocator pidAllocator = new BlockPidAllocator(1, 1, 64);
+    List<Long> firstThreadPids = new ArrayList<>();
+    Thread firstThread = new Thread(() -> {
+      for (int i = 0; i < 500; i++) {
+        firstThreadPids.add(pidAllocator.next());
+      }
+    });
+    firstThread.start();
+    firstThread.join();
+    List<Process> added = new ArrayList<>();
+    for (long pid : firstThreadPids) {
+      added.add(new Process(pid, PriorityType.LOW));
+      added.add(new Process(pidAllocator.next(), PriorityType.HIGH));
+    }
+    added.forEach(underTest::add);
+
+    // When paging by id while processes are removed and added between pages
+    List<Long> listed = new ArrayList<>();
+    ProcessPage page = underTest.list(SortingType.ID, ProcessPage.FIRST_CURSOR, 30);
+    for (int pages = 1; ; pages++) {
+      page.getProcesses().forEach(process -> listed.add(process.getPid()));
+      if (page.isLast()) {
+        break;
+      }
+      if (pages == 10) {
+        underTest.remove(page.getNextCursor() + 1);
+        underTest.add(new Process(0, PriorityType.MEDIUM));
+      }
+      page = underTest.list(SortingType.ID, page.getNextCursor(), 30);
+    }
+
+    // Then the pages list every remaining process after the cursor once, sorted
+    List<Long> expected = added.stream().map(Process::getPid).filter(pid -> pid != listed.get(299) + 1)
+        .sorted().collect(Collectors.toList());
+    assertEquals(expected, listed);
+    assertEquals(expected.size() + 1, underTest.list(SortingType.ID).size());
+  }
+
+  @Test
+  public void removeAllResetsTheSlots() {
+    // Given
+    underTest.add(new Process(5, PriorityType.HIGH));
+    underTest.add(new Process(6, PriorityType.LOW));
+
+    // When every process is removed and new ones with lower pids are added
+    assertEquals(2, underTest.removeAll().size());
+    Process low = new Process(1, PriorityType.LOW);
+    Process high = new Process(2, PriorityType.HIGH);
+    underTest.add(low);
+    underTest.add(high);
+
+    // Then
+    assertEquals(2, underTest.size());
+    assertEquals(Arrays.asList(low, high), underTest.list(SortingType.ID));
+    assertEquals(Arrays.asList(low, high), underTest.list(SortingType.PRIORITY));
+    assertEquals(low, underTest.removeLowestPriority().get());
+    assertFalse(underTest.find(5).isPresent());
+  }
+
+  @Test
+  public void removeOldestOfPriorityAfterCompaction() {
+    // Given a priority whose oldest processes are removed while the slots are compacted
+    for (long pid = 1; pid <= 1_000; pid++) {
+      underTest.add(new Process(pid, pid % 10 == 0 ? PriorityType.HIGH : PriorityType.LOW));
+    }
+    for (int i = 0; i < 500; i++) {
+      assertTrue(underTest.removeOldest(PriorityType.LOW).isPresent());
+    }
+    for (long pid = 1_001; pid <= 2_000; pid++) {
+      underTest.add(new Process(pid, PriorityType.LOW));
+    }
+
+    // Then the remaining ones are removed oldest first
+    List<Process> low = underTest.list(PriorityType.LOW);
+    assertEquals(1_400, low.size());
+    List<Long> lowPids = low.stream().map(Process::getPid).collect(Collectors.toList());
+    assertEquals(lowPids.stream().sorted().collect(Collectors.toList()), lowPids);
+    assertEquals(low.get(0), underTest.removeOldest(PriorityType.LOW).get());
+    assertEquals(100, underTest.removeAll(PriorityType.HIGH).size());
+  }
+
+  @Test
+  public void pagesOfARarePriorityFollowItsSlots() {
+    // Given a rare priority, listed first, among many processes, some of them removed while the slots are compacted
+    List<Process> expected = new ArrayList<>();
+    for (long pid = 1; pid <= 5_000; pid++) {
+      Process process = new Process(pid, pid % 100 == 0 ? PriorityType.LOW : PriorityType.HIGH);
+      underTest.add(process);
+      if (process.getPriority() == PriorityType.LOW) {
+        expected.add(process);
+      }
+      if (pid % 300 == 0) {
+        underTest.remove(pid);
+        expected.remove(process);
+      }
+    }
+
+    // When paging the priority ordering while removing the first process of every page
+    List<Process> paged = new ArrayList<>();
+    ProcessPage page = underTest.list(SortingType.PRIORITY, ProcessPage.FIRST_CURSOR, 7);
+    int removed = 0;
+    while (page.getProcesses().stream().allMatch(process -> process.getPriority() == PriorityType.LOW)) {
+      paged.addAll(page.getProcesses());
+      underTest.remove(page.getProcesses().get(0).getPid());
+      removed++;
+      page = underTest.list(SortingType.PRIORITY, page.getNextCursor(), 7);
+    }
+    page.getProcesses().stream().filter(process -> process.getPriority() == PriorityType.LOW).forEach(paged::add);
+    List<Map.Entry<Long, Process>> entries = new ArrayList<>();
+    long sequence = ProcessPage.FIRST_CURSOR;
+    for (List<Map.Entry<Long, Process>> bySequence = underTest.listBySequence(PriorityType.LOW, sequence, 7);
+        !bySequence.isEmpty(); bySequence = underTest.listBySequence(PriorityType.LOW, sequence, 7)) {
+      entries.addAll(bySequence);
+      sequence = bySequence.get(bySequence.size() - 1).getKey();
+    }
+
+    // Then the pages hold every process of the priority once, in insertion order
+    assertEquals(expected, paged);
+    assertEquals(expected.size() - removed, entries.size());
+    assertEquals(underTest.list(PriorityType.LOW), entries.stream().map(Map.Entry::getValue).collect(Collectors.toList()));
+  }
+}
@@ -0,0 +1,274 @@
+package com.company.taskmanager.registry.impl;
+
+import static org.junit.Assert.*;
+
+import com.company.taskmanager.model.PriorityType;
+import com.company.taskmanager.model.Process;
+import com.company.taskmanager.model.ProcessPage;
+import com.company.taskmanager.model.SortingType;
+import com.company.taskmanager.registry.ProcessRegistry;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import org.junit.Test;
+
+public class ConcurrentProcessRegistryTest {
+
+  protected final ProcessRegistry underTest = newRegistry();
+
+  protected ProcessRegistry newRegistry() {
+    return newRegistry(new AtomicLong());
+  }
+
+  protected ProcessRegistry newRegistry(AtomicLong insertionSeqNumber) {
+    return new ConcurrentProcessRegistry(insertionSeqNumber);
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void addDuplicatePidThrowsException() {
+    underTest.add(new Process(1, PriorityType.LOW));
+    underTest.add(new Process(1, PriorityType.HIGH));
+  }
+
+  @Test
+  public void listKeepsInsertionOrder() {
+    // Given processes registered with unordered pids
+    Process first = new Process(3, PriorityType.HIGH);
+    Process second = new Process(1, PriorityType.LOW);
+    Process third = new Process(2, PriorityType.HIGH);
+    underTest.add(first);
+    underTest.add(second);
+    underTest.add(third);
+
+    // Then every view follows the insertion order
+    assertEquals(Arrays.asList(first, second, third), underTest.list(SortingType.CREATION_TIME));
+    assertEquals(Arrays.asList(first, third), underTest.list(PriorityType.HIGH));
+    assertEquals(3, underTest.size());
+  }
+
+  @Test
+  public void registriesSharingTheSequenceNumberKeepOneInsertionOrder() {
+    // Given processes created in one order and registered in another across two registries
+    AtomicLong insertionSeqNumber = new AtomicLong();
+    ProcessRegistry firstRegistry = newRegistry(insertionSeqNumber);
+    ProcessRegistry secondRegistry = newRegistry(insertionSeqNumber);
+    Process first = new Process(1, PriorityType.LOW);
+    Process second = new Process(2, PriorityType.LOW);
+    Process third = new Process(3, PriorityType.HIGH);
+    firstRegistry.add(third);
+    secondRegistry.add(first);
+    firstRegistry.add(second);
+
+    // Then the insertion sequences follow the registrations
+    List<Map.Entry<Long, Process>> firstEntries = firstRegistry.listBySequence(null, ProcessPage.FIRST_CURSOR, 10);
+    Map.Entry<Long, Process> thirdEntry = firstEntries.get(0);
+    Map.Entry<Long, Process> firstEntry = secondRegistry.listBySequence(PriorityType.LOW, ProcessPage.FIRST_CURSOR, 10).get(0);
+    Map.Entry<Long, Process> secondEntry = firstEntries.get(1);
+    assertSame(third, thirdEntry.getValue());
+    assertSame(first, firstEntry.getValue());
+    assertSame(second, secondEntry.getValue());
+    assertTrue(thirdEntry.getKey() < firstEntry.getKey() && firstEntry.getKey() < secondEntry.getKey());
+
+    // And pages by sequence continue after their sequence, in their priority only
+    assertEquals(Collections.singletonList(secondEntry),
+        firstRegistry.listBySequence(PriorityType.LOW, thirdEntry.getKey(), 10));
+    assertEquals(Collections.singletonList(thirdEntry), firstRegistry.listBySequence(null, 0, 1));
+    assertTrue(firstRegistry.listBySequence(PriorityType.HIGH, thirdEntry.getKey(), 10).isEmpty());
+  }
+
+  @Test
+  public void listMaintainsPidAndPriorityOrderings() {
+    // Given processes registered with unordered pids and priorities
+    Process first = new Process(3, PriorityType.HIGH);
+    Process second = new Process(1, PriorityType.LOW);
+    Process third = new Process(2, PriorityType.HIGH);
+    Process fourth = new Process(4, PriorityType.MEDIUM);
+    underTest.add(first);
+    underTest.add(second);
+    underTest.add(third);
+    underTest.add(fourth);
+
+    // Then
+    assertEquals(Arrays.asList(second, third, first, fourth), underTest.list(SortingType.ID));
+    assertEquals(Arrays.asList(second, fourth, first, third), underTest.list(SortingType.PRIORITY));
+  }
+
+  @Test
+  public void listPagesCoverEveryOrdering() {
+    // Given processes with unordered pids and priorities
+    for (long pid : new long[] {5, 2, 7, 1, 4, 3, 6}) {
+      underTest.add(new Process(pid, PriorityType.values()[(int) pid % 3]));
+    }
+
+    // Then walking the pages of every ordering gives the full listing
+    for (SortingType type : SortingType.values()) {
+      List<Process> pagedProcesses = new ArrayList<>();
+      long cursor = ProcessPage.FIRST_CURSOR;
+      ProcessPage page;
+      do {
+        page = underTest.list(type, cursor, 3);
+        assertTrue(page.getProcesses().size() <= 3);
+        pagedProcesses.addAll(page.getProcesses());
+        cursor = page.getNextCursor();
+      } while (!page.isLast());
+      assertEquals(type.name(), underTest.list(type), pagedProcesses);
+      assertEquals(type.name(), underTest.list(type), underTest.stream(type).collect(Collectors.toList()));
+    }
+  }
+
+  @Test
+  public void listPageResumesAfterCursorWhenItsProcessIsRemoved() {
+    // Given
+    Process first = new Process(1, PriorityType.LOW);
+    Process second = new Process(2, PriorityType.HIGH);
+    Process third = new Process(3, PriorityType.LOW);
+    underTest.add(first);
+    underTest.add(second);
+    underTest.add(third);
+    ProcessPage firstPage = underTest.list(SortingType.PRIORITY, ProcessPage.FIRST_CURSOR, 1);
+    assertEquals(Arrays.asList(first), firstPage.getProcesses());
+    assertFalse(firstPage.isLast());
+
+    // When the last listed process is removed
+    underTest.remove(1);
+
+    // Then the next page starts right after it
+    ProcessPage secondPage = underTest.list(SortingType.PRIORITY, firstPage.getNextCursor(), 5);
+    assertEquals(Arrays.asList(third, second), secondPage.getProcesses());
+    assertTrue(secondPage.isLast());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void listPageWithoutLimitThrowsException() {
+    underTest.list(SortingType.ID, ProcessPage.FIRST_CURSOR, 0);
+  }
+
+  @Test
+  public void versionChangesOnEveryMutation() {
+    long initialVersion = underTest.getVersion();
+
+    underTest.add(new Process(1, PriorityType.LOW));
+    long addedVersion = underTest.getVersion();
+    assertNotEquals(initialVersion, addedVersion);
+
+    underTest.remove(2);
+    assertEquals(addedVersion, underTest.getVersion());
+
+    underTest.remove(1);
+    assertNotEquals(addedVersion, underTest.getVersion());
+  }
+
+  @Test
+  public void removeUnindexesProcess() {
+    // Given
+    Process process = new Process(1, PriorityType.MEDIUM);
+    underTest.add(process);
+
+    // When
+    assertEquals(process, underTest.remove(1).get());
+
+    // Then
+    assertFalse(underTest.find(1).isPresent());
+    assertFalse(underTest.remove(1).isPresent());
+    assertTrue(underTest.list(SortingType.CREATION_TIME).isEmpty());
+    assertTrue(underTest.list(PriorityType.MEDIUM).isEmpty());
+    assertEquals(0, underTest.size());
+  }
+
+  @Test
+  public void removeOldest() {
+    // Given
+    Process first = new Process(1, PriorityType.HIGH);
+    Process second = new Process(2, PriorityType.LOW);
+    underTest.add(first);
+    underTest.add(second);
+
+    // Then processes are removed in insertion order
+    assertEquals(first, underTest.removeOldest().get());
+    assertEquals(second, underTest.removeOldest().get());
+    assertFalse(underTest.removeOldest().isPresent());
+  }
+
+  @Test
+  public void removeLowestPriorityPicksTheOldestOfTheLowestPriority() {
+    // Given
+    Process medium = new Process(1, PriorityType.MEDIUM);
+    Process firstLow = new Process(2, PriorityType.LOW);
+    Process secondLow = new Process(3, PriorityType.LOW);
+    underTest.add(medium);
+    underTest.add(firstLow);
+    underTest.add(secondLow);
+
+    // Then only processes with a lower priority than the given one are removed
+    assertFalse(underTest.removeLowestPriority(PriorityType.LOW).isPresent());
+    assertEquals(firstLow, underTest.removeLowestPriority(PriorityType.MEDIUM).get());
+    assertEquals(secondLow, underTest.removeLowestPriority(PriorityType.HIGH).get());
+    assertFalse(underTest.removeLowestPriority(PriorityType.MEDIUM).isPresent());
+    assertEquals(medium, underTest.removeLowestPriority().get());
+    assertFalse(underTest.removeLowestPriority().isPresent());
+  }
+
+  @Test
+  public void removeAllWithPriority() {
+    // Given
+    Process low = new Process(1, PriorityType.LOW);
+    Process firstHigh = new Process(2, PriorityType.HIGH);
+    Process secondHigh = new Process(3, PriorityType.HIGH);
+    underTest.add(low);
+    underTest.add(firstHigh);
+    underTest.add(secondHigh);
+
+    // When
+    List<Process> removed = underTest.removeAll(PriorityType.HIGH);
+
+    // Then
+    assertEquals(Arrays.asList(firstHigh, secondHigh), removed);
+    assertEquals(Arrays.asList(low), underTest.list(SortingType.CREATION_TIME));
+    assertFalse(underTest.find(2).isPresent());
+  }
+
+  @Test
+  public void concurrentAddAndRemoveKeepIndexesConsistent() throws InterruptedException {
+    // Given several threads adding and removing their own processes
+    int threads = 8;
+    int processesPerThread = 2_000;
+    AtomicLong pids = new AtomicLong();
+    CountDownLatch done = new CountDownLatch(threads);
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    for (int i = 0; i < threads; i++) {
+      executor.execute(() -> {
+        List<Process> added = new ArrayList<>();
+        for (int j = 0; j < processesPerThread; j++) {
+          Process process = new Process(pids.incrementAndGet(), PriorityType.values()[j % 3]);
+          underTest.add(process);
+          added.add(process);
+        }
+        // Each thread removes half of what it added
+        for (int j = 0; j < processesPerThread; j += 2) {
+          assertTrue(underTest.remove(added.get(j).getPid()).isPresent());
+        }
+        done.countDown();
+      });
+    }
+    assertTrue(done.await(1, TimeUnit.MINUTES));
+    executor.shutdown();
+
+    // Then every index holds exactly the surviving processes
+    int expected = threads * processesPerThread / 2;
+    assertEquals(expected, underTest.size());
+    assertEquals(expected, underTest.list(SortingType.CREATION_TIME).size());
+    int byPriority = 0;
+    for (PriorityType priority : PriorityType.values()) {
+      byPriority += underTest.list(priority).size();
+    }
+    assertEquals(expected, byPriority);
+  }
+}
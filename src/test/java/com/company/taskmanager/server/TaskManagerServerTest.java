@@ -0,0 +1,215 @@
+package com.company.taskmanager.server;
+
+import static org.junit.Assert.*;
+
+import com.company.taskmanager.model.PriorityType;
+import com.company.taskmanager.model.Termination;
+import com.company.taskmanager.protocol.CommandInterpreter;
+import com.company.taskmanager.service.impl.TaskManagerServiceImpl;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.io.BufferedWriter;
+import java.io.OutputStreamWriter;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Test;
+
+public class TaskManagerServerTest {
+
+  private static final int CAPACITY = 1024;
+
+  private final TaskManagerServiceImpl taskManager = new TaskManagerServiceImpl(CAPACITY);
+  private final TaskManagerServer underTest = startServer();
+
+  @After
+  public void tearDown() {
+    underTest.close();
+    taskManager.killAll();
+  }
+
+  @Test
+  public void pipelinedCommandsAreAnsweredInOrder() throws Exception {
+    int commands = 20_000;
+    try (Socket socket = connect()) {
+      BufferedReader reader = reader(socket);
+      // Every command is sent before reading any response, the responses are read concurrently
+      List<String> responses = new ArrayList<>(commands * 2);
+      Thread responseReader = new Thread(() -> {
+        try {
+          for (int i = 0; i < commands * 2; i++) {
+            responses.add(reader.readLine());
+          }
+        } catch (IOException exception) {
+          throw new IllegalStateException(exception);
+        }
+      });
+      responseReader.start();
+
+      Writer writer = writer(socket.getOutputStream());
+      for (int i = 0; i < commands; i++) {
+        writer.write("ADD_FIFO LOW\nPING\n");
+      }
+      writer.flush();
+      responseReader.join(60_000);
+
+      assertEquals(commands * 2, responses.size());
+      long previousPid = 0;
+      for (int i = 0; i < responses.size(); i += 2) {
+        long pid = Long.parseLong(responses.get(i).substring("OK ".length()));
+        assertTrue(pid > previousPid);
+        previousPid = pid;
+        assertEquals("PONG", responses.get(i + 1));
+      }
+    }
+  }
+
+  @Test
+  public void connectionsAreServedConcurrently() throws Exception {
+    try (Socket first = connect(); Socket second = connect()) {
+      Writer firstWriter = writer(first.getOutputStream());
+      Writer secondWriter = writer(second.getOutputStream());
+
+      firstWriter.write("ADD HIGH\n");
+      firstWriter.flush();
+      String added = reader(first).readLine();
+      long pid = Long.parseLong(added.substring("OK ".length()));
+
+      secondWriter.write("KILL " + pid + "\r\nLIST ID\n");
+      secondWriter.flush();
+      BufferedReader secondReader = reader(second);
+      assertEquals("OK", secondReader.readLine());
+      assertEquals("OK 0 true", secondReader.readLine());
+    }
+  }
+
+  @Test
+  public void commandSplitAcrossWritesIsExecutedOnce() throws Exception {
+    try (Socket socket = connect()) {
+      OutputStream output = socket.getOutputStream();
+      output.write("PI".getBytes(StandardCharsets.US_ASCII));
+      output.flush();
+      Thread.sleep(50);
+      output.write("NG\nFOO\n".getBytes(StandardCharsets.US_ASCII));
+      output.flush();
+
+      BufferedReader reader = reader(socket);
+      assertEquals("PONG", reader.readLine());
+      assertEquals("ERR UNKNOWN_COMMAND FOO", reader.readLine());
+    }
+  }
+
+  @Test
+  public void pipelinedCommandsBeyondThePendingOutputAreAllAnswered() throws Exception {
+    // Given listings much larger than the output a connection may keep pending
+    for (int i = 0; i < CommandInterpreter.MAX_LIST_LIMIT; i++) {
+      taskManager.addToFifo(PriorityType.LOW);
+    }
+    int commands = 1000;
+    try (Socket socket = connect()) {
+      // When they are all sent before reading any response
+      Writer writer = writer(socket.getOutputStream());
+      for (int i = 0; i < commands; i++) {
+        writer.write("LIST ID 0 " + CommandInterpreter.MAX_LIST_LIMIT + "\n");
+      }
+      writer.write("PING\n");
+      writer.flush();
+
+      // Then the paused commands are executed as the responses are read
+      BufferedReader reader = reader(socket);
+      for (int i = 0; i < commands; i++) {
+        assertTrue(reader.readLine().startsWith("OK "));
+      }
+      assertEquals("PONG", reader.readLine());
+    }
+  }
+
+  @Test
+  public void tooLongLineIsAnsweredBeforeClosing() throws Exception {
+    try (Socket socket = connect()) {
+      // Given pending responses ahead of a line longer than the maximum
+      OutputStream output = socket.getOutputStream();
+      byte[] longLine = new byte[TaskManagerServer.MAX_LINE_LENGTH];
+      Arrays.fill(longLine, (byte) 'A');
+      output.write("PING\n".getBytes(StandardCharsets.US_ASCII));
+      output.write(longLine);
+      output.flush();
+
+      // Then every response is written before the connection is closed
+      BufferedReader reader = reader(socket);
+      assertEquals("PONG", reader.readLine());
+      assertEquals("ERR LINE_TOO_LONG", reader.readLine());
+      assertNull(reader.readLine());
+    }
+  }
+
+  @Test
+  public void longCommandOnlyDelaysItsConnection() throws Exception {
+    // Given two workers and a task manager whose kill all blocks until released
+    CountDownLatch killing = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    TaskManagerServiceImpl blockingTaskManager = new TaskManagerServiceImpl(CAPACITY) {
+      @Override
+      public Termination killAll() {
+        killing.countDown();
+        try {
+          release.await(1, TimeUnit.MINUTES);
+        } catch (InterruptedException exception) {
+          Thread.currentThread().interrupt();
+        }
+        return super.killAll();
+      }
+    };
+    try (TaskManagerServer server = new TaskManagerServer(blockingTaskManager, new InetSocketAddress("localhost", 0), 2);
+        Socket first = new Socket("localhost", server.getPort());
+        Socket second = new Socket("localhost", server.getPort())) {
+      Writer firstWriter = writer(first.getOutputStream());
+      firstWriter.write("KILL_ALL\nPING\n");
+      firstWriter.flush();
+      assertTrue(killing.await(1, TimeUnit.MINUTES));
+
+      // When another connection sends a command while the kill all executes
+      Writer secondWriter = writer(second.getOutputStream());
+      secondWriter.write("PING\n");
+      secondWriter.flush();
+
+      // Then it is answered at once, and the first connection once its command completes
+      assertEquals("PONG", reader(second).readLine());
+      release.countDown();
+      BufferedReader firstReader = reader(first);
+      assertEquals("OK", firstReader.readLine());
+      assertEquals("PONG", firstReader.readLine());
+    } finally {
+      release.countDown();
+    }
+  }
+
+  private TaskManagerServer startServer() {
+    try {
+      return new TaskManagerServer(taskManager, new InetSocketAddress("localhost", 0));
+    } catch (IOException exception) {
+      throw new IllegalStateException(exception);
+    }
+  }
+
+  private Socket connect() throws IOException {
+    return new Socket("localhost", underTest.getPort());
+  }
+
+  private static BufferedReader reader(Socket socket) throws IOException {
+    return new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+  }
+
+  private static Writer writer(OutputStream output) {
+    return new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.US_ASCII));
+  }
+}
@@ -0,0 +1,309 @@
+package com.company.taskmanager.service.impl;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.Assert.*;
+
+import com.company.taskmanager.engine.ExecutionEngines;
+import com.company.taskmanager.exception.TaskManagerException;
+import com.company.taskmanager.journal.EventJournal;
+import com.company.taskmanager.model.Deadline;
+import com.company.taskmanager.model.EvictionPolicy;
+import com.company.taskmanager.model.PriorityType;
+import com.company.taskmanager.model.Process;
+import com.company.taskmanager.model.ProcessPage;
+import com.company.taskmanager.model.ShardingStrategy;
+import com.company.taskmanager.model.SortingType;
+import com.company.taskmanager.model.Termination;
+import com.company.taskmanager.registry.impl.CompactProcessRegistry;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.junit.After;
+import org.junit.Test;
+
+public class ShardedTaskManagerServiceTest {
+
+  private static final int SHARDS = 4;
+  private static final int CAPACITY_PER_SHARD = 2;
+
+  private final ShardedTaskManagerService underTest = new ShardedTaskManagerService(SHARDS, CAPACITY_PER_SHARD);
+
+  @After
+  public void tearDown() {
+    underTest.killAll();
+    assertTrue(underTest.listAll(SortingType.CREATION_TIME).isEmpty());
+  }
+
+  @Test(expected = TaskManagerException.class)
+  public void addSpillsOverUntilTheWholeCapacityIsUsed() throws TaskManagerException {
+    // Given every shard full, even though a single thread adds to a single shard
+    for (int i = 0; i < SHARDS * CAPACITY_PER_SHARD; i++) {
+      underTest.add(PriorityType.MEDIUM);
+    }
+    assertEquals(SHARDS * CAPACITY_PER_SHARD, underTest.listAll(SortingType.ID).size());
+
+    // When
+    underTest.add(PriorityType.MEDIUM);
+  }
+
+  @Test
+  public void addWithTimeoutWaitsInItsShardWhenEveryShardIsFull() throws Exception {
+    // Given every shard full and a waiting add
+    for (int i = 0; i < SHARDS * CAPACITY_PER_SHARD; i++) {
+      underTest.add(PriorityType.MEDIUM);
+    }
+    CompletableFuture<Process> waiting = underTest.addAsync(PriorityType.HIGH, 1, TimeUnit.MINUTES);
+    assertFalse(waiting.isDone());
+
+    // When
+    underTest.killAll(PriorityType.MEDIUM);
+
+    // Then
+    Process added = waiting.get(1, TimeUnit.MINUTES);
+    assertEquals(Collections.singletonList(added), underTest.listAll(SortingType.ID));
+  }
+
+  @Test
+  public void shutdownStopsEveryShard() throws Exception {
+    // Given
+    for (int i = 0; i < SHARDS * CAPACITY_PER_SHARD; i++) {
+      underTest.add(PriorityType.LOW);
+    }
+
+    // When
+    Termination termination = underTest.shutdown(1, TimeUnit.MINUTES);
+
+    // Then
+    assertTrue(underTest.isShutdown());
+    assertEquals(SHARDS * CAPACITY_PER_SHARD, termination.getProcesses().size());
+    assertTrue(termination.getStragglers().isEmpty());
+    assertTrue(underTest.listAll(SortingType.ID).isEmpty());
+    assertFalse(underTest.tryAdd(PriorityType.HIGH).isAdded());
+  }
+
+  @Test
+  public void pidsAreUniqueAndKilledInTheirShard() throws TaskManagerException {
+    // Given
+    List<Process> processes = new ArrayList<>();
+    for (int i = 0; i < SHARDS * CAPACITY_PER_SHARD; i++) {
+      processes.add(underTest.add(PriorityType.LOW));
+    }
+    Set<Long> pids = processes.stream().map(Process::getPid).collect(Collectors.toSet());
+    assertEquals(processes.size(), pids.size());
+
+    // When
+    underTest.kill(processes.get(0).getPid());
+    underTest.kill(Arrays.asList(processes.get(1).getPid(), processes.get(2).getPid()));
+
+    // Then
+    assertFalse(processes.get(0).isRunning());
+    assertFalse(processes.get(1).isRunning());
+    assertFalse(processes.get(2).isRunning());
+    assertEquals(processes.size() - 3, underTest.listAll(SortingType.ID).size());
+    assertTrue(underTest.tryAdd(PriorityType.LOW).isAdded());
+  }
+
+  @Test
+  public void listingsMergeTheShards() throws TaskManagerException {
+    // Given processes sharded by priority
+    ShardedTaskManagerService taskManager = new ShardedTaskManagerService(SHARDS, 16, EvictionPolicy.PRIORITY,
+        ShardingStrategy.PRIORITY, ExecutionEngines.defaultEngine(), EventJournal.defaultJournal());
+    try {
+      List<Process> added = new ArrayList<>();
+      for (int i = 0; i < 30; i++) {
+        added.add(taskManager.add(PriorityType.values()[i % PriorityType.values().length]));
+      }
+
+      // Then every ordering holds every process
+      assertEquals(added, taskManager.listAll(SortingType.CREATION_TIME));
+      assertEquals(sorted(added, Comparator.comparingLong(Process::getPid)), taskManager.listAll(SortingType.ID));
+      assertEquals(sorted(added, Comparator.<Process>comparingInt(process -> process.getPriority().getPrecedence())
+          .thenComparingLong(Process::getCreationNanos)), taskManager.listAll(SortingType.PRIORITY));
+    } finally {
+      taskManager.killAll();
+    }
+  }
+
+  @Test
+  public void pagesContinueAfterTheirCursorWhenProcessesAreKilled() throws TaskManagerException {
+    // Given processes of every priority in every shard
+    ShardedTaskManagerService taskManager = new ShardedTaskManagerService(SHARDS, 16);
+    try {
+      for (int i = 0; i < 20; i++) {
+        taskManager.add(PriorityType.values()[i % PriorityType.values().length]);
+      }
+
+      // Then
+      assertPagesContinueAfterKills(taskManager, SortingType.CREATION_TIME);
+      assertPagesContinueAfterKills(taskManager, SortingType.PRIORITY);
+    } finally {
+      taskManager.killAll();
+    }
+  }
+
+  @Test
+  public void compactRegistriesBackTheShards() throws TaskManagerException {
+    // Given shards backed by compact registries
+    ShardedTaskManagerService taskManager = new ShardedTaskManagerService(SHARDS, 16, EvictionPolicy.PRIORITY,
+        ShardingStrategy.PID, ExecutionEngines.defaultEngine(), EventJournal.defaultJournal(),
+        CompactProcessRegistry::new);
+    try {
+      List<Process> added = new ArrayList<>();
+      for (int i = 0; i < 20; i++) {
+        added.add(taskManager.add(PriorityType.values()[i % PriorityType.values().length]));
+      }
+
+      // Then the orderings merge as with the default registries
+      assertEquals(added, taskManager.listAll(SortingType.CREATION_TIME));
+      assertEquals(sorted(added, Comparator.comparingLong(Process::getPid)), taskManager.listAll(SortingType.ID));
+      assertEquals(sorted(added, Comparator.comparingInt(process -> process.getPriority().getPrecedence())),
+          taskManager.listAll(SortingType.PRIORITY));
+      assertPagesContinueAfterKills(taskManager, SortingType.PRIORITY);
+    } finally {
+      taskManager.killAll();
+    }
+  }
+
+  @Test
+  public void pagesByIdWalkEveryShard() throws TaskManagerException {
+    // Given
+    for (int i = 0; i < SHARDS * CAPACITY_PER_SHARD; i++) {
+      underTest.add(PriorityType.HIGH);
+    }
+
+    // When
+    List<Process> paged = new ArrayList<>();
+    long cursor = ProcessPage.FIRST_CURSOR;
+    ProcessPage page;
+    do {
+      page = underTest.listPage(SortingType.ID, cursor, 3);
+      assertTrue(page.getProcesses().size() <= 3);
+      paged.addAll(page.getProcesses());
+      cursor = page.getNextCursor();
+    } while (!page.isLast());
+
+    // Then
+    assertEquals(underTest.listAll(SortingType.ID), paged);
+  }
+
+  @Test
+  public void addWithPriorityEvictsALowerPriorityProcess() throws TaskManagerException {
+    // Given
+    Process low = underTest.add(PriorityType.LOW);
+    for (int i = 1; i < SHARDS * CAPACITY_PER_SHARD; i++) {
+      underTest.add(PriorityType.HIGH);
+    }
+
+    // When
+    Process high = underTest.addWithPriority(PriorityType.HIGH);
+
+    // Then
+    assertNotNull(high);
+    assertFalse(low.isRunning());
+    assertNull(underTest.addWithPriority(PriorityType.MEDIUM));
+    assertEquals(1, underTest.getMetrics().getPriorityEvictions());
+    assertEquals(1, underTest.getMetrics().getRejectedWithPriority());
+  }
+
+  @Test
+  public void killAllWithPriorityKillsItInEveryShard() throws TaskManagerException {
+    // Given
+    for (int i = 0; i < SHARDS * CAPACITY_PER_SHARD; i++) {
+      underTest.add(i % 2 == 0 ? PriorityType.LOW : PriorityType.HIGH);
+    }
+
+    // When
+    underTest.killAll(PriorityType.LOW);
+
+    // Then
+    List<Process> processes = underTest.listAll(SortingType.CREATION_TIME);
+    assertEquals(SHARDS * CAPACITY_PER_SHARD / 2, processes.size());
+    assertTrue(processes.stream().allMatch(process -> process.getPriority() == PriorityType.HIGH));
+  }
+
+  @Test
+  public void capacityIsSpreadAcrossTheShards() {
+    underTest.setCapacity(10);
+    assertEquals(10, underTest.getCapacity());
+
+    underTest.setCapacity(SHARDS);
+    assertEquals(SHARDS, underTest.getCapacity());
+  }
+
+  @Test
+  public void parallelAddsNeverExceedTheCapacity() throws InterruptedException {
+    // Given
+    int threads = 8;
+    CountDownLatch start = new CountDownLatch(1);
+    List<Thread> workers = new ArrayList<>();
+    for (int t = 0; t < threads; t++) {
+      Thread worker = new Thread(() -> {
+        try {
+          start.await();
+          for (int i = 0; i < 100; i++) {
+            underTest.tryAdd(PriorityType.MEDIUM);
+          }
+        } catch (InterruptedException exception) {
+          Thread.currentThread().interrupt();
+        }
+      });
+      workers.add(worker);
+      worker.start();
+    }
+
+    // When
+    start.countDown();
+    for (Thread worker : workers) {
+      worker.join();
+    }
+
+    // Then
+    List<Process> processes = underTest.listAll(SortingType.ID);
+    assertEquals(SHARDS * CAPACITY_PER_SHARD, processes.size());
+    assertEquals(processes.size(), processes.stream().map(Process::getPid).distinct().count());
+    assertEquals(threads * 100 - processes.size(), underTest.getMetrics().getRejected());
+  }
+
+  /**
+   * Pages through an ordering four processes at a time, killing after the first page one process
+   * already listed and the one that would start the second page.
+   */
+  private static void assertPagesContinueAfterKills(ShardedTaskManagerService taskManager, SortingType type) {
+    List<Process> expected = new ArrayList<>(taskManager.listAll(type));
+    ProcessPage page = taskManager.listPage(type, ProcessPage.FIRST_CURSOR, 4);
+    List<Process> paged = new ArrayList<>(page.getProcesses());
+    taskManager.kill(paged.get(0).getPid());
+    taskManager.kill(expected.remove(4).getPid());
+    while (!page.isLast()) {
+      page = taskManager.listPage(type, page.getNextCursor(), 4);
+      assertTrue(page.getProcesses().size() <= 4);
+      paged.addAll(page.getProcesses());
+    }
+    assertEquals(expected, paged);
+  }
+
+  private static List<Process> sorted(List<Process> processes, Comparator<Process> comparator) {
+    List<Process> sorted = new ArrayList<>(processes);
+    sorted.sort(comparator);
+    return sorted;
+  }
+
+  @Test
+  public void timedProcessesExpireInTheirShard() throws TaskManagerException {
+    // Given timed processes spread over the shards
+    for (int i = 0; i < SHARDS * CAPACITY_PER_SHARD; i++) {
+      underTest.add(PriorityType.values()[i % 3], Deadline.after(20, TimeUnit.MILLISECONDS));
+    }
+
+    // Then every shard kills its expired processes
+    await().atMost(1, TimeUnit.MINUTES).until(() -> underTest.listAll(SortingType.ID).isEmpty());
+    assertEquals(SHARDS * CAPACITY_PER_SHARD, underTest.getMetrics().getExpirations());
+  }
+}
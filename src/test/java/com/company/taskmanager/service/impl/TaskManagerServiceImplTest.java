@@ -3,18 +3,62 @@ package com.company.taskmanager.service.impl;
 import static org.awaitility.Awaitility.await;
 import static org.junit.Assert.*;
 
+import com.company.taskmanager.engine.ExecutionEngine;
+import com.company.taskmanager.engine.ExecutionEngines;
 import com.company.taskmanager.exception.TaskManagerException;
+import com.company.taskmanager.exception.TaskManagerInternalException;
+import com.company.taskmanager.journal.ChangeEvent;
+import com.company.taskmanager.journal.ChangeFeed;
+import com.company.taskmanager.journal.ChangeListener;
+import com.company.taskmanager.journal.EventJournal;
+import com.company.taskmanager.journal.JournalEvent;
+import com.company.taskmanager.journal.JournalSink;
+import com.company.taskmanager.journal.OverflowPolicy;
+import com.company.taskmanager.metrics.TaskManagerMetrics;
+import com.company.taskmanager.model.AddResult;
+import com.company.taskmanager.model.AddStatus;
+import com.company.taskmanager.model.Deadline;
+import com.company.taskmanager.model.EvictionPolicy;
 import com.company.taskmanager.model.PriorityType;
 import com.company.taskmanager.model.Process;
+import com.company.taskmanager.model.ProcessPage;
+import com.company.taskmanager.model.ProcessState;
+import com.company.taskmanager.model.ResourceMetric;
 import com.company.taskmanager.model.SortingType;
+import com.company.taskmanager.model.TaskHandle;
+import com.company.taskmanager.model.Termination;
+import com.company.taskmanager.persistence.WriteAheadLog;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+import javax.management.ObjectName;
 import org.awaitility.Durations;
 import org.junit.After;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 public class TaskManagerServiceImplTest {
 
-  private static final TaskManagerServiceImpl underTest = new TaskManagerServiceImpl();
+  private static final int CAPACITY = 4;
+  private final TaskManagerServiceImpl underTest = new TaskManagerServiceImpl(CAPACITY);
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
 
   @After
   public void tearDown() {
@@ -53,6 +97,29 @@ public class TaskManagerServiceImplTest {
     assertTrue(process.isRunning());
   }
 
+  @Test
+  public void tryAddAtMaxCapacityReturnsTheSharedRejection() {
+    // Given the Task Manager at full capacity
+    for (int i = 0; i < CAPACITY; i++) {
+      AddResult result = underTest.tryAdd(PriorityType.MEDIUM);
+      assertEquals(AddStatus.ADDED, result.getStatus());
+      assertTrue(result.getProcess().isRunning());
+    }
+    long rejected = underTest.getMetrics().getRejected();
+
+    // When
+    AddResult first = underTest.tryAdd(PriorityType.HIGH);
+    AddResult second = underTest.tryAdd(PriorityType.LOW);
+
+    // Then both rejections are the same instance and are counted
+    assertSame(AddResult.REJECTED, first);
+    assertSame(AddResult.REJECTED, second);
+    assertFalse(first.isAdded());
+    assertNull(first.getProcess());
+    assertEquals(rejected + 2, underTest.getMetrics().getRejected());
+    assertEquals(CAPACITY, underTest.listAll(SortingType.CREATION_TIME).size());
+  }
+
   @Test(expected = NullPointerException.class)
   public void addFifoWithNullInputThrowsException() {
     underTest.addToFifo(null);
@@ -93,10 +160,10 @@ public class TaskManagerServiceImplTest {
     List<Process> newProcesses = underTest.listAll(SortingType.CREATION_TIME);
     assertFalse(newProcesses.contains(processToBeRemoved));
     assertFalse(processToBeRemoved.isRunning());
-    assertEquals(4, processes.size());
+    assertEquals(4, newProcesses.size());
     // The new element is added as the last element of the list
-    assertEquals(processes.get(processes.size() - 1).getPid(), resultProcess.getPid());
-    assertEquals(processes.get(processes.size() - 1).getPriority(), resultProcess.getPriority());
+    assertEquals(newProcesses.get(newProcesses.size() - 1).getPid(), resultProcess.getPid());
+    assertEquals(newProcesses.get(newProcesses.size() - 1).getPriority(), resultProcess.getPriority());
     assertTrue(resultProcess.isRunning());
   }
 
@@ -141,12 +208,28 @@ public class TaskManagerServiceImplTest {
     assertFalse(newProcesses.contains(candidateToBeRemoved));
     assertFalse(candidateToBeRemoved.isRunning());
 
-    assertEquals(4, processes.size());
-    assertEquals(processes.get(processes.size() - 1).getPid(), resultProcess.getPid());
-    assertEquals(processes.get(processes.size() - 1).getPriority(), resultProcess.getPriority());
+    assertEquals(4, newProcesses.size());
+    assertEquals(newProcesses.get(newProcesses.size() - 1).getPid(), resultProcess.getPid());
+    assertEquals(newProcesses.get(newProcesses.size() - 1).getPriority(), resultProcess.getPriority());
     assertTrue(resultProcess.isRunning());
   }
 
+  @Test
+  public void addWithPriorityAtMaxCapacityRemovesLowestPriorityBeforeOlderLowerPriority() {
+    // Given the task manager at full capacity where the oldest lower priority process is not the lowest one
+    Process medium = underTest.addWithPriority(PriorityType.MEDIUM);
+    Process firstLow = underTest.addWithPriority(PriorityType.LOW);
+    Process secondLow = underTest.addWithPriority(PriorityType.LOW);
+    Process high = underTest.addWithPriority(PriorityType.HIGH);
+
+    // When adding with priority
+    Process resultProcess = underTest.addWithPriority(PriorityType.HIGH);
+
+    // Then the oldest process among the lowest priority ones is removed
+    assertEquals(Arrays.asList(medium, secondLow, high, resultProcess), underTest.listAll(SortingType.CREATION_TIME));
+    assertFalse(firstLow.isRunning());
+  }
+
   @Test
   public void addWithPriorityAtMaxCapacityNoOldestWithLowPrioritySkipAdd() {
     // Given the task manager at full capacity
@@ -229,6 +312,69 @@ public class TaskManagerServiceImplTest {
     assertTrue((int) processes.get(1).getPid() < (int) processes.get(2).getPid());
   }
 
+  @Test
+  public void listAllDoesNotChangeCreationOrder() throws TaskManagerException {
+    // Given
+    Process firstElement = underTest.add(PriorityType.HIGH);
+    Process secondElement = underTest.add(PriorityType.LOW);
+
+    // When listing with other orderings
+    underTest.listAll(SortingType.PRIORITY);
+    underTest.listAll(SortingType.ID);
+
+    // Then the creation order is kept and the FIFO eviction removes the oldest process
+    assertEquals(Arrays.asList(firstElement, secondElement), underTest.listAll(SortingType.CREATION_TIME));
+    underTest.addToFifo(PriorityType.MEDIUM);
+    underTest.addToFifo(PriorityType.MEDIUM);
+    underTest.addToFifo(PriorityType.MEDIUM);
+    assertFalse(underTest.listAll(SortingType.CREATION_TIME).contains(firstElement));
+    assertTrue(underTest.listAll(SortingType.CREATION_TIME).contains(secondElement));
+  }
+
+  @Test
+  public void listAllReturnsCachedSnapshotUntilMutation() throws TaskManagerException {
+    // Given
+    underTest.add(PriorityType.HIGH);
+    List<Process> snapshot = underTest.listAll(SortingType.PRIORITY);
+
+    // Then the same snapshot is returned while nothing changes
+    assertSame(snapshot, underTest.listAll(SortingType.PRIORITY));
+
+    // When a process is added
+    Process added = underTest.add(PriorityType.LOW);
+
+    // Then the old snapshot is untouched and a new one is built
+    List<Process> newSnapshot = underTest.listAll(SortingType.PRIORITY);
+    assertEquals(1, snapshot.size());
+    assertEquals(added, newSnapshot.get(0));
+    assertEquals(2, newSnapshot.size());
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void listAllReturnsImmutableSnapshot() {
+    underTest.listAll(SortingType.ID).add(new Process(-1, PriorityType.LOW));
+  }
+
+  @Test
+  public void listPageAndStreamFollowTheSortingType() throws TaskManagerException {
+    // Given
+    Process low = underTest.add(PriorityType.LOW);
+    Process high = underTest.add(PriorityType.HIGH);
+    Process medium = underTest.add(PriorityType.MEDIUM);
+
+    // When
+    ProcessPage firstPage = underTest.listPage(SortingType.PRIORITY, ProcessPage.FIRST_CURSOR, 2);
+    ProcessPage secondPage = underTest.listPage(SortingType.PRIORITY, firstPage.getNextCursor(), 2);
+
+    // Then
+    assertEquals(Arrays.asList(low, medium), firstPage.getProcesses());
+    assertFalse(firstPage.isLast());
+    assertEquals(Arrays.asList(high), secondPage.getProcesses());
+    assertTrue(secondPage.isLast());
+    assertEquals(Arrays.asList(low, high, medium),
+        underTest.stream(SortingType.CREATION_TIME).collect(Collectors.toList()));
+  }
+
   @Test
   public void killPidDoesNotExistNoException() {
     underTest.kill(-1);
@@ -315,4 +461,863 @@ public class TaskManagerServiceImplTest {
     assertFalse(secondProcess.isRunning());
     assertFalse(thirdProcess.isRunning());
   }
-}
\ No newline at end of file
+
+  @Test
+  public void defaultCapacityScalesWithAvailableProcessors() {
+    assertEquals(Runtime.getRuntime().availableProcessors() * 4, new TaskManagerServiceImpl().getCapacity());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void setCapacityNotPositiveThrowsException() {
+    underTest.setCapacity(0);
+  }
+
+  @Test
+  public void setCapacityIncreaseAdmitsMoreProcesses() throws TaskManagerException {
+    TaskManagerServiceImpl taskManager = new TaskManagerServiceImpl(1);
+    try {
+      // Given the task manager at full capacity
+      taskManager.add(PriorityType.LOW);
+
+      // When increasing the capacity
+      taskManager.setCapacity(2);
+
+      // Then a new process fits in
+      taskManager.add(PriorityType.LOW);
+      assertEquals(2, taskManager.listAll(SortingType.CREATION_TIME).size());
+    } finally {
+      taskManager.killAll();
+    }
+  }
+
+  @Test
+  public void setCapacityDecreaseEvictsLowestPriorityOldest() throws TaskManagerException {
+    TaskManagerServiceImpl taskManager = new TaskManagerServiceImpl(4, EvictionPolicy.PRIORITY);
+    try {
+      // Given the task manager at full capacity
+      Process firstHigh = taskManager.add(PriorityType.HIGH);
+      Process firstLow = taskManager.add(PriorityType.LOW);
+      Process medium = taskManager.add(PriorityType.MEDIUM);
+      Process secondLow = taskManager.add(PriorityType.LOW);
+
+      // When shrinking the capacity
+      taskManager.setCapacity(2);
+
+      // Then the lowest priority processes are evicted, oldest first
+      assertEquals(Arrays.asList(firstHigh, medium), taskManager.listAll(SortingType.CREATION_TIME));
+      assertEquals(2, taskManager.getCapacity());
+      await().atMost(Durations.ONE_MINUTE).until(() -> !firstLow.isRunning() && !secondLow.isRunning());
+    } finally {
+      taskManager.killAll();
+    }
+  }
+
+  @Test
+  public void setCapacityDecreaseEvictsOldestWithFifoPolicy() throws TaskManagerException {
+    TaskManagerServiceImpl taskManager = new TaskManagerServiceImpl(3, EvictionPolicy.FIFO);
+    try {
+      // Given the task manager at full capacity
+      taskManager.add(PriorityType.HIGH);
+      Process second = taskManager.add(PriorityType.LOW);
+      Process third = taskManager.add(PriorityType.MEDIUM);
+
+      // When shrinking the capacity
+      taskManager.setCapacity(2);
+
+      // Then the oldest process is evicted
+      assertEquals(Arrays.asList(second, third), taskManager.listAll(SortingType.CREATION_TIME));
+    } finally {
+      taskManager.killAll();
+    }
+  }
+
+  @Test
+  public void setCapacityDecreaseWithoutEvictionPolicyRejectsUntilKilled() throws TaskManagerException {
+    TaskManagerServiceImpl taskManager = new TaskManagerServiceImpl(2, EvictionPolicy.NONE);
+    try {
+      // Given the task manager at full capacity
+      Process first = taskManager.add(PriorityType.HIGH);
+      taskManager.add(PriorityType.LOW);
+
+      // When shrinking the capacity no process is evicted
+      taskManager.setCapacity(1);
+      assertEquals(2, taskManager.listAll(SortingType.CREATION_TIME).size());
+
+      // Then a new process is only admitted once enough processes are killed
+      try {
+        taskManager.add(PriorityType.HIGH);
+        fail("Expected the task manager to be over capacity");
+      } catch (TaskManagerException expected) {
+        // Over capacity
+      }
+      taskManager.kill(first.getPid());
+      taskManager.killAll(PriorityType.LOW);
+      taskManager.add(PriorityType.HIGH);
+    } finally {
+      taskManager.killAll();
+    }
+  }
+
+  @Test
+  public void parallelAddsNeverExceedCapacity() throws InterruptedException {
+    // Given many threads adding processes at the same time
+    int capacity = 16;
+    int threads = 8;
+    int addsPerThread = 50;
+    TaskManagerServiceImpl taskManager = new TaskManagerServiceImpl(capacity);
+    AtomicInteger admitted = new AtomicInteger();
+    CountDownLatch start = new CountDownLatch(1);
+    List<Thread> workers = new ArrayList<>();
+    for (int i = 0; i < threads; i++) {
+      Thread worker = new Thread(() -> {
+        try {
+          start.await();
+          for (int j = 0; j < addsPerThread; j++) {
+            try {
+              taskManager.add(PriorityType.MEDIUM);
+              admitted.incrementAndGet();
+            } catch (TaskManagerException exception) {
+              // Rejected at max capacity
+            }
+          }
+        } catch (InterruptedException exception) {
+          Thread.currentThread().interrupt();
+        }
+      });
+      worker.start();
+      workers.add(worker);
+    }
+
+    // When all of them race
+    start.countDown();
+    for (Thread worker : workers) {
+      worker.join();
+    }
+
+    // Then exactly the capacity is admitted
+    try {
+      assertEquals(capacity, admitted.get());
+      assertEquals(capacity, taskManager.listAll(SortingType.CREATION_TIME).size());
+    } finally {
+      taskManager.killAll();
+    }
+  }
+
+  @Test
+  public void processesRunOnTheProvidedEngine() {
+    ExecutionEngine engine = ExecutionEngines.pooled(1);
+    TaskManagerServiceImpl taskManager = new TaskManagerServiceImpl(100, EvictionPolicy.FIFO, engine);
+    try {
+      // When adding more processes than pool threads
+      List<Process> processes = new ArrayList<>();
+      for (int i = 0; i < 100; i++) {
+        processes.add(taskManager.addToFifo(PriorityType.LOW));
+      }
+
+      // Then all of them are running as idle processes don't hold a thread
+      for (Process process : processes) {
+        assertTrue(process.isRunning());
+      }
+    } finally {
+      taskManager.killAll();
+      engine.shutdown();
+    }
+  }
+
+  @Test
+  public void killBeforeStartNeverLeavesTheProcessRunning() {
+    // Given a process stopped before it is started
+    Process process = new Process(-1, PriorityType.LOW);
+    process.stop();
+
+    // When
+    process.start(ExecutionEngines.defaultEngine());
+
+    // Then
+    assertFalse(process.isRunning());
+  }
+
+  @Test(expected = NullPointerException.class)
+  public void addWithNullPayloadThrowsException() throws TaskManagerException {
+    underTest.add(PriorityType.LOW, (Callable<Object>) null);
+  }
+
+  @Test
+  public void addWithPayloadCompletesAndLeavesTheTaskManager() throws Exception {
+    // When adding a process with a payload
+    TaskHandle<String> handle = underTest.add(PriorityType.HIGH, () -> "done");
+
+    // Then the result is available and the process leaves the task manager by itself
+    assertEquals("done", handle.getResult().get(1, TimeUnit.MINUTES));
+    await().atMost(Durations.ONE_MINUTE).until(() -> underTest.listAll(SortingType.CREATION_TIME).isEmpty());
+    assertTrue(handle.isCompleted());
+    assertFalse(handle.getProcess().isRunning());
+
+    // And its capacity is available again
+    for (int i = 0; i < CAPACITY; i++) {
+      underTest.add(PriorityType.LOW);
+    }
+  }
+
+  @Test
+  public void addToFifoWithFailingPayloadCompletesExceptionally() throws Exception {
+    // When adding a process with a failing payload
+    TaskHandle<Object> handle = underTest.addToFifo(PriorityType.MEDIUM, () -> {
+      throw new IllegalStateException("failed");
+    });
+
+    // Then the failure is available and the process leaves the task manager by itself
+    try {
+      handle.getResult().get(1, TimeUnit.MINUTES);
+      fail("Expected the payload to fail");
+    } catch (ExecutionException exception) {
+      assertTrue(exception.getCause() instanceof IllegalStateException);
+    }
+    await().atMost(Durations.ONE_MINUTE).until(() -> underTest.listAll(SortingType.CREATION_TIME).isEmpty());
+    assertEquals(ProcessState.FAILED, handle.getState());
+  }
+
+  @Test
+  public void killCancelsRunningPayload() throws Exception {
+    // Given a process blocked in its payload
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch interrupted = new CountDownLatch(1);
+    TaskHandle<Void> handle = underTest.addWithPriority(PriorityType.LOW, () -> {
+      started.countDown();
+      try {
+        Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+      } catch (InterruptedException exception) {
+        interrupted.countDown();
+      }
+      return null;
+    });
+    assertTrue(started.await(1, TimeUnit.MINUTES));
+
+    // When
+    underTest.kill(handle.getPid());
+
+    // Then the payload is interrupted and the result cancelled
+    assertTrue(interrupted.await(1, TimeUnit.MINUTES));
+    assertTrue(handle.isCancelled());
+    try {
+      handle.getResult().get();
+      fail("Expected the result to be cancelled");
+    } catch (CancellationException expected) {
+      // Killed
+    }
+  }
+
+  @Test
+  public void addWithPriorityWithPayloadSkippedReturnsNull() {
+    // Given the task manager at full capacity with the highest priority
+    for (int i = 0; i < CAPACITY; i++) {
+      underTest.addWithPriority(PriorityType.HIGH);
+    }
+
+    // Then
+    assertNull(underTest.addWithPriority(PriorityType.HIGH, () -> "skipped"));
+  }
+
+  @Test
+  public void addAllWithoutEvictionAddsUntilMaxCapacity() throws TaskManagerException {
+    // Given
+    Process existing = underTest.add(PriorityType.LOW);
+
+    // When
+    List<Process> added = underTest.addAll(
+        Arrays.asList(PriorityType.HIGH, PriorityType.MEDIUM, PriorityType.LOW, PriorityType.HIGH), EvictionPolicy.NONE);
+
+    // Then the processes over capacity are not added
+    assertEquals(4, added.size());
+    assertNull(added.get(3));
+    assertEquals(Arrays.asList(existing, added.get(0), added.get(1), added.get(2)),
+        underTest.listAll(SortingType.CREATION_TIME));
+    assertTrue(added.get(0).isRunning());
+  }
+
+  @Test
+  public void addAllToFifoLargerThanCapacityKeepsTheNewestProcesses() {
+    // Given
+    Process existing = underTest.addToFifo(PriorityType.HIGH);
+    List<PriorityType> priorities = Arrays.asList(PriorityType.LOW, PriorityType.LOW, PriorityType.MEDIUM,
+        PriorityType.HIGH, PriorityType.LOW, PriorityType.MEDIUM);
+
+    // When
+    List<Process> added = underTest.addAll(priorities, EvictionPolicy.FIFO);
+
+    // Then the existing process and the oldest ones of the batch are evicted
+    assertFalse(existing.isRunning());
+    assertNull(added.get(0));
+    assertNull(added.get(1));
+    assertEquals(added.subList(2, 6), underTest.listAll(SortingType.CREATION_TIME));
+    assertEquals(PriorityType.MEDIUM, added.get(2).getPriority());
+
+    // And the processes superseded by the batch itself are neither rejections nor evictions
+    assertEquals(0, underTest.getMetrics().getRejected(EvictionPolicy.FIFO));
+    assertEquals(1, underTest.getMetrics().getFifoEvictions());
+  }
+
+  @Test
+  public void addAllWithPriorityBehavesAsSequentialAdds() {
+    // Given two task managers in the same state
+    List<PriorityType> initial = Arrays.asList(PriorityType.MEDIUM, PriorityType.HIGH, PriorityType.LOW);
+    List<PriorityType> batch = Arrays.asList(PriorityType.LOW, PriorityType.MEDIUM, PriorityType.HIGH,
+        PriorityType.LOW, PriorityType.HIGH, PriorityType.HIGH);
+    TaskManagerServiceImpl sequential = new TaskManagerServiceImpl(CAPACITY);
+    try {
+      initial.forEach(underTest::addWithPriority);
+      initial.forEach(sequential::addWithPriority);
+
+      // When adding the batch at once and one by one
+      List<Process> added = underTest.addAll(batch, EvictionPolicy.PRIORITY);
+      List<Process> sequentiallyAdded = new ArrayList<>();
+      batch.forEach(priority -> sequentiallyAdded.add(sequential.addWithPriority(priority)));
+
+      // Then both end with the same priorities in the same order
+      assertEquals(priorities(sequential.listAll(SortingType.CREATION_TIME)),
+          priorities(underTest.listAll(SortingType.CREATION_TIME)));
+      for (int i = 0; i < batch.size(); i++) {
+        assertEquals(sequentiallyAdded.get(i) != null && sequentiallyAdded.get(i).isRunning(), added.get(i) != null);
+      }
+      // And only the processes skipped by the sequential adds are rejected
+      assertEquals(sequential.getMetrics().getRejectedWithPriority(), underTest.getMetrics().getRejectedWithPriority());
+    } finally {
+      sequential.killAll();
+    }
+  }
+
+  @Test
+  public void killBatchOfPids() throws TaskManagerException {
+    // Given
+    Process first = underTest.add(PriorityType.LOW);
+    Process second = underTest.add(PriorityType.HIGH);
+    Process third = underTest.add(PriorityType.MEDIUM);
+
+    // When
+    underTest.kill(Arrays.asList(first.getPid(), third.getPid(), -1L));
+
+    // Then
+    assertEquals(Arrays.asList(second), underTest.listAll(SortingType.CREATION_TIME));
+    assertFalse(first.isRunning());
+    assertFalse(third.isRunning());
+    assertTrue(second.isRunning());
+
+    // And the capacity is released
+    underTest.add(PriorityType.LOW);
+    underTest.add(PriorityType.LOW);
+    underTest.add(PriorityType.LOW);
+  }
+
+  @Test
+  public void metricsCountAdmissionsEvictionsAndKills() throws TaskManagerException {
+    // Given
+    TaskManagerServiceImpl taskManager = new TaskManagerServiceImpl(2);
+    TaskManagerMetrics metrics = taskManager.getMetrics();
+    try {
+      // When
+      taskManager.add(PriorityType.LOW);
+      taskManager.add(PriorityType.MEDIUM);
+      try {
+        taskManager.add(PriorityType.HIGH);
+        fail();
+      } catch (TaskManagerException expected) {
+        // the table is full
+      }
+      taskManager.addToFifo(PriorityType.HIGH);
+      assertNull(taskManager.addWithPriority(PriorityType.LOW));
+      taskManager.addWithPriority(PriorityType.HIGH);
+      taskManager.killAll(PriorityType.HIGH);
+
+      // Then
+      assertEquals(2, metrics.getAdded());
+      assertEquals(1, metrics.getRejected());
+      assertEquals(1, metrics.getAddedToFifo());
+      assertEquals(1, metrics.getFifoEvictions());
+      assertEquals(1, metrics.getAddedWithPriority());
+      assertEquals(1, metrics.getRejectedWithPriority());
+      assertEquals(1, metrics.getPriorityEvictions());
+      assertEquals(2, metrics.getKills());
+      assertEquals(0, metrics.getLiveLow());
+      assertEquals(0, metrics.getLiveMedium());
+      assertEquals(0, metrics.getLiveHigh());
+      assertEquals(4, metrics.getAdmissionLatency().getCount());
+    } finally {
+      taskManager.killAll();
+    }
+  }
+
+  @Test
+  public void metricsRecordExitsAndStartLatency() throws Exception {
+    // Given
+    TaskManagerServiceImpl taskManager = new TaskManagerServiceImpl(CAPACITY);
+    TaskManagerMetrics metrics = taskManager.getMetrics();
+
+    // When
+    taskManager.add(PriorityType.MEDIUM, () -> "done").getResult().get(1, TimeUnit.MINUTES);
+
+    // Then
+    await().atMost(Durations.ONE_MINUTE).until(() -> metrics.getExits() == 1);
+    assertEquals(0, metrics.getLiveMedium());
+    assertEquals(1, metrics.getStartLatency().getCount());
+  }
+
+  @Test
+  public void metricsArePublishedThroughJmx() throws Exception {
+    // Given
+    ObjectName objectName = underTest.getMetrics().registerMBean("test");
+    try {
+      underTest.add(PriorityType.HIGH);
+
+      // When
+      Object liveHigh = ManagementFactory.getPlatformMBeanServer().getAttribute(objectName, "LiveHigh");
+
+      // Then
+      assertEquals(1L, liveHigh);
+    } finally {
+      underTest.getMetrics().unregisterMBean("test");
+    }
+  }
+
+  @Test
+  public void lifecycleEventsAreJournaled() throws TaskManagerException {
+    // Given
+    List<String> events = Collections.synchronizedList(new ArrayList<>());
+    JournalSink sink = batch -> batch.forEach(event -> events.add(event.getType() + ":" + event.getPid()));
+    try (EventJournal journal = new EventJournal(OverflowPolicy.BLOCK, sink)) {
+      TaskManagerServiceImpl taskManager =
+          new TaskManagerServiceImpl(1, EvictionPolicy.PRIORITY, ExecutionEngines.defaultEngine(), journal);
+
+      // When
+      Process low = taskManager.add(PriorityType.LOW);
+      assertFalse(taskManager.tryAdd(PriorityType.HIGH).isAdded());
+      Process high = taskManager.addWithPriority(PriorityType.HIGH);
+      taskManager.kill(high.getPid());
+      journal.flush();
+
+      // Then
+      assertEquals(Arrays.asList("ADDED:" + low.getPid(), "REJECTED:" + JournalEvent.NO_PID,
+          "EVICTED:" + low.getPid(), "ADDED:" + high.getPid(), "KILLED:" + high.getPid()), events);
+    }
+  }
+
+  @Test
+  public void persistedProcessesAreRecoveredAfterRestart() throws Exception {
+    // Given
+    Path directory = folder.newFolder().toPath();
+    List<Long> livePids = new ArrayList<>();
+    try (WriteAheadLog writeAheadLog = WriteAheadLog.open(directory)) {
+      TaskManagerServiceImpl taskManager = new TaskManagerServiceImpl(CAPACITY, EvictionPolicy.PRIORITY,
+          ExecutionEngines.defaultEngine(), EventJournal.defaultJournal(), writeAheadLog);
+      Process killed = taskManager.add(PriorityType.LOW);
+      livePids.add(taskManager.add(PriorityType.HIGH).getPid());
+      livePids.add(taskManager.add(PriorityType.MEDIUM).getPid());
+      taskManager.kill(killed.getPid());
+    }
+
+    // When
+    try (WriteAheadLog writeAheadLog = WriteAheadLog.open(directory)) {
+      TaskManagerServiceImpl taskManager = new TaskManagerServiceImpl(CAPACITY, EvictionPolicy.PRIORITY,
+          ExecutionEngines.defaultEngine(), EventJournal.defaultJournal(), writeAheadLog);
+      try {
+        // Then the live processes are running again and new pids continue after them
+        List<Process> processes = taskManager.listAll(SortingType.CREATION_TIME);
+        assertEquals(livePids, processes.stream().map(Process::getPid).collect(Collectors.toList()));
+        assertEquals(Arrays.asList(PriorityType.HIGH, PriorityType.MEDIUM), priorities(processes));
+        assertTrue(processes.stream().allMatch(Process::isRunning));
+        assertTrue(taskManager.add(PriorityType.LOW).getPid() > livePids.get(1));
+        assertEquals(1, taskManager.getMetrics().getLiveHigh());
+      } finally {
+        taskManager.killAll();
+      }
+    }
+  }
+
+  @Test
+  public void addWithTimeoutWaitsUntilAKillFreesCapacity() throws Exception {
+    // Given the Task Manager at full capacity and a waiting add
+    Process killed = underTest.add(PriorityType.HIGH);
+    fillUp(CAPACITY - 1);
+    CompletableFuture<Process> waiting = underTest.addAsync(PriorityType.LOW, 1, TimeUnit.MINUTES);
+    assertFalse(waiting.isDone());
+    assertEquals(1, underTest.getWaitingAdds());
+
+    // When
+    underTest.kill(killed.getPid());
+
+    // Then the freed capacity is handed over to the waiting add
+    Process added = waiting.get(1, TimeUnit.MINUTES);
+    assertTrue(added.isRunning());
+    assertEquals(0, underTest.getWaitingAdds());
+    assertTrue(underTest.listAll(SortingType.ID).contains(added));
+    assertFalse(underTest.tryAdd(PriorityType.HIGH).isAdded());
+  }
+
+  @Test
+  public void waitingAddsAreAdmittedByPriorityThenArrival() throws Exception {
+    // Given
+    List<Process> processes = fillUp(CAPACITY);
+    CompletableFuture<Process> firstLow = underTest.addAsync(PriorityType.LOW, 1, TimeUnit.MINUTES);
+    CompletableFuture<Process> firstHigh = underTest.addAsync(PriorityType.HIGH, 1, TimeUnit.MINUTES);
+    CompletableFuture<Process> secondLow = underTest.addAsync(PriorityType.LOW, 1, TimeUnit.MINUTES);
+    CompletableFuture<Process> secondHigh = underTest.addAsync(PriorityType.HIGH, 1, TimeUnit.MINUTES);
+
+    // When
+    underTest.kill(Arrays.asList(processes.get(0).getPid(), processes.get(1).getPid()));
+    underTest.kill(processes.get(2).getPid());
+
+    // Then
+    assertTrue(firstHigh.isDone() && secondHigh.isDone() && firstLow.isDone());
+    assertFalse(secondLow.isDone());
+    assertTrue(firstHigh.get().getPid() < secondHigh.get().getPid());
+    assertTrue(secondHigh.get().getPid() < firstLow.get().getPid());
+    secondLow.cancel(false);
+  }
+
+  @Test
+  public void addWithTimeoutExpiresAtMaxCapacity() throws Exception {
+    // Given
+    fillUp(CAPACITY);
+
+    // When
+    try {
+      underTest.add(PriorityType.HIGH, 50, TimeUnit.MILLISECONDS);
+      fail("Expected the add to time out");
+    } catch (TaskManagerException exception) {
+      // Then
+      assertEquals(TaskManagerInternalException.ADMISSION_TIMEOUT_EXCEPTION, exception.getInnerException());
+    }
+    assertEquals(0, underTest.getWaitingAdds());
+    assertEquals(1, underTest.getMetrics().getRejected());
+  }
+
+  @Test
+  public void admittedOrCancelledWaitingAddsReleaseTheirTimeout() throws Exception {
+    // Given waiting adds with a long timeout
+    List<Process> processes = fillUp(CAPACITY);
+    int scheduled = TaskManagerServiceImpl.getScheduledAdmissionTimeouts();
+    CompletableFuture<Process> admitted = underTest.addAsync(PriorityType.HIGH, 1, TimeUnit.HOURS);
+    CompletableFuture<Process> cancelled = underTest.addAsync(PriorityType.HIGH, 1, TimeUnit.HOURS);
+    assertEquals(scheduled + 2, TaskManagerServiceImpl.getScheduledAdmissionTimeouts());
+
+    // When one is admitted and the other cancelled
+    underTest.kill(processes.get(0).getPid());
+    cancelled.cancel(false);
+
+    // Then their timeouts don't wait an hour to leave the timer
+    assertTrue(admitted.get(1, TimeUnit.MINUTES).isRunning());
+    assertEquals(scheduled, TaskManagerServiceImpl.getScheduledAdmissionTimeouts());
+  }
+
+  @Test
+  public void cancelledWaitingAddLeavesTheQueue() throws Exception {
+    // Given
+    List<Process> processes = fillUp(CAPACITY);
+    CompletableFuture<Process> waiting = underTest.addAsync(PriorityType.HIGH, 1, TimeUnit.MINUTES);
+
+    // When
+    waiting.cancel(false);
+    underTest.kill(processes.get(0).getPid());
+
+    // Then the freed capacity goes back to the task manager
+    assertEquals(0, underTest.getWaitingAdds());
+    assertTrue(underTest.tryAdd(PriorityType.LOW).isAdded());
+  }
+
+  @Test
+  public void producersWaitingForCapacityNeverExceedIt() throws Exception {
+    int producers = 8;
+    int addsPerProducer = 500;
+    List<Thread> threads = new ArrayList<>();
+    AtomicInteger failures = new AtomicInteger();
+    // Listings are weakly consistent under concurrent changes, so the held processes are counted
+    AtomicInteger held = new AtomicInteger();
+    for (int i = 0; i < producers; i++) {
+      threads.add(new Thread(() -> {
+        for (int j = 0; j < addsPerProducer; j++) {
+          try {
+            Process process = underTest.add(PriorityType.values()[j % 3], 1, TimeUnit.MINUTES);
+            if (held.incrementAndGet() > CAPACITY) {
+              failures.incrementAndGet();
+            }
+            held.decrementAndGet();
+            underTest.kill(process.getPid());
+          } catch (TaskManagerException | InterruptedException exception) {
+            failures.incrementAndGet();
+          }
+        }
+      }));
+    }
+    threads.forEach(Thread::start);
+    for (Thread thread : threads) {
+      thread.join(TimeUnit.MINUTES.toMillis(1));
+    }
+
+    assertEquals(0, failures.get());
+    assertEquals(0, underTest.getWaitingAdds());
+    assertEquals(producers * addsPerProducer, underTest.getMetrics().getKills());
+    assertTrue(underTest.listAll(SortingType.ID).isEmpty());
+  }
+
+  @Test
+  public void killReturnsAHandleConfirmingTheTermination() throws Exception {
+    // Given a process running an interruptible payload
+    CountDownLatch started = new CountDownLatch(1);
+    TaskHandle<Object> handle = underTest.add(PriorityType.HIGH, () -> {
+      started.countDown();
+      return new CountDownLatch(1).await(1, TimeUnit.MINUTES);
+    });
+    assertTrue(started.await(1, TimeUnit.MINUTES));
+
+    // When
+    Termination termination = underTest.kill(handle.getPid());
+
+    // Then
+    assertEquals(Collections.singletonList(handle.getProcess()), termination.getProcesses());
+    assertTrue(termination.await(1, TimeUnit.MINUTES));
+    assertTrue(handle.getProcess().isTerminated());
+    assertTrue(termination.getStragglers().isEmpty());
+    assertSame(Termination.NONE, underTest.kill(handle.getPid()));
+  }
+
+  @Test
+  public void killAllStopsLargeBatchesInParallel() throws Exception {
+    // Given
+    int processes = TaskManagerServiceImpl.PARALLEL_STOP_THRESHOLD * 4;
+    TaskManagerServiceImpl taskManager = new TaskManagerServiceImpl(processes);
+    taskManager.addAll(Collections.nCopies(processes, PriorityType.LOW), EvictionPolicy.NONE);
+
+    // When
+    Termination termination = taskManager.killAll();
+
+    // Then
+    assertEquals(processes, termination.getProcesses().size());
+    assertTrue(termination.await(1, TimeUnit.MINUTES));
+    assertTrue(termination.getProcesses().stream().noneMatch(Process::isRunning));
+    assertTrue(taskManager.tryAdd(PriorityType.LOW).isAdded());
+    taskManager.killAll();
+  }
+
+  @Test
+  public void shutdownReportsTheProcessesIgnoringInterruption() throws Exception {
+    // Given a payload that ignores interruption and a waiting add
+    CountDownLatch release = new CountDownLatch(1);
+    CountDownLatch started = new CountDownLatch(1);
+    TaskHandle<Object> stubborn = underTest.add(PriorityType.LOW, () -> {
+      started.countDown();
+      while (release.getCount() > 0) {
+        try {
+          release.await();
+        } catch (InterruptedException exception) {
+          // Keeps running
+        }
+      }
+      return null;
+    });
+    Process idle = underTest.add(PriorityType.HIGH);
+    fillUp(CAPACITY - 2);
+    CompletableFuture<Process> waiting = underTest.addAsync(PriorityType.HIGH, 1, TimeUnit.MINUTES);
+    assertTrue(started.await(1, TimeUnit.MINUTES));
+
+    // When
+    Termination termination = underTest.shutdown(50, TimeUnit.MILLISECONDS);
+
+    // Then
+    assertTrue(underTest.isShutdown());
+    assertEquals(CAPACITY, termination.getProcesses().size());
+    assertEquals(Collections.singletonList(stubborn.getProcess()), termination.getStragglers());
+    assertTrue(idle.isTerminated());
+    assertTrue(waiting.isCompletedExceptionally());
+    assertFalse(underTest.tryAdd(PriorityType.HIGH).isAdded());
+    try {
+      underTest.addToFifo(PriorityType.HIGH);
+      fail("Expected the task manager to be shut down");
+    } catch (IllegalStateException expected) {
+      // Adds are not admitted anymore
+    }
+
+    release.countDown();
+    assertTrue(termination.await(1, TimeUnit.MINUTES));
+  }
+
+  @Test
+  public void topRanksTheHeaviestProcesses() throws TaskManagerException {
+    // Given processes with different recorded usage
+    List<Process> processes = fillUp(CAPACITY);
+    processes.get(0).recordUsage(10, 500);
+    processes.get(1).recordUsage(30, 100);
+    processes.get(2).recordUsage(20, 300);
+
+    // Then
+    assertEquals(Arrays.asList(processes.get(1), processes.get(2)), underTest.top(2, ResourceMetric.CPU_TIME));
+    assertEquals(Arrays.asList(processes.get(0), processes.get(2), processes.get(1), processes.get(3)),
+        underTest.top(10, ResourceMetric.ALLOCATED_BYTES));
+    assertEquals(Arrays.asList(processes.get(0)), underTest.top(1, ResourceMetric.AGE));
+    try {
+      underTest.top(0, ResourceMetric.AGE);
+      fail("Expected the limit to be rejected");
+    } catch (IllegalArgumentException expected) {
+      // The limit must be positive
+    }
+  }
+
+  @Test
+  public void timedProcessesAreKilledOnceTheirDeadlinePasses() throws TaskManagerException {
+    // Given timed processes filling up the task manager and an untimed one
+    Process untimed = underTest.add(PriorityType.HIGH);
+    Process first = underTest.add(PriorityType.LOW, Deadline.after(50, TimeUnit.MILLISECONDS));
+    Process second = underTest.addToFifo(PriorityType.LOW, Deadline.after(50, TimeUnit.MILLISECONDS));
+    Process third = underTest.addWithPriority(PriorityType.MEDIUM, Deadline.at(Instant.now()));
+    assertFalse(underTest.tryAdd(PriorityType.LOW, Deadline.after(1, TimeUnit.MINUTES)).isAdded());
+
+    // Then they expire through the kill path and free their capacity
+    await().atMost(Durations.ONE_MINUTE).until(() -> underTest.listAll(SortingType.ID).size() == 1);
+    assertEquals(Arrays.asList(untimed), underTest.listAll(SortingType.ID));
+    assertTrue(first.isTerminated() && second.isTerminated() && third.isTerminated());
+    assertEquals(3, underTest.getMetrics().getExpirations());
+    assertEquals(3, underTest.getMetrics().getKills());
+    assertTrue(underTest.tryAdd(PriorityType.LOW).isAdded());
+  }
+
+  @Test
+  public void killedTimedProcessNeverExpires() throws Exception {
+    // Given a timed process killed before its deadline
+    Process process = underTest.add(PriorityType.LOW, Deadline.after(20, TimeUnit.MILLISECONDS));
+    underTest.kill(process.getPid());
+
+    // When the deadline passes
+    Thread.sleep(100);
+
+    // Then it was only killed once
+    assertEquals(0, underTest.getMetrics().getExpirations());
+    assertEquals(1, underTest.getMetrics().getKills());
+  }
+
+  @Test
+  public void timedProcessAdmittedWhileShuttingDownIsKilled() throws TaskManagerException {
+    // Given an engine that shuts the task manager down while a timed process is being admitted
+    AtomicReference<TaskManagerServiceImpl> taskManager = new AtomicReference<>();
+    ExecutionEngine engine = new ExecutionEngine() {
+      @Override
+      public Future<?> submit(Runnable task, PriorityType priority) {
+        taskManager.get().stop();
+        return ExecutionEngines.defaultEngine().submit(task, priority);
+      }
+
+      @Override
+      public String getName() {
+        return "shutting-down";
+      }
+
+      @Override
+      public void shutdown() {
+        // Nothing to release
+      }
+    };
+    taskManager.set(new TaskManagerServiceImpl(CAPACITY, EvictionPolicy.PRIORITY, engine));
+
+    // When
+    try {
+      taskManager.get().add(PriorityType.LOW, Deadline.after(1, TimeUnit.MINUTES));
+      fail("Expected the task manager to be shut down");
+    } catch (IllegalStateException expected) {
+      assertEquals("The task manager has been shut down", expected.getMessage());
+    }
+
+    // Then the admitted process doesn't outlive the shutdown
+    assertEquals(0, taskManager.get().listAll(SortingType.ID).size());
+    assertEquals(0, taskManager.get().getMetrics().getLive(PriorityType.LOW));
+  }
+
+  @Test
+  public void subscribersReceiveASnapshotAndThenTheChanges() throws TaskManagerException {
+    // Given a task manager with a process
+    List<String> changes = Collections.synchronizedList(new ArrayList<>());
+    ChangeListener listener = new ChangeListener() {
+      @Override
+      public void onResync(List<Process> processes) {
+        processes.forEach(process -> changes.add("SNAPSHOT:" + process.getPid()));
+      }
+
+      @Override
+      public void onEvents(List<ChangeEvent> events) {
+        events.forEach(event -> changes.add(event.getType() + ":" + event.getPid()));
+      }
+    };
+    try (EventJournal journal = new EventJournal(OverflowPolicy.BLOCK)) {
+      TaskManagerServiceImpl taskManager =
+          new TaskManagerServiceImpl(2, EvictionPolicy.PRIORITY, ExecutionEngines.defaultEngine(), journal);
+      Process low = taskManager.add(PriorityType.LOW);
+      journal.flush();
+
+      // When subscribing and changing the processes
+      try (ChangeFeed.Subscription subscription = taskManager.subscribe(listener)) {
+        await().atMost(Durations.ONE_MINUTE).until(() -> !changes.isEmpty());
+        Process medium = taskManager.add(PriorityType.MEDIUM);
+        Process high = taskManager.addWithPriority(PriorityType.HIGH);
+        taskManager.kill(medium.getPid());
+
+        // Then the listener sees the snapshot followed by every change
+        await().atMost(Durations.ONE_MINUTE).until(() -> changes.size() == 5);
+        assertEquals(Arrays.asList("SNAPSHOT:" + low.getPid(), "ADDED:" + medium.getPid(), "EVICTED:" + low.getPid(),
+            "ADDED:" + high.getPid(), "KILLED:" + medium.getPid()), changes);
+        assertEquals(0, subscription.getOverruns());
+      }
+    }
+  }
+
+  @Test
+  public void subscribersOnlySeeTheirTaskManagerOnASharedJournal() throws Exception {
+    // Given two task managers sharing the default journal, each one with a subscriber
+    TaskManagerServiceImpl first = new TaskManagerServiceImpl(2);
+    TaskManagerServiceImpl second = new TaskManagerServiceImpl(2);
+    List<Long> firstPids = Collections.synchronizedList(new ArrayList<>());
+    List<Long> secondPids = Collections.synchronizedList(new ArrayList<>());
+    CountDownLatch resynced = new CountDownLatch(2);
+    try (ChangeFeed.Subscription firstSubscription = first.subscribe(pidRecorder(firstPids, resynced));
+        ChangeFeed.Subscription secondSubscription = second.subscribe(pidRecorder(secondPids, resynced))) {
+      assertTrue(resynced.await(1, TimeUnit.MINUTES));
+
+      // When both of them add processes
+      Process firstProcess = first.add(PriorityType.LOW);
+      Process secondProcess = second.add(PriorityType.HIGH);
+      first.kill(firstProcess.getPid());
+      EventJournal.defaultJournal().flush();
+
+      // Then every subscriber receives the events of its own task manager only
+      await().atMost(Durations.ONE_MINUTE).until(() -> firstPids.size() == 2 && secondPids.size() == 1);
+      assertEquals(Arrays.asList(firstProcess.getPid(), firstProcess.getPid()), firstPids);
+      assertEquals(Arrays.asList(secondProcess.getPid()), secondPids);
+      assertEquals(0, firstSubscription.getOverruns() + secondSubscription.getOverruns());
+    } finally {
+      first.killAll();
+      second.killAll();
+    }
+  }
+
+  private static ChangeListener pidRecorder(List<Long> pids, CountDownLatch resynced) {
+    return new ChangeListener() {
+      @Override
+      public void onResync(List<Process> processes) {
+        pids.clear();
+        resynced.countDown();
+      }
+
+      @Override
+      public void onEvents(List<ChangeEvent> events) {
+        events.forEach(event -> pids.add(event.getPid()));
+      }
+    };
+  }
+
+  private List<Process> fillUp(int processes) throws TaskManagerException {
+    List<Process> added = new ArrayList<>();
+    for (int i = 0; i < processes; i++) {
+      added.add(underTest.add(PriorityType.MEDIUM));
+    }
+    return added;
+  }
+
+  private static List<PriorityType> priorities(List<Process> processes) {
+    return processes.stream().map(Process::getPriority).collect(Collectors.toList());
+  }
+}
@@ -0,0 +1,120 @@
+package com.company.taskmanager.service.impl;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.awaitility.Durations;
+import org.junit.After;
+import org.junit.Test;
+
+public class TimingWheelTest {
+
+  private final Map<Long, Long> expiryNanos = new ConcurrentHashMap<>();
+  private final List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+  private volatile CountDownLatch expired = new CountDownLatch(0);
+  private final TimingWheel<Long> underTest = new TimingWheel<>(1, values -> {
+    long now = System.nanoTime();
+    batchSizes.add(values.size());
+    values.forEach(value -> {
+      expiryNanos.put(value, now);
+      expired.countDown();
+    });
+  });
+
+  @After
+  public void tearDown() {
+    underTest.close();
+  }
+
+  @Test
+  public void timeoutsExpireAfterTheirDeadlineInBatches() throws InterruptedException {
+    // Given timeouts spread over more than one bucket of the second level
+    int timeouts = 20_000;
+    expired = new CountDownLatch(timeouts);
+    long[] deadlines = new long[timeouts];
+    long now = System.nanoTime();
+    for (int i = 0; i < timeouts; i++) {
+      deadlines[i] = now + TimeUnit.MILLISECONDS.toNanos(ThreadLocalRandom.current().nextInt(600));
+      underTest.schedule((long) i, deadlines[i]);
+    }
+
+    // Then every timeout expires once, never before its deadline, several per batch
+    assertTrue(expired.await(1, TimeUnit.MINUTES));
+    assertEquals(timeouts, expiryNanos.size());
+    for (int i = 0; i < timeouts; i++) {
+      assertTrue("Expired early [timeout=" + i + "]", expiryNanos.get((long) i) >= deadlines[i]);
+    }
+    assertTrue(batchSizes.size() < timeouts);
+    assertEquals(0, underTest.size());
+  }
+
+  @Test
+  public void cancelledTimeoutsNeverExpire() throws InterruptedException {
+    // Given
+    expired = new CountDownLatch(1);
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(50);
+    TimingWheel.Timeout<Long> cancelled = underTest.schedule(1L, deadline);
+    underTest.schedule(2L, deadline + TimeUnit.MILLISECONDS.toNanos(10));
+
+    // When
+    assertTrue(cancelled.cancel());
+    assertFalse(cancelled.cancel());
+
+    // Then only the other timeout expires
+    assertTrue(expired.await(1, TimeUnit.MINUTES));
+    assertEquals(Collections.singleton(2L), expiryNanos.keySet());
+    assertFalse(cancelled.isExpired());
+    assertEquals(0, underTest.size());
+  }
+
+  @Test
+  public void tickerStopsOnceEmptyAndRestartsForNewTimeouts() throws InterruptedException {
+    // Given a wheel whose only timeout expired
+    expired = new CountDownLatch(1);
+    underTest.schedule(1L, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(5));
+    assertTrue(underTest.isTicking());
+    assertTrue(expired.await(1, TimeUnit.MINUTES));
+
+    // Then the ticker stops after a while
+    await().atMost(Durations.ONE_MINUTE).until(() -> !underTest.isTicking());
+
+    // And a new timeout starts it again
+    expired = new CountDownLatch(1);
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(20);
+    underTest.schedule(2L, deadline);
+    assertTrue(expired.await(1, TimeUnit.MINUTES));
+    assertTrue(expiryNanos.get(2L) >= deadline);
+  }
+
+  @Test
+  public void earlierTimeoutWakesUpASleepingTicker() throws InterruptedException {
+    // Given the ticker sleeping until a distant timeout
+    underTest.schedule(1L, System.nanoTime() + TimeUnit.MINUTES.toNanos(1));
+    Thread.sleep(20);
+
+    // When a closer timeout is scheduled
+    expired = new CountDownLatch(1);
+    underTest.schedule(2L, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(10));
+
+    // Then it expires on time
+    assertTrue(expired.await(1, TimeUnit.SECONDS));
+    assertEquals(Collections.singleton(2L), expiryNanos.keySet());
+  }
+
+  @Test
+  public void pastDeadlinesExpireRightAway() throws InterruptedException {
+    expired = new CountDownLatch(1);
+
+    underTest.schedule(1L, System.nanoTime() - TimeUnit.SECONDS.toNanos(1));
+
+    assertTrue(expired.await(1, TimeUnit.SECONDS));
+  }
+}